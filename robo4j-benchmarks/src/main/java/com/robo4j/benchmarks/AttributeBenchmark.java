@@ -0,0 +1,102 @@
+/*
+ * Copyright (c) 2014, 2024, Marcus Hirt, Miroslav Wengner
+ *
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.robo4j.benchmarks;
+
+import com.robo4j.AttributeDescriptor;
+import com.robo4j.ConfigurationException;
+import com.robo4j.MailboxAttributes;
+import com.robo4j.RoboBuilder;
+import com.robo4j.RoboBuilderException;
+import com.robo4j.RoboContext;
+import com.robo4j.RoboReference;
+import com.robo4j.benchmarks.units.CountingUnit;
+import com.robo4j.benchmarks.units.PublishingCountingUnit;
+import com.robo4j.configuration.ConfigurationBuilder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Measures reading attributes through a reference: a unit attribute, a
+ * reserved mailbox attribute and all attributes at once. The unit either
+ * provides its attribute when asked, or publishes it.
+ *
+ * @author Marcus Hirt (@hirt)
+ * @author Miroslav Wengner (@miragemiko)
+ */
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class AttributeBenchmark {
+    private static final long TIMEOUT_SEC = 10;
+
+    @Param({"false", "true"})
+    public boolean published;
+
+    private RoboContext system;
+    private RoboReference<Integer> reference;
+
+    @Setup(Level.Trial)
+    public void setUp() throws RoboBuilderException, ConfigurationException {
+        var builder = new RoboBuilder();
+        var consumer = published ? new PublishingCountingUnit(builder.getContext(), "consumer")
+                : new CountingUnit(builder.getContext(), "consumer");
+        consumer.initialize(new ConfigurationBuilder().build());
+        builder.add(consumer);
+        system = builder.build();
+        system.start();
+        reference = system.getReference("consumer");
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        system.shutdown();
+    }
+
+    @Benchmark
+    public Long unitAttribute() throws InterruptedException, ExecutionException, TimeoutException {
+        return reference.getAttribute(CountingUnit.DESCRIPTOR_COUNT).get(TIMEOUT_SEC, TimeUnit.SECONDS);
+    }
+
+    @Benchmark
+    public Long mailboxAttribute() throws InterruptedException, ExecutionException, TimeoutException {
+        return reference.getAttribute(MailboxAttributes.DESCRIPTOR_ENQUEUED_COUNT).get(TIMEOUT_SEC, TimeUnit.SECONDS);
+    }
+
+    @Benchmark
+    public Map<AttributeDescriptor<?>, Object> allAttributes() throws InterruptedException, ExecutionException, TimeoutException {
+        return reference.getAttributes().get(TIMEOUT_SEC, TimeUnit.SECONDS);
+    }
+}
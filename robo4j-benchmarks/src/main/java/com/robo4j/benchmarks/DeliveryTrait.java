@@ -0,0 +1,54 @@
+/*
+ * Copyright (c) 2014, 2024, Marcus Hirt, Miroslav Wengner
+ *
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.robo4j.benchmarks;
+
+import com.robo4j.RoboContext;
+import com.robo4j.benchmarks.units.BlockingCountingUnit;
+import com.robo4j.benchmarks.units.CountingUnit;
+import com.robo4j.benchmarks.units.CriticalCountingUnit;
+import com.robo4j.benchmarks.units.WorkCountingUnit;
+
+import java.util.function.BiFunction;
+
+/**
+ * The delivery traits measured by the benchmarks, each with a matching
+ * {@link CountingUnit}.
+ *
+ * @author Marcus Hirt (@hirt)
+ * @author Miroslav Wengner (@miragemiko)
+ */
+public enum DeliveryTrait {
+    SYSTEM(CountingUnit::new),
+    WORK(WorkCountingUnit::new),
+    BLOCKING(BlockingCountingUnit::new),
+    CRITICAL(CriticalCountingUnit::new);
+
+    private final BiFunction<RoboContext, String, CountingUnit> factory;
+
+    DeliveryTrait(BiFunction<RoboContext, String, CountingUnit> factory) {
+        this.factory = factory;
+    }
+
+    /**
+     * @param context the context to create the unit in.
+     * @param id      the id of the unit.
+     * @return a new counting unit with this delivery trait.
+     */
+    public CountingUnit createUnit(RoboContext context, String id) {
+        return factory.apply(context, id);
+    }
+}
@@ -0,0 +1,97 @@
+/*
+ * Copyright (c) 2014, 2024, Marcus Hirt, Miroslav Wengner
+ *
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.robo4j.benchmarks;
+
+import com.robo4j.ConfigurationException;
+import com.robo4j.RoboBuilder;
+import com.robo4j.RoboBuilderException;
+import com.robo4j.RoboContext;
+import com.robo4j.RoboReference;
+import com.robo4j.benchmarks.units.CountingUnit;
+import com.robo4j.configuration.ConfigurationBuilder;
+import com.robo4j.scheduler.Scheduler;
+import com.robo4j.scheduler.SchedulerType;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures delivery of messages scheduled with
+ * {@link Scheduler#schedule(RoboReference, Object, long, long, TimeUnit, int)},
+ * from scheduling the message until the unit has processed it, for each
+ * scheduler implementation.
+ *
+ * @author Marcus Hirt (@hirt)
+ * @author Miroslav Wengner (@miragemiko)
+ */
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class SchedulerBenchmark {
+    @Param({"SYSTEM", "WORK"})
+    public DeliveryTrait trait;
+
+    @Param({"DEFAULT", "HASHED_WHEEL"})
+    public SchedulerType schedulerType;
+
+    private RoboContext system;
+    private Scheduler scheduler;
+    private CountingUnit consumer;
+    private RoboReference<Integer> reference;
+    private long sent;
+
+    @Setup(Level.Trial)
+    public void setUp() throws RoboBuilderException, ConfigurationException {
+        var builder = new RoboBuilder(new ConfigurationBuilder()
+                .addString(RoboBuilder.KEY_SCHEDULER_TYPE, schedulerType.name())
+                .build());
+        consumer = trait.createUnit(builder.getContext(), "consumer");
+        consumer.initialize(new ConfigurationBuilder().build());
+        builder.add(consumer);
+        system = builder.build();
+        system.start();
+        scheduler = system.getScheduler();
+        reference = system.getReference("consumer");
+        sent = 0;
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        system.shutdown();
+    }
+
+    @Benchmark
+    @BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public void scheduledDelivery() {
+        scheduler.schedule(reference, 1, 0, 1, TimeUnit.MILLISECONDS, 1);
+        consumer.awaitCount(++sent);
+    }
+}
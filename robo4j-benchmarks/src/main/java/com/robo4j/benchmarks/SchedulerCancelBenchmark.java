@@ -0,0 +1,93 @@
+/*
+ * Copyright (c) 2014, 2024, Marcus Hirt, Miroslav Wengner
+ *
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.robo4j.benchmarks;
+
+import com.robo4j.scheduler.DefaultScheduler;
+import com.robo4j.scheduler.HashedWheelScheduler;
+import com.robo4j.scheduler.Scheduler;
+import com.robo4j.scheduler.SchedulerType;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the cost of scheduling and cancelling periodic tasks in the
+ * scheduler implementations, with a number of other tasks already waiting.
+ * Each iteration runs a fixed number of operations on a fresh scheduler, since
+ * the cancelled tasks stay in the heap of the {@link DefaultScheduler} until
+ * their delay has expired.
+ *
+ * @author Marcus Hirt (@hirt)
+ * @author Miroslav Wengner (@miragemiko)
+ */
+@State(Scope.Benchmark)
+@Fork(1)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, batchSize = SchedulerCancelBenchmark.OPERATIONS)
+@Measurement(iterations = 20, batchSize = SchedulerCancelBenchmark.OPERATIONS)
+public class SchedulerCancelBenchmark {
+    static final int OPERATIONS = 100_000;
+    private static final Runnable NOOP = () -> {
+    };
+
+    @Param({"DEFAULT", "HASHED_WHEEL"})
+    public SchedulerType schedulerType;
+
+    @Param({"100", "10000"})
+    public int waitingTasks;
+
+    private Scheduler scheduler;
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+        scheduler = switch (schedulerType) {
+            case DEFAULT -> new DefaultScheduler(null);
+            case HASHED_WHEEL -> new HashedWheelScheduler(null);
+        };
+        for (int i = 0; i < waitingTasks; i++) {
+            scheduler.scheduleAtFixedRate(NOOP, 1 + i % 3600, 1, TimeUnit.SECONDS);
+        }
+    }
+
+    @TearDown(Level.Iteration)
+    public void tearDown() throws InterruptedException {
+        scheduler.shutdown();
+    }
+
+    @Benchmark
+    public boolean scheduleAndCancel() {
+        return scheduler.scheduleAtFixedRate(NOOP, 1, 1, TimeUnit.HOURS).cancel(false);
+    }
+
+    @Benchmark
+    public Object schedule() {
+        return scheduler.scheduleAtFixedRate(NOOP, 1, 1, TimeUnit.HOURS);
+    }
+}
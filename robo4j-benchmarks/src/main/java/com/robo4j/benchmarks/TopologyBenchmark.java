@@ -0,0 +1,171 @@
+/*
+ * Copyright (c) 2014, 2024, Marcus Hirt, Miroslav Wengner
+ *
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.robo4j.benchmarks;
+
+import com.robo4j.ConfigurationException;
+import com.robo4j.RoboBuilder;
+import com.robo4j.RoboBuilderException;
+import com.robo4j.RoboContext;
+import com.robo4j.RoboReference;
+import com.robo4j.benchmarks.units.CountingUnit;
+import com.robo4j.benchmarks.units.ForwardingUnit;
+import com.robo4j.configuration.ConfigurationBuilder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.StringJoiner;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures delivery through small unit graphs.
+ * <p>
+ * In the fan out topology one forwarding unit sends every message to all the
+ * consumers. In the fan in topology the messages are spread over the
+ * forwarding units, which all send to one consumer. The burst benchmark
+ * measures throughput, the round trip benchmark the latency percentiles of one
+ * message reaching all the consumers.
+ *
+ * @author Marcus Hirt (@hirt)
+ * @author Miroslav Wengner (@miragemiko)
+ */
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class TopologyBenchmark {
+    public enum Topology {
+        FAN_OUT, FAN_IN
+    }
+
+    static final int BURST_SIZE = 1000;
+
+    @Param
+    public Topology topology;
+
+    @Param({"4"})
+    public int width;
+
+    @Param({"SYSTEM", "WORK"})
+    public DeliveryTrait trait;
+
+    private RoboContext system;
+    private final List<CountingUnit> consumers = new ArrayList<>();
+    private final List<RoboReference<Integer>> entries = new ArrayList<>();
+    private long expectedPerConsumer;
+    private int nextEntry;
+
+    @Setup(Level.Trial)
+    public void setUp() throws RoboBuilderException, ConfigurationException {
+        var builder = new RoboBuilder();
+        RoboContext context = builder.getContext();
+        consumers.clear();
+        entries.clear();
+        expectedPerConsumer = 0;
+        switch (topology) {
+            case FAN_OUT -> {
+                var targets = new StringJoiner(",");
+                for (int i = 0; i < width; i++) {
+                    targets.add(addConsumer(builder, context, "consumer" + i));
+                }
+                addForwarder(builder, context, "forwarder", targets.toString());
+            }
+            case FAN_IN -> {
+                String consumer = addConsumer(builder, context, "consumer");
+                for (int i = 0; i < width; i++) {
+                    addForwarder(builder, context, "forwarder" + i, consumer);
+                }
+            }
+        }
+        system = builder.build();
+        system.start();
+        for (String id : entryIds()) {
+            entries.add(system.getReference(id));
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        system.shutdown();
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    @OperationsPerInvocation(BURST_SIZE)
+    public void burst() {
+        int entryCount = entries.size();
+        for (int i = 0; i < BURST_SIZE; i++) {
+            entries.get(i % entryCount).sendMessage(i);
+        }
+        // Every consumer sees every message, in both topologies
+        expectedPerConsumer += BURST_SIZE;
+        for (CountingUnit consumer : consumers) {
+            consumer.awaitCount(expectedPerConsumer);
+        }
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SampleTime)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public void roundTrip() {
+        entries.get(nextEntry).sendMessage(nextEntry);
+        nextEntry = (nextEntry + 1) % entries.size();
+        expectedPerConsumer++;
+        for (CountingUnit consumer : consumers) {
+            consumer.awaitCount(expectedPerConsumer);
+        }
+    }
+
+    private List<String> entryIds() {
+        if (topology == Topology.FAN_OUT) {
+            return List.of("forwarder");
+        }
+        List<String> ids = new ArrayList<>(width);
+        for (int i = 0; i < width; i++) {
+            ids.add("forwarder" + i);
+        }
+        return ids;
+    }
+
+    private String addConsumer(RoboBuilder builder, RoboContext context, String id) throws RoboBuilderException, ConfigurationException {
+        CountingUnit consumer = trait.createUnit(context, id);
+        consumer.initialize(new ConfigurationBuilder().build());
+        builder.add(consumer);
+        consumers.add(consumer);
+        return id;
+    }
+
+    private void addForwarder(RoboBuilder builder, RoboContext context, String id, String targets) throws RoboBuilderException, ConfigurationException {
+        var forwarder = new ForwardingUnit(context, id);
+        forwarder.initialize(new ConfigurationBuilder().addString(ForwardingUnit.PROP_TARGETS, targets).build());
+        builder.add(forwarder);
+    }
+}
@@ -0,0 +1,85 @@
+/*
+ * Copyright (c) 2014, 2024, Marcus Hirt, Miroslav Wengner
+ *
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.robo4j.benchmarks.units;
+
+import com.robo4j.AttributeDescriptor;
+import com.robo4j.DefaultAttributeDescriptor;
+import com.robo4j.RoboContext;
+import com.robo4j.RoboUnit;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counts the messages it receives. Delivered on the system scheduler, see the
+ * subclasses for the other delivery traits.
+ *
+ * @author Marcus Hirt (@hirt)
+ * @author Miroslav Wengner (@miragemiko)
+ */
+public class CountingUnit extends RoboUnit<Integer> {
+    public static final String ATTR_COUNT = "count";
+    public static final DefaultAttributeDescriptor<Long> DESCRIPTOR_COUNT = DefaultAttributeDescriptor.create(Long.class,
+            ATTR_COUNT);
+    private static final long AWAIT_TIMEOUT_NANOS = TimeUnit.SECONDS.toNanos(30);
+    private final AtomicLong count = new AtomicLong();
+
+    public CountingUnit(RoboContext context, String id) {
+        super(Integer.class, context, id);
+    }
+
+    @Override
+    public void onMessage(Integer message) {
+        count.incrementAndGet();
+    }
+
+    public long getCount() {
+        return count.get();
+    }
+
+    /**
+     * Spins until the unit has received at least the expected number of
+     * messages.
+     *
+     * @param expected the expected number of messages.
+     */
+    public void awaitCount(long expected) {
+        long deadline = System.nanoTime() + AWAIT_TIMEOUT_NANOS;
+        while (count.get() < expected) {
+            if (System.nanoTime() > deadline) {
+                throw new IllegalStateException("Unit " + id() + " only received " + count.get() + " of " + expected + " messages");
+            }
+            Thread.onSpinWait();
+        }
+    }
+
+    @Override
+    public Collection<AttributeDescriptor<?>> getKnownAttributes() {
+        return List.of(DESCRIPTOR_COUNT);
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public <R> R onGetAttribute(AttributeDescriptor<R> descriptor) {
+        if (descriptor.equals(DESCRIPTOR_COUNT)) {
+            return (R) Long.valueOf(count.get());
+        }
+        return null;
+    }
+}
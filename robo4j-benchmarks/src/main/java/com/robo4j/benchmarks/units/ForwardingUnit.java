@@ -0,0 +1,72 @@
+/*
+ * Copyright (c) 2014, 2024, Marcus Hirt, Miroslav Wengner
+ *
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.robo4j.benchmarks.units;
+
+import com.robo4j.ConfigurationException;
+import com.robo4j.RoboContext;
+import com.robo4j.RoboReference;
+import com.robo4j.RoboUnit;
+import com.robo4j.configuration.Configuration;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Forwards every message to all its targets.
+ *
+ * @author Marcus Hirt (@hirt)
+ * @author Miroslav Wengner (@miragemiko)
+ */
+public class ForwardingUnit extends RoboUnit<Integer> {
+    /**
+     * Comma separated ids of the target units.
+     */
+    public static final String PROP_TARGETS = "targets";
+    private final List<String> targetIds = new ArrayList<>();
+    private List<RoboReference<Integer>> targets;
+
+    public ForwardingUnit(RoboContext context, String id) {
+        super(Integer.class, context, id);
+    }
+
+    @Override
+    protected void onInitialization(Configuration configuration) throws ConfigurationException {
+        String targetList = configuration.getString(PROP_TARGETS, null);
+        if (targetList == null) {
+            throw ConfigurationException.createMissingConfigNameException(PROP_TARGETS);
+        }
+        for (String target : targetList.split(",")) {
+            targetIds.add(target.trim());
+        }
+    }
+
+    @Override
+    public void start() {
+        List<RoboReference<Integer>> references = new ArrayList<>(targetIds.size());
+        for (String targetId : targetIds) {
+            references.add(getContext().getReference(targetId));
+        }
+        targets = references;
+    }
+
+    @Override
+    public void onMessage(Integer message) {
+        for (RoboReference<Integer> target : targets) {
+            target.sendMessage(message);
+        }
+    }
+}
@@ -0,0 +1,43 @@
+/*
+ * Copyright (c) 2014, 2024, Marcus Hirt, Miroslav Wengner
+ *
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.robo4j.benchmarks.units;
+
+import com.robo4j.RoboContext;
+
+/**
+ * {@link CountingUnit} publishing its count, so that it is read from the
+ * attribute snapshot of the unit instead of being asked for.
+ *
+ * @author Marcus Hirt (@hirt)
+ * @author Miroslav Wengner (@miragemiko)
+ */
+public class PublishingCountingUnit extends CountingUnit {
+    public PublishingCountingUnit(RoboContext context, String id) {
+        super(context, id);
+    }
+
+    @Override
+    public void start() {
+        publishAttribute(DESCRIPTOR_COUNT, getCount());
+    }
+
+    @Override
+    public void onMessage(Integer message) {
+        super.onMessage(message);
+        publishAttribute(DESCRIPTOR_COUNT, getCount());
+    }
+}
@@ -0,0 +1,96 @@
+/*
+ * Copyright (c) 2014, 2024, Marcus Hirt, Miroslav Wengner
+ *
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.robo4j;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * An immutable, versioned set of attribute values published by a unit. Units
+ * publish new values with {@link RoboUnit#publishAttribute(AttributeDescriptor, Object)},
+ * which replaces the snapshot of the unit with a new one. Reading a snapshot
+ * never blocks, nor involves the unit or any executor.
+ *
+ * @author Marcus Hirt (@hirt)
+ * @author Miroslav Wengner (@miragemiko)
+ */
+public final class AttributeSnapshot {
+    /**
+     * The snapshot of a unit which has not published anything.
+     */
+    public static final AttributeSnapshot EMPTY = new AttributeSnapshot(Map.of(), 0);
+
+    private final Map<AttributeDescriptor<?>, Object> values;
+    private final long version;
+
+    private AttributeSnapshot(Map<AttributeDescriptor<?>, Object> values, long version) {
+        this.values = values;
+        this.version = version;
+    }
+
+    /**
+     * @return the version of the snapshot, increased every time the unit
+     * publishes.
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * @param descriptor the descriptor of the attribute.
+     * @return true if the unit has published a value for the attribute.
+     */
+    public boolean contains(AttributeDescriptor<?> descriptor) {
+        return values.containsKey(descriptor);
+    }
+
+    /**
+     * @param descriptor the descriptor of the attribute.
+     * @param <R>        the type of the attribute.
+     * @return the published value, or null if the attribute has not been
+     * published.
+     */
+    @SuppressWarnings("unchecked")
+    public <R> R get(AttributeDescriptor<R> descriptor) {
+        return (R) values.get(descriptor);
+    }
+
+    /**
+     * @return the published values, as an unmodifiable map.
+     */
+    public Map<AttributeDescriptor<?>, Object> getValues() {
+        return values;
+    }
+
+    AttributeSnapshot with(Map<AttributeDescriptor<?>, Object> changes) {
+        var newValues = new HashMap<AttributeDescriptor<?>, Object>(values);
+        changes.forEach((descriptor, value) -> {
+            // Publishing null withdraws the value
+            if (value == null) {
+                newValues.remove(descriptor);
+            } else {
+                newValues.put(descriptor, value);
+            }
+        });
+        return new AttributeSnapshot(Map.copyOf(newValues), version + 1);
+    }
+
+    @Override
+    public String toString() {
+        return "AttributeSnapshot [version=" + version + ", values=" + values + "]";
+    }
+}
@@ -27,6 +27,11 @@ import java.lang.annotation.Target;
  * may take some time to finish, and that it will spend most of the time blocked
  * (for example on synchronous IO). The messages will be delivered using a
  * separate work pool.
+ * <p>
+ * Set {@link #virtualThreads()} to deliver the messages on virtual threads
+ * instead, so that the number of blocked deliveries is not limited by the size
+ * of the blocking pool. This can also be enabled for all blocking units in the
+ * system, see {@link RoboBuilder#KEY_BLOCKING_VIRTUAL_THREADS}.
  * 
  * @author Marcus Hirt (@hirt)
  * @author Miroslav Wengner (@miragemiko)
@@ -34,5 +39,8 @@ import java.lang.annotation.Target;
 @Retention(RUNTIME)
 @Target(TYPE)
 public @interface BlockingTrait {
-
+	/**
+	 * @return true if the messages should be delivered on virtual threads.
+	 */
+	boolean virtualThreads() default false;
 }
@@ -0,0 +1,41 @@
+/*
+ * Copyright (c) 2014, 2024, Marcus Hirt, Miroslav Wengner
+ *
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.robo4j;
+
+import static java.lang.annotation.ElementType.TYPE;
+import static java.lang.annotation.RetentionPolicy.RUNTIME;
+
+import java.lang.annotation.Retention;
+import java.lang.annotation.Target;
+
+/**
+ * Annotate the unit with this annotation to declare that the unit only cares
+ * about the latest message. A message which has not yet been delivered is
+ * replaced by the next message sent to the unit, so a slow unit never works
+ * through a backlog of stale values, e.g. sensor readings.
+ * <p>
+ * Messages are delivered one at a time. The same behaviour can be configured
+ * for a unit with {@link RoboBuilder#KEY_MAILBOX_CONFLATING}.
+ *
+ * @author Marcus Hirt (@hirt)
+ * @author Miroslav Wengner (@miragemiko)
+ */
+@Retention(RUNTIME)
+@Target(TYPE)
+public @interface ConflatingTrait {
+
+}
@@ -0,0 +1,47 @@
+/*
+ * Copyright (c) 2014, 2024, Marcus Hirt, Miroslav Wengner
+ *
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.robo4j;
+
+import java.time.Duration;
+
+/**
+ * Implemented by messages which are only worth delivering until a deadline,
+ * like sensor readings and motor commands. The {@link RoboSystem} checks the
+ * deadline right before handing the message to the unit, and drops the
+ * message if it has expired. The dropped messages are counted in
+ * {@link MailboxAttributes#DESCRIPTOR_EXPIRED_COUNT}.
+ * <p>
+ * This bounds the reaction time of a unit after a stall, as the backlog of
+ * stale messages is skipped instead of being processed.
+ *
+ * @author Marcus Hirt (@hirt)
+ * @author Miroslav Wengner (@miragemiko)
+ */
+public interface ExpiringMessage {
+	/**
+	 * @return the deadline of the message, in {@link System#nanoTime()} time.
+	 */
+	long getDeadlineNanos();
+
+	/**
+	 * @param timeToLive how long from now the message is worth delivering.
+	 * @return the deadline to use for a message created now.
+	 */
+	static long deadlineAfter(Duration timeToLive) {
+		return System.nanoTime() + timeToLive.toNanos();
+	}
+}
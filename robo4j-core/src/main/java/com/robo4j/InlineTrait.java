@@ -0,0 +1,45 @@
+/*
+ * Copyright (c) 2014, 2024, Marcus Hirt, Miroslav Wengner
+ *
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.robo4j;
+
+import static java.lang.annotation.ElementType.TYPE;
+import static java.lang.annotation.RetentionPolicy.RUNTIME;
+
+import java.lang.annotation.Retention;
+import java.lang.annotation.Target;
+
+/**
+ * Annotate the unit with this annotation to have messages sent to it from
+ * another unit delivered inline, on the thread of the sending unit, instead of
+ * through the queue of the executor. Only done when both units are delivered
+ * on the same executor, the unit is idle, and the chain of inline deliveries
+ * is not too deep (see {@link RoboBuilder#KEY_INLINE_MAX_DEPTH}). Otherwise the
+ * message is queued as usual. The threading traits of the unit are respected.
+ * <p>
+ * Use for short and quick stages in pipelines, such as filters and feature
+ * extraction, to save the queueing latency and the context switches. The
+ * sending unit waits until the message has been processed. The same behaviour
+ * can be configured for a unit with {@link RoboBuilder#KEY_MAILBOX_INLINE}.
+ *
+ * @author Marcus Hirt (@hirt)
+ * @author Miroslav Wengner (@miragemiko)
+ */
+@Retention(RUNTIME)
+@Target(TYPE)
+public @interface InlineTrait {
+
+}
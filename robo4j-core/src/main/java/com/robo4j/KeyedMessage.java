@@ -0,0 +1,34 @@
+/*
+ * Copyright (c) 2014, 2024, Marcus Hirt, Miroslav Wengner
+ *
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.robo4j;
+
+/**
+ * Implemented by messages which carry their own ordering key, for units with
+ * the {@link OrderedTrait}. Messages with the same key are delivered in the
+ * order they were sent, one at a time, while messages with different keys may
+ * be delivered in parallel.
+ *
+ * @author Marcus Hirt (@hirt)
+ * @author Miroslav Wengner (@miragemiko)
+ */
+public interface KeyedMessage {
+	/**
+	 * @return the ordering key of the message, e.g. the id of a sensor or of a
+	 *         motor. Must have a stable hash code.
+	 */
+	Object getOrderingKey();
+}
@@ -0,0 +1,120 @@
+/*
+ * Copyright (c) 2014, 2024, Marcus Hirt, Miroslav Wengner
+ *
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.robo4j;
+
+import java.io.Serial;
+import java.io.Serializable;
+import java.util.Arrays;
+
+/**
+ * An immutable snapshot of a latency histogram. Bucket <i>i</i> counts the
+ * samples between 2<sup>i</sup> (inclusive) and 2<sup>i+1</sup> (exclusive)
+ * nanoseconds, except for the first bucket which also counts samples of zero
+ * nanoseconds. Percentiles are therefore accurate to within a factor of two,
+ * which is plenty for finding the unit that is slow.
+ *
+ * @author Marcus Hirt (@hirt)
+ * @author Miroslav Wengner (@miragemiko)
+ */
+public final class LatencyHistogram implements Serializable {
+    @Serial
+    private static final long serialVersionUID = 1L;
+    /**
+     * The number of buckets, enough to cover all positive long values.
+     */
+    public static final int BUCKET_COUNT = 63;
+
+    private final long[] bucketCounts;
+    private final long count;
+    private final long totalNanos;
+    private final long maxNanos;
+
+    LatencyHistogram(long[] bucketCounts, long totalNanos, long maxNanos) {
+        this.bucketCounts = bucketCounts.clone();
+        this.count = Arrays.stream(bucketCounts).sum();
+        this.totalNanos = totalNanos;
+        this.maxNanos = maxNanos;
+    }
+
+    /**
+     * @return the number of recorded samples.
+     */
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * @return the sum of all recorded samples, in nanoseconds.
+     */
+    public long getTotalNanos() {
+        return totalNanos;
+    }
+
+    /**
+     * @return the largest recorded sample, in nanoseconds.
+     */
+    public long getMaxNanos() {
+        return maxNanos;
+    }
+
+    /**
+     * @return the mean of the recorded samples, in nanoseconds, or zero if
+     *         there are no samples.
+     */
+    public long getMeanNanos() {
+        return count == 0 ? 0 : totalNanos / count;
+    }
+
+    /**
+     * @param bucket the index of the bucket.
+     * @return the number of samples in the bucket.
+     */
+    public long getBucketCount(int bucket) {
+        return bucketCounts[bucket];
+    }
+
+    /**
+     * Returns an upper bound of the specified percentile.
+     *
+     * @param percentile the percentile, between 0 and 100.
+     * @return the upper bound of the bucket containing the percentile, capped
+     *         by the largest sample, in nanoseconds. Zero if there are no
+     *         samples.
+     */
+    public long getPercentileNanos(double percentile) {
+        if (percentile < 0 || percentile > 100) {
+            throw new IllegalArgumentException("percentile must be between 0 and 100, was " + percentile);
+        }
+        if (count == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(count * percentile / 100));
+        long seen = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            seen += bucketCounts[i];
+            if (seen >= rank) {
+                return Math.min(maxNanos, (1L << (i + 1)) - 1);
+            }
+        }
+        return maxNanos;
+    }
+
+    @Override
+    public String toString() {
+        return "LatencyHistogram count: " + count + " mean: " + getMeanNanos() + "ns max: " + maxNanos + "ns";
+    }
+}
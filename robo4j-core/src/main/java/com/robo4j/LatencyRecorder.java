@@ -0,0 +1,69 @@
+/*
+ * Copyright (c) 2014, 2024, Marcus Hirt, Miroslav Wengner
+ *
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.robo4j;
+
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Records latencies into power of two buckets using striped counters, so that
+ * recording from many threads at once does not contend.
+ *
+ * @author Marcus Hirt (@hirt)
+ * @author Miroslav Wengner (@miragemiko)
+ */
+public final class LatencyRecorder {
+    private final LongAdder[] buckets = new LongAdder[LatencyHistogram.BUCKET_COUNT];
+    private final LongAdder totalNanos = new LongAdder();
+    private final LongAccumulator maxNanos = new LongAccumulator(Long::max, 0);
+
+    /**
+     * Creates a new, empty, recorder.
+     */
+    public LatencyRecorder() {
+        for (int i = 0; i < buckets.length; i++) {
+            buckets[i] = new LongAdder();
+        }
+    }
+
+    /**
+     * Records one sample. Negative samples are recorded as zero.
+     *
+     * @param nanos the latency in nanoseconds.
+     */
+    public void record(long nanos) {
+        long sample = Math.max(0, nanos);
+        buckets[bucketIndex(sample)].increment();
+        totalNanos.add(sample);
+        maxNanos.accumulate(sample);
+    }
+
+    /**
+     * @return a snapshot of the samples recorded so far.
+     */
+    public LatencyHistogram snapshot() {
+        long[] counts = new long[buckets.length];
+        for (int i = 0; i < buckets.length; i++) {
+            counts[i] = buckets[i].sum();
+        }
+        return new LatencyHistogram(counts, totalNanos.sum(), maxNanos.get());
+    }
+
+    static int bucketIndex(long nanos) {
+        return 63 - Long.numberOfLeadingZeros(nanos | 1);
+    }
+}
@@ -0,0 +1,877 @@
+/*
+ * Copyright (c) 2014, 2024, Marcus Hirt, Miroslav Wengner
+ *
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.robo4j;
+
+import com.robo4j.jfr.UnitDeliveryEvent;
+import com.robo4j.scheduler.StripedExecutor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The per unit message queue used by the {@link RoboSystem}. Senders append
+ * messages to the lock-free queue, and the mailbox then schedules itself on the
+ * executor of the unit to drain a batch of messages.
+ * <p>
+ * The mailbox is never scheduled more times in parallel than its concurrency
+ * allows. With a concurrency of one (units annotated with
+ * {@link CriticalSectionTrait}) the messages are delivered one at a time and in
+ * the order they were sent, without any monitor being held.
+ * <p>
+ * A mailbox can be bounded. When a bounded mailbox is full, the
+ * {@link MailboxOverflowPolicy} decides what happens to the new message.
+ * <p>
+ * A conflating mailbox only keeps the latest message. A message which has not
+ * yet been delivered is replaced by the next one, so the unit only ever sees
+ * the most recent value. Conflating mailboxes are drained by at most one thread
+ * at a time, and are never bounded.
+ * <p>
+ * Messages sent with {@link MessagePriority#CONTROL} go into a separate,
+ * unbounded lane which is always drained before the regular messages. A control
+ * message also schedules an urgent drain on the urgent executor, so that it
+ * does not have to wait behind the drains of other units. The number of running
+ * drains is still limited by the concurrency.
+ * <p>
+ * Units overriding {@link RoboUnit#onMessages(List)} get all the messages of a
+ * drain handed over in one call.
+ * <p>
+ * With inline delivery enabled, a message sent from the unit processing a
+ * message on the same executor skips the queue, and is delivered on the
+ * sending thread when the mailbox is idle. The nesting depth is limited, and
+ * the message is queued as usual whenever it cannot be delivered inline.
+ * <p>
+ * With key ordering enabled, the messages bypass the queue and are handed to a
+ * {@link StripedExecutor} on the executor of the unit, keyed by
+ * {@link RoboUnit#getOrderingKey(Object)}. Messages with the same key are then
+ * delivered in order, while messages with different keys are delivered in
+ * parallel. Control messages are ordered with the regular messages in this
+ * mode.
+ * <p>
+ * {@link ExpiringMessage Expiring messages} are checked right before they are
+ * handed to the unit, and dropped if their deadline has passed.
+ * <p>
+ * The mailbox records how many messages pass through it, how long they wait
+ * and how long the unit takes to process them. The numbers are kept in striped
+ * counters, and are read as the reserved {@link MailboxAttributes}.
+ * <p>
+ * Internal implementation class.
+ *
+ * @author Marcus Hirt (@hirt)
+ * @author Miroslav Wengner (@miragemiko)
+ */
+final class Mailbox<T> implements Runnable {
+    private static final Logger LOGGER = LoggerFactory.getLogger(Mailbox.class);
+    /**
+     * The maximum number of messages delivered by one scheduled drain, before
+     * the threads are given back to the executor.
+     */
+    static final int DEFAULT_THROUGHPUT = 32;
+    /**
+     * Capacity used for unbounded mailboxes.
+     */
+    static final int UNBOUNDED = 0;
+    /**
+     * The default maximum number of units a message may be handed through
+     * inline, before it is queued anyway.
+     */
+    static final int DEFAULT_INLINE_DEPTH = 4;
+    // The drain, if any, delivering messages on the current thread
+    private static final ThreadLocal<DeliveryFrame> CURRENT_FRAME = ThreadLocal.withInitial(DeliveryFrame::new);
+
+    private final RoboUnit<T> unit;
+    private final Executor executor;
+    private final Executor urgentExecutor;
+    private final int concurrency;
+    private final int throughput;
+    private final Queue<Envelope<T>> queue = new ConcurrentLinkedQueue<>();
+    private final Queue<Envelope<T>> controlQueue = new ConcurrentLinkedQueue<>();
+    // Drains submitted to the executor and not yet finished, urgent drains
+    // excluded
+    private final AtomicInteger activeDrains = new AtomicInteger();
+    // Drains currently delivering messages, urgent drains included
+    private final AtomicInteger runningDrains = new AtomicInteger();
+    private final Runnable urgentDrain = this::runUrgent;
+    // One permit per free slot, null for unbounded mailboxes
+    private final Semaphore permits;
+    private final MailboxOverflowPolicy overflowPolicy;
+    private final LongAdder overflowCount = new LongAdder();
+    private volatile boolean overflowReported;
+    // The pending message of conflating mailboxes, null for queueing mailboxes
+    private final AtomicReference<Envelope<T>> latest;
+    private final LongAdder conflatedCount = new LongAdder();
+    private final LongAdder expiredCount = new LongAdder();
+    private final LongAdder shedCount = new LongAdder();
+    private final LongAdder enqueuedCount = new LongAdder();
+    private final LongAdder deliveredCount = new LongAdder();
+    private final LongAdder queueDepth = new LongAdder();
+    private final LatencyRecorder queueWaitTime = new LatencyRecorder();
+    private final LatencyRecorder processingTime = new LatencyRecorder();
+    private final boolean batching;
+    // Set before the mailbox is used, 0 when inline delivery is disabled
+    private int inlineDepth;
+    // Set before the mailbox is used, null unless ordered by key
+    private StripedExecutor keyed;
+
+    /**
+     * Constructor for an unbounded mailbox.
+     *
+     * @param unit        the unit to deliver the messages to.
+     * @param executor    the executor used for draining the mailbox.
+     * @param concurrency the maximum number of drains running at the same time.
+     * @param throughput  the maximum number of messages delivered per drain.
+     */
+    Mailbox(RoboUnit<T> unit, Executor executor, int concurrency, int throughput) {
+        this(unit, executor, executor, concurrency, throughput, UNBOUNDED, MailboxOverflowPolicy.DROP_NEWEST);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param unit           the unit to deliver the messages to.
+     * @param executor       the executor used for draining the mailbox.
+     * @param urgentExecutor the executor used for draining the mailbox when a
+     *                       control message arrives.
+     * @param concurrency    the maximum number of drains running at the same
+     *                       time.
+     * @param throughput     the maximum number of messages delivered per drain.
+     * @param capacity       the maximum number of waiting messages, or
+     *                       {@link #UNBOUNDED}.
+     * @param overflowPolicy what to do with messages which do not fit.
+     */
+    Mailbox(RoboUnit<T> unit, Executor executor, Executor urgentExecutor, int concurrency, int throughput, int capacity,
+            MailboxOverflowPolicy overflowPolicy) {
+        if (concurrency < 1 || throughput < 1 || capacity < 0) {
+            throw new IllegalArgumentException("concurrency and throughput must be positive, capacity must not be negative");
+        }
+        this.unit = unit;
+        this.executor = executor;
+        this.urgentExecutor = urgentExecutor;
+        this.concurrency = concurrency;
+        this.throughput = throughput;
+        this.permits = capacity == UNBOUNDED ? null : new Semaphore(capacity);
+        this.overflowPolicy = overflowPolicy;
+        this.latest = null;
+        this.batching = overridesOnMessages(unit.getClass());
+    }
+
+    /**
+     * Constructor for a conflating mailbox.
+     *
+     * @param unit           the unit to deliver the messages to.
+     * @param executor       the executor used for draining the mailbox.
+     * @param urgentExecutor the executor used for draining the mailbox when a
+     *                       control message arrives.
+     * @param throughput     the maximum number of messages delivered per drain.
+     */
+    private Mailbox(RoboUnit<T> unit, Executor executor, Executor urgentExecutor, int throughput) {
+        if (throughput < 1) {
+            throw new IllegalArgumentException("throughput must be positive");
+        }
+        this.unit = unit;
+        this.executor = executor;
+        this.urgentExecutor = urgentExecutor;
+        this.concurrency = 1;
+        this.throughput = throughput;
+        this.permits = null;
+        this.overflowPolicy = MailboxOverflowPolicy.DROP_NEWEST;
+        this.latest = new AtomicReference<>();
+        this.batching = false;
+    }
+
+    /**
+     * Creates a conflating mailbox, which only keeps the latest message.
+     *
+     * @param unit           the unit to deliver the messages to.
+     * @param executor       the executor used for draining the mailbox.
+     * @param urgentExecutor the executor used for draining the mailbox when a
+     *                       control message arrives.
+     * @param throughput     the maximum number of messages delivered per drain.
+     * @param <T>            the message type.
+     * @return the conflating mailbox.
+     */
+    static <T> Mailbox<T> conflating(RoboUnit<T> unit, Executor executor, Executor urgentExecutor, int throughput) {
+        return new Mailbox<>(unit, executor, urgentExecutor, throughput);
+    }
+
+    /**
+     * Appends the message to the mailbox, and schedules the mailbox unless it
+     * is already scheduled as many times as the concurrency allows.
+     *
+     * @param message the message to deliver.
+     */
+    void enqueue(T message) {
+        if (inlineDepth > 0 && tryDeliverInline(message)) {
+            return;
+        }
+        enqueue(new Envelope<>(message, System.nanoTime()));
+    }
+
+    /**
+     * Enables inline delivery. Messages sent from within the delivery of
+     * another message, on a thread of the same executor, are then delivered
+     * right away on the sending thread, if the mailbox is idle. Must be called
+     * before the mailbox is used.
+     *
+     * @param maxDepth the maximum number of nested inline deliveries on a
+     *                 thread.
+     */
+    void enableInlineDelivery(int maxDepth) {
+        if (keyed != null) {
+            LOGGER.warn("Inline delivery ignored for the key ordered unit:{}", unit.id());
+            return;
+        }
+        this.inlineDepth = maxDepth;
+    }
+
+    /**
+     * Enables delivery in order per ordering key. Messages with different keys
+     * are delivered in parallel, on at most as many threads as there are
+     * stripes. Must be called before the mailbox is used. Not available for
+     * conflating mailboxes, nor for bounded mailboxes dropping the oldest
+     * message, as the waiting messages are then queued in the stripes.
+     *
+     * @param stripes the number of stripes the keys are hashed onto.
+     */
+    void enableKeyOrdering(int stripes) {
+        if (latest != null) {
+            throw new IllegalStateException("Conflating mailboxes cannot be ordered by key");
+        }
+        if (permits != null && overflowPolicy == MailboxOverflowPolicy.DROP_OLDEST) {
+            throw new IllegalStateException("The mailbox of unit " + unit.id() + " cannot both drop the oldest message and be ordered by key");
+        }
+        this.keyed = new StripedExecutor(executor, stripes, this::rejectKeyed);
+        this.inlineDepth = 0;
+    }
+
+    /**
+     * Like {@link #enqueue(Object)}, for a message expecting a reply. The reply
+     * is completed exceptionally if the message is dropped.
+     *
+     * @param message the message to deliver.
+     * @param reply   the future to complete with the reply of the unit.
+     */
+    void enqueueAsk(T message, CompletableFuture<Object> reply) {
+        enqueue(new Envelope<>(message, System.nanoTime(), reply));
+    }
+
+    private void enqueue(Envelope<T> envelope) {
+        if (latest != null) {
+            enqueuedCount.increment();
+            Envelope<T> replaced = latest.getAndSet(envelope);
+            if (replaced != null) {
+                conflatedCount.increment();
+                replaced.reject(new CancellationException("Replaced by a newer message to unit " + unit.id()));
+            } else {
+                queueDepth.increment();
+            }
+            trySchedule();
+            return;
+        }
+        if (permits != null && !acquireSlot(envelope.message())) {
+            envelope.reject(new RejectedExecutionException("The mailbox of unit " + unit.id() + " is full"));
+            return;
+        }
+        if (keyed != null) {
+            executeKeyed(envelope);
+            return;
+        }
+        offer(queue, envelope);
+        trySchedule();
+    }
+
+    private void executeKeyed(Envelope<T> envelope) {
+        enqueuedCount.increment();
+        queueDepth.increment();
+        Object key;
+        try {
+            key = unit.getOrderingKey(envelope.message());
+        } catch (Throwable t) {
+            LOGGER.error("Error getting the ordering key, unit:{}", unit.id(), t);
+            key = null;
+        }
+        keyed.execute(key, new KeyedDelivery(envelope));
+    }
+
+    // The messages waiting in a stripe rejected by the executor
+    private void rejectKeyed(Runnable task, RejectedExecutionException e) {
+        queueDepth.decrement();
+        if (permits != null) {
+            permits.release();
+        }
+        if (task instanceof Mailbox<?>.KeyedDelivery delivery) {
+            delivery.envelope.reject(e);
+        }
+    }
+
+    private void deliverKeyed(Envelope<T> envelope) {
+        queueDepth.decrement();
+        if (permits != null) {
+            permits.release();
+        }
+        long start = System.nanoTime();
+        queueWaitTime.record(start - envelope.enqueuedNanos());
+        if (dropIfExpired(envelope.message(), envelope.reply(), start)) {
+            return;
+        }
+        if (batching) {
+            processBatch(List.of(envelope.message()), start, envelope.reply());
+            return;
+        }
+        deliver(envelope);
+        processingTime.record(System.nanoTime() - start);
+        deliveredCount.increment();
+    }
+
+    /**
+     * Appends the message to the control lane of the mailbox, and schedules an
+     * urgent drain. Control messages are never bounded or conflated.
+     *
+     * @param message the control message to deliver.
+     */
+    void enqueueControl(T message) {
+        if (keyed != null) {
+            executeKeyed(new Envelope<>(message, System.nanoTime()));
+            return;
+        }
+        offer(controlQueue, new Envelope<>(message, System.nanoTime()));
+        try {
+            urgentExecutor.execute(urgentDrain);
+        } catch (RejectedExecutionException e) {
+            LOGGER.debug("Executor rejected the urgent drain of unit:{}, messages will not be delivered", unit.id());
+        }
+    }
+
+    /**
+     * Appends all the messages to the mailbox, in iteration order, and
+     * schedules the mailbox once.
+     *
+     * @param messages the messages to deliver.
+     */
+    void enqueueAll(Collection<? extends T> messages) {
+        if (latest != null) {
+            T last = null;
+            for (T message : messages) {
+                last = message;
+            }
+            if (last != null) {
+                enqueuedCount.add(messages.size() - 1);
+                conflatedCount.add(messages.size() - 1);
+                enqueue(last);
+            }
+            return;
+        }
+        if (keyed != null) {
+            for (T message : messages) {
+                enqueue(new Envelope<>(message, System.nanoTime()));
+            }
+            return;
+        }
+        boolean added = false;
+        for (T message : messages) {
+            if (permits == null || acquireSlot(message)) {
+                offer(queue, new Envelope<>(message, System.nanoTime()));
+                added = true;
+            }
+        }
+        if (added) {
+            trySchedule();
+        }
+    }
+
+    /**
+     * Counts messages which were shed before reaching the mailbox, because the
+     * system was overloaded.
+     *
+     * @param count the number of shed messages.
+     */
+    void recordShed(int count) {
+        shedCount.add(count);
+    }
+
+    /**
+     * Returns the value of one of the reserved {@link MailboxAttributes}.
+     *
+     * @param attribute the reserved attribute.
+     * @param <R>       the attribute type.
+     * @return the value, or null if not a known reserved attribute.
+     */
+    <R> R getReservedAttribute(AttributeDescriptor<R> attribute) {
+        Object value = null;
+        if (attribute.equals(MailboxAttributes.DESCRIPTOR_OVERFLOW_COUNT)) {
+            value = overflowCount.sum();
+        } else if (attribute.equals(MailboxAttributes.DESCRIPTOR_CONFLATED_COUNT)) {
+            value = conflatedCount.sum();
+        } else if (attribute.equals(MailboxAttributes.DESCRIPTOR_EXPIRED_COUNT)) {
+            value = expiredCount.sum();
+        } else if (attribute.equals(MailboxAttributes.DESCRIPTOR_SHED_COUNT)) {
+            value = shedCount.sum();
+        } else if (attribute.equals(MailboxAttributes.DESCRIPTOR_ENQUEUED_COUNT)) {
+            value = enqueuedCount.sum();
+        } else if (attribute.equals(MailboxAttributes.DESCRIPTOR_DELIVERED_COUNT)) {
+            value = deliveredCount.sum();
+        } else if (attribute.equals(MailboxAttributes.DESCRIPTOR_QUEUE_DEPTH)) {
+            value = Math.max(0, queueDepth.sum());
+        } else if (attribute.equals(MailboxAttributes.DESCRIPTOR_QUEUE_WAIT_TIME)) {
+            value = queueWaitTime.snapshot();
+        } else if (attribute.equals(MailboxAttributes.DESCRIPTOR_PROCESSING_TIME)) {
+            value = processingTime.snapshot();
+        }
+        return value == null ? null : attribute.attributeType().cast(value);
+    }
+
+    /**
+     * @return the values of all the reserved {@link MailboxAttributes}.
+     */
+    Map<AttributeDescriptor<?>, Object> getReservedAttributes() {
+        return Map.of(MailboxAttributes.DESCRIPTOR_OVERFLOW_COUNT, overflowCount.sum(),
+                MailboxAttributes.DESCRIPTOR_CONFLATED_COUNT, conflatedCount.sum(),
+                MailboxAttributes.DESCRIPTOR_EXPIRED_COUNT, expiredCount.sum(),
+                MailboxAttributes.DESCRIPTOR_SHED_COUNT, shedCount.sum(),
+                MailboxAttributes.DESCRIPTOR_ENQUEUED_COUNT, enqueuedCount.sum(),
+                MailboxAttributes.DESCRIPTOR_DELIVERED_COUNT, deliveredCount.sum(),
+                MailboxAttributes.DESCRIPTOR_QUEUE_DEPTH, Math.max(0, queueDepth.sum()),
+                MailboxAttributes.DESCRIPTOR_QUEUE_WAIT_TIME, queueWaitTime.snapshot(),
+                MailboxAttributes.DESCRIPTOR_PROCESSING_TIME, processingTime.snapshot());
+    }
+
+    /**
+     * Commits a {@link UnitDeliveryEvent} with the current statistics.
+     *
+     * @param systemId the id of the system the unit belongs to.
+     */
+    void commitDeliveryEvent(String systemId) {
+        var event = new UnitDeliveryEvent();
+        if (!event.isEnabled()) {
+            return;
+        }
+        LatencyHistogram wait = queueWaitTime.snapshot();
+        LatencyHistogram processing = processingTime.snapshot();
+        event.setSystemId(systemId);
+        event.setUnitId(unit.id());
+        event.setEnqueued(enqueuedCount.sum());
+        event.setDelivered(deliveredCount.sum());
+        event.setExpired(expiredCount.sum());
+        event.setQueueDepth(Math.max(0, queueDepth.sum()));
+        event.setQueueWaitMean(wait.getMeanNanos());
+        event.setQueueWaitP99(wait.getPercentileNanos(99));
+        event.setQueueWaitMax(wait.getMaxNanos());
+        event.setProcessingMean(processing.getMeanNanos());
+        event.setProcessingP99(processing.getPercentileNanos(99));
+        event.setProcessingMax(processing.getMaxNanos());
+        event.commit();
+    }
+
+    /**
+     * @return true if this mailbox only keeps the latest message.
+     */
+    boolean isConflating() {
+        return latest != null;
+    }
+
+    /**
+     * @return true if the messages are delivered in order per ordering key.
+     */
+    boolean isKeyOrdered() {
+        return keyed != null;
+    }
+
+    /**
+     * @return the number of messages waiting for delivery.
+     */
+    long getQueueDepth() {
+        return Math.max(0, queueDepth.sum());
+    }
+
+    /**
+     * @param pool an executor.
+     * @return true if the mailbox is drained by the executor.
+     */
+    boolean isDrainedBy(Executor pool) {
+        return executor == pool;
+    }
+
+    /**
+     * @return true if there are no messages waiting for delivery.
+     */
+    boolean isEmpty() {
+        if (keyed != null) {
+            return queueDepth.sum() <= 0;
+        }
+        return controlQueue.isEmpty() && (latest != null ? latest.get() == null : queue.isEmpty());
+    }
+
+    @Override
+    public void run() {
+        if (!tryStartDrain()) {
+            // An urgent drain is running, and will reschedule the mailbox when
+            // done. Unless it already finished while this drain was still
+            // counted as active.
+            activeDrains.decrementAndGet();
+            if (runningDrains.get() == 0 && !isEmpty()) {
+                trySchedule();
+            }
+            return;
+        }
+        try {
+            drain();
+        } finally {
+            runningDrains.decrementAndGet();
+            activeDrains.decrementAndGet();
+            // Messages may have arrived after the last poll, while this drain
+            // was still counted as active.
+            if (!isEmpty()) {
+                trySchedule();
+            }
+        }
+    }
+
+    private void runUrgent() {
+        // If all drains are running, they pick up the control message next
+        if (!tryStartDrain()) {
+            return;
+        }
+        try {
+            drain();
+        } finally {
+            runningDrains.decrementAndGet();
+            if (!isEmpty()) {
+                trySchedule();
+            }
+        }
+    }
+
+    private boolean tryStartDrain() {
+        while (true) {
+            int running = runningDrains.get();
+            if (running >= concurrency) {
+                return false;
+            }
+            if (runningDrains.compareAndSet(running, running + 1)) {
+                return true;
+            }
+        }
+    }
+
+    private void drain() {
+        DeliveryFrame frame = CURRENT_FRAME.get();
+        Executor previousExecutor = frame.executor;
+        frame.executor = executor;
+        frame.depth++;
+        try {
+            drainMessages();
+        } finally {
+            frame.executor = previousExecutor;
+            frame.depth--;
+        }
+    }
+
+    private void drainMessages() {
+        if (batching) {
+            drainBatch();
+            return;
+        }
+        for (int i = 0; i < throughput; i++) {
+            Envelope<T> envelope = poll();
+            if (envelope == null) {
+                break;
+            }
+            long start = System.nanoTime();
+            queueWaitTime.record(start - envelope.enqueuedNanos());
+            if (dropIfExpired(envelope.message(), envelope.reply(), start)) {
+                continue;
+            }
+            deliver(envelope);
+            processingTime.record(System.nanoTime() - start);
+            deliveredCount.increment();
+        }
+    }
+
+    private void offer(Queue<Envelope<T>> lane, Envelope<T> envelope) {
+        enqueuedCount.increment();
+        queueDepth.increment();
+        lane.offer(envelope);
+    }
+
+    private Envelope<T> poll() {
+        Envelope<T> envelope = controlQueue.poll();
+        if (envelope == null) {
+            if (latest != null) {
+                envelope = latest.getAndSet(null);
+            } else {
+                envelope = queue.poll();
+                if (envelope != null && permits != null) {
+                    permits.release();
+                }
+            }
+        }
+        if (envelope != null) {
+            queueDepth.decrement();
+        }
+        return envelope;
+    }
+
+    private void drainBatch() {
+        List<T> batch = new ArrayList<>(Math.min(throughput, DEFAULT_THROUGHPUT));
+        long start = System.nanoTime();
+        for (int i = 0; i < throughput; i++) {
+            Envelope<T> envelope = poll();
+            if (envelope == null) {
+                break;
+            }
+            queueWaitTime.record(start - envelope.enqueuedNanos());
+            if (dropIfExpired(envelope.message(), envelope.reply(), start)) {
+                continue;
+            }
+            if (envelope.reply() == null) {
+                batch.add(envelope.message());
+                continue;
+            }
+            // A message expecting a reply is handed over on its own, so that
+            // the reply can be told apart
+            processBatch(batch, start, null);
+            batch.clear();
+            processBatch(List.of(envelope.message()), System.nanoTime(), envelope.reply());
+            start = System.nanoTime();
+        }
+        processBatch(batch, start, null);
+    }
+
+    private void processBatch(List<T> batch, long start, CompletableFuture<Object> reply) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        CompletableFuture<Object> previousReply = RoboUnit.swapCurrentReply(reply);
+        try {
+            unit.onMessages(batch);
+        } catch (Throwable t) {
+            LOGGER.error("Error processing batch of {} messages, unit:{}", batch.size(), unit.id(), t);
+            if (reply != null) {
+                reply.completeExceptionally(t);
+            }
+        } finally {
+            RoboUnit.swapCurrentReply(previousReply);
+        }
+        processingTime.record(System.nanoTime() - start);
+        deliveredCount.add(batch.size());
+    }
+
+    private static boolean overridesOnMessages(Class<?> unitClass) {
+        try {
+            return unitClass.getMethod("onMessages", List.class).getDeclaringClass() != RoboUnit.class;
+        } catch (NoSuchMethodException e) {
+            return false;
+        }
+    }
+
+    private boolean acquireSlot(T message) {
+        if (permits.tryAcquire()) {
+            return true;
+        }
+        overflowCount.increment();
+        if (!overflowReported) {
+            overflowReported = true;
+            LOGGER.warn("Mailbox of unit:{} is full, applying overflow policy:{}", unit.id(), overflowPolicy);
+        }
+        switch (overflowPolicy) {
+            case BLOCK -> {
+                try {
+                    permits.acquire();
+                    return true;
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return false;
+                }
+            }
+            case DROP_OLDEST -> {
+                // The slot of the dropped message is handed over to the new one
+                while (!permits.tryAcquire()) {
+                    Envelope<T> dropped = queue.poll();
+                    if (dropped != null) {
+                        queueDepth.decrement();
+                        dropped.reject(new RejectedExecutionException("Dropped from the full mailbox of unit " + unit.id()));
+                        return true;
+                    }
+                    Thread.onSpinWait();
+                }
+                return true;
+            }
+            case FAIL -> {
+                try {
+                    unit.onMailboxOverflow(message);
+                } catch (Throwable t) {
+                    LOGGER.error("Error in overflow callback, unit:{}", unit.id(), t);
+                }
+                return false;
+            }
+            default -> {
+                return false;
+            }
+        }
+    }
+
+    /**
+     * Delivers the message on the current thread, if it is already delivering
+     * messages for the executor of this mailbox, the nesting is not too deep,
+     * and the mailbox is idle. Claims a drain like a scheduled drain would, so
+     * the concurrency of the unit is respected.
+     */
+    private boolean tryDeliverInline(T message) {
+        DeliveryFrame frame = CURRENT_FRAME.get();
+        if (frame.executor != executor || frame.depth >= inlineDepth || !isEmpty()) {
+            return false;
+        }
+        if (!tryClaimDrain()) {
+            return false;
+        }
+        if (!tryStartDrain()) {
+            activeDrains.decrementAndGet();
+            return false;
+        }
+        frame.depth++;
+        try {
+            enqueuedCount.increment();
+            queueWaitTime.record(0);
+            long start = System.nanoTime();
+            if (dropIfExpired(message, null, start)) {
+                return true;
+            }
+            if (batching) {
+                processBatch(List.of(message), start, null);
+            } else {
+                deliver(new Envelope<>(message, start));
+                processingTime.record(System.nanoTime() - start);
+                deliveredCount.increment();
+            }
+        } finally {
+            frame.depth--;
+            runningDrains.decrementAndGet();
+            activeDrains.decrementAndGet();
+            // Messages queued while delivering inline
+            if (!isEmpty()) {
+                trySchedule();
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Drops the message, and fails the reply, if it is an expiring message past
+     * its deadline.
+     */
+    private boolean dropIfExpired(T message, CompletableFuture<Object> reply, long nowNanos) {
+        if (message instanceof ExpiringMessage expiring && nowNanos - expiring.getDeadlineNanos() > 0) {
+            expiredCount.increment();
+            if (reply != null) {
+                reply.completeExceptionally(new TimeoutException("Message to unit " + unit.id() + " expired before delivery"));
+            }
+            return true;
+        }
+        return false;
+    }
+
+    private boolean tryClaimDrain() {
+        while (true) {
+            int active = activeDrains.get();
+            if (active >= concurrency) {
+                return false;
+            }
+            if (activeDrains.compareAndSet(active, active + 1)) {
+                return true;
+            }
+        }
+    }
+
+    private void trySchedule() {
+        if (!tryClaimDrain()) {
+            return;
+        }
+        try {
+            executor.execute(this);
+        } catch (RejectedExecutionException e) {
+            activeDrains.decrementAndGet();
+            LOGGER.debug("Executor rejected the mailbox of unit:{}, messages will not be delivered", unit.id());
+        }
+    }
+
+    // Protects the executors from problems in the units.
+    private void deliver(Envelope<T> envelope) {
+        CompletableFuture<Object> reply = envelope.reply();
+        CompletableFuture<Object> previousReply = RoboUnit.swapCurrentReply(reply);
+        try {
+            unit.onMessage(envelope.message());
+        } catch (Throwable t) {
+            LOGGER.error("Error processing message, unit:{}", unit.id(), t);
+            if (reply != null) {
+                reply.completeExceptionally(t);
+            }
+        } finally {
+            RoboUnit.swapCurrentReply(previousReply);
+        }
+    }
+
+    private final class KeyedDelivery implements Runnable {
+        private final Envelope<T> envelope;
+
+        KeyedDelivery(Envelope<T> envelope) {
+            this.envelope = envelope;
+        }
+
+        @Override
+        public void run() {
+            deliverKeyed(envelope);
+        }
+    }
+
+    private static final class DeliveryFrame {
+        private Executor executor;
+        private int depth;
+    }
+
+    private record Envelope<M>(M message, long enqueuedNanos, CompletableFuture<Object> reply) {
+        Envelope(M message, long enqueuedNanos) {
+            this(message, enqueuedNanos, null);
+        }
+
+        void reject(Throwable reason) {
+            if (reply != null) {
+                reply.completeExceptionally(reason);
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "Mailbox unit: " + unit.id() + " concurrency: " + concurrency
+                + (latest != null ? " conflating" : " overflowPolicy: " + overflowPolicy)
+                + (keyed != null ? " stripes: " + keyed.getStripeCount() : "");
+    }
+}
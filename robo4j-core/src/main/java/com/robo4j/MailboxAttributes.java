@@ -0,0 +1,104 @@
+/*
+ * Copyright (c) 2014, 2024, Marcus Hirt, Miroslav Wengner
+ *
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.robo4j;
+
+/**
+ * Reserved attributes provided by the {@link RoboContext} for every local unit.
+ * They describe the mailbox of the unit and are read without involving the
+ * unit, so they are always available, also when not among the
+ * {@link RoboReference#getKnownAttributes() known attributes} of the unit.
+ *
+ * @author Marcus Hirt (@hirt)
+ * @author Miroslav Wengner (@miragemiko)
+ */
+public final class MailboxAttributes {
+	/**
+	 * The prefix used for all reserved attribute names. Units should not use it
+	 * for attributes of their own.
+	 */
+	public static final String RESERVED_PREFIX = "robo4j.mailbox.";
+
+	/**
+	 * The number of messages that did not immediately fit into the bounded
+	 * mailbox of the unit.
+	 */
+	public static final AttributeDescriptor<Long> DESCRIPTOR_OVERFLOW_COUNT = DefaultAttributeDescriptor.create(Long.class,
+			RESERVED_PREFIX + "overflowCount");
+
+	/**
+	 * The number of messages that were replaced by a newer message before being
+	 * delivered, for units with a conflating mailbox.
+	 */
+	public static final AttributeDescriptor<Long> DESCRIPTOR_CONFLATED_COUNT = DefaultAttributeDescriptor.create(Long.class,
+			RESERVED_PREFIX + "conflatedCount");
+
+	/**
+	 * The number of {@link ExpiringMessage expiring messages} that were dropped
+	 * because their deadline had passed before they could be delivered.
+	 */
+	public static final AttributeDescriptor<Long> DESCRIPTOR_EXPIRED_COUNT = DefaultAttributeDescriptor.create(Long.class,
+			RESERVED_PREFIX + "expiredCount");
+
+	/**
+	 * The number of messages that were shed because the system was overloaded,
+	 * see {@link OverloadPolicy}.
+	 */
+	public static final AttributeDescriptor<Long> DESCRIPTOR_SHED_COUNT = DefaultAttributeDescriptor.create(Long.class,
+			RESERVED_PREFIX + "shedCount");
+
+	/**
+	 * The number of messages accepted into the mailbox of the unit.
+	 */
+	public static final AttributeDescriptor<Long> DESCRIPTOR_ENQUEUED_COUNT = DefaultAttributeDescriptor.create(Long.class,
+			RESERVED_PREFIX + "enqueuedCount");
+
+	/**
+	 * The number of messages delivered to the unit.
+	 */
+	public static final AttributeDescriptor<Long> DESCRIPTOR_DELIVERED_COUNT = DefaultAttributeDescriptor.create(Long.class,
+			RESERVED_PREFIX + "deliveredCount");
+
+	/**
+	 * The number of messages currently waiting in the mailbox of the unit.
+	 */
+	public static final AttributeDescriptor<Long> DESCRIPTOR_QUEUE_DEPTH = DefaultAttributeDescriptor.create(Long.class,
+			RESERVED_PREFIX + "queueDepth");
+
+	/**
+	 * The time messages waited in the mailbox before being delivered.
+	 */
+	public static final AttributeDescriptor<LatencyHistogram> DESCRIPTOR_QUEUE_WAIT_TIME = DefaultAttributeDescriptor
+			.create(LatencyHistogram.class, RESERVED_PREFIX + "queueWaitTime");
+
+	/**
+	 * The time the unit spent processing messages, per call to
+	 * {@link RoboUnit#onMessage(Object)} or {@link RoboUnit#onMessages(java.util.List)}.
+	 */
+	public static final AttributeDescriptor<LatencyHistogram> DESCRIPTOR_PROCESSING_TIME = DefaultAttributeDescriptor
+			.create(LatencyHistogram.class, RESERVED_PREFIX + "processingTime");
+
+	private MailboxAttributes() {
+	}
+
+	/**
+	 * @param descriptor the descriptor to check.
+	 * @return true if the descriptor is one of the reserved mailbox attributes.
+	 */
+	public static boolean isReserved(AttributeDescriptor<?> descriptor) {
+		return descriptor.attributeName().startsWith(RESERVED_PREFIX);
+	}
+}
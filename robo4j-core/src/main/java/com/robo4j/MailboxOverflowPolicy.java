@@ -0,0 +1,50 @@
+/*
+ * Copyright (c) 2014, 2024, Marcus Hirt, Miroslav Wengner
+ *
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.robo4j;
+
+/**
+ * What to do with a message sent to a unit whose bounded mailbox is full. The
+ * capacity and the policy are set in the configuration of the unit, see
+ * {@link RoboBuilder#KEY_MAILBOX_CAPACITY} and
+ * {@link RoboBuilder#KEY_MAILBOX_OVERFLOW_POLICY}.
+ *
+ * @author Marcus Hirt (@hirt)
+ * @author Miroslav Wengner (@miragemiko)
+ */
+public enum MailboxOverflowPolicy {
+	/**
+	 * The sender blocks until there is room in the mailbox. Never use this for
+	 * units sending to themselves, or for units sharing the executor with the
+	 * senders, as all the threads may end up waiting for each other.
+	 */
+	BLOCK,
+	/**
+	 * The new message is dropped.
+	 */
+	DROP_NEWEST,
+	/**
+	 * The oldest message waiting in the mailbox is dropped to make room for the
+	 * new one. Not available for units ordered by key.
+	 */
+	DROP_OLDEST,
+	/**
+	 * The new message is rejected, and
+	 * {@link RoboUnit#onMailboxOverflow(Object)} is called on the sending
+	 * thread.
+	 */
+	FAIL
+}
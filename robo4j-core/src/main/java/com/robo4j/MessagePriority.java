@@ -0,0 +1,38 @@
+/*
+ * Copyright (c) 2014, 2024, Marcus Hirt, Miroslav Wengner
+ *
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.robo4j;
+
+/**
+ * The delivery priority of a message sent with
+ * {@link RoboReference#sendMessage(Object, MessagePriority)}.
+ *
+ * @author Marcus Hirt (@hirt)
+ * @author Miroslav Wengner (@miragemiko)
+ */
+public enum MessagePriority {
+	/**
+	 * Urgent messages, like an emergency stop for a motor. Delivered before any
+	 * waiting bulk messages of the unit, and ahead of the regular work of the
+	 * system scheduler. Control messages are never dropped or conflated.
+	 */
+	CONTROL,
+	/**
+	 * Regular messages, like sensor readings and telemetry. This is the
+	 * priority of all messages sent with {@link RoboReference#sendMessage(Object)}.
+	 */
+	BULK
+}
@@ -0,0 +1,46 @@
+/*
+ * Copyright (c) 2014, 2024, Marcus Hirt, Miroslav Wengner
+ *
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.robo4j;
+
+import static java.lang.annotation.ElementType.TYPE;
+import static java.lang.annotation.RetentionPolicy.RUNTIME;
+
+import java.lang.annotation.Retention;
+import java.lang.annotation.Target;
+
+/**
+ * Annotate the unit with this annotation to have its messages delivered in
+ * order per ordering key. Messages with the same key are delivered one at a
+ * time, in the order they were sent, while messages with different keys are
+ * delivered in parallel on the threads of the unit, e.g. on the work pool for
+ * units with the {@link WorkTrait}. This gives the unit multi-core throughput
+ * without having to serialize everything with the
+ * {@link CriticalSectionTrait}.
+ * <p>
+ * The key is provided by {@link RoboUnit#getOrderingKey(Object)}, by default
+ * the key of {@link KeyedMessage}s. Messages without a key are ordered with
+ * respect to each other. The same behaviour can be configured for a unit with
+ * {@link RoboBuilder#KEY_MAILBOX_ORDERED}.
+ *
+ * @author Marcus Hirt (@hirt)
+ * @author Miroslav Wengner (@miragemiko)
+ */
+@Retention(RUNTIME)
+@Target(TYPE)
+public @interface OrderedTrait {
+
+}
@@ -0,0 +1,232 @@
+/*
+ * Copyright (c) 2014, 2024, Marcus Hirt, Miroslav Wengner
+ *
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.robo4j;
+
+import com.robo4j.jfr.SystemOverloadEvent;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.IntSupplier;
+
+/**
+ * Detects overload of the thread pools of a {@link RoboSystem}, by checking
+ * their queue depth and queue wait periodically. The queue wait is measured by
+ * sending a probe through each pool, and timing how long it waits to run. A
+ * probe which has not run yet counts with the time it has waited so far, so a
+ * stalled pool is detected without waiting for the probe.
+ * <p>
+ * The system is overloaded when any pool crosses one of the thresholds, and
+ * is back to normal once all the pools are below half the thresholds.
+ * <p>
+ * Internal implementation class.
+ *
+ * @author Marcus Hirt (@hirt)
+ * @author Miroslav Wengner (@miragemiko)
+ */
+final class OverloadMonitor {
+    private static final Logger LOGGER = LoggerFactory.getLogger(OverloadMonitor.class);
+    static final int DEFAULT_CHECK_MILLIS = 50;
+    static final int DEFAULT_QUEUE_DEPTH = 1000;
+    static final int DEFAULT_QUEUE_WAIT_MILLIS = 100;
+    static final int DEFAULT_SAMPLE_RATE = 10;
+
+    private final String systemId;
+    private final OverloadPolicy policy;
+    private final int queueDepthThreshold;
+    private final long queueWaitThresholdNanos;
+    private final int sampleRate;
+    private final Consumer<Boolean> listener;
+    private final List<Probe> probes = new CopyOnWriteArrayList<>();
+    private volatile boolean overloaded;
+
+    /**
+     * Constructor.
+     *
+     * @param systemId                 the id of the monitored system.
+     * @param policy                   what to do with bulk messages while
+     *                                 overloaded.
+     * @param queueDepthThreshold      the queue depth of a pool at which the
+     *                                 system is overloaded.
+     * @param queueWaitThresholdMillis the queue wait of a pool at which the
+     *                                 system is overloaded.
+     * @param sampleRate               one in how many bulk messages is
+     *                                 delivered with
+     *                                 {@link OverloadPolicy#SAMPLE_BULK}.
+     * @param listener                 notified on the monitor thread when the
+     *                                 system enters or leaves overload.
+     */
+    OverloadMonitor(String systemId, OverloadPolicy policy, int queueDepthThreshold, int queueWaitThresholdMillis, int sampleRate,
+                    Consumer<Boolean> listener) {
+        if (queueDepthThreshold < 1 || queueWaitThresholdMillis < 1 || sampleRate < 1) {
+            throw new IllegalArgumentException("The overload thresholds and the sample rate must be positive");
+        }
+        this.systemId = systemId;
+        this.policy = policy;
+        this.queueDepthThreshold = queueDepthThreshold;
+        this.queueWaitThresholdNanos = TimeUnit.MILLISECONDS.toNanos(queueWaitThresholdMillis);
+        this.sampleRate = sampleRate;
+        this.listener = listener;
+    }
+
+    /**
+     * Adds a pool to monitor.
+     *
+     * @param name       the name of the pool, used in the logs and events.
+     * @param executor   the executor the probes are sent through.
+     * @param queueDepth supplies the number of messages and tasks waiting for
+     *                   the pool.
+     */
+    void addPool(String name, Executor executor, IntSupplier queueDepth) {
+        probes.add(new Probe(name, executor, queueDepth));
+    }
+
+    /**
+     * Samples all the pools, and notifies the listener if the system entered
+     * or left overload. Called periodically from one thread.
+     */
+    void check() {
+        long now = System.nanoTime();
+        Probe worst = null;
+        boolean over = false;
+        boolean relieved = true;
+        for (Probe probe : probes) {
+            int depth = probe.queueDepth.getAsInt();
+            long wait = probe.sample(now);
+            if (depth > queueDepthThreshold || wait > queueWaitThresholdNanos) {
+                over = true;
+                worst = probe;
+            }
+            if (depth > queueDepthThreshold / 2 || wait > queueWaitThresholdNanos / 2) {
+                relieved = false;
+                if (worst == null) {
+                    worst = probe;
+                }
+            }
+        }
+        if (!overloaded && over) {
+            transition(true, worst);
+        } else if (overloaded && relieved) {
+            transition(false, worst);
+        }
+    }
+
+    /**
+     * @return true if the system is currently overloaded.
+     */
+    boolean isOverloaded() {
+        return overloaded;
+    }
+
+    /**
+     * @return the policy applied while overloaded.
+     */
+    OverloadPolicy getPolicy() {
+        return policy;
+    }
+
+    /**
+     * Decides whether a new bulk message is to be shed.
+     *
+     * @param ask true if the message expects a reply.
+     * @return true if the message is to be dropped.
+     */
+    boolean shouldShed(boolean ask) {
+        if (!overloaded) {
+            return false;
+        }
+        return switch (policy) {
+            case MONITOR -> false;
+            case REJECT_BULK -> true;
+            case SAMPLE_BULK -> !ask && ThreadLocalRandom.current().nextInt(sampleRate) != 0;
+        };
+    }
+
+    private void transition(boolean nowOverloaded, Probe probe) {
+        overloaded = nowOverloaded;
+        int depth = probe == null ? 0 : probe.queueDepth.getAsInt();
+        long wait = probe == null ? 0 : probe.lastWaitNanos;
+        if (nowOverloaded) {
+            LOGGER.warn("System:{} overloaded, pool:{} queueDepth:{} queueWait:{}ms, applying policy:{}", systemId,
+                    probe == null ? null : probe.name, depth, TimeUnit.NANOSECONDS.toMillis(wait), policy);
+        } else {
+            LOGGER.info("System:{} no longer overloaded", systemId);
+        }
+        var event = new SystemOverloadEvent();
+        if (event.isEnabled()) {
+            event.setSystemId(systemId);
+            event.setOverloaded(nowOverloaded);
+            event.setPool(probe == null ? null : probe.name);
+            event.setQueueDepth(depth);
+            event.setQueueWait(wait);
+            event.setPolicy(policy.name());
+            event.commit();
+        }
+        try {
+            listener.accept(nowOverloaded);
+        } catch (Throwable t) {
+            LOGGER.error("Error notifying overload of system:{}", systemId, t);
+        }
+    }
+
+    private static final class Probe implements Runnable {
+        private final String name;
+        private final Executor executor;
+        private final IntSupplier queueDepth;
+        private volatile boolean pending;
+        private volatile long submittedNanos;
+        private volatile long lastWaitNanos;
+
+        Probe(String name, Executor executor, IntSupplier queueDepth) {
+            this.name = name;
+            this.executor = executor;
+            this.queueDepth = queueDepth;
+        }
+
+        /**
+         * @return the queue wait of the last probe, or how long the pending
+         * probe has waited so far. Sends a new probe if none is pending.
+         */
+        long sample(long now) {
+            if (pending) {
+                lastWaitNanos = Math.max(lastWaitNanos, now - submittedNanos);
+                return lastWaitNanos;
+            }
+            long wait = lastWaitNanos;
+            submittedNanos = now;
+            pending = true;
+            try {
+                executor.execute(this);
+            } catch (RejectedExecutionException e) {
+                pending = false;
+            }
+            return wait;
+        }
+
+        @Override
+        public void run() {
+            lastWaitNanos = System.nanoTime() - submittedNanos;
+            pending = false;
+        }
+    }
+}
@@ -0,0 +1,47 @@
+/*
+ * Copyright (c) 2014, 2024, Marcus Hirt, Miroslav Wengner
+ *
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.robo4j;
+
+/**
+ * What the {@link RoboSystem} does with new messages while it is overloaded.
+ * Overload monitoring is enabled by configuring the system with
+ * {@link RoboBuilder#KEY_OVERLOAD_POLICY}. Messages sent with
+ * {@link MessagePriority#CONTROL} are never shed.
+ *
+ * @author Marcus Hirt (@hirt)
+ * @author Miroslav Wengner (@miragemiko)
+ */
+public enum OverloadPolicy {
+	/**
+	 * Only detect the overload, and notify the units through
+	 * {@link RoboUnit#onOverload(boolean)}. No messages are shed.
+	 */
+	MONITOR,
+	/**
+	 * Reject all new bulk messages. Asks fail with a
+	 * {@link java.util.concurrent.RejectedExecutionException}, so that
+	 * external producers can be given an error.
+	 */
+	REJECT_BULK,
+	/**
+	 * Only deliver a random sample of the new bulk messages, one in
+	 * {@link RoboBuilder#KEY_OVERLOAD_SAMPLE_RATE}. Suitable for telemetry,
+	 * where a reduced rate of updates is better than a growing latency. Asks
+	 * are always delivered.
+	 */
+	SAMPLE_BULK
+}
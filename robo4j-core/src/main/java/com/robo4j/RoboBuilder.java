@@ -52,6 +52,21 @@ public final class RoboBuilder {
      * pool.
      */
     public static final String KEY_SCHEDULER_POOL_SIZE = "poolSizeScheduler";
+    /**
+     * Configuration key for the {@link com.robo4j.scheduler.SchedulerType} of
+     * the system scheduler. Default is DEFAULT.
+     */
+    public static final String KEY_SCHEDULER_TYPE = "schedulerType";
+    /**
+     * Configuration key for the tick duration in milliseconds of the
+     * HASHED_WHEEL scheduler.
+     */
+    public static final String KEY_SCHEDULER_TICK_MILLIS = "schedulerTickMillis";
+    /**
+     * Configuration key for the number of buckets in the wheel of the
+     * HASHED_WHEEL scheduler.
+     */
+    public static final String KEY_SCHEDULER_WHEEL_SIZE = "schedulerWheelSize";
     /**
      * Configuration key for the maximum thread size for the worker thread pool.
      */
@@ -60,6 +75,88 @@ public final class RoboBuilder {
      * Configuration key for the maximum thread size for the worker thread pool.
      */
     public static final String KEY_BLOCKING_POOL_SIZE = "poolSizeBlocking";
+    /**
+     * Configuration key for delivering the messages of all units with the
+     * {@link BlockingTrait} on virtual threads, instead of on the blocking
+     * thread pool.
+     */
+    public static final String KEY_BLOCKING_VIRTUAL_THREADS = "virtualThreadsBlocking";
+    /**
+     * Unit configuration key for the maximum number of messages waiting in the
+     * mailbox of the unit. The mailbox is unbounded if not set.
+     */
+    public static final String KEY_MAILBOX_CAPACITY = "mailboxCapacity";
+    /**
+     * Unit configuration key for the {@link MailboxOverflowPolicy} used when the
+     * bounded mailbox of the unit is full. Defaults to
+     * {@link MailboxOverflowPolicy#DROP_NEWEST}.
+     */
+    public static final String KEY_MAILBOX_OVERFLOW_POLICY = "mailboxOverflowPolicy";
+    /**
+     * Unit configuration key for making the mailbox of the unit conflating, so
+     * that the unit only gets the latest message. Same as annotating the unit
+     * with {@link ConflatingTrait}.
+     */
+    public static final String KEY_MAILBOX_CONFLATING = "mailboxConflating";
+    /**
+     * Unit configuration key for delivering messages to the unit inline, see
+     * {@link InlineTrait}. Default is false.
+     */
+    public static final String KEY_MAILBOX_INLINE = "mailboxInline";
+    /**
+     * Configuration key for the maximum number of units a message may be
+     * handed through inline on one thread, before it is queued. Default is 4.
+     */
+    public static final String KEY_INLINE_MAX_DEPTH = "inlineMaxDepth";
+    /**
+     * Unit configuration key for delivering the messages to the unit in order
+     * per ordering key, see {@link OrderedTrait}. Default is false.
+     */
+    public static final String KEY_MAILBOX_ORDERED = "mailboxOrdered";
+    /**
+     * Unit configuration key for the number of stripes the ordering keys of an
+     * ordered unit are hashed onto. Default is four times the size of the
+     * thread pool of the unit.
+     */
+    public static final String KEY_MAILBOX_STRIPES = "mailboxStripes";
+    /**
+     * Configuration key for enabling overload monitoring of the thread pools
+     * of the system, with the name of the {@link OverloadPolicy} to apply
+     * while overloaded. Disabled by default.
+     */
+    public static final String KEY_OVERLOAD_POLICY = "overloadPolicy";
+    /**
+     * Configuration key for the number of tasks waiting in a thread pool at
+     * which the system is overloaded. Default is 1000.
+     */
+    public static final String KEY_OVERLOAD_QUEUE_DEPTH = "overloadQueueDepth";
+    /**
+     * Configuration key for the time in milliseconds tasks wait in a thread
+     * pool at which the system is overloaded. Default is 100.
+     */
+    public static final String KEY_OVERLOAD_QUEUE_WAIT_MILLIS = "overloadQueueWaitMillis";
+    /**
+     * Configuration key for how often, in milliseconds, the thread pools are
+     * checked for overload. Default is 50.
+     */
+    public static final String KEY_OVERLOAD_CHECK_MILLIS = "overloadCheckMillis";
+    /**
+     * Configuration key for one in how many bulk messages is delivered while
+     * overloaded, with {@link OverloadPolicy#SAMPLE_BULK}. Default is 10.
+     */
+    public static final String KEY_OVERLOAD_SAMPLE_RATE = "overloadSampleRate";
+    /**
+     * Unit configuration key for the comma separated ids of the units that the
+     * unit depends on. The unit is started after them, and stopped and shut
+     * down before them.
+     */
+    public static final String KEY_DEPENDS_ON = "dependsOn";
+    /**
+     * Configuration key for the maximum time in milliseconds to wait for a unit
+     * to start, stop or shut down. Can be set for the system, and overridden
+     * per unit.
+     */
+    public static final String KEY_LIFECYCLE_TIMEOUT = "lifecycleTimeoutMillis";
     /**
      * Configuration key for the child configuration for the message server.
      */
@@ -72,6 +169,31 @@ public final class RoboBuilder {
      * Configuration key for the auto discovery metadata service.
      */
     public static final String KEY_CONFIGURATION_EMITTER_METADATA = "com.robo4j.discovery.metadata";
+    /**
+     * Configuration key for the child configuration declaring the executor
+     * groups of the system. Each child configuration is a group, named by the
+     * name of the child, and configured with {@link #KEY_GROUP_POOL_SIZE} and
+     * {@link #KEY_GROUP_THREAD_PRIORITY}. The queue of a group holds at most
+     * one drain per mailbox slot, and is not bounded. To bound the messages
+     * waiting for a unit, use {@link #KEY_MAILBOX_CAPACITY}.
+     */
+    public static final String KEY_CONFIGURATION_EXECUTOR_GROUPS = "com.robo4j.executorGroups";
+    /**
+     * Configuration key for the number of threads of an executor group.
+     * Default is 1.
+     */
+    public static final String KEY_GROUP_POOL_SIZE = "poolSize";
+    /**
+     * Configuration key for the priority of the threads of an executor group.
+     * Default is {@link Thread#NORM_PRIORITY}.
+     */
+    public static final String KEY_GROUP_THREAD_PRIORITY = "threadPriority";
+    /**
+     * Unit configuration key for the name of the executor group to deliver the
+     * messages of the unit on, instead of the pool chosen by the traits of the
+     * unit.
+     */
+    public static final String KEY_EXECUTOR_GROUP = "executorGroup";
 
     private final Set<RoboUnit<?>> units = new HashSet<>();
     private final RoboSystem system;
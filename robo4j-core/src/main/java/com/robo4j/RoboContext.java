@@ -17,9 +17,11 @@
 package com.robo4j;
 
 import com.robo4j.configuration.Configuration;
+import com.robo4j.scheduler.PeriodicExecutive;
 import com.robo4j.scheduler.Scheduler;
 
 import java.util.Collection;
+import java.util.function.Consumer;
 
 /**
  * The execution context available for a unit. Contains a simple lookup service,
@@ -76,6 +78,30 @@ public interface RoboContext {
 	 */
 	Scheduler getScheduler();
 
+	/**
+	 * Returns the executive for periodic control tasks, which need a more
+	 * stable period than the system scheduler can provide.
+	 * 
+	 * @return the periodic executive of the system.
+	 */
+	PeriodicExecutive getPeriodicExecutive();
+
+	/**
+	 * Sets a tap seeing all the messages sent to a local unit, on the sending
+	 * thread, before they are queued. Used for recording the traffic of a unit,
+	 * so keep it short, and never block.
+	 * 
+	 * @param unitId the id of the unit to tap.
+	 * @param tap    the tap, or null to remove the current tap.
+	 * @param <T>    the message type of the unit.
+	 * @throws IllegalArgumentException      if there is no such local unit.
+	 * @throws UnsupportedOperationException if the context does not support
+	 *                                       taps.
+	 */
+	default <T> void setMessageTap(String unitId, Consumer<? super T> tap) {
+		throw new UnsupportedOperationException("Message taps not supported by " + getClass().getName());
+	}
+
 	/**
 	 * Returns the globally unique id for the context.
 	 * 
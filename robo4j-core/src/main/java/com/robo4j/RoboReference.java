@@ -18,8 +18,11 @@ package com.robo4j;
 
 import com.robo4j.configuration.Configuration;
 
+import java.time.Duration;
 import java.util.Collection;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.Future;
 
 /**
@@ -52,6 +55,56 @@ public interface RoboReference<T> {
 	 */
 	void sendMessage(T message);
 
+	/**
+	 * Sends a message to this RoboUnit with the specified priority. Messages
+	 * will only be delivered to started units. References which do not
+	 * support priorities deliver the message like
+	 * {@link #sendMessage(Object)}.
+	 * 
+	 * @param message
+	 *            the message to send.
+	 * @param priority
+	 *            the delivery priority of the message.
+	 */
+	default void sendMessage(T message, MessagePriority priority) {
+		sendMessage(message);
+	}
+
+	/**
+	 * Sends all the messages to this RoboUnit, in iteration order. Messages
+	 * will only be delivered to started units. Local references hand the
+	 * messages to the unit in batches, see {@link RoboUnit#onMessages(List)}.
+	 * 
+	 * @param messages
+	 *            the messages to send.
+	 */
+	default void sendMessages(Collection<? extends T> messages) {
+		for (T message : messages) {
+			sendMessage(message);
+		}
+	}
+
+	/**
+	 * Sends a message to this RoboUnit, and returns the reply. The unit replies
+	 * with {@link RoboUnit#reply(Object)}, or later through
+	 * {@link RoboUnit#deferReply()}. The future completes exceptionally with a
+	 * {@link java.util.concurrent.TimeoutException} if there is no reply in
+	 * time, and with the exception thrown by the unit if processing the
+	 * message fails. References which do not support replies return a failed
+	 * future.
+	 * 
+	 * @param message
+	 *            the message to send.
+	 * @param timeout
+	 *            how long to wait for the reply.
+	 * @param <R>
+	 *            the type of the reply
+	 * @return the future reply.
+	 */
+	default <R> CompletableFuture<R> ask(T message, Duration timeout) {
+		return CompletableFuture.failedFuture(new UnsupportedOperationException("Reference " + id() + " does not support replies"));
+	}
+
 	/**
 	 * Returns the type of messages this RoboUnit accepts. This should never
 	 * change in runtime.
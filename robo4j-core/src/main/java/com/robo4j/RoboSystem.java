@@ -18,14 +18,21 @@ package com.robo4j;
 
 import com.robo4j.configuration.Configuration;
 import com.robo4j.configuration.ConfigurationBuilder;
+import com.robo4j.jfr.UnitDeliveryEvent;
 import com.robo4j.net.ContextEmitter;
 import com.robo4j.net.MessageServer;
 import com.robo4j.net.ReferenceDescriptor;
 import com.robo4j.net.RoboContextDescriptor;
 import com.robo4j.scheduler.DefaultScheduler;
+import com.robo4j.scheduler.HashedWheelScheduler;
+import com.robo4j.scheduler.MissedPeriodPolicy;
+import com.robo4j.scheduler.PeriodicExecutive;
+import com.robo4j.scheduler.PeriodicTask;
 import com.robo4j.scheduler.RoboThreadFactory;
 import com.robo4j.scheduler.Scheduler;
+import com.robo4j.scheduler.SchedulerType;
 import com.robo4j.util.SystemUtil;
+import jdk.jfr.FlightRecorder;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -36,21 +43,31 @@ import java.io.Serializable;
 import java.net.SocketException;
 import java.net.URI;
 import java.net.UnknownHostException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.EnumSet;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
 import java.util.UUID;
-import java.util.WeakHashMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
 import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicReference;
-import java.util.stream.Collectors;
+import java.util.function.Consumer;
 
 /**
  * This is the default implementation for a local {@link RoboContext}. Contains
@@ -64,8 +81,15 @@ final class RoboSystem implements RoboContext {
     private static final Logger LOGGER = LoggerFactory.getLogger(RoboSystem.class);
     private static final String THREAD_GROUP_BLOCKING_NAME_BLOCKING_POOL = "Robo4J Blocking Pool";
     private static final String THREAD_GROUP_NAME_WORKER_POOL = "Robo4J Worker Pool";
+    private static final String THREAD_GROUP_NAME_VIRTUAL_BLOCKING = "Robo4J Virtual Blocking";
+    private static final String THREAD_GROUP_NAME_LIFECYCLE = "Robo4J Lifecycle";
+    private static final String THREAD_GROUP_NAME_EXECUTOR_GROUP = "Robo4J Group ";
+    private static final String THREAD_PREFIX_PERIODIC = "Robo4J-Periodic";
+    private static final String POOL_NAME_SYSTEM_SCHEDULER = "Robo4J System Scheduler";
     private static final int DEFAULT_BLOCKING_POOL_SIZE = 4;
     private static final int DEFAULT_WORKER_POOL_SIZE = 2;
+    private static final int MAX_DEFAULT_STRIPES = 256;
+    private static final int DEFAULT_GROUP_POOL_SIZE = 1;
     private static final int DEFAULT_SCHEDULER_POOL_SIZE = 2;
     private static final int KEEP_ALIVE_TIME = 10;
 
@@ -75,17 +99,40 @@ final class RoboSystem implements RoboContext {
     private static final int SERVER_LISTEN_REPEATS = 5;
 
     private final AtomicReference<LifecycleState> state = new AtomicReference<>(LifecycleState.UNINITIALIZED);
-    private final Map<String, RoboUnit<?>> units = new HashMap<>();
-    private final Map<RoboUnit<?>, RoboReference<?>> referenceCache = new WeakHashMap<>();
+    // Replaced as a whole when units are added, which is only allowed before
+    // the system is initialized. Never modified after that, so lookups need no
+    // locking.
+    private volatile UnitRegistry registry = UnitRegistry.EMPTY;
 
     private final Scheduler systemScheduler;
+    // Shared by all the mailboxes on the scheduler, so that inline delivery can
+    // tell that they are on the same executor
+    private final Executor schedulerExecutor;
+    private final Executor schedulerUrgentExecutor;
+    private final int inlineMaxDepth;
+    private final PeriodicExecutive periodicExecutive;
+    // Null unless overload monitoring is enabled
+    private final OverloadMonitor overloadMonitor;
+    private final int overloadCheckMillis;
+    private volatile PeriodicTask overloadTask;
+    private final int schedulerPoolSize;
 
     private final ThreadPoolExecutor workExecutor;
     // TODO: review usage of workQueue and blockingQueue, maybe better abstraction
     private final LinkedBlockingQueue<Runnable> workQueue = new LinkedBlockingQueue<>();
 
     private final ThreadPoolExecutor blockingExecutor;
+    // The executor groups declared in the configuration, by name
+    private final Map<String, ThreadPoolExecutor> executorGroups;
     private final LinkedBlockingQueue<Runnable> blockingQueue = new LinkedBlockingQueue<>();
+    // One virtual thread per delivery, for the units configured to block on
+    // virtual threads.
+    private final ExecutorService virtualBlockingExecutor;
+    private final boolean blockingVirtualThreads;
+    // Runs the start, stop and shutdown of the units, one virtual thread each
+    private final ExecutorService lifecycleExecutor;
+    private final int lifecycleTimeoutMillis;
+    private volatile UnitLifecycle lifecycle;
 
     private final String uid;
     private final Configuration configuration;
@@ -93,22 +140,51 @@ final class RoboSystem implements RoboContext {
     private final MessageServer messageServer;
     private final Configuration emitterConfiguration;
     private volatile ScheduledFuture<?> emitterFuture;
+    private final Runnable deliveryEventHook = this::commitDeliveryEvents;
 
     private enum DeliveryPolicy {
-        SYSTEM, WORK, BLOCKING
+        SYSTEM, WORK, BLOCKING, BLOCKING_VIRTUAL
     }
 
     private enum ThreadingPolicy {
         NORMAL, CRITICAL
     }
 
+    /**
+     * Immutable snapshot of the units of the system, and their references.
+     */
+    private record UnitRegistry(Map<String, RoboReference<?>> referencesById, List<RoboUnit<?>> units,
+                                List<RoboReference<?>> references) {
+        static final UnitRegistry EMPTY = new UnitRegistry(Map.of(), List.of(), List.of());
+
+        UnitRegistry with(Collection<? extends RoboReference<?>> addedReferences, Collection<RoboUnit<?>> addedUnits) {
+            Map<String, RoboReference<?>> byId = new LinkedHashMap<>(referencesById);
+            Map<String, RoboUnit<?>> unitsById = new LinkedHashMap<>();
+            units.forEach(unit -> unitsById.put(unit.id(), unit));
+            addedReferences.forEach(reference -> byId.put(reference.id(), reference));
+            addedUnits.forEach(unit -> unitsById.put(unit.id(), unit));
+            return new UnitRegistry(Map.copyOf(byId), List.copyOf(unitsById.values()), List.copyOf(byId.values()));
+        }
+    }
+
     private class LocalRoboReference<T> implements RoboReference<T>, Serializable {
         @Serial
         private static final long serialVersionUID = 1L;
-        private static final Logger LOGGER_LOCAL = LoggerFactory.getLogger(LocalRoboReference.class);
         private final RoboUnit<T> unit;
         private final DeliveryPolicy deliveryPolicy;
         private final ThreadingPolicy threadingPolicy;
+        private boolean conflating;
+        private boolean inline;
+        private boolean ordered;
+        private int stripes;
+        // The executor group of the unit, null for the pool of the traits
+        private ThreadPoolExecutor groupExecutor;
+        // Sees all the messages sent to the unit, null unless tapped
+        private volatile Consumer<? super T> tap;
+        // Replaced when the unit is added to the system, which is always before
+        // the unit is started. Senders only read it after having seen the
+        // started state of the unit.
+        private Mailbox<T> mailbox;
 
         LocalRoboReference(RoboUnit<T> unit) {
             this.unit = unit;
@@ -116,6 +192,10 @@ final class RoboSystem implements RoboContext {
             Class<? extends RoboUnit<?>> clazz = (Class<? extends RoboUnit<?>>) unit.getClass();
             this.deliveryPolicy = deriveDeliveryPolicy(clazz);
             this.threadingPolicy = deriveThreadingPolicy(clazz);
+            this.conflating = clazz.isAnnotationPresent(ConflatingTrait.class);
+            this.inline = clazz.isAnnotationPresent(InlineTrait.class);
+            this.ordered = clazz.isAnnotationPresent(OrderedTrait.class);
+            this.mailbox = createMailbox(Mailbox.UNBOUNDED, MailboxOverflowPolicy.DROP_NEWEST);
         }
 
         private ThreadingPolicy deriveThreadingPolicy(Class<? extends RoboUnit<?>> clazz) {
@@ -129,12 +209,119 @@ final class RoboSystem implements RoboContext {
             if (clazz.getAnnotation(WorkTrait.class) != null) {
                 return DeliveryPolicy.WORK;
             }
-            if (clazz.getAnnotation(BlockingTrait.class) != null) {
-                return DeliveryPolicy.BLOCKING;
+            BlockingTrait blockingTrait = clazz.getAnnotation(BlockingTrait.class);
+            if (blockingTrait != null) {
+                return blockingTrait.virtualThreads() || blockingVirtualThreads ? DeliveryPolicy.BLOCKING_VIRTUAL : DeliveryPolicy.BLOCKING;
             }
             return DeliveryPolicy.SYSTEM;
         }
 
+        /**
+         * Sets up the mailbox as described by the unit configuration.
+         */
+        void configureMailbox() {
+            Configuration unitConfiguration = unit.getConfiguration();
+            if (unitConfiguration == null) {
+                return;
+            }
+            int capacity = unitConfiguration.getInteger(RoboBuilder.KEY_MAILBOX_CAPACITY, Mailbox.UNBOUNDED);
+            if (unitConfiguration.getBoolean(RoboBuilder.KEY_MAILBOX_CONFLATING, Boolean.FALSE)) {
+                conflating = true;
+            }
+            if (unitConfiguration.getBoolean(RoboBuilder.KEY_MAILBOX_INLINE, Boolean.FALSE)) {
+                inline = true;
+            }
+            if (unitConfiguration.getBoolean(RoboBuilder.KEY_MAILBOX_ORDERED, Boolean.FALSE)) {
+                ordered = true;
+            }
+            stripes = unitConfiguration.getInteger(RoboBuilder.KEY_MAILBOX_STRIPES, 0);
+            String groupName = unitConfiguration.getString(RoboBuilder.KEY_EXECUTOR_GROUP, null);
+            if (groupName != null) {
+                groupExecutor = executorGroups.get(groupName);
+                if (groupExecutor == null) {
+                    LOGGER.error("Unknown executor group:{} for unit:{}, using the pool of its traits", groupName, unit.id());
+                }
+            }
+            if (conflating) {
+                if (capacity != Mailbox.UNBOUNDED) {
+                    LOGGER.warn("Mailbox capacity:{} ignored for the conflating unit:{}", capacity, unit.id());
+                }
+                mailbox = createMailbox(Mailbox.UNBOUNDED, MailboxOverflowPolicy.DROP_NEWEST);
+                return;
+            }
+            String policyName = unitConfiguration.getString(RoboBuilder.KEY_MAILBOX_OVERFLOW_POLICY, MailboxOverflowPolicy.DROP_NEWEST.name());
+            MailboxOverflowPolicy overflowPolicy;
+            try {
+                overflowPolicy = MailboxOverflowPolicy.valueOf(policyName.trim().toUpperCase());
+            } catch (IllegalArgumentException e) {
+                LOGGER.error("Unknown mailbox overflow policy:{} for unit:{}, using:{}", policyName, unit.id(), MailboxOverflowPolicy.DROP_NEWEST);
+                overflowPolicy = MailboxOverflowPolicy.DROP_NEWEST;
+            }
+            if (capacity < 0) {
+                LOGGER.error("Negative mailbox capacity:{} for unit:{}, using an unbounded mailbox", capacity, unit.id());
+                capacity = Mailbox.UNBOUNDED;
+            }
+            mailbox = createMailbox(capacity, overflowPolicy);
+        }
+
+        private Mailbox<T> createMailbox(int capacity, MailboxOverflowPolicy overflowPolicy) {
+            final Executor executor;
+            final Executor urgentExecutor;
+            final int poolSize;
+            if (groupExecutor != null) {
+                executor = groupExecutor;
+                urgentExecutor = groupExecutor;
+                poolSize = groupExecutor.getMaximumPoolSize();
+            } else {
+                switch (deliveryPolicy) {
+                    case SYSTEM -> {
+                        executor = schedulerExecutor;
+                        urgentExecutor = schedulerUrgentExecutor;
+                        poolSize = schedulerPoolSize;
+                    }
+                    case WORK -> {
+                        executor = workExecutor;
+                        urgentExecutor = workExecutor;
+                        poolSize = workExecutor.getMaximumPoolSize();
+                    }
+                    case BLOCKING -> {
+                        executor = blockingExecutor;
+                        urgentExecutor = blockingExecutor;
+                        poolSize = blockingExecutor.getMaximumPoolSize();
+                    }
+                    case BLOCKING_VIRTUAL -> {
+                        executor = virtualBlockingExecutor;
+                        urgentExecutor = virtualBlockingExecutor;
+                        poolSize = Integer.MAX_VALUE;
+                    }
+                    default -> throw new IllegalStateException(String.format("not supported policy: %s", deliveryPolicy));
+                }
+            }
+            Mailbox<T> result;
+            if (conflating) {
+                result = Mailbox.conflating(unit, executor, urgentExecutor, Mailbox.DEFAULT_THROUGHPUT);
+            } else {
+                int concurrency = switch (threadingPolicy) {
+                    case NORMAL -> poolSize;
+                    case CRITICAL -> 1;
+                };
+                result = new Mailbox<>(unit, executor, urgentExecutor, concurrency, Mailbox.DEFAULT_THROUGHPUT, capacity, overflowPolicy);
+            }
+            if (ordered) {
+                if (conflating) {
+                    LOGGER.warn("Ordering ignored for the conflating unit:{}", unit.id());
+                } else if (threadingPolicy == ThreadingPolicy.CRITICAL) {
+                    LOGGER.warn("Ordering ignored for the unit:{}, a critical section is already ordered", unit.id());
+                } else {
+                    result.enableKeyOrdering(stripes > 0 ? stripes : Math.min(poolSize, MAX_DEFAULT_STRIPES / 4) * 4);
+                }
+            }
+            if (inline) {
+                result.enableInlineDelivery(inlineMaxDepth);
+            }
+            return result;
+        }
+
         @Override
         public String id() {
             return unit.id();
@@ -153,37 +340,106 @@ final class RoboSystem implements RoboContext {
         @Override
         public void sendMessage(T message) {
             if (MESSAGE_DELIVERY_CRITERIA.contains(getState())) {
-                switch (threadingPolicy) {
-                    case NORMAL:
-                        deliverOnQueue(message);
-                        break;
-                    case CRITICAL:
-                        synchronized (unit) {
-                            deliverOnQueue(message);
-                        }
-                        break;
-                    default:
-                        throw new IllegalStateException(String.format("not supported policy: %s", threadingPolicy));
+                tap(message);
+                if (!shed(false)) {
+                    mailbox.enqueue(message);
                 }
             }
         }
 
         @Override
-        public String toString() {
-            return "LocalReference id: " + unit.id() + " (system: " + uid + ")";
+        public void sendMessage(T message, MessagePriority priority) {
+            if (MESSAGE_DELIVERY_CRITERIA.contains(getState())) {
+                tap(message);
+                if (priority == MessagePriority.CONTROL) {
+                    mailbox.enqueueControl(message);
+                } else if (!shed(false)) {
+                    mailbox.enqueue(message);
+                }
+            }
+        }
+
+        @Override
+        public void sendMessages(Collection<? extends T> messages) {
+            if (MESSAGE_DELIVERY_CRITERIA.contains(getState()) && !messages.isEmpty()) {
+                Consumer<? super T> currentTap = tap;
+                if (currentTap != null) {
+                    messages.forEach(currentTap);
+                }
+                if (overloadMonitor != null && overloadMonitor.isOverloaded()) {
+                    sheddingSendMessages(messages);
+                } else {
+                    mailbox.enqueueAll(messages);
+                }
+            }
+        }
+
+        private void sheddingSendMessages(Collection<? extends T> messages) {
+            List<T> kept = new ArrayList<>(messages.size());
+            for (T message : messages) {
+                if (!overloadMonitor.shouldShed(false)) {
+                    kept.add(message);
+                }
+            }
+            mailbox.recordShed(messages.size() - kept.size());
+            if (!kept.isEmpty()) {
+                mailbox.enqueueAll(kept);
+            }
         }
 
-        private void deliverOnQueue(T message) {
-            switch (deliveryPolicy) {
-                case SYSTEM -> systemScheduler.execute(new Messenger<T>(unit, message));
-                case WORK -> workExecutor.execute(new Messenger<T>(unit, message));
-                case BLOCKING -> blockingExecutor.execute(new Messenger<T>(unit, message));
-                default -> LOGGER_LOCAL.error("not supported policy: {}", deliveryPolicy);
+        private void tap(T message) {
+            Consumer<? super T> currentTap = tap;
+            if (currentTap != null) {
+                currentTap.accept(message);
             }
         }
 
+        private boolean shed(boolean ask) {
+            if (overloadMonitor != null && overloadMonitor.shouldShed(ask)) {
+                mailbox.recordShed(1);
+                return true;
+            }
+            return false;
+        }
+
+        @SuppressWarnings("unchecked")
+        @Override
+        public <R> CompletableFuture<R> ask(T message, Duration timeout) {
+            if (!MESSAGE_DELIVERY_CRITERIA.contains(getState())) {
+                return CompletableFuture.failedFuture(new IllegalStateException("Unit " + unit.id() + " is " + getState()));
+            }
+            tap(message);
+            if (shed(true)) {
+                return CompletableFuture.failedFuture(new RejectedExecutionException("System " + uid + " is overloaded"));
+            }
+            CompletableFuture<Object> reply = new CompletableFuture<>();
+            // The system scheduler keeps track of all the timeouts, so there
+            // is no thread waiting per request. Answered requests cancel their
+            // timeouts, so the scheduler does not hold on to them
+            ScheduledFuture<?> timeoutFuture = systemScheduler.schedule(() -> {
+                if (!reply.isDone()) {
+                    reply.completeExceptionally(new TimeoutException("No reply from unit " + unit.id() + " within " + timeout));
+                }
+            }, timeout.toNanos(), TimeUnit.NANOSECONDS);
+            reply.whenComplete((result, error) -> timeoutFuture.cancel(false));
+            mailbox.enqueueAsk(message, reply);
+            return (CompletableFuture<R>) reply;
+        }
+
+        @Override
+        public String toString() {
+            return "LocalReference id: " + unit.id() + " (system: " + uid + ")";
+        }
+
         @Override
         public <R> Future<R> getAttribute(AttributeDescriptor<R> attribute) {
+            if (MailboxAttributes.isReserved(attribute)) {
+                return CompletableFuture.completedFuture(mailbox.getReservedAttribute(attribute));
+            }
+            AttributeSnapshot snapshot = unit.getAttributeSnapshot();
+            if (snapshot.contains(attribute)) {
+                return CompletableFuture.completedFuture(snapshot.get(attribute));
+            }
             return systemScheduler.submit(() -> unit.onGetAttribute(attribute));
         }
 
@@ -194,7 +450,17 @@ final class RoboSystem implements RoboContext {
 
         @Override
         public Future<Map<AttributeDescriptor<?>, Object>> getAttributes() {
-            return systemScheduler.submit(unit::onGetAttributes);
+            AttributeSnapshot snapshot = unit.getAttributeSnapshot();
+            if (snapshot.getVersion() > 0 && snapshot.getValues().keySet().containsAll(unit.getKnownAttributes())) {
+                Map<AttributeDescriptor<?>, Object> attributes = new HashMap<>(snapshot.getValues());
+                attributes.putAll(mailbox.getReservedAttributes());
+                return CompletableFuture.completedFuture(attributes);
+            }
+            return systemScheduler.submit(() -> {
+                Map<AttributeDescriptor<?>, Object> attributes = new HashMap<>(unit.onGetAttributes());
+                attributes.putAll(mailbox.getReservedAttributes());
+                return attributes;
+            });
         }
 
         @Override
@@ -208,27 +474,6 @@ final class RoboSystem implements RoboContext {
         }
     }
 
-    // Protects the executors from problems in the units.
-    private static class Messenger<T> implements Runnable {
-        private static final Logger LOGGER_MESSENGER = LoggerFactory.getLogger(Messenger.class);
-        private final RoboUnit<T> unit;
-        private final T message;
-
-        public Messenger(RoboUnit<T> unit, T message) {
-            this.unit = unit;
-            this.message = message;
-        }
-
-        @Override
-        public void run() {
-            try {
-                unit.onMessage(message);
-            } catch (Throwable t) {
-                LOGGER_MESSENGER.error("Error processing message, unit:{}", unit.id(), t);
-            }
-        }
-    }
-
     /**
      * Constructor.
      */
@@ -249,9 +494,11 @@ final class RoboSystem implements RoboContext {
     RoboSystem(String uid, Configuration configuration) {
         this.uid = uid;
         this.configuration = configuration;
-        int schedulerPoolSize = configuration.getInteger(RoboBuilder.KEY_SCHEDULER_POOL_SIZE, DEFAULT_SCHEDULER_POOL_SIZE);
+        schedulerPoolSize = configuration.getInteger(RoboBuilder.KEY_SCHEDULER_POOL_SIZE, DEFAULT_SCHEDULER_POOL_SIZE);
         int workerPoolSize = configuration.getInteger(RoboBuilder.KEY_WORKER_POOL_SIZE, DEFAULT_WORKER_POOL_SIZE);
-        int blockingPoolSize = configuration.getInteger(RoboBuilder.KEY_BLOCKING_POOL_SIZE, DEFAULT_SCHEDULER_POOL_SIZE);
+        int blockingPoolSize = configuration.getInteger(RoboBuilder.KEY_BLOCKING_POOL_SIZE, DEFAULT_BLOCKING_POOL_SIZE);
+        blockingVirtualThreads = configuration.getBoolean(RoboBuilder.KEY_BLOCKING_VIRTUAL_THREADS, Boolean.FALSE);
+        lifecycleTimeoutMillis = configuration.getInteger(RoboBuilder.KEY_LIFECYCLE_TIMEOUT, UnitLifecycle.DEFAULT_TIMEOUT_MILLIS);
 
         var workThreadFactory = new RoboThreadFactory
                 .Builder(THREAD_GROUP_NAME_WORKER_POOL)
@@ -263,13 +510,126 @@ final class RoboSystem implements RoboContext {
                 .addThreadPrefix(THREAD_GROUP_BLOCKING_NAME_BLOCKING_POOL)
                 .build();
 
+        var virtualBlockingThreadFactory = new RoboThreadFactory
+                .Builder(THREAD_GROUP_NAME_VIRTUAL_BLOCKING)
+                .addThreadPrefix(THREAD_GROUP_NAME_VIRTUAL_BLOCKING)
+                .setVirtualThread(true)
+                .build();
+
         workExecutor = new ThreadPoolExecutor(workerPoolSize, workerPoolSize, KEEP_ALIVE_TIME, TimeUnit.SECONDS, workQueue, workThreadFactory);
         blockingExecutor = new ThreadPoolExecutor(blockingPoolSize, blockingPoolSize, KEEP_ALIVE_TIME, TimeUnit.SECONDS, blockingQueue, blockingThreadFactory);
-        systemScheduler = new DefaultScheduler(this, schedulerPoolSize);
+        virtualBlockingExecutor = Executors.newThreadPerTaskExecutor(virtualBlockingThreadFactory);
+        lifecycleExecutor = Executors.newThreadPerTaskExecutor(new RoboThreadFactory
+                .Builder(THREAD_GROUP_NAME_LIFECYCLE)
+                .addThreadPrefix(THREAD_GROUP_NAME_LIFECYCLE)
+                .setVirtualThread(true)
+                .build());
+        executorGroups = createExecutorGroups(configuration.getChildConfiguration(RoboBuilder.KEY_CONFIGURATION_EXECUTOR_GROUPS));
+        systemScheduler = createScheduler(configuration);
+        schedulerExecutor = systemScheduler::execute;
+        schedulerUrgentExecutor = systemScheduler::executeUrgent;
+        inlineMaxDepth = configuration.getInteger(RoboBuilder.KEY_INLINE_MAX_DEPTH, Mailbox.DEFAULT_INLINE_DEPTH);
+        periodicExecutive = new PeriodicExecutive(THREAD_PREFIX_PERIODIC);
+        overloadMonitor = createOverloadMonitor(configuration);
+        overloadCheckMillis = configuration.getInteger(RoboBuilder.KEY_OVERLOAD_CHECK_MILLIS, OverloadMonitor.DEFAULT_CHECK_MILLIS);
         messageServer = initServer(configuration.getChildConfiguration(RoboBuilder.KEY_CONFIGURATION_SERVER));
         emitterConfiguration = configuration.getChildConfiguration(RoboBuilder.KEY_CONFIGURATION_EMITTER);
     }
 
+    private Scheduler createScheduler(Configuration configuration) {
+        String typeName = configuration.getString(RoboBuilder.KEY_SCHEDULER_TYPE, SchedulerType.DEFAULT.name());
+        SchedulerType type;
+        try {
+            type = SchedulerType.valueOf(typeName.trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            LOGGER.error("Unknown scheduler type:{}, using:{}", typeName, SchedulerType.DEFAULT);
+            type = SchedulerType.DEFAULT;
+        }
+        return switch (type) {
+            case DEFAULT -> new DefaultScheduler(this, schedulerPoolSize);
+            case HASHED_WHEEL -> new HashedWheelScheduler(this, schedulerPoolSize,
+                    configuration.getInteger(RoboBuilder.KEY_SCHEDULER_TICK_MILLIS, HashedWheelScheduler.DEFAULT_TICK_MILLIS),
+                    TimeUnit.MILLISECONDS,
+                    configuration.getInteger(RoboBuilder.KEY_SCHEDULER_WHEEL_SIZE, HashedWheelScheduler.DEFAULT_WHEEL_SIZE));
+        };
+    }
+
+    private static Map<String, ThreadPoolExecutor> createExecutorGroups(Configuration groupsConfiguration) {
+        if (groupsConfiguration == null) {
+            return Map.of();
+        }
+        Map<String, ThreadPoolExecutor> groups = new HashMap<>();
+        for (String name : groupsConfiguration.getChildNames()) {
+            Configuration groupConfiguration = groupsConfiguration.getChildConfiguration(name);
+            int poolSize = groupConfiguration.getInteger(RoboBuilder.KEY_GROUP_POOL_SIZE, DEFAULT_GROUP_POOL_SIZE);
+            int priority = groupConfiguration.getInteger(RoboBuilder.KEY_GROUP_THREAD_PRIORITY, Thread.NORM_PRIORITY);
+            var threadFactory = new RoboThreadFactory
+                    .Builder(THREAD_GROUP_NAME_EXECUTOR_GROUP + name)
+                    .addThreadPrefix(THREAD_GROUP_NAME_EXECUTOR_GROUP + name)
+                    .setPriority(priority)
+                    .build();
+            // Unbounded, as a rejected drain would leave the messages of its
+            // mailbox waiting, and running it on the sender would take the
+            // unit out of its group. The mailboxes bound the messages.
+            groups.put(name, new ThreadPoolExecutor(poolSize, poolSize, KEEP_ALIVE_TIME, TimeUnit.SECONDS, new LinkedBlockingQueue<>(),
+                    threadFactory));
+        }
+        return Map.copyOf(groups);
+    }
+
+    private OverloadMonitor createOverloadMonitor(Configuration configuration) {
+        String policyName = configuration.getString(RoboBuilder.KEY_OVERLOAD_POLICY, null);
+        if (policyName == null) {
+            return null;
+        }
+        OverloadPolicy policy;
+        try {
+            policy = OverloadPolicy.valueOf(policyName.trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            LOGGER.error("Unknown overload policy:{}, using:{}", policyName, OverloadPolicy.MONITOR);
+            policy = OverloadPolicy.MONITOR;
+        }
+        var monitor = new OverloadMonitor(uid, policy,
+                configuration.getInteger(RoboBuilder.KEY_OVERLOAD_QUEUE_DEPTH, OverloadMonitor.DEFAULT_QUEUE_DEPTH),
+                configuration.getInteger(RoboBuilder.KEY_OVERLOAD_QUEUE_WAIT_MILLIS, OverloadMonitor.DEFAULT_QUEUE_WAIT_MILLIS),
+                configuration.getInteger(RoboBuilder.KEY_OVERLOAD_SAMPLE_RATE, OverloadMonitor.DEFAULT_SAMPLE_RATE),
+                this::notifyOverload);
+        // A pool queues at most one drain per mailbox, so the waiting messages
+        // are counted in the mailboxes. The worker and blocking pools also
+        // run tasks submitted directly.
+        monitor.addPool(THREAD_GROUP_NAME_WORKER_POOL, workExecutor, () -> workQueue.size() + getMailboxQueueDepth(workExecutor));
+        monitor.addPool(THREAD_GROUP_BLOCKING_NAME_BLOCKING_POOL, blockingExecutor,
+                () -> blockingQueue.size() + getMailboxQueueDepth(blockingExecutor));
+        monitor.addPool(THREAD_GROUP_NAME_VIRTUAL_BLOCKING, virtualBlockingExecutor, () -> getMailboxQueueDepth(virtualBlockingExecutor));
+        monitor.addPool(POOL_NAME_SYSTEM_SCHEDULER, schedulerExecutor, () -> getMailboxQueueDepth(schedulerExecutor));
+        executorGroups.forEach((name, executor) -> monitor.addPool(THREAD_GROUP_NAME_EXECUTOR_GROUP + name, executor,
+                () -> getMailboxQueueDepth(executor)));
+        return monitor;
+    }
+
+    private int getMailboxQueueDepth(Executor pool) {
+        long depth = 0;
+        for (RoboReference<?> reference : registry.references()) {
+            Mailbox<?> mailbox = ((LocalRoboReference<?>) reference).mailbox;
+            if (mailbox.isDrainedBy(pool)) {
+                depth += mailbox.getQueueDepth();
+            }
+        }
+        return (int) Math.min(depth, Integer.MAX_VALUE);
+    }
+
+    private void notifyOverload(boolean overloaded) {
+        for (RoboUnit<?> unit : registry.units()) {
+            if (unit.getState() == LifecycleState.STARTED) {
+                try {
+                    unit.onOverload(overloaded);
+                } catch (Throwable t) {
+                    LOGGER.error("Error in overload callback, unit:{}", unit.id(), t);
+                }
+            }
+        }
+    }
+
     /**
      * Constructor.
      */
@@ -298,7 +658,7 @@ final class RoboSystem implements RoboContext {
         if (state.get() != LifecycleState.UNINITIALIZED) {
             throw new UnsupportedOperationException("All units must be registered up front for now.");
         }
-        addToMap(unitSet);
+        register(unitSet);
     }
 
     /**
@@ -310,7 +670,8 @@ final class RoboSystem implements RoboContext {
         if (state.get() != LifecycleState.UNINITIALIZED) {
             throw new UnsupportedOperationException("All units must be registered up front for now.");
         }
-        addToMap(units);
+        // NOTE(Marcus/Aug 9, 2017): Do not streamify...
+        register(Arrays.asList(units));
     }
 
     @Override
@@ -320,6 +681,11 @@ final class RoboSystem implements RoboContext {
             case INITIALIZED, STOPPED -> {
                 state.compareAndSet(currentState, LifecycleState.STARTING);
                 startUnits();
+                FlightRecorder.addPeriodicEvent(UnitDeliveryEvent.class, deliveryEventHook);
+                if (overloadMonitor != null) {
+                    overloadTask = periodicExecutive.schedule("overloadMonitor", overloadMonitor::check, overloadCheckMillis,
+                            overloadCheckMillis, TimeUnit.MILLISECONDS, MissedPeriodPolicy.SKIP_MISSED);
+                }
             }
         }
         // If we have a server, start it, then set up emitter
@@ -341,19 +707,46 @@ final class RoboSystem implements RoboContext {
     }
 
     private void startUnits() {
-        // NOTE(Marcus/Sep 4, 2017): May want to schedule the starts.
-        for (RoboUnit<?> unit : units.values()) {
-            unit.setState(LifecycleState.STARTING);
-            unit.start();
-            unit.setState(LifecycleState.STARTED);
+        try {
+            getLifecycle().runInDependencyOrder("Started", unit -> {
+                unit.setState(LifecycleState.STARTING);
+                try {
+                    unit.start();
+                } catch (RuntimeException e) {
+                    unit.setState(LifecycleState.FAILED);
+                    throw e;
+                }
+            }, unit -> unit.setState(LifecycleState.STARTED));
+        } catch (RuntimeException e) {
+            // Do not leave the units that did start running in a failed system
+            getLifecycle().runInReverseDependencyOrder("Stopped", unit -> {
+                if (unit.getState() == LifecycleState.STARTED) {
+                    unit.stop();
+                }
+            }, unit -> {
+                if (unit.getState() == LifecycleState.STARTED) {
+                    unit.setState(LifecycleState.STOPPED);
+                }
+            });
+            state.set(LifecycleState.FAILED);
+            throw e;
         }
         state.set(LifecycleState.STARTED);
     }
 
+    private UnitLifecycle getLifecycle() {
+        // Units are all registered before the system is initialized, so the
+        // dependencies do not change once resolved.
+        UnitLifecycle current = lifecycle;
+        if (current == null) {
+            current = new UnitLifecycle(registry.units(), lifecycleExecutor, lifecycleTimeoutMillis);
+            lifecycle = current;
+        }
+        return current;
+    }
+
     @Override
     public void stop() {
-        // NOTE(Marcus/Sep 4, 2017): We may want schedule the stops in the
-        // future.
         if (emitterFuture != null) {
             emitterFuture.cancel(true);
         }
@@ -361,7 +754,12 @@ final class RoboSystem implements RoboContext {
             messageServer.stop();
         }
         if (state.compareAndSet(LifecycleState.STARTED, LifecycleState.STOPPING)) {
-            units.values().forEach(RoboUnit::stop);
+            getLifecycle().runInReverseDependencyOrder("Stopped", RoboUnit::stop);
+        }
+        FlightRecorder.removePeriodicEvent(deliveryEventHook);
+        if (overloadTask != null) {
+            overloadTask.cancel();
+            overloadTask = null;
         }
         state.set(LifecycleState.STOPPED);
     }
@@ -370,17 +768,20 @@ final class RoboSystem implements RoboContext {
     public void shutdown() {
         stop();
         state.set(LifecycleState.SHUTTING_DOWN);
-        units.values().forEach((unit) -> unit.setState(LifecycleState.SHUTTING_DOWN));
+        registry.units().forEach((unit) -> unit.setState(LifecycleState.SHUTTING_DOWN));
 
         // First shutdown all executors. We don't care at this point, as any
         // messages will no longer be delivered.
         workExecutor.shutdown();
         blockingExecutor.shutdown();
+        virtualBlockingExecutor.shutdown();
+        executorGroups.values().forEach(ThreadPoolExecutor::shutdown);
 
-        // Then schedule shutdowns on the scheduler threads...
-        for (RoboUnit<?> unit : units.values()) {
-            getScheduler().execute(() -> RoboSystem.shutdownUnit(unit));
-        }
+        // Then shut the units down, dependents first, and wait for them (or
+        // their timeouts)...
+        getLifecycle().runInReverseDependencyOrder("Shut down", RoboSystem::shutdownUnit);
+        lifecycleExecutor.shutdown();
+        periodicExecutive.shutdown();
 
         // Then shutdown the system scheduler. Will wait until the termination
         // shutdown of the system scheduler (or the timeout).
@@ -403,17 +804,13 @@ final class RoboSystem implements RoboContext {
 
     @Override
     public Collection<RoboReference<?>> getUnits() {
-        return units.values().stream().map(this::getReference).collect(Collectors.toList());
+        return registry.references();
     }
 
+    @SuppressWarnings("unchecked")
     @Override
     public <T> RoboReference<T> getReference(String id) {
-        @SuppressWarnings("unchecked")
-        RoboUnit<T> roboUnit = (RoboUnit<T>) units.get(id);
-        if (roboUnit == null) {
-            return null;
-        }
-        return getReference(roboUnit);
+        return (RoboReference<T>) registry.referencesById().get(id);
     }
 
     @Override
@@ -421,50 +818,73 @@ final class RoboSystem implements RoboContext {
         return systemScheduler;
     }
 
+    @Override
+    public PeriodicExecutive getPeriodicExecutive() {
+        return periodicExecutive;
+    }
+
     @Override
     public String getId() {
         return uid;
     }
 
     /**
-     * Returns the reference for a specific unit.
+     * Returns the reference for a specific unit. Units get their reference
+     * when constructed, and that reference is registered when the unit is
+     * added to the system.
      *
      * @param roboUnit the robo unit for which to retrieve a reference.
      * @return the {@link RoboReference} to the unit.
      */
     public <T> RoboReference<T> getReference(RoboUnit<T> roboUnit) {
         @SuppressWarnings("unchecked")
-        RoboReference<T> reference = (RoboReference<T>) referenceCache.get(roboUnit);
-        if (reference == null) {
-            reference = createReference(roboUnit);
-            referenceCache.put(roboUnit, reference);
+        RoboReference<T> reference = (RoboReference<T>) registry.referencesById().get(roboUnit.id());
+        if (reference instanceof LocalRoboReference<T> local && local.unit == roboUnit) {
+            return reference;
+        }
+        return new LocalRoboReference<>(roboUnit);
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public <T> void setMessageTap(String unitId, Consumer<? super T> tap) {
+        if (!(registry.referencesById().get(unitId) instanceof LocalRoboReference<?> reference)) {
+            throw new IllegalArgumentException("No unit with id " + unitId + " in system " + uid);
         }
-        return reference;
+        ((LocalRoboReference<T>) reference).tap = tap;
     }
 
     @Override
     public String toString() {
-        return "RoboSystem id: " + uid + " unit count: " + units.size();
+        return "RoboSystem id: " + uid + " unit count: " + registry.units().size();
     }
 
-    private <T> RoboReference<T> createReference(RoboUnit<T> roboUnit) {
-        return new LocalRoboReference<>(roboUnit);
+    private synchronized void register(Collection<RoboUnit<?>> addedUnits) {
+        List<LocalRoboReference<?>> addedReferences = new ArrayList<>(addedUnits.size());
+        for (RoboUnit<?> unit : addedUnits) {
+            LocalRoboReference<?> reference = localReferenceOf(unit);
+            reference.configureMailbox();
+            addedReferences.add(reference);
+        }
+        registry = registry.with(addedReferences, addedUnits);
     }
 
-    private void addToMap(Set<RoboUnit<?>> unitSet) {
-        unitSet.forEach(unit -> units.put(unit.id(), unit));
+    // Reuses the reference the unit got when constructed, so that the unit
+    // and its reference share one mailbox.
+    private LocalRoboReference<?> localReferenceOf(RoboUnit<?> unit) {
+        if (unit.getContext() == this && unit.internalGetReference() instanceof LocalRoboReference<?> local && local.unit == unit) {
+            return local;
+        }
+        return new LocalRoboReference<>(unit);
     }
 
-    private void addToMap(RoboUnit<?>... unitArray) {
-        // NOTE(Marcus/Aug 9, 2017): Do not streamify...
-        for (RoboUnit<?> unit : unitArray) {
-            units.put(unit.id(), unit);
+    private void commitDeliveryEvents() {
+        for (RoboReference<?> reference : registry.references()) {
+            ((LocalRoboReference<?>) reference).mailbox.commitDeliveryEvent(uid);
         }
     }
 
     private static void shutdownUnit(RoboUnit<?> unit) {
-        // NOTE(Marcus/Aug 11, 2017): Should really be scheduled and done in
-        // parallel.
         unit.shutdown();
         unit.setState(LifecycleState.SHUTDOWN);
     }
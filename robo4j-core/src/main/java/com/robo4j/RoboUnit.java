@@ -18,12 +18,16 @@ package com.robo4j;
 
 import com.robo4j.configuration.Configuration;
 
+import java.time.Duration;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * The core component. Subclass this to provide a messaging capable agent for a
@@ -33,6 +37,8 @@ import java.util.concurrent.Future;
  * @author Miroslav Wengner (@miragemiko)
  */
 public abstract class RoboUnit<T> implements RoboReference<T> {
+    // The reply expected for the message being delivered on this thread, if any
+    private static final ThreadLocal<CompletableFuture<Object>> CURRENT_REPLY = new ThreadLocal<>();
     // Yay for erasure
     private final Class<T> messageType;
     private final RoboContext context;
@@ -40,6 +46,7 @@ public abstract class RoboUnit<T> implements RoboReference<T> {
     private volatile LifecycleState state = LifecycleState.UNINITIALIZED;
     private RoboReference<T> reference;
     private Configuration configuration;
+    private final AtomicReference<AttributeSnapshot> attributeSnapshot = new AtomicReference<>(AttributeSnapshot.EMPTY);
 
     /**
      * Constructor.
@@ -161,6 +168,39 @@ public abstract class RoboUnit<T> implements RoboReference<T> {
         reference.sendMessage(message);
     }
 
+    /**
+     * Sends a message with the specified priority to this unit by posting it on
+     * the message bus.
+     *
+     * @see #onMessage(Object)
+     */
+    @Override
+    public void sendMessage(T message, MessagePriority priority) {
+        reference.sendMessage(message, priority);
+    }
+
+    /**
+     * Sends the messages to this unit by posting them on the message bus in one
+     * go.
+     *
+     * @see #onMessages(List)
+     */
+    @Override
+    public void sendMessages(Collection<? extends T> messages) {
+        reference.sendMessages(messages);
+    }
+
+    /**
+     * Sends a message to this unit by posting it on the message bus, and
+     * returns the reply.
+     *
+     * @see #reply(Object)
+     */
+    @Override
+    public <R> CompletableFuture<R> ask(T message, Duration timeout) {
+        return reference.ask(message, timeout);
+    }
+
     /**
      * Will post a message to get the attributes on the message queue.
      *
@@ -206,6 +246,106 @@ public abstract class RoboUnit<T> implements RoboReference<T> {
         // want to consider other means of accessing it to keep it protected.
     }
 
+    /**
+     * Can be overridden in subclasses to process several waiting messages in
+     * one call. The system then hands the messages drained from the mailbox of
+     * the unit to this method, in the order they were sent, instead of calling
+     * {@link #onMessage(Object)} once per message. Units which do not override
+     * it get their messages one at a time.
+     *
+     * @param messages the messages received by this unit. Never empty, and
+     *                 only valid for the duration of the call.
+     */
+    public void onMessages(List<T> messages) {
+        for (T message : messages) {
+            onMessage(message);
+        }
+    }
+
+    /**
+     * Replies to the message being processed, if it was sent with
+     * {@link #ask(Object, Duration)}. Call from {@link #onMessage(Object)}. Does
+     * nothing for messages sent without asking, or if the message has already
+     * been replied to.
+     *
+     * @param reply the reply.
+     */
+    protected final void reply(Object reply) {
+        CompletableFuture<Object> current = CURRENT_REPLY.get();
+        if (current != null) {
+            current.complete(reply);
+        }
+    }
+
+    /**
+     * Takes over the reply to the message being processed, for units which
+     * reply after {@link #onMessage(Object)} has returned, for example when a
+     * reading completes. Call from {@link #onMessage(Object)}, and complete the
+     * returned future when the reply is available. The asker still gets a
+     * timeout if that takes too long.
+     *
+     * @return the future reply, or null if the message was sent without
+     * asking.
+     */
+    protected final CompletableFuture<Object> deferReply() {
+        return CURRENT_REPLY.get();
+    }
+
+    /**
+     * Sets the reply of the message about to be processed on this thread, and
+     * returns the one it replaces. Messages are delivered inline from other
+     * units, so the previous reply must be restored afterwards.
+     */
+    static CompletableFuture<Object> swapCurrentReply(CompletableFuture<Object> reply) {
+        CompletableFuture<Object> previous = CURRENT_REPLY.get();
+        if (reply == null) {
+            CURRENT_REPLY.remove();
+        } else {
+            CURRENT_REPLY.set(reply);
+        }
+        return previous;
+    }
+
+    /**
+     * Called on the sending thread when a message is rejected because the
+     * bounded mailbox of this unit is full, and the unit is configured with the
+     * {@link MailboxOverflowPolicy#FAIL} policy. Override in subclasses to react
+     * to the overload, for example by notifying the sender. Keep it short, and
+     * never block.
+     *
+     * @param message the rejected message.
+     */
+    protected void onMailboxOverflow(T message) {
+    }
+
+    /**
+     * Called when the system enters or leaves overload, if overload monitoring
+     * is enabled with {@link RoboBuilder#KEY_OVERLOAD_POLICY}. Override in
+     * subclasses to degrade gracefully, for example by lowering the rate of
+     * readings, or by answering external requests with an error. Called on the
+     * monitor thread, possibly while messages are being processed, so keep it
+     * short, and never block.
+     *
+     * @param overloaded true when entering overload, false when leaving it.
+     */
+    protected void onOverload(boolean overloaded) {
+    }
+
+    /**
+     * Returns the key that the message is ordered by, for units with the
+     * {@link OrderedTrait}. Messages with the same key are delivered in order,
+     * messages with different keys may be delivered in parallel. Called on the
+     * sending thread, so keep it short. The default implementation returns the
+     * key of {@link KeyedMessage}s, and null otherwise. All messages with a
+     * null key are ordered with respect to each other.
+     *
+     * @param message the message to get the key for.
+     * @return the ordering key, or null.
+     */
+    protected Object getOrderingKey(T message) {
+        return message instanceof KeyedMessage keyedMessage ? keyedMessage.getOrderingKey() : null;
+    }
+
     /**
      * May be overridden in subclasses for more performance. The default
      * implementation will get the job done though.
@@ -214,9 +354,10 @@ public abstract class RoboUnit<T> implements RoboReference<T> {
      */
     protected Map<AttributeDescriptor<?>, Object> onGetAttributes() {
         var result = new HashMap<AttributeDescriptor<?>, Object>();
+        AttributeSnapshot snapshot = getAttributeSnapshot();
         Collection<AttributeDescriptor<?>> knownAttributes = getKnownAttributes();
         for (AttributeDescriptor<?> descriptor : knownAttributes) {
-            result.put(descriptor, getAttribute(descriptor));
+            result.put(descriptor, snapshot.contains(descriptor) ? snapshot.get(descriptor) : onGetAttribute(descriptor));
         }
         return result;
     }
@@ -232,6 +373,43 @@ public abstract class RoboUnit<T> implements RoboReference<T> {
         return null;
     }
 
+    /**
+     * Publishes a new value for an attribute. Published attributes are read
+     * from the {@link #getAttributeSnapshot() snapshot} of the unit, right
+     * away on the calling thread, instead of by asking the unit through
+     * {@link #onGetAttribute(AttributeDescriptor)}. Publish whenever the value
+     * changes, typically from {@link #onMessage(Object)}.
+     *
+     * @param descriptor the descriptor of the attribute.
+     * @param value      the new value, which must be immutable or never
+     *                   changed after publishing. Null withdraws the value.
+     * @param <R>        the type of the attribute.
+     */
+    protected <R> void publishAttribute(AttributeDescriptor<R> descriptor, R value) {
+        var changes = new HashMap<AttributeDescriptor<?>, Object>(1);
+        changes.put(descriptor, value);
+        publishAttributes(changes);
+    }
+
+    /**
+     * Publishes new values for several attributes at once, so that readers of
+     * the snapshot see all of them change together.
+     *
+     * @param values the new values, by descriptor. Null values withdraw the
+     *               values.
+     * @see #publishAttribute(AttributeDescriptor, Object)
+     */
+    protected void publishAttributes(Map<AttributeDescriptor<?>, Object> values) {
+        attributeSnapshot.updateAndGet(snapshot -> snapshot.with(values));
+    }
+
+    /**
+     * @return the latest snapshot of the published attributes of this unit.
+     */
+    public AttributeSnapshot getAttributeSnapshot() {
+        return attributeSnapshot.get();
+    }
+
     /**
      * @return a RoboReference. Internal use only.
      */
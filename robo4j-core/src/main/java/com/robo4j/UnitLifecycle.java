@@ -0,0 +1,301 @@
+/*
+ * Copyright (c) 2014, 2024, Marcus Hirt, Miroslav Wengner
+ *
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.robo4j;
+
+import com.robo4j.configuration.Configuration;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+/**
+ * Runs the life cycle operations of the units of a system in parallel.
+ * <p>
+ * Units can declare the units they depend on with
+ * {@link RoboBuilder#KEY_DEPENDS_ON}. A unit is started after all the units it
+ * depends on, and stopped and shut down before them. Units without
+ * dependencies between them are handled at the same time. Cycles of
+ * dependencies are reported, and broken by ignoring one dependency of each.
+ * <p>
+ * Every operation is bounded by the timeout of the unit. An operation running
+ * out of time is interrupted, and its completion action is not run. When
+ * starting, a unit failing or running out of time is reported to the caller,
+ * and the units depending on it are not started. When stopping and shutting down, the units
+ * waiting for it proceed anyway. The time taken by every unit is logged when
+ * the operation is done.
+ * <p>
+ * Internal implementation class.
+ *
+ * @author Marcus Hirt (@hirt)
+ * @author Miroslav Wengner (@miragemiko)
+ */
+final class UnitLifecycle {
+    private static final Logger LOGGER = LoggerFactory.getLogger(UnitLifecycle.class);
+    /**
+     * Default time to wait for the life cycle operation of a unit.
+     */
+    static final int DEFAULT_TIMEOUT_MILLIS = 30_000;
+    private static final String DEPENDENCY_SEPARATOR = ",";
+
+    // Topological order, dependencies first
+    private final List<RoboUnit<?>> orderedUnits;
+    private final Map<RoboUnit<?>, List<RoboUnit<?>>> dependencies = new IdentityHashMap<>();
+    private final Map<RoboUnit<?>, List<RoboUnit<?>>> dependents = new IdentityHashMap<>();
+    private final Executor executor;
+    private final int defaultTimeoutMillis;
+
+    /**
+     * Constructor.
+     *
+     * @param units                the units in registration order.
+     * @param executor             the executor running the operations.
+     * @param defaultTimeoutMillis the timeout for units not configuring their
+     *                             own.
+     */
+    UnitLifecycle(List<RoboUnit<?>> units, Executor executor, int defaultTimeoutMillis) {
+        this.executor = executor;
+        this.defaultTimeoutMillis = defaultTimeoutMillis;
+        Map<String, RoboUnit<?>> unitsById = new LinkedHashMap<>();
+        units.forEach(unit -> unitsById.put(unit.id(), unit));
+        for (RoboUnit<?> unit : units) {
+            dependencies.put(unit, resolveDependencies(unit, unitsById));
+            dependents.put(unit, new ArrayList<>());
+        }
+        this.orderedUnits = sortTopologically(units);
+        dependencies.forEach((unit, unitDependencies) -> unitDependencies.forEach(dependency -> dependents.get(dependency).add(unit)));
+    }
+
+    /**
+     * Runs the action for all units, dependencies first, and waits until done.
+     * Units depending on a unit whose action failed or timed out are skipped.
+     *
+     * @param operation  the name of the operation, used for logging.
+     * @param action     the action to run for every unit.
+     * @param completion run for every unit whose action completed in time,
+     *                   typically to change its state.
+     * @throws RuntimeException the failure of the action of the first failed
+     *                          unit, with the failures of any other units
+     *                          added as suppressed.
+     */
+    void runInDependencyOrder(String operation, Consumer<RoboUnit<?>> action, Consumer<RoboUnit<?>> completion) {
+        Map<String, Throwable> failures = run(operation, action, completion, orderedUnits, dependencies, true);
+        if (!failures.isEmpty()) {
+            throw toException(operation, failures);
+        }
+    }
+
+    /**
+     * Runs the action for all units, dependents first, and waits until done.
+     *
+     * @param operation the name of the operation, used for logging.
+     * @param action    the action to run for every unit.
+     */
+    void runInReverseDependencyOrder(String operation, Consumer<RoboUnit<?>> action) {
+        runInReverseDependencyOrder(operation, action, unit -> {
+        });
+    }
+
+    /**
+     * Runs the action for all units, dependents first, and waits until done.
+     *
+     * @param operation  the name of the operation, used for logging.
+     * @param action     the action to run for every unit.
+     * @param completion run for every unit whose action completed in time.
+     */
+    void runInReverseDependencyOrder(String operation, Consumer<RoboUnit<?>> action, Consumer<RoboUnit<?>> completion) {
+        List<RoboUnit<?>> reversed = new ArrayList<>(orderedUnits);
+        Collections.reverse(reversed);
+        run(operation, action, completion, reversed, dependents, false);
+    }
+
+    /**
+     * @return the units in the order they are started.
+     */
+    List<RoboUnit<?>> getOrderedUnits() {
+        return Collections.unmodifiableList(orderedUnits);
+    }
+
+    /**
+     * @return the failures by unit id, in the order the units failed.
+     */
+    private Map<String, Throwable> run(String operation, Consumer<RoboUnit<?>> action, Consumer<RoboUnit<?>> completion,
+                                       List<RoboUnit<?>> order,
+                                       Map<RoboUnit<?>, List<RoboUnit<?>>> prerequisites, boolean skipOnFailedPrerequisite) {
+        long start = System.nanoTime();
+        Map<RoboUnit<?>, CompletableFuture<Boolean>> completions = new IdentityHashMap<>();
+        Map<String, Long> durations = new ConcurrentHashMap<>();
+        Map<String, Throwable> failures = Collections.synchronizedMap(new LinkedHashMap<>());
+        for (RoboUnit<?> unit : order) {
+            List<CompletableFuture<Boolean>> waitFor = prerequisites.get(unit).stream().map(completions::get).toList();
+            completions.put(unit, CompletableFuture.allOf(waitFor.toArray(CompletableFuture<?>[]::new)).thenCompose(v -> {
+                if (skipOnFailedPrerequisite && !waitFor.stream().allMatch(CompletableFuture::join)) {
+                    LOGGER.error("{} unit:{} skipped, as a unit it depends on failed", operation, unit.id());
+                    return CompletableFuture.completedFuture(Boolean.FALSE);
+                }
+                return runAction(operation, unit, action, completion, durations, failures);
+            }));
+        }
+        CompletableFuture.allOf(completions.values().toArray(CompletableFuture<?>[]::new)).join();
+        LOGGER.info("{} {} units in {} ms: {}", operation, order.size(), TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start),
+                durations.entrySet().stream().sorted(Map.Entry.<String, Long>comparingByValue(Comparator.reverseOrder()))
+                        .map(e -> e.getKey() + ":" + e.getValue() + "ms").collect(Collectors.joining(", ")));
+        return failures;
+    }
+
+    private static RuntimeException toException(String operation, Map<String, Throwable> failures) {
+        RuntimeException exception = null;
+        synchronized (failures) {
+            for (Map.Entry<String, Throwable> failure : failures.entrySet()) {
+                Throwable cause = failure.getValue();
+                RuntimeException unitException = cause instanceof RuntimeException runtimeException ? runtimeException
+                        : new IllegalStateException(operation + " unit:" + failure.getKey() + " failed", cause);
+                if (exception == null) {
+                    exception = unitException;
+                } else {
+                    exception.addSuppressed(unitException);
+                }
+            }
+        }
+        return exception;
+    }
+
+    private CompletableFuture<Boolean> runAction(String operation, RoboUnit<?> unit, Consumer<RoboUnit<?>> action,
+                                                 Consumer<RoboUnit<?>> completion, Map<String, Long> durations,
+                                                 Map<String, Throwable> failures) {
+        long start = System.nanoTime();
+        long timeoutMillis = getTimeoutMillis(unit);
+        CompletableFuture<Void> done = new CompletableFuture<>();
+        // Kept to interrupt the action when it runs out of time
+        FutureTask<Void> task = new FutureTask<>(() -> {
+            try {
+                action.accept(unit);
+                done.complete(null);
+            } catch (Throwable t) {
+                done.completeExceptionally(t);
+            }
+        }, null);
+        try {
+            executor.execute(task);
+        } catch (RejectedExecutionException e) {
+            done.completeExceptionally(e);
+        }
+        return done.orTimeout(timeoutMillis, TimeUnit.MILLISECONDS)
+                .handle((result, throwable) -> {
+                    durations.put(unit.id(), TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+                    if (throwable == null) {
+                        // Only when the action won against the timeout, so that
+                        // a late action does not change the state afterwards
+                        completion.accept(unit);
+                        return Boolean.TRUE;
+                    }
+                    Throwable cause = throwable instanceof CompletionException && throwable.getCause() != null
+                            ? throwable.getCause() : throwable;
+                    if (cause instanceof TimeoutException) {
+                        task.cancel(true);
+                        LOGGER.error("{} unit:{} did not finish within {} ms", operation, unit.id(), timeoutMillis);
+                    } else {
+                        LOGGER.error("{} unit:{} failed", operation, unit.id(), cause);
+                    }
+                    failures.put(unit.id(), cause);
+                    return Boolean.FALSE;
+                });
+    }
+
+    private long getTimeoutMillis(RoboUnit<?> unit) {
+        Configuration configuration = unit.getConfiguration();
+        if (configuration == null) {
+            return defaultTimeoutMillis;
+        }
+        return configuration.getInteger(RoboBuilder.KEY_LIFECYCLE_TIMEOUT, defaultTimeoutMillis);
+    }
+
+    private static List<RoboUnit<?>> resolveDependencies(RoboUnit<?> unit, Map<String, RoboUnit<?>> unitsById) {
+        Configuration configuration = unit.getConfiguration();
+        String dependsOn = configuration == null ? null : configuration.getString(RoboBuilder.KEY_DEPENDS_ON, null);
+        if (dependsOn == null || dependsOn.isBlank()) {
+            return new ArrayList<>();
+        }
+        Set<RoboUnit<?>> resolved = new LinkedHashSet<>();
+        for (String id : dependsOn.split(DEPENDENCY_SEPARATOR)) {
+            String dependencyId = id.trim();
+            RoboUnit<?> dependency = unitsById.get(dependencyId);
+            if (dependency == null || dependency == unit) {
+                LOGGER.warn("Ignoring unknown dependency:{} of unit:{}", dependencyId, unit.id());
+            } else {
+                resolved.add(dependency);
+            }
+        }
+        return new ArrayList<>(resolved);
+    }
+
+    // Kahn's algorithm, keeping the registration order between independent
+    // units. When only units in cycles are left, one dependency of a cycle is
+    // dropped, and the sorting goes on.
+    private List<RoboUnit<?>> sortTopologically(List<RoboUnit<?>> units) {
+        List<RoboUnit<?>> ordered = new ArrayList<>(units.size());
+        Set<RoboUnit<?>> placed = Collections.newSetFromMap(new IdentityHashMap<>());
+        while (ordered.size() < units.size()) {
+            boolean progress = false;
+            for (RoboUnit<?> unit : units) {
+                if (!placed.contains(unit) && placed.containsAll(dependencies.get(unit))) {
+                    ordered.add(unit);
+                    placed.add(unit);
+                    progress = true;
+                }
+            }
+            if (!progress) {
+                breakCycle(units.stream().filter(unit -> !placed.contains(unit)).findFirst().orElseThrow(), placed);
+            }
+        }
+        return ordered;
+    }
+
+    // Every unplaced unit has an unplaced dependency, so following them from
+    // any unplaced unit ends up in a cycle.
+    private void breakCycle(RoboUnit<?> from, Set<RoboUnit<?>> placed) {
+        List<RoboUnit<?>> path = new ArrayList<>();
+        RoboUnit<?> unit = from;
+        while (!path.contains(unit)) {
+            path.add(unit);
+            unit = dependencies.get(unit).stream().filter(dependency -> !placed.contains(dependency)).findFirst().orElseThrow();
+        }
+        List<RoboUnit<?>> cycle = new ArrayList<>(path.subList(path.indexOf(unit), path.size()));
+        RoboUnit<?> last = cycle.getLast();
+        dependencies.get(last).remove(unit);
+        cycle.add(unit);
+        LOGGER.error("Cyclic dependencies:{}, ignoring the dependency of unit:{} on unit:{}",
+                cycle.stream().map(RoboUnit::id).collect(Collectors.joining(" -> ")), last.id(), unit.id());
+    }
+}
@@ -0,0 +1,85 @@
+/*
+ * Copyright (c) 2014, 2024, Marcus Hirt, Miroslav Wengner
+ *
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.robo4j.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.FlightRecorder;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * JFR event emitted when an invocation of a periodic task completes after the
+ * release time of the next invocation.
+ *
+ * @author Marcus Hirt (@hirt)
+ * @author Miroslav Wengner (@miragemiko)
+ */
+@Name("robo4j.core.DeadlineMiss")
+@Category({ "Robo4J", "Core", "Scheduling" })
+@Label("Deadline Miss")
+@Description("A periodic task completed after the release time of its next invocation")
+@StackTrace(false)
+public class DeadlineMissEvent extends Event {
+
+	@Label("Task")
+	private String task;
+
+	@Label("Period")
+	@Timespan(Timespan.NANOSECONDS)
+	private long period;
+
+	@Label("Overrun")
+	@Description("How long after the deadline the invocation completed")
+	@Timespan(Timespan.NANOSECONDS)
+	private long overrun;
+
+	@Label("Execution Time")
+	@Timespan(Timespan.NANOSECONDS)
+	private long executionTime;
+
+	@Label("Policy")
+	@Description("The policy applied to the missed invocations")
+	private String policy;
+
+	static {
+		FlightRecorder.register(DeadlineMissEvent.class);
+	}
+
+	public void setTask(String task) {
+		this.task = task;
+	}
+
+	public void setPeriod(long period) {
+		this.period = period;
+	}
+
+	public void setOverrun(long overrun) {
+		this.overrun = overrun;
+	}
+
+	public void setExecutionTime(long executionTime) {
+		this.executionTime = executionTime;
+	}
+
+	public void setPolicy(String policy) {
+		this.policy = policy;
+	}
+}
@@ -0,0 +1,143 @@
+/*
+ * Copyright (c) 2014, 2024, Marcus Hirt, Miroslav Wengner
+ *
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.robo4j.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.FlightRecorder;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Period;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * Periodic JFR event with the timing statistics of a task in a periodic
+ * executive, since the task was scheduled.
+ *
+ * @author Marcus Hirt (@hirt)
+ * @author Miroslav Wengner (@miragemiko)
+ */
+@Name("robo4j.core.PeriodicTask")
+@Category({ "Robo4J", "Core", "Scheduling" })
+@Label("Periodic Task Statistics")
+@Description("Timing statistics of a periodic control task")
+@StackTrace(false)
+@Period("1 s")
+public class PeriodicTaskEvent extends Event {
+
+	@Label("Executive")
+	private String executive;
+
+	@Label("Task")
+	private String task;
+
+	@Label("Period")
+	@Timespan(Timespan.NANOSECONDS)
+	private long period;
+
+	@Label("Invocations")
+	@Description("The number of completed invocations")
+	private long invocations;
+
+	@Label("Deadline Misses")
+	@Description("The number of invocations completing after the release time of the next one")
+	private long deadlineMisses;
+
+	@Label("Skipped")
+	@Description("The number of invocations dropped to get back on schedule")
+	private long skipped;
+
+	@Label("Mean Jitter")
+	@Timespan(Timespan.NANOSECONDS)
+	private long jitterMean;
+
+	@Label("99th Percentile Jitter")
+	@Description("Upper bound, accurate within a factor of two")
+	@Timespan(Timespan.NANOSECONDS)
+	private long jitterP99;
+
+	@Label("Max Jitter")
+	@Timespan(Timespan.NANOSECONDS)
+	private long jitterMax;
+
+	@Label("Mean Execution Time")
+	@Timespan(Timespan.NANOSECONDS)
+	private long executionMean;
+
+	@Label("99th Percentile Execution Time")
+	@Description("Upper bound, accurate within a factor of two")
+	@Timespan(Timespan.NANOSECONDS)
+	private long executionP99;
+
+	@Label("Max Execution Time")
+	@Timespan(Timespan.NANOSECONDS)
+	private long executionMax;
+
+	static {
+		FlightRecorder.register(PeriodicTaskEvent.class);
+	}
+
+	public void setExecutive(String executive) {
+		this.executive = executive;
+	}
+
+	public void setTask(String task) {
+		this.task = task;
+	}
+
+	public void setPeriod(long period) {
+		this.period = period;
+	}
+
+	public void setInvocations(long invocations) {
+		this.invocations = invocations;
+	}
+
+	public void setDeadlineMisses(long deadlineMisses) {
+		this.deadlineMisses = deadlineMisses;
+	}
+
+	public void setSkipped(long skipped) {
+		this.skipped = skipped;
+	}
+
+	public void setJitterMean(long jitterMean) {
+		this.jitterMean = jitterMean;
+	}
+
+	public void setJitterP99(long jitterP99) {
+		this.jitterP99 = jitterP99;
+	}
+
+	public void setJitterMax(long jitterMax) {
+		this.jitterMax = jitterMax;
+	}
+
+	public void setExecutionMean(long executionMean) {
+		this.executionMean = executionMean;
+	}
+
+	public void setExecutionP99(long executionP99) {
+		this.executionP99 = executionP99;
+	}
+
+	public void setExecutionMax(long executionMax) {
+		this.executionMax = executionMax;
+	}
+}
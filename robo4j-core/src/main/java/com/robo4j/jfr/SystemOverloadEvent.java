@@ -0,0 +1,91 @@
+/*
+ * Copyright (c) 2014, 2024, Marcus Hirt, Miroslav Wengner
+ *
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.robo4j.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.FlightRecorder;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * JFR event emitted when a system enters or leaves overload.
+ *
+ * @author Marcus Hirt (@hirt)
+ * @author Miroslav Wengner (@miragemiko)
+ */
+@Name("robo4j.core.SystemOverload")
+@Category({ "Robo4J", "Core", "Delivery" })
+@Label("System Overload")
+@Description("A system entered or left overload")
+@StackTrace(false)
+public class SystemOverloadEvent extends Event {
+
+	@Label("System Id")
+	private String systemId;
+
+	@Label("Overloaded")
+	@Description("True when entering overload, false when leaving it")
+	private boolean overloaded;
+
+	@Label("Pool")
+	@Description("The thread pool which crossed the thresholds")
+	private String pool;
+
+	@Label("Queue Depth")
+	@Description("The number of tasks waiting in the pool")
+	private long queueDepth;
+
+	@Label("Queue Wait")
+	@Timespan(Timespan.NANOSECONDS)
+	private long queueWait;
+
+	@Label("Policy")
+	@Description("The policy applied to new messages while overloaded")
+	private String policy;
+
+	static {
+		FlightRecorder.register(SystemOverloadEvent.class);
+	}
+
+	public void setSystemId(String systemId) {
+		this.systemId = systemId;
+	}
+
+	public void setOverloaded(boolean overloaded) {
+		this.overloaded = overloaded;
+	}
+
+	public void setPool(String pool) {
+		this.pool = pool;
+	}
+
+	public void setQueueDepth(long queueDepth) {
+		this.queueDepth = queueDepth;
+	}
+
+	public void setQueueWait(long queueWait) {
+		this.queueWait = queueWait;
+	}
+
+	public void setPolicy(String policy) {
+		this.policy = policy;
+	}
+}
@@ -0,0 +1,143 @@
+/*
+ * Copyright (c) 2014, 2024, Marcus Hirt, Miroslav Wengner
+ *
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.robo4j.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.FlightRecorder;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Period;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * Periodic JFR event with the message delivery statistics of a unit, since the
+ * unit was added to the system.
+ *
+ * @author Marcus Hirt (@hirt)
+ * @author Miroslav Wengner (@miragemiko)
+ */
+@Name("robo4j.core.UnitDelivery")
+@Category({ "Robo4J", "Core", "Delivery" })
+@Label("Unit Delivery Statistics")
+@Description("Message delivery statistics of a unit")
+@StackTrace(false)
+@Period("1 s")
+public class UnitDeliveryEvent extends Event {
+
+	@Label("System Id")
+	private String systemId;
+
+	@Label("Unit Id")
+	private String unitId;
+
+	@Label("Enqueued")
+	@Description("The number of messages enqueued in the mailbox of the unit")
+	private long enqueued;
+
+	@Label("Delivered")
+	@Description("The number of messages delivered to the unit")
+	private long delivered;
+
+	@Label("Expired")
+	@Description("The number of messages dropped because their deadline had passed")
+	private long expired;
+
+	@Label("Queue Depth")
+	@Description("The number of messages waiting in the mailbox of the unit")
+	private long queueDepth;
+
+	@Label("Mean Queue Wait")
+	@Timespan(Timespan.NANOSECONDS)
+	private long queueWaitMean;
+
+	@Label("99th Percentile Queue Wait")
+	@Description("Upper bound, accurate within a factor of two")
+	@Timespan(Timespan.NANOSECONDS)
+	private long queueWaitP99;
+
+	@Label("Max Queue Wait")
+	@Timespan(Timespan.NANOSECONDS)
+	private long queueWaitMax;
+
+	@Label("Mean Processing Time")
+	@Timespan(Timespan.NANOSECONDS)
+	private long processingMean;
+
+	@Label("99th Percentile Processing Time")
+	@Description("Upper bound, accurate within a factor of two")
+	@Timespan(Timespan.NANOSECONDS)
+	private long processingP99;
+
+	@Label("Max Processing Time")
+	@Timespan(Timespan.NANOSECONDS)
+	private long processingMax;
+
+	static {
+		FlightRecorder.register(UnitDeliveryEvent.class);
+	}
+
+	public void setSystemId(String systemId) {
+		this.systemId = systemId;
+	}
+
+	public void setUnitId(String unitId) {
+		this.unitId = unitId;
+	}
+
+	public void setEnqueued(long enqueued) {
+		this.enqueued = enqueued;
+	}
+
+	public void setDelivered(long delivered) {
+		this.delivered = delivered;
+	}
+
+	public void setExpired(long expired) {
+		this.expired = expired;
+	}
+
+	public void setQueueDepth(long queueDepth) {
+		this.queueDepth = queueDepth;
+	}
+
+	public void setQueueWaitMean(long queueWaitMean) {
+		this.queueWaitMean = queueWaitMean;
+	}
+
+	public void setQueueWaitP99(long queueWaitP99) {
+		this.queueWaitP99 = queueWaitP99;
+	}
+
+	public void setQueueWaitMax(long queueWaitMax) {
+		this.queueWaitMax = queueWaitMax;
+	}
+
+	public void setProcessingMean(long processingMean) {
+		this.processingMean = processingMean;
+	}
+
+	public void setProcessingP99(long processingP99) {
+		this.processingP99 = processingP99;
+	}
+
+	public void setProcessingMax(long processingMax) {
+		this.processingMax = processingMax;
+	}
+}
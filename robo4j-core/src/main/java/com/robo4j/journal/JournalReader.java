@@ -0,0 +1,188 @@
+/*
+ * Copyright (c) 2014, 2024, Marcus Hirt, Miroslav Wengner
+ *
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.robo4j.journal;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Reads the messages recorded by a {@link MessageJournal}, in the order they
+ * were recorded. Messages of types without a codec are skipped.
+ *
+ * @author Marcus Hirt (@hirt)
+ * @author Miroslav Wengner (@miragemiko)
+ */
+public final class JournalReader implements Closeable {
+    private static final Logger LOGGER = LoggerFactory.getLogger(JournalReader.class);
+
+    private final Path file;
+    private final FileChannel fileChannel;
+    private final long fileSize;
+    private final int segmentSize;
+    private final long startEpochMillis;
+    private final Map<String, MessageCodec<?>> codecsByType = new HashMap<>();
+    private final Map<Integer, ChannelInfo> channels = new HashMap<>();
+    private MappedByteBuffer segment;
+    private long segmentStart;
+
+    /**
+     * A recorded message.
+     *
+     * @param unitId         the id of the unit the message was sent to.
+     * @param timestampNanos when the message was sent, in nanoseconds since
+     *                       the journal was created.
+     * @param message        the decoded message.
+     */
+    public record Entry(String unitId, long timestampNanos, Object message) {
+    }
+
+    private record ChannelInfo(String unitId, String typeName, MessageCodec<?> codec) {
+    }
+
+    private JournalReader(Path file, Collection<? extends MessageCodec<?>> codecs) throws IOException {
+        this.file = file;
+        for (MessageCodec<?> codec : codecs) {
+            codecsByType.put(codec.getMessageType().getName(), codec);
+        }
+        this.fileChannel = FileChannel.open(file, StandardOpenOption.READ);
+        this.fileSize = fileChannel.size();
+        if (fileSize < MessageJournal.HEADER_SIZE) {
+            fileChannel.close();
+            throw new IOException("Not a message journal: " + file);
+        }
+        ByteBuffer header = ByteBuffer.allocate(MessageJournal.HEADER_SIZE);
+        fileChannel.read(header, 0);
+        header.flip();
+        if (header.getInt() != MessageJournal.MAGIC) {
+            fileChannel.close();
+            throw new IOException("Not a message journal: " + file);
+        }
+        this.segmentSize = header.getInt();
+        this.startEpochMillis = header.getLong();
+        this.segment = map(0);
+        segment.position(MessageJournal.HEADER_SIZE);
+    }
+
+    /**
+     * Opens a journal for reading.
+     *
+     * @param file   the journal file.
+     * @param codecs the codecs for the recorded message types.
+     * @return the reader.
+     * @throws IOException if the file could not be opened, or is not a
+     *                     journal.
+     */
+    public static JournalReader open(Path file, Collection<? extends MessageCodec<?>> codecs) throws IOException {
+        return new JournalReader(file, codecs);
+    }
+
+    /**
+     * @return when the journal was created, in milliseconds since the epoch.
+     */
+    public long getStartEpochMillis() {
+        return startEpochMillis;
+    }
+
+    /**
+     * Reads the next message.
+     *
+     * @return the next message, or null if there are no more messages.
+     * @throws IOException if the file could not be read.
+     */
+    public Entry next() throws IOException {
+        while (true) {
+            byte type = segment.hasRemaining() ? segment.get() : MessageJournal.RECORD_END;
+            switch (type) {
+                case MessageJournal.RECORD_END -> {
+                    if (segmentStart + segmentSize >= fileSize) {
+                        return null;
+                    }
+                    segmentStart += segmentSize;
+                    segment = map(segmentStart);
+                }
+                case MessageJournal.RECORD_CHANNEL -> readChannel();
+                case MessageJournal.RECORD_MESSAGE -> {
+                    Entry entry = readMessage();
+                    if (entry != null) {
+                        return entry;
+                    }
+                }
+                default -> throw new IOException("Corrupt journal " + file + " at " + (segmentStart + segment.position() - 1));
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        segment = null;
+        fileChannel.close();
+    }
+
+    private void readChannel() {
+        int id = segment.getInt();
+        String unitId = readString();
+        String typeName = readString();
+        MessageCodec<?> codec = codecsByType.get(typeName);
+        if (codec == null) {
+            LOGGER.warn("No codec for type:{}, skipping the messages to unit:{}", typeName, unitId);
+        }
+        channels.put(id, new ChannelInfo(unitId, typeName, codec));
+    }
+
+    private Entry readMessage() throws IOException {
+        int id = segment.getInt();
+        long timestamp = segment.getLong();
+        int length = segment.getInt();
+        ChannelInfo channel = channels.get(id);
+        if (channel == null) {
+            throw new IOException("Corrupt journal " + file + ", undefined channel " + id);
+        }
+        ByteBuffer payload = segment.slice(segment.position(), length);
+        segment.position(segment.position() + length);
+        if (channel.codec == null) {
+            return null;
+        }
+        return new Entry(channel.unitId, timestamp, channel.codec.decode(payload));
+    }
+
+    private String readString() {
+        byte[] bytes = new byte[Short.toUnsignedInt(segment.getShort())];
+        segment.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private MappedByteBuffer map(long position) throws IOException {
+        return fileChannel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(segmentSize, fileSize - position));
+    }
+
+    @Override
+    public String toString() {
+        return "JournalReader file: " + file;
+    }
+}
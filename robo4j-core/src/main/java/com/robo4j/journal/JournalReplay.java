@@ -0,0 +1,99 @@
+/*
+ * Copyright (c) 2014, 2024, Marcus Hirt, Miroslav Wengner
+ *
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.robo4j.journal;
+
+import com.robo4j.RoboContext;
+import com.robo4j.RoboReference;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Re-injects the messages recorded in a {@link MessageJournal} into a
+ * {@link RoboContext}, for reproducing and benchmarking the processing of
+ * recorded traffic off the robot.
+ *
+ * @author Marcus Hirt (@hirt)
+ * @author Miroslav Wengner (@miragemiko)
+ */
+public final class JournalReplay {
+    private static final Logger LOGGER = LoggerFactory.getLogger(JournalReplay.class);
+    /**
+     * Replays the messages as fast as they can be sent.
+     */
+    public static final double MAX_SPEED = Double.POSITIVE_INFINITY;
+    /**
+     * Replays the messages with the timing they were recorded with.
+     */
+    public static final double REAL_TIME = 1.0;
+
+    private JournalReplay() {
+        // Not to be instantiated
+    }
+
+    /**
+     * Sends the remaining messages of the journal to the units of the context
+     * with the same ids as the recorded units, on the calling thread. Messages
+     * to units missing from the context are skipped.
+     *
+     * @param context the context to send the messages to.
+     * @param reader  the journal to replay.
+     * @param speed   how much faster than recorded to replay the messages, for
+     *                example {@link #REAL_TIME}, 10 or {@link #MAX_SPEED}.
+     * @return the number of messages sent.
+     * @throws IOException if the journal could not be read.
+     */
+    @SuppressWarnings("unchecked")
+    public static long replay(RoboContext context, JournalReader reader, double speed) throws IOException {
+        if (!(speed > 0)) {
+            throw new IllegalArgumentException("The speed must be positive, was " + speed);
+        }
+        Set<String> missingUnits = new HashSet<>();
+        long sent = 0;
+        long replayStart = System.nanoTime();
+        long firstTimestamp = -1;
+        for (JournalReader.Entry entry = reader.next(); entry != null; entry = reader.next()) {
+            if (firstTimestamp < 0) {
+                firstTimestamp = entry.timestampNanos();
+            }
+            if (speed != MAX_SPEED) {
+                waitUntil(replayStart + (long) ((entry.timestampNanos() - firstTimestamp) / speed));
+            }
+            RoboReference<Object> target = context.getReference(entry.unitId());
+            if (target == null) {
+                if (missingUnits.add(entry.unitId())) {
+                    LOGGER.warn("No unit:{} in context:{}, skipping its messages", entry.unitId(), context.getId());
+                }
+                continue;
+            }
+            target.sendMessage(entry.message());
+            sent++;
+        }
+        return sent;
+    }
+
+    private static void waitUntil(long deadlineNanos) {
+        long remaining;
+        while ((remaining = deadlineNanos - System.nanoTime()) > 0) {
+            LockSupport.parkNanos(remaining);
+        }
+    }
+}
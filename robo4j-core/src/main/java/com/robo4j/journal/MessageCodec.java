@@ -0,0 +1,54 @@
+/*
+ * Copyright (c) 2014, 2024, Marcus Hirt, Miroslav Wengner
+ *
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.robo4j.journal;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Encodes and decodes the messages of one type to and from the binary form
+ * stored in a {@link MessageJournal}.
+ *
+ * @param <T> the message type.
+ * @author Marcus Hirt (@hirt)
+ * @author Miroslav Wengner (@miragemiko)
+ */
+public interface MessageCodec<T> {
+    /**
+     * @return the type of the messages handled by the codec. Its name
+     *         identifies the codec in the journal.
+     */
+    Class<T> getMessageType();
+
+    /**
+     * Writes the message at the position of the buffer. Throws a
+     * {@link java.nio.BufferOverflowException} if the buffer is too small, in
+     * which case the journal retries with a larger buffer.
+     *
+     * @param message the message to encode.
+     * @param buffer  the buffer to write to.
+     */
+    void encode(T message, ByteBuffer buffer);
+
+    /**
+     * Reads a message written by {@link #encode(Object, ByteBuffer)}. The
+     * buffer holds exactly the bytes of the message.
+     *
+     * @param buffer the buffer to read from.
+     * @return the decoded message.
+     */
+    T decode(ByteBuffer buffer);
+}
@@ -0,0 +1,89 @@
+/*
+ * Copyright (c) 2014, 2024, Marcus Hirt, Miroslav Wengner
+ *
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.robo4j.journal;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+/**
+ * Codecs for the common message types.
+ *
+ * @author Marcus Hirt (@hirt)
+ * @author Miroslav Wengner (@miragemiko)
+ */
+public final class MessageCodecs {
+    public static final MessageCodec<String> STRING = create(String.class,
+            (message, buffer) -> buffer.put(message.getBytes(StandardCharsets.UTF_8)),
+            buffer -> StandardCharsets.UTF_8.decode(buffer).toString());
+    public static final MessageCodec<Integer> INTEGER = create(Integer.class, (message, buffer) -> buffer.putInt(message),
+            ByteBuffer::getInt);
+    public static final MessageCodec<Long> LONG = create(Long.class, (message, buffer) -> buffer.putLong(message),
+            ByteBuffer::getLong);
+    public static final MessageCodec<Float> FLOAT = create(Float.class, (message, buffer) -> buffer.putFloat(message),
+            ByteBuffer::getFloat);
+    public static final MessageCodec<Double> DOUBLE = create(Double.class, (message, buffer) -> buffer.putDouble(message),
+            ByteBuffer::getDouble);
+    public static final MessageCodec<Boolean> BOOLEAN = create(Boolean.class,
+            (message, buffer) -> buffer.put((byte) (message ? 1 : 0)), buffer -> buffer.get() != 0);
+
+    private MessageCodecs() {
+        // Not to be instantiated
+    }
+
+    /**
+     * @return the codecs for strings and the boxed primitives.
+     */
+    public static List<MessageCodec<?>> defaults() {
+        return List.of(STRING, INTEGER, LONG, FLOAT, DOUBLE, BOOLEAN);
+    }
+
+    /**
+     * Creates a codec from an encoding and a decoding function.
+     *
+     * @param messageType the message type.
+     * @param encoder     writes the message to the buffer.
+     * @param decoder     reads the message from the buffer.
+     * @param <T>         the message type.
+     * @return the codec.
+     */
+    public static <T> MessageCodec<T> create(Class<T> messageType, BiConsumer<T, ByteBuffer> encoder, Function<ByteBuffer, T> decoder) {
+        return new MessageCodec<>() {
+            @Override
+            public Class<T> getMessageType() {
+                return messageType;
+            }
+
+            @Override
+            public void encode(T message, ByteBuffer buffer) {
+                encoder.accept(message, buffer);
+            }
+
+            @Override
+            public T decode(ByteBuffer buffer) {
+                return decoder.apply(buffer);
+            }
+
+            @Override
+            public String toString() {
+                return "MessageCodec type: " + messageType.getName();
+            }
+        };
+    }
+}
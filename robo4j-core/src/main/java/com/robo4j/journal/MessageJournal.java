@@ -0,0 +1,339 @@
+/*
+ * Copyright (c) 2014, 2024, Marcus Hirt, Miroslav Wengner
+ *
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.robo4j.journal;
+
+import com.robo4j.RoboContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Append-only, memory-mapped recording of the messages sent to units, for
+ * replaying them later with {@link JournalReplay}. Each message is stored with
+ * the time it was sent, encoded by the {@link MessageCodec} of its channel.
+ * <p>
+ * Messages are encoded on the sending thread into a thread local buffer, and
+ * then copied into the mapped file under a short lock, so recording is cheap
+ * enough to leave on. The file is mapped in segments, and grows one segment
+ * at a time. A record never spans two segments, so the largest message is a
+ * little smaller than the segment size.
+ * <p>
+ * File format, all numbers big endian:
+ * <ul>
+ * <li>Header: magic, segment size (int), start time in epoch millis
+ * (long).</li>
+ * <li>Channel record: type 1, channel (int), unit id and message type name
+ * (each a short length followed by UTF-8 bytes).</li>
+ * <li>Message record: type 2, channel (int), nanoseconds since the start
+ * (long), length (int), encoded message.</li>
+ * <li>Type 0 ends the records of a segment.</li>
+ * </ul>
+ *
+ * @author Marcus Hirt (@hirt)
+ * @author Miroslav Wengner (@miragemiko)
+ */
+public final class MessageJournal implements Closeable {
+    private static final Logger LOGGER = LoggerFactory.getLogger(MessageJournal.class);
+    /**
+     * The default size of the mapped segments, 64 MiB.
+     */
+    public static final int DEFAULT_SEGMENT_SIZE = 64 << 20;
+    static final int MAGIC = 0x524A4A31;
+    static final int HEADER_SIZE = 16;
+    static final byte RECORD_END = 0;
+    static final byte RECORD_CHANNEL = 1;
+    static final byte RECORD_MESSAGE = 2;
+    static final int MESSAGE_HEADER_SIZE = 1 + 4 + 8 + 4;
+    private static final int INITIAL_BUFFER_SIZE = 256;
+    // Larger buffers are only used for the message at hand, so that a few
+    // large messages do not pin their buffers in every recording thread
+    private static final int MAX_RETAINED_BUFFER_SIZE = 1024 * 1024;
+
+    private final Path file;
+    private final FileChannel fileChannel;
+    private final int segmentSize;
+    private final long startNanos;
+    private final Map<String, Channel<?>> channels = new HashMap<>();
+    private final ThreadLocal<ByteBuffer> encodeBuffer = ThreadLocal.withInitial(() -> ByteBuffer.allocate(INITIAL_BUFFER_SIZE));
+    private final LongAdder droppedCount = new LongAdder();
+    // Guarded by this
+    private MappedByteBuffer segment;
+    private long segmentStart;
+    private long recordCount;
+    private boolean closed;
+    // Set when the file could not be grown, no more messages are recorded
+    private boolean full;
+
+    private MessageJournal(Path file, int segmentSize) throws IOException {
+        if (segmentSize < HEADER_SIZE + MESSAGE_HEADER_SIZE + 1) {
+            throw new IllegalArgumentException("Segment size too small: " + segmentSize);
+        }
+        this.file = file;
+        this.segmentSize = segmentSize;
+        this.fileChannel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        this.startNanos = System.nanoTime();
+        this.segment = fileChannel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+        segment.putInt(MAGIC);
+        segment.putInt(segmentSize);
+        segment.putLong(System.currentTimeMillis());
+    }
+
+    /**
+     * Creates a new journal with the default segment size. An existing file is
+     * overwritten.
+     *
+     * @param file the journal file.
+     * @return the journal.
+     * @throws IOException if the file could not be created.
+     */
+    public static MessageJournal create(Path file) throws IOException {
+        return new MessageJournal(file, DEFAULT_SEGMENT_SIZE);
+    }
+
+    /**
+     * Creates a new journal. An existing file is overwritten.
+     *
+     * @param file        the journal file.
+     * @param segmentSize the size of the mapped segments, in bytes.
+     * @return the journal.
+     * @throws IOException if the file could not be created.
+     */
+    public static MessageJournal create(Path file, int segmentSize) throws IOException {
+        return new MessageJournal(file, segmentSize);
+    }
+
+    /**
+     * Opens the channel for recording the messages sent to a unit. Opening the
+     * channel of a unit again returns the same channel.
+     *
+     * @param unitId the id of the unit.
+     * @param codec  the codec for the messages of the unit.
+     * @param <T>    the message type.
+     * @return the channel.
+     */
+    @SuppressWarnings("unchecked")
+    public synchronized <T> Channel<T> openChannel(String unitId, MessageCodec<T> codec) {
+        if (closed) {
+            throw new IllegalStateException("The journal " + file + " is closed");
+        }
+        Channel<?> existing = channels.get(unitId);
+        if (existing != null) {
+            if (existing.codec != codec) {
+                throw new IllegalArgumentException("Channel for unit " + unitId + " already opened with " + existing.codec);
+            }
+            return (Channel<T>) existing;
+        }
+        var channel = new Channel<>(channels.size(), unitId, codec);
+        byte[] id = unitId.getBytes(StandardCharsets.UTF_8);
+        byte[] typeName = codec.getMessageType().getName().getBytes(StandardCharsets.UTF_8);
+        if (ensureRoom(1 + 4 + 2 + id.length + 2 + typeName.length)) {
+            segment.put(RECORD_CHANNEL);
+            segment.putInt(channel.id);
+            segment.putShort((short) id.length);
+            segment.put(id);
+            segment.putShort((short) typeName.length);
+            segment.put(typeName);
+        }
+        channels.put(unitId, channel);
+        return channel;
+    }
+
+    /**
+     * Starts recording all the messages sent to a local unit of the context.
+     *
+     * @param context the context.
+     * @param unitId  the id of the unit.
+     * @param codec   the codec for the messages of the unit.
+     * @param <T>     the message type.
+     */
+    public <T> void record(RoboContext context, String unitId, MessageCodec<T> codec) {
+        Channel<T> channel = openChannel(unitId, codec);
+        context.<T>setMessageTap(unitId, channel::append);
+    }
+
+    /**
+     * Stops recording the messages sent to a local unit of the context.
+     *
+     * @param context the context.
+     * @param unitId  the id of the unit.
+     */
+    public void stopRecording(RoboContext context, String unitId) {
+        context.setMessageTap(unitId, null);
+    }
+
+    /**
+     * @return the number of messages recorded.
+     */
+    public synchronized long getRecordCount() {
+        return recordCount;
+    }
+
+    /**
+     * @return the number of messages which could not be recorded, because
+     * they could not be encoded, were too large, or arrived after the journal
+     * was closed.
+     */
+    public long getDroppedCount() {
+        return droppedCount.sum();
+    }
+
+    /**
+     * @return the journal file.
+     */
+    public Path getFile() {
+        return file;
+    }
+
+    /**
+     * Flushes the recorded messages to the file, and truncates the file to
+     * the recorded size. Remember to stop the recording first.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        long size = segmentStart + segment.position();
+        segment.force();
+        segment = null;
+        try {
+            fileChannel.truncate(size);
+        } finally {
+            fileChannel.close();
+        }
+    }
+
+    private <T> void append(Channel<T> channel, T message) {
+        long timestamp = System.nanoTime() - startNanos;
+        ByteBuffer encoded = encode(channel, message);
+        if (encoded == null) {
+            droppedCount.increment();
+            return;
+        }
+        synchronized (this) {
+            if (closed || full || !ensureRoom(MESSAGE_HEADER_SIZE + encoded.remaining())) {
+                droppedCount.increment();
+                return;
+            }
+            segment.put(RECORD_MESSAGE);
+            segment.putInt(channel.id);
+            segment.putLong(timestamp);
+            segment.putInt(encoded.remaining());
+            segment.put(encoded);
+            recordCount++;
+        }
+    }
+
+    private <T> ByteBuffer encode(Channel<T> channel, T message) {
+        int maxSize = segmentSize - HEADER_SIZE - MESSAGE_HEADER_SIZE;
+        ByteBuffer buffer = encodeBuffer.get();
+        while (true) {
+            buffer.clear();
+            try {
+                channel.codec.encode(message, buffer);
+                return buffer.flip();
+            } catch (BufferOverflowException e) {
+                if (buffer.capacity() >= maxSize) {
+                    LOGGER.error("Message to unit:{} larger than the journal segments, not recorded", channel.unitId);
+                    return null;
+                }
+                buffer = ByteBuffer.allocate(Math.min(buffer.capacity() * 2, maxSize));
+                if (buffer.capacity() <= MAX_RETAINED_BUFFER_SIZE) {
+                    encodeBuffer.set(buffer);
+                }
+            } catch (RuntimeException e) {
+                LOGGER.error("Could not encode message to unit:{}, not recorded", channel.unitId, e);
+                return null;
+            }
+        }
+    }
+
+    // Maps the next segment if the record does not fit into the current one
+    private boolean ensureRoom(int recordSize) {
+        if (segment.remaining() >= recordSize) {
+            return true;
+        }
+        if (recordSize > segmentSize) {
+            return false;
+        }
+        if (segment.hasRemaining()) {
+            segment.put(RECORD_END);
+        }
+        try {
+            segmentStart += segmentSize;
+            segment = fileChannel.map(FileChannel.MapMode.READ_WRITE, segmentStart, segmentSize);
+            return true;
+        } catch (IOException e) {
+            LOGGER.error("Could not grow the journal:{}, no more messages are recorded", file, e);
+            segmentStart -= segmentSize;
+            full = true;
+            return false;
+        }
+    }
+
+    /**
+     * The recording of the messages sent to one unit.
+     *
+     * @param <T> the message type.
+     */
+    public final class Channel<T> {
+        private final int id;
+        private final String unitId;
+        private final MessageCodec<T> codec;
+
+        private Channel(int id, String unitId, MessageCodec<T> codec) {
+            this.id = id;
+            this.unitId = unitId;
+            this.codec = codec;
+        }
+
+        /**
+         * Records a message, timestamped now. Safe to call from any thread.
+         *
+         * @param message the message to record.
+         */
+        public void append(T message) {
+            MessageJournal.this.append(this, message);
+        }
+
+        /**
+         * @return the id of the unit the messages are sent to.
+         */
+        public String getUnitId() {
+            return unitId;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "MessageJournal file: " + file + " channels: " + channels.size();
+    }
+}
@@ -0,0 +1,94 @@
+/*
+ * Copyright (c) 2014, 2024, Marcus Hirt, Miroslav Wengner
+ *
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.robo4j.net;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Blocking {@link OutputStream} view of a non-blocking {@link SocketChannel}.
+ * Used by the {@link ReplyWriter} of connections that are read by
+ * a {@link MessageReactor}. Whenever the socket send buffer is full, the writer
+ * waits for the socket to become writable on a selector of its own. A client
+ * not reading anything for the write timeout has its connection closed.
+ *
+ * @author Marcus Hirt (@hirt)
+ * @author Miroslav Wengner (@miragemiko)
+ */
+final class ChannelOutputStream extends OutputStream {
+    private final SocketChannel channel;
+    private final long writeTimeoutMillis;
+
+    /**
+     * @param channel            the non-blocking channel to write to
+     * @param writeTimeoutMillis how long to wait for the client to read
+     *                           anything, before closing the connection
+     */
+    ChannelOutputStream(SocketChannel channel, long writeTimeoutMillis) {
+        this.channel = channel;
+        this.writeTimeoutMillis = writeTimeoutMillis;
+    }
+
+    @Override
+    public synchronized void write(int b) throws IOException {
+        write(new byte[]{(byte) b}, 0, 1);
+    }
+
+    @Override
+    public synchronized void write(byte[] bytes, int offset, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(bytes, offset, length);
+        channel.write(buffer);
+        if (buffer.hasRemaining()) {
+            awaitWritten(buffer);
+        }
+    }
+
+    // The selector only lives while the send buffer is full, so that there
+    // is nothing to clean up when the reactor closes the connection
+    private void awaitWritten(ByteBuffer buffer) throws IOException {
+        try (Selector selector = Selector.open()) {
+            channel.register(selector, SelectionKey.OP_WRITE);
+            long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(writeTimeoutMillis);
+            while (buffer.hasRemaining()) {
+                long remainingNanos = deadline - System.nanoTime();
+                if (remainingNanos <= 0) {
+                    channel.close();
+                    throw new IOException("Client did not read for " + writeTimeoutMillis + " ms, closed the connection");
+                }
+                if (Thread.currentThread().isInterrupted()) {
+                    throw new InterruptedIOException("Interrupted while waiting for the client to read");
+                }
+                selector.select(Math.max(1, TimeUnit.NANOSECONDS.toMillis(remainingNanos)));
+                selector.selectedKeys().clear();
+                if (channel.write(buffer) > 0) {
+                    deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(writeTimeoutMillis);
+                }
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
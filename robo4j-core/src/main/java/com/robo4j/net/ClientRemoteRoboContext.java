@@ -22,6 +22,7 @@ import com.robo4j.RoboContext;
 import com.robo4j.RoboReference;
 import com.robo4j.configuration.Configuration;
 import com.robo4j.configuration.ConfigurationFactory;
+import com.robo4j.scheduler.PeriodicExecutive;
 import com.robo4j.scheduler.Scheduler;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -31,9 +32,13 @@ import java.net.InetAddress;
 import java.net.URI;
 import java.util.Collection;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.Future;
 
 /**
+ * Client side view of a discovered remote {@link RoboContext}. All references
+ * obtained from the context share one connection to the remote context.
+ *
  * @author Marcus Hirt (@hirt)
  * @author Miroslav Wengner (@miragemiko)
  */
@@ -93,6 +98,7 @@ public class ClientRemoteRoboContext implements RoboContext {
 
     private final RoboContextDescriptorEntry descriptorEntry;
     private final MessageClient client;
+    private final Map<String, RoboReference<?>> references = new ConcurrentHashMap<>();
 
     ClientRemoteRoboContext(RoboContextDescriptorEntry descriptorEntry) {
         this.descriptorEntry = descriptorEntry;
@@ -104,8 +110,13 @@ public class ClientRemoteRoboContext implements RoboContext {
         return null;
     }
 
+    /**
+     * Closes the connection shared by the references of this context. The
+     * references connect again when next used.
+     */
     @Override
     public void shutdown() {
+        client.shutdown();
     }
 
     @Override
@@ -116,9 +127,10 @@ public class ClientRemoteRoboContext implements RoboContext {
     public void start() {
     }
 
+    @SuppressWarnings("unchecked")
     @Override
     public <T> RoboReference<T> getReference(String id) {
-        return new ClientRemoteRoboReference<>(id, client);
+        return (RoboReference<T>) references.computeIfAbsent(id, referenceId -> new ClientRemoteRoboReference<>(referenceId, client));
     }
 
     @Override
@@ -132,11 +144,20 @@ public class ClientRemoteRoboContext implements RoboContext {
         throw new UnsupportedOperationException("Accessing the Scheduler remotely is not supported. Use the local scheduler.");
     }
 
+    @Override
+    public PeriodicExecutive getPeriodicExecutive() {
+        throw new UnsupportedOperationException("Accessing the PeriodicExecutive remotely is not supported. Use the local one.");
+    }
+
     @Override
     public String getId() {
         return descriptorEntry.descriptor.getId();
     }
 
+    RoboContextDescriptorEntry getDescriptorEntry() {
+        return descriptorEntry;
+    }
+
     public InetAddress getAddress() {
         return descriptorEntry.address;
     }
@@ -58,7 +58,13 @@ class LookupServiceImpl implements LookupService {
     private final static int MAX_PACKET_SIZE = 1500;
     private final String address;
     private final int port;
+    private final float missedHeartbeatsBeforeRemoval;
     private final Map<String, RoboContextDescriptorEntry> entries = new ConcurrentHashMap<>();
+    /*
+     * One long lived client context, and thereby connection, per discovered
+     * remote context
+     */
+    private final Map<String, ClientRemoteRoboContext> remoteContexts = new ConcurrentHashMap<>();
     private MulticastSocket socket;
     private Updater currentUpdater;
     private final LocalLookupServiceImpl localContexts;
@@ -99,6 +105,7 @@ class LookupServiceImpl implements LookupService {
                 return;
             }
             String id = parseId(packet.getData());
+            removeExpiredEntries();
             if (entries.containsKey(id)) {
                 updateEntry(entries.get(id));
             } else {
@@ -120,6 +127,7 @@ class LookupServiceImpl implements LookupService {
                 entry.address = ((InetSocketAddress) address).getAddress();
             }
             entry.descriptor = HearbeatMessageCodec.decode(packet.getData());
+            entry.lastAccess = System.currentTimeMillis();
             return entry;
         }
 
@@ -143,12 +151,13 @@ class LookupServiceImpl implements LookupService {
     public LookupServiceImpl(String address, int port, float missedHeartbeatsBeforeRemoval, LocalLookupServiceImpl localContexts) throws SocketException, UnknownHostException {
         this.address = address;
         this.port = port;
+        this.missedHeartbeatsBeforeRemoval = missedHeartbeatsBeforeRemoval;
         this.localContexts = localContexts;
-
     }
 
     @Override
     public synchronized Map<String, RoboContextDescriptor> getDiscoveredContexts() {
+        removeExpiredEntries();
         Map<String, RoboContextDescriptor> map = new HashMap<>(entries.size() + localContexts.getDiscoveredContexts().size());
         map.putAll(localContexts.getDiscoveredContexts());
         for (Entry<String, RoboContextDescriptorEntry> entry : entries.entrySet()) {
@@ -160,14 +169,63 @@ class LookupServiceImpl implements LookupService {
     @Override
     public RoboContext getContext(String id) {
         RoboContextDescriptorEntry entry = entries.get(id);
+        if (entry != null && isExpired(entry, System.currentTimeMillis())) {
+            removeEntry(entry);
+            entry = null;
+        }
         if (entry != null) {
-            return new ClientRemoteRoboContext(entry);
+            return getRemoteContext(entry);
         } else {
             LocalRoboContextDescriptor localEntry = localContexts.getLocalDescriptor(id);
             return localEntry != null ? localEntry.getContext() : null;
         }
     }
 
+    private RoboContext getRemoteContext(RoboContextDescriptorEntry entry) {
+        String id = entry.descriptor.getId();
+        ClientRemoteRoboContext context = remoteContexts.get(id);
+        if (context != null && context.getDescriptorEntry() == entry) {
+            return context;
+        }
+        // The context was rediscovered after having expired
+        return remoteContexts.compute(id, (key, existing) -> {
+            if (existing != null && existing.getDescriptorEntry() == entry) {
+                return existing;
+            }
+            if (existing != null) {
+                existing.shutdown();
+            }
+            return new ClientRemoteRoboContext(entry);
+        });
+    }
+
+    private boolean isExpired(RoboContextDescriptorEntry entry, long now) {
+        return now - entry.lastAccess > entry.descriptor.getHeartBeatInterval() * missedHeartbeatsBeforeRemoval;
+    }
+
+    private void removeExpiredEntries() {
+        long now = System.currentTimeMillis();
+        for (RoboContextDescriptorEntry entry : entries.values()) {
+            if (isExpired(entry, now)) {
+                removeEntry(entry);
+            }
+        }
+    }
+
+    private void removeEntry(RoboContextDescriptorEntry entry) {
+        String id = entry.descriptor.getId();
+        synchronized (this) {
+            if (!entries.remove(id, entry)) {
+                return;
+            }
+        }
+        LOGGER.info("Remote context {} missed its heartbeats and was removed", id);
+        ClientRemoteRoboContext context = remoteContexts.get(id);
+        if (context != null && context.getDescriptorEntry() == entry && remoteContexts.remove(id, context)) {
+            context.shutdown();
+        }
+    }
+
     @Override
     public synchronized void start() throws IOException {
         stop();
@@ -186,6 +244,8 @@ class LookupServiceImpl implements LookupService {
             currentUpdater.stop();
             currentUpdater = null;
         }
+        remoteContexts.values().forEach(ClientRemoteRoboContext::shutdown);
+        remoteContexts.clear();
     }
 
     @Override
@@ -18,25 +18,41 @@ package com.robo4j.net;
 
 import com.robo4j.RoboContext;
 import com.robo4j.configuration.Configuration;
+import com.robo4j.journal.MessageCodec;
 import com.robo4j.scheduler.RoboThreadFactory;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.BufferedInputStream;
 import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
 import java.net.Socket;
 import java.net.SocketTimeoutException;
 import java.net.URI;
 import java.net.UnknownHostException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Message client. Normally used by RemoteRoboContext to communicate with a
  * discovered MessageServer.
+ * <p>
+ * Messages are encoded on the sending thread and queued. A writer thread per
+ * connection coalesces them into batched socket writes. The client may connect
+ * again after a {@link #shutdown()}.
  *
  * @author Marcus Hirt (@hirt)
  * @author Miroslav Wengner (@miragemiko)
@@ -48,20 +64,176 @@ public class MessageClient {
     public static final String KEY_RETRIES = "retries";
     public static final int DEFAULT_SO_TIMEOUT_MILLS = 2000000;
     public static final int DEFAULT_FAILED_CONNECTION_MAX = 3;
+    /**
+     * Flush the connection once this many messages are pending.
+     */
+    public static final String KEY_BATCH_MESSAGES = "batchMessages";
+    /**
+     * Flush the connection once this many bytes are pending. Also the size of
+     * the write buffer.
+     */
+    public static final String KEY_BATCH_BYTES = "batchBytes";
+    /**
+     * How long to wait for more messages before flushing pending ones. With the
+     * default of 0, pending messages are flushed as soon as no more are queued.
+     */
+    public static final String KEY_LINGER_MILLIS = "lingerMillis";
+    /**
+     * The maximum number of messages queued for writing. Senders block when
+     * the queue is full.
+     */
+    public static final String KEY_QUEUE_CAPACITY = "queueCapacity";
     public static final boolean DEFAULT_KEEP_ALIVE = true;
+    public static final int DEFAULT_BATCH_MESSAGES = 64;
+    public static final int DEFAULT_BATCH_BYTES = 64 * 1024;
+    public static final int DEFAULT_LINGER_MILLIS = 0;
+    public static final int DEFAULT_QUEUE_CAPACITY = 4096;
+    private static final long SHUTDOWN_FLUSH_TIMEOUT_MILLIS = 1000;
+    private static final int INITIAL_CODEC_BUFFER_SIZE = 1024;
+    /*
+     * How many objects are written to an object stream between resets
+     */
+    private static final int OBJECTS_PER_RESET = 128;
     private final String sourceUUID;
     private final Configuration configuration;
     private final URI messageServerURI;
     private final int maxFailCount;
-    private Socket socket;
+    private volatile Socket socket;
+    private volatile OutboundWriter outboundWriter;
+    private final ByteArrayOutputStream frameBuffer = new ByteArrayOutputStream();
+    private final DataOutputStream frameOutputStream = new DataOutputStream(frameBuffer);
+    private final MessageCodecRegistry codecRegistry = MessageCodecRegistry.getDefault();
+    /*
+     * Ids of the codec types already defined on the current connection
+     */
+    private final Map<Class<?>, Integer> codecTypeIds = new HashMap<>();
+    /*
+     * The object stream of the current connection, null until the next object
+     * starts a new one
+     */
     private ObjectOutputStream objectOutputStream;
+    /*
+     * The number of objects written since the object stream was last reset
+     */
+    private int objectsSinceReset;
+    private ByteBuffer codecBuffer = ByteBuffer.allocate(INITIAL_CODEC_BUFFER_SIZE);
     private int failCount;
     private RemoteReferenceListener remoteReferenceListener;
 
     /*
-     * Executor for incoming messages from the server
+     * Executor for incoming messages from the server, one per connection
      */
-    private final ExecutorService remoteReferenceCallExecutor;
+    private ExecutorService remoteReferenceCallExecutor;
+
+    /*
+     * Executor writing the outgoing messages, one per connection
+     */
+    private ExecutorService outboundWriterExecutor;
+
+    /*
+     * Writes the queued frames of one connection, coalescing them into as few
+     * socket writes as the batching configuration allows.
+     */
+    private static class OutboundWriter implements Runnable {
+        private static final byte[] STOP = new byte[0];
+        private final Socket socket;
+        private final DataOutputStream outputStream;
+        private final BlockingQueue<byte[]> queue;
+        private final int batchMessages;
+        private final int batchBytes;
+        private final long lingerNanos;
+        private volatile IOException failure;
+
+        OutboundWriter(Socket socket, DataOutputStream outputStream, int queueCapacity, int batchMessages, int batchBytes, long lingerNanos) {
+            this.socket = socket;
+            this.outputStream = outputStream;
+            this.queue = new ArrayBlockingQueue<>(queueCapacity);
+            this.batchMessages = batchMessages;
+            this.batchBytes = batchBytes;
+            this.lingerNanos = lingerNanos;
+        }
+
+        boolean hasFailed() {
+            return failure != null;
+        }
+
+        void enqueue(byte[] frame) throws IOException {
+            IOException writeFailure = failure;
+            if (writeFailure != null) {
+                throw writeFailure;
+            }
+            try {
+                queue.put(frame);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while queueing message");
+            }
+        }
+
+        @Override
+        public void run() {
+            int pendingMessages = 0;
+            int pendingBytes = 0;
+            try {
+                while (true) {
+                    byte[] frame = queue.poll();
+                    if (frame == null && pendingMessages > 0) {
+                        if (lingerNanos > 0) {
+                            frame = queue.poll(lingerNanos, TimeUnit.NANOSECONDS);
+                        }
+                        if (frame == null) {
+                            outputStream.flush();
+                            pendingMessages = 0;
+                            pendingBytes = 0;
+                        }
+                    }
+                    if (frame == null) {
+                        frame = queue.take();
+                    }
+                    if (frame == STOP) {
+                        outputStream.flush();
+                        return;
+                    }
+                    outputStream.writeInt(frame.length);
+                    outputStream.write(frame);
+                    pendingMessages++;
+                    pendingBytes += frame.length;
+                    if (pendingMessages >= batchMessages || pendingBytes >= batchBytes) {
+                        outputStream.flush();
+                        pendingMessages = 0;
+                        pendingBytes = 0;
+                    }
+                }
+            } catch (IOException e) {
+                LOGGER.error("Failed to write messages to {}, dropping {} queued messages", socket.getRemoteSocketAddress(),
+                        queue.size(), e);
+                failure = e;
+                queue.clear();
+                closeSocket();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        /**
+         * Stops the writer once the frames queued so far are written.
+         */
+        void stop() {
+            if (!queue.offer(STOP)) {
+                LOGGER.warn("Outbound queue to {} still full on shutdown, dropping queued messages", socket.getRemoteSocketAddress());
+                queue.clear();
+                queue.offer(STOP);
+            }
+        }
+
+        private void closeSocket() {
+            try {
+                socket.close();
+            } catch (IOException e) {
+                LOGGER.debug("Failed to close socket", e);
+            }
+        }
+    }
 
     /*
      * Listening to incoming messages from the server, initiated by serialized
@@ -78,7 +250,7 @@ public class MessageClient {
         @Override
         public void run() {
             ObjectInputStream ois = getStream();
-            while (!quit) {
+            while (!quit && ois != null) {
                 try {
                     String uuid = ois.readUTF();
                     String id = ois.readUTF();
@@ -92,8 +264,13 @@ public class MessageClient {
                 } catch (SocketTimeoutException e) {
                     // This will likely happen.
                     LOGGER.error(e.getMessage());
+                } catch (EOFException e) {
+                    LOGGER.debug("Connection closed by {}", socket.getRemoteSocketAddress());
+                    quit = true;
                 } catch (Exception e) {
                     LOGGER.debug("Message delivery failed for recipient", e);
+                    // No more messages will arrive once the connection is gone
+                    quit = socket.isClosed();
                 }
             }
         }
@@ -118,27 +295,71 @@ public class MessageClient {
         this.sourceUUID = sourceUUID;
         this.configuration = configuration;
         this.maxFailCount = configuration.getInteger(KEY_RETRIES, DEFAULT_FAILED_CONNECTION_MAX);
-        this.remoteReferenceCallExecutor = Executors.newSingleThreadExecutor(
-                new RoboThreadFactory.Builder("Message-Client")
-                        .addThreadPrefix("RemoteReferenceCallExecutor for " + messageServerURI).build());
     }
 
-    public void connect() throws UnknownHostException, IOException {
-        if (socket == null || socket.isClosed() || !socket.isConnected()) {
-            socket = new Socket(messageServerURI.getHost(), messageServerURI.getPort());
-            socket.setKeepAlive(configuration.getBoolean(KEY_KEEP_ALIVE, DEFAULT_KEEP_ALIVE));
-            socket.setSoTimeout(configuration.getInteger(KEY_SO_TIMEOUT_MILLS, DEFAULT_SO_TIMEOUT_MILLS));
-        }
-        objectOutputStream = new ObjectOutputStream(new BufferedOutputStream(socket.getOutputStream()));
-        objectOutputStream.writeShort(MessageProtocolConstants.MAGIC);
-        objectOutputStream.writeUTF(sourceUUID);
-        remoteReferenceListener = new RemoteReferenceListener(socket);
-        remoteReferenceCallExecutor.execute(remoteReferenceListener);
+    /**
+     * Connects to the server, unless already connected. The connection is
+     * shared by all senders using this client.
+     */
+    public synchronized void connect() throws UnknownHostException, IOException {
+        if (isConnected() && !outboundWriter.hasFailed()) {
+            return;
+        }
+        var newSocket = new Socket(messageServerURI.getHost(), messageServerURI.getPort());
+        int batchBytes = configuration.getInteger(KEY_BATCH_BYTES, DEFAULT_BATCH_BYTES);
+        DataOutputStream socketOutputStream;
+        try {
+            newSocket.setKeepAlive(configuration.getBoolean(KEY_KEEP_ALIVE, DEFAULT_KEEP_ALIVE));
+            newSocket.setSoTimeout(configuration.getInteger(KEY_SO_TIMEOUT_MILLS, DEFAULT_SO_TIMEOUT_MILLS));
+            socketOutputStream = new DataOutputStream(new BufferedOutputStream(newSocket.getOutputStream(), batchBytes));
+            socketOutputStream.writeShort(MessageProtocolConstants.FRAMED_MAGIC);
+        } catch (IOException e) {
+            newSocket.close();
+            throw e;
+        }
+        socket = newSocket;
+        synchronized (frameBuffer) {
+            OutboundWriter previousWriter = outboundWriter;
+            if (previousWriter != null) {
+                previousWriter.stop();
+                outboundWriterExecutor.shutdown();
+                remoteReferenceListener.shutdown();
+                remoteReferenceCallExecutor.shutdown();
+            }
+            outboundWriterExecutor = Executors.newSingleThreadExecutor(
+                    new RoboThreadFactory.Builder("Message-Client")
+                            .addThreadPrefix("OutboundWriter for " + messageServerURI).build());
+            remoteReferenceCallExecutor = Executors.newSingleThreadExecutor(
+                    new RoboThreadFactory.Builder("Message-Client")
+                            .addThreadPrefix("RemoteReferenceCallExecutor for " + messageServerURI).build());
+            outboundWriter = new OutboundWriter(socket, socketOutputStream,
+                    configuration.getInteger(KEY_QUEUE_CAPACITY, DEFAULT_QUEUE_CAPACITY),
+                    configuration.getInteger(KEY_BATCH_MESSAGES, DEFAULT_BATCH_MESSAGES), batchBytes,
+                    TimeUnit.MILLISECONDS.toNanos(configuration.getInteger(KEY_LINGER_MILLIS, DEFAULT_LINGER_MILLIS)));
+            codecTypeIds.clear();
+            objectOutputStream = null;
+            frameBuffer.reset();
+            frameOutputStream.writeUTF(sourceUUID);
+            outboundWriter.enqueue(frameBuffer.toByteArray());
+            outboundWriterExecutor.execute(outboundWriter);
+            remoteReferenceListener = new RemoteReferenceListener(socket);
+            remoteReferenceCallExecutor.execute(remoteReferenceListener);
+        }
     }
 
+    /**
+     * Queues the message for sending. Returns as soon as the message is
+     * queued, unless the outbound queue is full.
+     *
+     * @param id      the id of the recipient unit.
+     * @param message the message.
+     * @throws IOException if the message could not be encoded, or the
+     *                     connection failed and could not be re-established.
+     */
     public void sendMessage(String id, Object message) throws IOException {
         try {
             deliverMessage(id, message);
+            failCount = 0;
         } catch (IOException e) {
             if (failCount < maxFailCount) {
                 failCount++;
@@ -151,67 +372,162 @@ public class MessageClient {
     }
 
     private void deliverMessage(String id, Object message) throws IOException {
-        objectOutputStream.writeUTF(id);
+        synchronized (frameBuffer) {
+            if (outboundWriter == null) {
+                throw new IOException("Not connected to " + messageServerURI);
+            }
+            frameBuffer.reset();
+            encodeMessage(id, message);
+            outboundWriter.enqueue(frameBuffer.toByteArray());
+        }
+    }
+
+    private void encodeMessage(String id, Object message) throws IOException {
+        frameOutputStream.writeUTF(id);
         switch (message) {
             case String s -> {
-                objectOutputStream.writeByte(MessageProtocolConstants.MOD_UTF8);
-                objectOutputStream.writeUTF(s);
+                frameOutputStream.writeByte(MessageProtocolConstants.MOD_UTF8);
+                frameOutputStream.writeUTF(s);
             }
             case Number number -> {
                 switch (number) {
                     case Float v -> {
-                        objectOutputStream.writeByte(MessageProtocolConstants.FLOAT);
-                        objectOutputStream.writeFloat(v);
+                        frameOutputStream.writeByte(MessageProtocolConstants.FLOAT);
+                        frameOutputStream.writeFloat(v);
                     }
                     case Integer i -> {
-                        objectOutputStream.writeByte(MessageProtocolConstants.INT);
-                        objectOutputStream.writeInt(i);
+                        frameOutputStream.writeByte(MessageProtocolConstants.INT);
+                        frameOutputStream.writeInt(i);
                     }
                     case Double v -> {
-                        objectOutputStream.writeByte(MessageProtocolConstants.DOUBLE);
-                        objectOutputStream.writeDouble(v);
+                        frameOutputStream.writeByte(MessageProtocolConstants.DOUBLE);
+                        frameOutputStream.writeDouble(v);
                     }
                     case Long l -> {
-                        objectOutputStream.writeByte(MessageProtocolConstants.LONG);
-                        objectOutputStream.writeLong(l);
+                        frameOutputStream.writeByte(MessageProtocolConstants.LONG);
+                        frameOutputStream.writeLong(l);
                     }
                     case Byte b -> {
-                        objectOutputStream.writeByte(MessageProtocolConstants.BYTE);
-                        objectOutputStream.writeByte(b);
+                        frameOutputStream.writeByte(MessageProtocolConstants.BYTE);
+                        frameOutputStream.writeByte(b);
                     }
                     case Short i -> {
-                        objectOutputStream.writeByte(MessageProtocolConstants.SHORT);
-                        objectOutputStream.writeShort(i);
-                    }
-                    default -> {
+                        frameOutputStream.writeByte(MessageProtocolConstants.SHORT);
+                        frameOutputStream.writeShort(i);
                     }
+                    default -> writeObject(number);
                 }
             }
             case Character c -> {
-                objectOutputStream.writeByte(MessageProtocolConstants.CHAR);
-                objectOutputStream.writeChar(c);
+                frameOutputStream.writeByte(MessageProtocolConstants.CHAR);
+                frameOutputStream.writeChar(c);
+            }
+            case null -> writeObject(null);
+            default -> {
+                @SuppressWarnings("unchecked")
+                MessageCodec<Object> codec = (MessageCodec<Object>) codecRegistry.getCodec(message.getClass());
+                if (codec == null) {
+                    writeObject(message);
+                } else {
+                    writeCodecMessage(codec, message);
+                }
+            }
+        }
+    }
+
+    private void writeObject(Object message) throws IOException {
+        frameOutputStream.writeByte(MessageProtocolConstants.OBJECT);
+        try {
+            if (objectOutputStream == null) {
+                frameOutputStream.writeByte(MessageProtocolConstants.NEW_OBJECT_STREAM);
+                objectOutputStream = new ObjectOutputStream(frameOutputStream);
+                objectsSinceReset = 0;
+            } else {
+                frameOutputStream.writeByte(MessageProtocolConstants.SAME_OBJECT_STREAM);
+                // Keeps the class descriptors between resets, while bounding
+                // what the handle tables of both sides keep reachable
+                if (objectsSinceReset >= OBJECTS_PER_RESET) {
+                    objectOutputStream.reset();
+                    objectsSinceReset = 0;
+                }
             }
-            case null, default -> {
-                objectOutputStream.writeByte(MessageProtocolConstants.OBJECT);
-                objectOutputStream.writeObject(message);
+            // A message sent again is sent in full, even if changed since
+            objectOutputStream.writeUnshared(message);
+            objectOutputStream.flush();
+            objectsSinceReset++;
+        } catch (IOException e) {
+            // The frame is never sent, so the server does not know about the
+            // state of the stream
+            objectOutputStream = null;
+            throw e;
+        }
+    }
+
+    private void writeCodecMessage(MessageCodec<Object> codec, Object message) throws IOException {
+        encodeWithCodec(codec, message);
+        Integer typeId = codecTypeIds.get(codec.getMessageType());
+        if (typeId == null) {
+            typeId = codecTypeIds.size();
+            codecTypeIds.put(codec.getMessageType(), typeId);
+            frameOutputStream.writeByte(MessageProtocolConstants.CODEC_DEFINITION);
+            frameOutputStream.writeInt(typeId);
+            frameOutputStream.writeUTF(codec.getMessageType().getName());
+        } else {
+            frameOutputStream.writeByte(MessageProtocolConstants.CODEC);
+            frameOutputStream.writeInt(typeId);
+        }
+        frameOutputStream.writeInt(codecBuffer.position());
+        frameOutputStream.write(codecBuffer.array(), 0, codecBuffer.position());
+    }
+
+    private void encodeWithCodec(MessageCodec<Object> codec, Object message) throws IOException {
+        while (true) {
+            try {
+                codecBuffer.clear();
+                codec.encode(message, codecBuffer);
+                return;
+            } catch (BufferOverflowException e) {
+                if (codecBuffer.capacity() >= MessageServer.DEFAULT_MAX_FRAME_SIZE) {
+                    throw new IOException("Encoded message exceeds the maximum frame size: " + message, e);
+                }
+                codecBuffer = ByteBuffer.allocate(codecBuffer.capacity() * 2);
             }
         }
-        objectOutputStream.flush();
     }
 
     public boolean isConnected() {
-        return socket != null && socket.isConnected();
+        return outboundWriter != null && socket.isConnected() && !socket.isClosed();
     }
 
-    public void shutdown() {
-        try {
-            objectOutputStream.flush();
-            objectOutputStream.close();
+    /**
+     * Writes the messages queued so far and closes the connection, along with
+     * its threads. The next {@link #connect()} opens a new connection.
+     */
+    public synchronized void shutdown() {
+        OutboundWriter writer;
+        ExecutorService writerExecutor;
+        synchronized (frameBuffer) {
+            writer = outboundWriter;
+            writerExecutor = outboundWriterExecutor;
+            if (writer == null) {
+                return;
+            }
+            outboundWriter = null;
+            outboundWriterExecutor = null;
+            writer.stop();
+            writerExecutor.shutdown();
             remoteReferenceListener.shutdown();
             remoteReferenceCallExecutor.shutdown();
+        }
+        try {
+            if (!writerExecutor.awaitTermination(SHUTDOWN_FLUSH_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)) {
+                LOGGER.warn("Timed out writing queued messages to {}", messageServerURI);
+            }
             socket.close();
         } catch (IOException e) {
             LOGGER.error("Failed to close remote reference listener!", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
         }
     }
 }
@@ -0,0 +1,185 @@
+/*
+ * Copyright (c) 2014, 2024, Marcus Hirt, Miroslav Wengner
+ *
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.robo4j.net;
+
+import com.robo4j.journal.MessageCodec;
+
+import java.io.InvalidClassException;
+import java.io.ObjectInputFilter;
+import java.io.Serializable;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Registry of the binary codecs used for sending messages between contexts.
+ * Messages of a registered type, and records whose components can all be
+ * encoded, are sent in a compact binary form instead of through java
+ * serialization. The codecs are the same kind of {@link MessageCodec} as used
+ * by the message journal.
+ * <p>
+ * Both the sending and the receiving side must be able to resolve a codec for
+ * the type, so codecs for non-record types must be registered in both JVMs.
+ * Messages without a codec fall back to java serialization.
+ * <p>
+ * As the type of a message is named by the sender, the receiving side only
+ * decodes registered types, records allowed with {@link #allow(Class)}, and
+ * serializable records which the JVM-wide {@link ObjectInputFilter} does not
+ * reject. Those could have been sent with java serialization anyway.
+ *
+ * @author Marcus Hirt (@hirt)
+ * @author Miroslav Wengner (@miragemiko)
+ */
+public final class MessageCodecRegistry {
+    private static final MessageCodecRegistry DEFAULT_REGISTRY = new MessageCodecRegistry();
+
+    private final Map<Class<?>, MessageCodec<?>> registeredCodecs = new ConcurrentHashMap<>();
+    private final Map<String, MessageCodec<?>> registeredCodecsByName = new ConcurrentHashMap<>();
+    private final Map<Class<?>, Optional<MessageCodec<?>>> resolvedCodecs = new ConcurrentHashMap<>();
+    private final Set<String> allowedRecordNames = ConcurrentHashMap.newKeySet();
+
+    MessageCodecRegistry() {
+        // Use the default registry
+    }
+
+    /**
+     * @return the registry used by {@link MessageClient} and
+     * {@link MessageServer}.
+     */
+    public static MessageCodecRegistry getDefault() {
+        return DEFAULT_REGISTRY;
+    }
+
+    /**
+     * Registers a codec for the exact message type of the codec, replacing any
+     * codec previously used for the type.
+     *
+     * @param codec the codec to register.
+     * @param <T>   the message type.
+     */
+    public <T> void register(MessageCodec<T> codec) {
+        registeredCodecs.put(codec.getMessageType(), codec);
+        registeredCodecsByName.put(codec.getMessageType().getName(), codec);
+        // Derived record codecs may embed the codec for the type
+        resolvedCodecs.clear();
+    }
+
+    /**
+     * Allows messages of a record type which is not serializable to be
+     * received with its derived codec.
+     *
+     * @param recordType the record type to allow.
+     */
+    public void allow(Class<? extends Record> recordType) {
+        allowedRecordNames.add(recordType.getName());
+    }
+
+    /**
+     * @param messageType the type of the message.
+     * @param <T>         the message type.
+     * @return the codec for the type, or null if messages of the type must be
+     * sent using java serialization.
+     */
+    @SuppressWarnings("unchecked")
+    public <T> MessageCodec<T> getCodec(Class<T> messageType) {
+        return (MessageCodec<T>) resolve(messageType, new HashSet<>());
+    }
+
+    /**
+     * Resolves the codec for a type named by the sending side.
+     *
+     * @param typeName the fully qualified name of the message type.
+     * @return the codec, or null if there is none for the type.
+     * @throws ClassNotFoundException if the type is not known in this JVM.
+     * @throws InvalidClassException  if the type is not to be received.
+     */
+    MessageCodec<?> getCodec(String typeName) throws ClassNotFoundException, InvalidClassException {
+        MessageCodec<?> codec = registeredCodecsByName.get(typeName);
+        if (codec != null) {
+            return codec;
+        }
+        Class<?> messageType = Class.forName(typeName, false, getClassLoader());
+        if (!isReceivable(messageType)) {
+            throw new InvalidClassException(typeName, "Neither registered, allowed, nor a serializable record");
+        }
+        return getCodec(messageType);
+    }
+
+    private boolean isReceivable(Class<?> messageType) {
+        if (!messageType.isRecord()) {
+            return false;
+        }
+        if (allowedRecordNames.contains(messageType.getName())) {
+            return true;
+        }
+        if (!Serializable.class.isAssignableFrom(messageType)) {
+            return false;
+        }
+        ObjectInputFilter filter = ObjectInputFilter.Config.getSerialFilter();
+        return filter == null || filter.checkInput(new ClassFilterInfo(messageType)) != ObjectInputFilter.Status.REJECTED;
+    }
+
+    MessageCodec<?> resolve(Class<?> messageType, Set<Class<?>> inProgress) {
+        MessageCodec<?> codec = registeredCodecs.get(messageType);
+        if (codec != null) {
+            return codec;
+        }
+        Optional<MessageCodec<?>> resolved = resolvedCodecs.get(messageType);
+        if (resolved == null) {
+            if (!messageType.isRecord() || !inProgress.add(messageType)) {
+                // Recursive record types are left to java serialization
+                return null;
+            }
+            resolved = Optional.ofNullable(RecordMessageCodec.create(messageType.asSubclass(Record.class), this, inProgress));
+            inProgress.remove(messageType);
+            resolvedCodecs.put(messageType, resolved);
+        }
+        return resolved.orElse(null);
+    }
+
+    /**
+     * Asks a filter about a class, as if it was about to be deserialized.
+     */
+    private record ClassFilterInfo(Class<?> serialClass) implements ObjectInputFilter.FilterInfo {
+        @Override
+        public long arrayLength() {
+            return -1;
+        }
+
+        @Override
+        public long depth() {
+            return 1;
+        }
+
+        @Override
+        public long references() {
+            return 0;
+        }
+
+        @Override
+        public long streamBytes() {
+            return 0;
+        }
+    }
+
+    private static ClassLoader getClassLoader() {
+        ClassLoader contextClassLoader = Thread.currentThread().getContextClassLoader();
+        return contextClassLoader != null ? contextClassLoader : MessageCodecRegistry.class.getClassLoader();
+    }
+}
@@ -24,10 +24,41 @@ package com.robo4j.net;
  */
 interface MessageProtocolConstants {
 	/**
-	 * Serialization will be done using standard java serialization.
+	 * Serialization will be done using standard java serialization. In the
+	 * framed protocol, followed by {@link #NEW_OBJECT_STREAM} or
+	 * {@link #SAME_OBJECT_STREAM}. The objects of a connection are written
+	 * unshared to one object stream, so that class descriptors are only sent
+	 * once, and a message sent again arrives as a new object. The stream is
+	 * reset every so many objects. Objects referenced by several messages in
+	 * between are sent once, so messages must not be changed once sent.
 	 */
 	int OBJECT = 0;
 
+	/**
+	 * An object stream header follows, and the object is read from a new
+	 * object stream.
+	 */
+	int NEW_OBJECT_STREAM = 1;
+
+	/**
+	 * The object is read from the object stream of the previous object.
+	 */
+	int SAME_OBJECT_STREAM = 0;
+
+	/**
+	 * Message encoded by a codec from the {@link MessageCodecRegistry}. Followed
+	 * by the connection local id of the type, the length of the encoded
+	 * message and the message itself.
+	 */
+	int CODEC = 1;
+
+	/**
+	 * Like {@link #CODEC}, but for the first message of a type on the
+	 * connection. The id of the type is followed by the name of the type, which
+	 * is not repeated for later messages.
+	 */
+	int CODEC_DEFINITION = 2;
+
 	/**
 	 * Message is a byte.
 	 */
@@ -73,5 +104,14 @@ interface MessageProtocolConstants {
 	 */
 	int REFERENCE = 64;
 
+	/**
+	 * Magic of the legacy protocol, written inside an object stream.
+	 */
 	short MAGIC = (short) 0xC0FE;
+
+	/**
+	 * Magic starting a connection using the framed protocol. Every frame is
+	 * an int length followed by the payload.
+	 */
+	short FRAMED_MAGIC = (short) 0xC0DE;
 }
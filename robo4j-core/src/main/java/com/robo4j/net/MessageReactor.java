@@ -0,0 +1,470 @@
+/*
+ * Copyright (c) 2014, 2024, Marcus Hirt, Miroslav Wengner
+ *
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.robo4j.net;
+
+import com.robo4j.journal.MessageCodec;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectStreamConstants;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * One I/O thread of the {@link MessageServer}. Owns a {@link Selector} and
+ * reads the framed protocol from all connections assigned to it. Decoded
+ * messages are handed to the {@link MessageCallback} on the dispatch executor,
+ * in order per connection, so that a slow callback does not hold up the other
+ * connections. A connection is not read while too many of its messages are
+ * waiting to be dispatched.
+ * <p>
+ * A connection starts with {@link MessageProtocolConstants#FRAMED_MAGIC},
+ * followed by length prefixed frames. The first frame carries the uuid of the
+ * sending context, every following frame an id, a type byte and the encoded
+ * message. Connections starting with the java serialization stream magic are
+ * legacy clients and are handed back to the server to be served blocking.
+ *
+ * @author Marcus Hirt (@hirt)
+ * @author Miroslav Wengner (@miragemiko)
+ */
+final class MessageReactor implements Runnable {
+    private static final Logger LOGGER = LoggerFactory.getLogger(MessageReactor.class);
+    private static final int INITIAL_BUFFER_SIZE = 8 * 1024;
+    private static final int MAGIC_SIZE = Short.BYTES;
+    private static final int FRAME_HEADER_SIZE = Integer.BYTES;
+    private static final int MAX_PENDING_DELIVERIES = 1024;
+    private static final int RESUME_PENDING_DELIVERIES = MAX_PENDING_DELIVERIES / 2;
+
+    private enum ReadState {
+        AWAIT_MAGIC, AWAIT_HELLO, FRAMES
+    }
+
+    /**
+     * Exposes the payload of the current frame as an {@link InputStream}.
+     */
+    private static final class FrameInputStream extends InputStream {
+        private ByteBuffer frame;
+
+        void setFrame(ByteBuffer frame) {
+            this.frame = frame;
+        }
+
+        @Override
+        public int read() {
+            return frame.hasRemaining() ? frame.get() & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] bytes, int offset, int length) {
+            if (length == 0) {
+                return 0;
+            }
+            if (!frame.hasRemaining()) {
+                return -1;
+            }
+            int count = Math.min(length, frame.remaining());
+            frame.get(bytes, offset, count);
+            return count;
+        }
+
+        @Override
+        public int available() {
+            return frame.remaining();
+        }
+
+        /**
+         * Returns the next bytes of the frame and skips past them.
+         */
+        ByteBuffer slice(int length) throws EOFException {
+            if (length < 0 || length > frame.remaining()) {
+                throw new EOFException("Frame too short for " + length + " bytes");
+            }
+            ByteBuffer slice = frame.slice(frame.position(), length);
+            frame.position(frame.position() + length);
+            return slice;
+        }
+    }
+
+    private record HandOff(SocketChannel channel, byte[] consumed) {
+    }
+
+    private record Delivery(String id, Object message) {
+    }
+
+    private final class Connection {
+        private final SocketChannel channel;
+        private final FrameInputStream frameInput = new FrameInputStream();
+        private final DataInputStream dataInput = new DataInputStream(frameInput);
+        private ByteBuffer buffer = ByteBuffer.allocate(INITIAL_BUFFER_SIZE);
+        private ReadState state = ReadState.AWAIT_MAGIC;
+        private String uuid;
+        private ServerRemoteRoboContext remoteContext;
+        /*
+         * Codecs by the ids defined by the client on this connection
+         */
+        private final List<MessageCodec<?>> codecs = new ArrayList<>();
+        /*
+         * The object stream of the client, fed frame by frame
+         */
+        private ObjectInputStream objectInput;
+        /*
+         * Decoded messages waiting for the callback. Drained by at most one
+         * dispatch task at a time
+         */
+        private final Queue<Delivery> deliveries = new ConcurrentLinkedQueue<>();
+        private final AtomicInteger pendingDeliveries = new AtomicInteger();
+        // Only used by the reactor thread
+        private boolean paused;
+
+        Connection(SocketChannel channel) {
+            this.channel = channel;
+        }
+
+        /**
+         * @return false if the connection should be closed.
+         */
+        boolean read() throws IOException, ClassNotFoundException {
+            if (channel.read(buffer) < 0) {
+                return false;
+            }
+            buffer.flip();
+            try {
+                return consume();
+            } finally {
+                buffer.compact();
+            }
+        }
+
+        private boolean consume() throws IOException, ClassNotFoundException {
+            if (state == ReadState.AWAIT_MAGIC) {
+                if (buffer.remaining() < MAGIC_SIZE) {
+                    return true;
+                }
+                short magic = buffer.getShort();
+                if (magic == ObjectStreamConstants.STREAM_MAGIC) {
+                    byte[] consumed = new byte[buffer.limit()];
+                    buffer.position(0).get(consumed);
+                    channel.keyFor(selector).cancel();
+                    handOffs.add(new HandOff(channel, consumed));
+                    return true;
+                } else if (magic != MessageProtocolConstants.FRAMED_MAGIC) {
+                    LOGGER.error("Got wrong communication magic - will shutdown communication with {}", channel.getRemoteAddress());
+                    return false;
+                }
+                state = ReadState.AWAIT_HELLO;
+            }
+            while (buffer.remaining() >= FRAME_HEADER_SIZE) {
+                int length = buffer.getInt(buffer.position());
+                if (length < 0 || length > maxFrameSize) {
+                    LOGGER.error("Illegal frame size {} - will shutdown communication with {}", length, channel.getRemoteAddress());
+                    return false;
+                }
+                if (buffer.remaining() < FRAME_HEADER_SIZE + length) {
+                    ensureCapacity(FRAME_HEADER_SIZE + length);
+                    return true;
+                }
+                buffer.position(buffer.position() + FRAME_HEADER_SIZE);
+                int end = buffer.position() + length;
+                frameInput.setFrame(buffer.slice(buffer.position(), length));
+                buffer.position(end);
+                handleFrame();
+            }
+            return true;
+        }
+
+        private void handleFrame() throws IOException, ClassNotFoundException {
+            if (state == ReadState.AWAIT_HELLO) {
+                uuid = dataInput.readUTF();
+                remoteContext = new ServerRemoteRoboContext(uuid, new ChannelOutputStream(channel, writeTimeoutMillis), replyExecutor);
+                state = ReadState.FRAMES;
+            } else {
+                String id = dataInput.readUTF();
+                Object message = decodeMessage();
+                dispatch(new Delivery(id, message));
+            }
+        }
+
+        private void dispatch(Delivery delivery) {
+            deliveries.add(delivery);
+            if (pendingDeliveries.getAndIncrement() == 0) {
+                try {
+                    dispatchExecutor.execute(this::drainDeliveries);
+                } catch (RejectedExecutionException e) {
+                    // Only when the server is stopping
+                    deliveries.clear();
+                    pendingDeliveries.set(0);
+                    LOGGER.warn("Dispatch rejected, messages from {} will not be delivered", uuid);
+                }
+            }
+        }
+
+        private void drainDeliveries() {
+            int remaining;
+            do {
+                Delivery delivery = deliveries.poll();
+                try {
+                    callback.handleMessage(uuid, delivery.id(), delivery.message());
+                } catch (RuntimeException e) {
+                    LOGGER.error("Failed to handle message from {}", uuid, e);
+                }
+                remaining = pendingDeliveries.decrementAndGet();
+                if (remaining == RESUME_PENDING_DELIVERIES) {
+                    resumeRequests.add(this);
+                    selector.wakeup();
+                }
+            } while (remaining > 0);
+        }
+
+        private Object decodeMessage() throws IOException, ClassNotFoundException {
+            byte dataType = dataInput.readByte();
+            return switch (dataType) {
+                case MessageProtocolConstants.OBJECT -> readObject();
+                case MessageProtocolConstants.CODEC -> readCodecMessage(dataInput.readInt());
+                case MessageProtocolConstants.CODEC_DEFINITION -> defineCodec(dataInput.readInt(), dataInput.readUTF());
+                case MessageProtocolConstants.MOD_UTF8 -> dataInput.readUTF();
+                case MessageProtocolConstants.BYTE -> dataInput.readByte();
+                case MessageProtocolConstants.SHORT -> dataInput.readShort();
+                case MessageProtocolConstants.FLOAT -> dataInput.readFloat();
+                case MessageProtocolConstants.INT -> dataInput.readInt();
+                case MessageProtocolConstants.DOUBLE -> dataInput.readDouble();
+                case MessageProtocolConstants.LONG -> dataInput.readLong();
+                case MessageProtocolConstants.CHAR -> dataInput.readChar();
+                default -> throw new IOException("The type with id " + dataType + " is not supported!");
+            };
+        }
+
+        private Object readObject() throws IOException, ClassNotFoundException {
+            // Serialized references resolve against the context of the
+            // connection currently being read
+            ReferenceDescriptor.setCurrentContext(remoteContext);
+            try {
+                byte streamFlag = dataInput.readByte();
+                if (streamFlag == MessageProtocolConstants.NEW_OBJECT_STREAM) {
+                    objectInput = new ObjectInputStream(frameInput);
+                } else if (objectInput == null) {
+                    throw new IOException("No object stream started by " + uuid);
+                }
+                return objectInput.readObject();
+            } finally {
+                ReferenceDescriptor.setCurrentContext(null);
+            }
+        }
+
+        private Object defineCodec(int typeId, String typeName) throws IOException, ClassNotFoundException {
+            if (typeId != codecs.size()) {
+                throw new IOException("Unexpected codec type id " + typeId + " for " + typeName);
+            }
+            MessageCodec<?> codec = codecRegistry.getCodec(typeName);
+            if (codec == null) {
+                throw new IOException("No codec available for " + typeName);
+            }
+            codecs.add(codec);
+            return readCodecMessage(typeId);
+        }
+
+        private Object readCodecMessage(int typeId) throws IOException {
+            if (typeId < 0 || typeId >= codecs.size()) {
+                throw new IOException("Undefined codec type id " + typeId);
+            }
+            ByteBuffer encoded = frameInput.slice(dataInput.readInt());
+            try {
+                return codecs.get(typeId).decode(encoded);
+            } catch (RuntimeException e) {
+                throw new IOException("Could not decode " + codecs.get(typeId).getMessageType().getName(), e);
+            }
+        }
+
+        private void ensureCapacity(int required) {
+            if (buffer.capacity() < required) {
+                ByteBuffer grown = ByteBuffer.allocate(Math.max(required, buffer.capacity() * 2));
+                grown.put(buffer);
+                // consume() is always followed by compact(), so leave the
+                // grown buffer flipped like the one it replaces
+                buffer = grown.flip();
+            }
+        }
+    }
+
+    private final MessageServer server;
+    private final MessageCallback callback;
+    private final Executor replyExecutor;
+    private final Executor dispatchExecutor;
+    private final MessageCodecRegistry codecRegistry = MessageCodecRegistry.getDefault();
+    private final int maxFrameSize;
+    private final long writeTimeoutMillis;
+    private final Selector selector;
+    private final Queue<SocketChannel> pendingChannels = new ConcurrentLinkedQueue<>();
+    private final Queue<Connection> resumeRequests = new ConcurrentLinkedQueue<>();
+    private final List<HandOff> handOffs = new ArrayList<>();
+    private volatile boolean active = true;
+
+    MessageReactor(MessageServer server, MessageCallback callback, Executor replyExecutor, Executor dispatchExecutor,
+                   int maxFrameSize, long writeTimeoutMillis) throws IOException {
+        this.server = server;
+        this.callback = callback;
+        this.replyExecutor = replyExecutor;
+        this.dispatchExecutor = dispatchExecutor;
+        this.maxFrameSize = maxFrameSize;
+        this.writeTimeoutMillis = writeTimeoutMillis;
+        this.selector = Selector.open();
+    }
+
+    /**
+     * Assigns an accepted connection to this reactor. May be called from any
+     * thread.
+     */
+    void register(SocketChannel channel) {
+        pendingChannels.add(channel);
+        selector.wakeup();
+    }
+
+    void stop() {
+        active = false;
+        selector.wakeup();
+    }
+
+    @Override
+    public void run() {
+        try {
+            while (active) {
+                if (handOffs.isEmpty()) {
+                    selector.select();
+                } else {
+                    // Flushes the cancelled keys so that the channels may be
+                    // made blocking again
+                    selector.selectNow();
+                    completeHandOffs();
+                }
+                registerPending();
+                resumeReading();
+                for (SelectionKey key : selector.selectedKeys()) {
+                    if (key.isValid() && key.isReadable()) {
+                        read(key);
+                    }
+                }
+                selector.selectedKeys().clear();
+            }
+        } catch (IOException | ClosedSelectorException e) {
+            LOGGER.error("Message reactor failed", e);
+        } finally {
+            closeAll();
+        }
+    }
+
+    private void registerPending() {
+        SocketChannel channel;
+        while ((channel = pendingChannels.poll()) != null) {
+            try {
+                channel.configureBlocking(false);
+                channel.register(selector, SelectionKey.OP_READ, new Connection(channel));
+            } catch (IOException e) {
+                LOGGER.error("Could not register connection {}", channel, e);
+                closeQuietly(channel);
+            }
+        }
+    }
+
+    private void resumeReading() {
+        Connection connection;
+        while ((connection = resumeRequests.poll()) != null) {
+            SelectionKey key = connection.channel.keyFor(selector);
+            if (connection.paused && key != null && key.isValid()
+                    && connection.pendingDeliveries.get() < MAX_PENDING_DELIVERIES) {
+                key.interestOps(SelectionKey.OP_READ);
+                connection.paused = false;
+            }
+        }
+    }
+
+    private void read(SelectionKey key) {
+        Connection connection = (Connection) key.attachment();
+        try {
+            if (!connection.read()) {
+                key.cancel();
+                closeQuietly(connection.channel);
+            } else if (key.isValid() && connection.pendingDeliveries.get() >= MAX_PENDING_DELIVERIES) {
+                // Resumed by the dispatch task once it has caught up
+                key.interestOps(0);
+                connection.paused = true;
+            }
+        } catch (IOException e) {
+            LOGGER.error("IO Exception communicating with {}", connection.uuid, e);
+            key.cancel();
+            closeQuietly(connection.channel);
+        } catch (ClassNotFoundException e) {
+            LOGGER.error("Could not find class to deserialize message to - will stop receiving messages from {}", connection.uuid, e);
+            key.cancel();
+            closeQuietly(connection.channel);
+        } catch (RuntimeException e) {
+            // Must not take down the other connections of the reactor
+            LOGGER.error("Failed to handle message from {} - will stop receiving messages from it", connection.uuid, e);
+            key.cancel();
+            closeQuietly(connection.channel);
+        }
+    }
+
+    private void completeHandOffs() {
+        for (HandOff handOff : handOffs) {
+            try {
+                handOff.channel().configureBlocking(true);
+                server.handleLegacyConnection(handOff.channel(), handOff.consumed());
+            } catch (IOException e) {
+                LOGGER.error("Could not hand off legacy connection {}", handOff.channel(), e);
+                closeQuietly(handOff.channel());
+            }
+        }
+        handOffs.clear();
+    }
+
+    private void closeAll() {
+        for (SelectionKey key : selector.keys()) {
+            closeQuietly((SocketChannel) key.channel());
+        }
+        SocketChannel channel;
+        while ((channel = pendingChannels.poll()) != null) {
+            closeQuietly(channel);
+        }
+        try {
+            selector.close();
+        } catch (IOException e) {
+            LOGGER.error("Could not close selector", e);
+        }
+    }
+
+    private static void closeQuietly(SocketChannel channel) {
+        try {
+            channel.close();
+        } catch (IOException e) {
+            LOGGER.debug("Could not close channel {}", channel, e);
+        }
+    }
+}
@@ -22,15 +22,29 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.ObjectInputStream;
+import java.io.OutputStream;
+import java.io.SequenceInputStream;
 import java.net.InetAddress;
-import java.net.ServerSocket;
-import java.net.Socket;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 import static com.robo4j.util.StringConstants.EMPTY;
@@ -39,7 +53,15 @@ import static com.robo4j.util.StringConstants.EMPTY;
  * This is a server that listens on messages, and sends them off to the
  * indicated local recipient. It is associated to RoboContext.
  * <p>
- * TODO: Rewrite in NIO for better thread management.
+ * Connections are served by a small fixed number of {@link MessageReactor}
+ * I/O threads, each multiplexing its connections on a selector. The callback is
+ * called on a separate dispatch pool, in order per connection. Clients using
+ * the older object stream protocol are still accepted, but are served by a
+ * thread per connection, up to {@link #KEY_MAX_LEGACY_CONNECTIONS}.
+ * <p>
+ * The dispatch and reply pools are fixed in size. Each connection has at most
+ * one task waiting in each of them, so their queues are bounded by the number
+ * of connections.
  *
  * @author Marcus Hirt (@hirt)
  * @author Miroslav Wengner (@miragemiko)
@@ -47,18 +69,55 @@ import static com.robo4j.util.StringConstants.EMPTY;
 public class MessageServer {
     public static final String KEY_HOST_NAME = "hostname";
     public static final String KEY_PORT = "port";
+    /**
+     * The number of I/O threads reading from the connections.
+     */
+    public static final String KEY_IO_THREADS = "ioThreads";
+    /**
+     * The largest accepted message frame, in bytes. Connections sending larger
+     * frames are closed.
+     */
+    public static final String KEY_MAX_FRAME_SIZE = "maxFrameSize";
+    /**
+     * How long to wait for a client to read anything from a full connection,
+     * in milliseconds, before closing the connection.
+     */
+    public static final String KEY_WRITE_TIMEOUT_MILLIS = "writeTimeoutMillis";
+    /**
+     * The number of threads calling the callback with the received messages.
+     */
+    public static final String KEY_DISPATCH_THREADS = "dispatchThreads";
+    /**
+     * The number of threads writing the replies back to the clients.
+     */
+    public static final String KEY_REPLY_THREADS = "replyThreads";
+    /**
+     * The largest number of connections served at the same time with the
+     * legacy object stream protocol. Further ones are closed.
+     */
+    public static final String KEY_MAX_LEGACY_CONNECTIONS = "maxLegacyConnections";
     public static final String DEFAULT_SCHEME_ROBO4J = "robo4j";
+    public static final int DEFAULT_IO_THREADS = 2;
+    public static final int DEFAULT_MAX_FRAME_SIZE = 16 * 1024 * 1024;
+    public static final int DEFAULT_WRITE_TIMEOUT_MILLIS = 10_000;
+    public static final int DEFAULT_DISPATCH_THREADS = 4;
+    public static final int DEFAULT_REPLY_THREADS = 2;
+    public static final int DEFAULT_MAX_LEGACY_CONNECTIONS = 16;
 
-    private record MessageHandler(Socket socket, MessageCallback callback,
+    /**
+     * Serves a client speaking the legacy object stream protocol.
+     */
+    private record MessageHandler(SocketAddress remoteAddress, InputStream inputStream, OutputStream outputStream,
+                                  MessageCallback callback, Executor replyExecutor,
                                   AtomicBoolean serverActive) implements Runnable {
 
         @Override
         public void run() {
-            try (ObjectInputStream objectInputStream = new ObjectInputStream(new BufferedInputStream(socket.getInputStream()))) {
+            try (ObjectInputStream objectInputStream = new ObjectInputStream(new BufferedInputStream(inputStream))) {
                 // Init protocol. First check magic...
                 if (checkMagic(objectInputStream.readShort())) {
                     final var uuid = objectInputStream.readUTF();
-                    final var serverRemoteContext = new ServerRemoteRoboContext(uuid, socket.getOutputStream());
+                    final var serverRemoteContext = new ServerRemoteRoboContext(uuid, outputStream, replyExecutor);
                     // Then keep reading string, byte, data triplets until dead
                     ReferenceDescriptor.setCurrentContext(serverRemoteContext);
                     while (serverActive.get()) {
@@ -67,15 +126,15 @@ public class MessageServer {
                         callback.handleMessage(uuid, id, message);
                     }
                 } else {
-                    LOGGER.error("Got wrong communication magic - will shutdown communication with {}", socket.getRemoteSocketAddress());
+                    LOGGER.error("Got wrong communication magic - will shutdown communication with {}", remoteAddress);
                 }
 
             } catch (IOException e) {
-                LOGGER.error("IO Exception communicating with {}", socket.getRemoteSocketAddress(), e);
+                LOGGER.error("IO Exception communicating with {}", remoteAddress, e);
             } catch (ClassNotFoundException e) {
-                LOGGER.error("Could not find class to deserialize message to - will stop receiving messages from {}", socket.getRemoteSocketAddress(), e);
+                LOGGER.error("Could not find class to deserialize message to - will stop receiving messages from {}", remoteAddress, e);
             }
-            LOGGER.info("Shutting down socket {}", socket);
+            LOGGER.info("Shutting down socket {}", remoteAddress);
 
         }
 
@@ -101,15 +160,35 @@ public class MessageServer {
     }
 
     private static final Logger LOGGER = LoggerFactory.getLogger(MessageServer.class);
+    private static final String NAME_COMMUNICATION_IO_POOL = "Robo4J Communication IO Pool";
+    private static final String NAME_COMMUNICATION_IO_THREAD_PREFIX = "Robo4J-Communication-IO";
     private static final String NAME_COMMUNICATION_WORKER_POOL = "Robo4J Communication Worker Pool";
     private static final String NAME_COMMUNICATION_THREAD_PREFIX = "Robo4J-Communication-Worker";
+    private static final String NAME_COMMUNICATION_REPLY_POOL = "Robo4J Communication Reply Pool";
+    private static final String NAME_COMMUNICATION_REPLY_THREAD_PREFIX = "Robo4J-Communication-Reply";
+    private static final String NAME_COMMUNICATION_DISPATCH_POOL = "Robo4J Communication Dispatch Pool";
+    private static final String NAME_COMMUNICATION_DISPATCH_THREAD_PREFIX = "Robo4J-Communication-Dispatch";
+    private static final int KEEP_ALIVE_SECONDS = 60;
 
     private volatile int listeningPort = 0;
     private volatile String listeningHost;
+    private volatile ServerSocketChannel serverChannel;
     private final AtomicBoolean serverActive = new AtomicBoolean(false);
     private final MessageCallback callback;
     private final Configuration configuration;
-    private final ExecutorService executors;
+    /*
+     * The reactors and executors of the current run, guarded by reactors
+     */
+    private final List<MessageReactor> reactors = new ArrayList<>();
+    private ExecutorService legacyExecutor;
+    /*
+     * Writes the messages sent back to the clients, see ReplyWriter
+     */
+    private ExecutorService replyExecutor;
+    /*
+     * Calls the callback with the messages read by the reactors
+     */
+    private ExecutorService dispatchExecutor;
 
 
     /**
@@ -121,16 +200,12 @@ public class MessageServer {
     public MessageServer(MessageCallback callback, Configuration configuration) {
         this.callback = callback;
         this.configuration = configuration;
-        var roboThreadFactory = new RoboThreadFactory
-                .Builder(NAME_COMMUNICATION_WORKER_POOL)
-                .addThreadPrefix(NAME_COMMUNICATION_THREAD_PREFIX)
-                .build();
-        this.executors = Executors.newCachedThreadPool(roboThreadFactory);
     }
 
     /**
      * This will be blocking/running until stop is called (and perhaps for longer).
-     * Dispatch in whatever thread you feel appropriate.
+     * Dispatch in whatever thread you feel appropriate. The server may be
+     * started again once stopped.
      *
      * @throws IOException exception
      */
@@ -141,24 +216,119 @@ public class MessageServer {
             bindAddress = InetAddress.getByName(host);
         }
 
-        try (ServerSocket serverSocket = new ServerSocket(configuration.getInteger(KEY_PORT, 0),
-                configuration.getInteger("backlog", 20), bindAddress)) {
-            listeningHost = serverSocket.getInetAddress().getHostAddress();
-            listeningPort = serverSocket.getLocalPort();
+        int ioThreads = Math.max(1, configuration.getInteger(KEY_IO_THREADS, DEFAULT_IO_THREADS));
+        int maxFrameSize = configuration.getInteger(KEY_MAX_FRAME_SIZE, DEFAULT_MAX_FRAME_SIZE);
+        int writeTimeoutMillis = configuration.getInteger(KEY_WRITE_TIMEOUT_MILLIS, DEFAULT_WRITE_TIMEOUT_MILLIS);
+        var ioThreadFactory = new RoboThreadFactory
+                .Builder(NAME_COMMUNICATION_IO_POOL)
+                .addThreadPrefix(NAME_COMMUNICATION_IO_THREAD_PREFIX)
+                .build();
+        try (ServerSocketChannel channel = ServerSocketChannel.open()) {
+            channel.bind(new InetSocketAddress(bindAddress, configuration.getInteger(KEY_PORT, 0)),
+                    configuration.getInteger("backlog", 20));
+            serverChannel = channel;
+            List<MessageReactor> startedReactors = new ArrayList<>(ioThreads);
+            synchronized (reactors) {
+                replyExecutor = Executors.newFixedThreadPool(Math.max(1, configuration.getInteger(KEY_REPLY_THREADS, DEFAULT_REPLY_THREADS)),
+                        new RoboThreadFactory
+                                .Builder(NAME_COMMUNICATION_REPLY_POOL)
+                                .addThreadPrefix(NAME_COMMUNICATION_REPLY_THREAD_PREFIX)
+                                .build());
+                dispatchExecutor = Executors.newFixedThreadPool(
+                        Math.max(1, configuration.getInteger(KEY_DISPATCH_THREADS, DEFAULT_DISPATCH_THREADS)),
+                        new RoboThreadFactory
+                                .Builder(NAME_COMMUNICATION_DISPATCH_POOL)
+                                .addThreadPrefix(NAME_COMMUNICATION_DISPATCH_THREAD_PREFIX)
+                                .build());
+                for (int i = 0; i < ioThreads; i++) {
+                    var reactor = new MessageReactor(this, callback, replyExecutor, dispatchExecutor, maxFrameSize,
+                            writeTimeoutMillis);
+                    startedReactors.add(reactor);
+                    ioThreadFactory.newThread(reactor).start();
+                }
+                reactors.addAll(startedReactors);
+            }
+            var localAddress = (InetSocketAddress) channel.getLocalAddress();
+            listeningHost = localAddress.getAddress().getHostAddress();
+            listeningPort = localAddress.getPort();
             serverActive.set(true);
+            int next = 0;
             while (serverActive.get()) {
-                var messageHandler = new MessageHandler(serverSocket.accept(), callback, serverActive);
-                executors.submit(messageHandler);
+                SocketChannel connection = channel.accept();
+                startedReactors.get(next).register(connection);
+                next = (next + 1) % startedReactors.size();
             }
+        } catch (ClosedChannelException e) {
+            // Closed by stop()
+            LOGGER.debug("Stopped listening for connections");
         } finally {
-            serverActive.set(false);
-            executors.shutdown();
+            stop();
         }
     }
 
     public void stop() {
         serverActive.set(false);
-        executors.shutdown();
+        ServerSocketChannel channel = serverChannel;
+        if (channel != null) {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                LOGGER.error("Could not close server socket", e);
+            }
+        }
+        synchronized (reactors) {
+            reactors.forEach(MessageReactor::stop);
+            reactors.clear();
+            if (legacyExecutor != null) {
+                legacyExecutor.shutdown();
+                legacyExecutor = null;
+            }
+            if (replyExecutor != null) {
+                replyExecutor.shutdown();
+                replyExecutor = null;
+            }
+            if (dispatchExecutor != null) {
+                dispatchExecutor.shutdown();
+                dispatchExecutor = null;
+            }
+        }
+    }
+
+    /**
+     * Serves a connection from a client speaking the legacy object stream
+     * protocol on a thread of its own.
+     *
+     * @param channel  the connection, already in blocking mode
+     * @param consumed the bytes already read off the connection
+     */
+    void handleLegacyConnection(SocketChannel channel, byte[] consumed) throws IOException {
+        LOGGER.info("Serving legacy protocol connection {}", channel.getRemoteAddress());
+        var inputStream = new SequenceInputStream(new ByteArrayInputStream(consumed), channel.socket().getInputStream());
+        synchronized (reactors) {
+            if (!serverActive.get() || replyExecutor == null) {
+                channel.close();
+                return;
+            }
+            var handler = new MessageHandler(channel.getRemoteAddress(), inputStream, channel.socket().getOutputStream(),
+                    callback, replyExecutor, serverActive);
+            if (legacyExecutor == null) {
+                var roboThreadFactory = new RoboThreadFactory
+                        .Builder(NAME_COMMUNICATION_WORKER_POOL)
+                        .addThreadPrefix(NAME_COMMUNICATION_THREAD_PREFIX)
+                        .build();
+                // No queue, a connection waiting for a thread would not be
+                // served anyway
+                int maxConnections = Math.max(1, configuration.getInteger(KEY_MAX_LEGACY_CONNECTIONS, DEFAULT_MAX_LEGACY_CONNECTIONS));
+                legacyExecutor = new ThreadPoolExecutor(0, maxConnections, KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+                        new SynchronousQueue<>(), roboThreadFactory);
+            }
+            try {
+                legacyExecutor.execute(handler);
+            } catch (RejectedExecutionException e) {
+                LOGGER.warn("Too many legacy protocol connections, closing {}", channel.getRemoteAddress());
+                channel.close();
+            }
+        }
     }
 
     public int getListeningPort() {
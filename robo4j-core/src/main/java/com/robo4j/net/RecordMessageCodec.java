@@ -0,0 +1,312 @@
+/*
+ * Copyright (c) 2014, 2024, Marcus Hirt, Miroslav Wengner
+ *
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.robo4j.net;
+
+import com.robo4j.journal.MessageCodec;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.RecordComponent;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+/**
+ * Codec derived from the components of a record. The components are written
+ * in declaration order without any names or type information, so both sides
+ * must use the same version of the record.
+ * <p>
+ * Supported components are primitives and their boxes, strings, enums,
+ * primitive arrays and any type that itself has a codec in the
+ * {@link MessageCodecRegistry}.
+ *
+ * @param <T> the record type.
+ * @author Marcus Hirt (@hirt)
+ * @author Miroslav Wengner (@miragemiko)
+ */
+final class RecordMessageCodec<T extends Record> implements MessageCodec<T> {
+    private static final byte NULL = 0;
+    private static final byte PRESENT = 1;
+
+    private interface ComponentCodec {
+        void encode(Object value, ByteBuffer buffer);
+
+        Object decode(ByteBuffer buffer);
+    }
+
+    private record PrimitiveCodec(BiConsumer<Object, ByteBuffer> encoder, Function<ByteBuffer, Object> decoder) implements ComponentCodec {
+        @Override
+        public void encode(Object value, ByteBuffer buffer) {
+            encoder.accept(value, buffer);
+        }
+
+        @Override
+        public Object decode(ByteBuffer buffer) {
+            return decoder.apply(buffer);
+        }
+    }
+
+    /**
+     * Prefixes a nullable value with a presence byte.
+     */
+    private record NullableCodec(ComponentCodec codec) implements ComponentCodec {
+        @Override
+        public void encode(Object value, ByteBuffer buffer) {
+            if (value == null) {
+                buffer.put(NULL);
+            } else {
+                buffer.put(PRESENT);
+                codec.encode(value, buffer);
+            }
+        }
+
+        @Override
+        public Object decode(ByteBuffer buffer) {
+            return buffer.get() == NULL ? null : codec.decode(buffer);
+        }
+    }
+
+    private record EnumCodec(Object[] constants) implements ComponentCodec {
+        @Override
+        public void encode(Object value, ByteBuffer buffer) {
+            buffer.putInt(((Enum<?>) value).ordinal());
+        }
+
+        @Override
+        public Object decode(ByteBuffer buffer) {
+            int ordinal = buffer.getInt();
+            // Corrupt like a length that does not fit, see getLength
+            if (ordinal < 0 || ordinal >= constants.length) {
+                throw new BufferUnderflowException();
+            }
+            return constants[ordinal];
+        }
+    }
+
+    /**
+     * Writes a value with a codec of its own, prefixed by its encoded length.
+     */
+    private record NestedCodec(MessageCodec<Object> codec) implements ComponentCodec {
+        @Override
+        public void encode(Object value, ByteBuffer buffer) {
+            int lengthPosition = buffer.position();
+            buffer.position(lengthPosition + Integer.BYTES);
+            codec.encode(value, buffer);
+            buffer.putInt(lengthPosition, buffer.position() - lengthPosition - Integer.BYTES);
+        }
+
+        @Override
+        public Object decode(ByteBuffer buffer) {
+            int length = getLength(buffer, Byte.BYTES);
+            Object value = codec.decode(buffer.slice(buffer.position(), length));
+            buffer.position(buffer.position() + length);
+            return value;
+        }
+    }
+
+    private static final Map<Class<?>, ComponentCodec> PRIMITIVE_CODECS = Map.ofEntries(
+            Map.entry(boolean.class, new PrimitiveCodec((v, b) -> b.put((byte) ((Boolean) v ? 1 : 0)), b -> b.get() != 0)),
+            Map.entry(byte.class, new PrimitiveCodec((v, b) -> b.put((Byte) v), ByteBuffer::get)),
+            Map.entry(short.class, new PrimitiveCodec((v, b) -> b.putShort((Short) v), ByteBuffer::getShort)),
+            Map.entry(char.class, new PrimitiveCodec((v, b) -> b.putChar((Character) v), ByteBuffer::getChar)),
+            Map.entry(int.class, new PrimitiveCodec((v, b) -> b.putInt((Integer) v), ByteBuffer::getInt)),
+            Map.entry(long.class, new PrimitiveCodec((v, b) -> b.putLong((Long) v), ByteBuffer::getLong)),
+            Map.entry(float.class, new PrimitiveCodec((v, b) -> b.putFloat((Float) v), ByteBuffer::getFloat)),
+            Map.entry(double.class, new PrimitiveCodec((v, b) -> b.putDouble((Double) v), ByteBuffer::getDouble)));
+
+    private static final Map<Class<?>, Class<?>> BOXED_TYPES = Map.of(Boolean.class, boolean.class, Byte.class, byte.class,
+            Short.class, short.class, Character.class, char.class, Integer.class, int.class, Long.class, long.class,
+            Float.class, float.class, Double.class, double.class);
+
+    private static final Map<Class<?>, ComponentCodec> REFERENCE_CODECS = Map.of(
+            String.class, new PrimitiveCodec(RecordMessageCodec::putString, RecordMessageCodec::getString),
+            byte[].class, new PrimitiveCodec((v, b) -> {
+                byte[] array = (byte[]) v;
+                b.putInt(array.length).put(array);
+            }, b -> {
+                byte[] array = new byte[getLength(b, Byte.BYTES)];
+                b.get(array);
+                return array;
+            }),
+            int[].class, new PrimitiveCodec((v, b) -> {
+                int[] array = (int[]) v;
+                b.putInt(array.length);
+                b.asIntBuffer().put(array);
+                b.position(b.position() + array.length * Integer.BYTES);
+            }, b -> {
+                int[] array = new int[getLength(b, Integer.BYTES)];
+                b.asIntBuffer().get(array);
+                b.position(b.position() + array.length * Integer.BYTES);
+                return array;
+            }),
+            long[].class, new PrimitiveCodec((v, b) -> {
+                long[] array = (long[]) v;
+                b.putInt(array.length);
+                b.asLongBuffer().put(array);
+                b.position(b.position() + array.length * Long.BYTES);
+            }, b -> {
+                long[] array = new long[getLength(b, Long.BYTES)];
+                b.asLongBuffer().get(array);
+                b.position(b.position() + array.length * Long.BYTES);
+                return array;
+            }),
+            float[].class, new PrimitiveCodec((v, b) -> {
+                float[] array = (float[]) v;
+                b.putInt(array.length);
+                b.asFloatBuffer().put(array);
+                b.position(b.position() + array.length * Float.BYTES);
+            }, b -> {
+                float[] array = new float[getLength(b, Float.BYTES)];
+                b.asFloatBuffer().get(array);
+                b.position(b.position() + array.length * Float.BYTES);
+                return array;
+            }),
+            double[].class, new PrimitiveCodec((v, b) -> {
+                double[] array = (double[]) v;
+                b.putInt(array.length);
+                b.asDoubleBuffer().put(array);
+                b.position(b.position() + array.length * Double.BYTES);
+            }, b -> {
+                double[] array = new double[getLength(b, Double.BYTES)];
+                b.asDoubleBuffer().get(array);
+                b.position(b.position() + array.length * Double.BYTES);
+                return array;
+            }));
+
+    private final Class<T> recordType;
+    private final Method[] accessors;
+    private final ComponentCodec[] componentCodecs;
+    private final Constructor<T> constructor;
+
+    private RecordMessageCodec(Class<T> recordType, Method[] accessors, ComponentCodec[] componentCodecs, Constructor<T> constructor) {
+        this.recordType = recordType;
+        this.accessors = accessors;
+        this.componentCodecs = componentCodecs;
+        this.constructor = constructor;
+    }
+
+    /**
+     * @return the codec for the record, or null if one of its components can
+     * not be encoded or the record is not accessible.
+     */
+    static <T extends Record> RecordMessageCodec<T> create(Class<T> recordType, MessageCodecRegistry registry, Set<Class<?>> inProgress) {
+        RecordComponent[] components = recordType.getRecordComponents();
+        Method[] accessors = new Method[components.length];
+        ComponentCodec[] componentCodecs = new ComponentCodec[components.length];
+        Class<?>[] parameterTypes = new Class<?>[components.length];
+        for (int i = 0; i < components.length; i++) {
+            Class<?> type = components[i].getType();
+            ComponentCodec componentCodec = getComponentCodec(type, registry, inProgress);
+            if (componentCodec == null) {
+                return null;
+            }
+            accessors[i] = components[i].getAccessor();
+            componentCodecs[i] = componentCodec;
+            parameterTypes[i] = type;
+        }
+        try {
+            Constructor<T> constructor = recordType.getDeclaredConstructor(parameterTypes);
+            constructor.setAccessible(true);
+            for (Method accessor : accessors) {
+                accessor.setAccessible(true);
+            }
+            return new RecordMessageCodec<>(recordType, accessors, componentCodecs, constructor);
+        } catch (NoSuchMethodException | RuntimeException e) {
+            // Not accessible from this module, use java serialization instead
+            return null;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static ComponentCodec getComponentCodec(Class<?> type, MessageCodecRegistry registry, Set<Class<?>> inProgress) {
+        ComponentCodec codec = PRIMITIVE_CODECS.get(type);
+        if (codec != null) {
+            return codec;
+        }
+        Class<?> primitiveType = BOXED_TYPES.get(type);
+        if (primitiveType != null) {
+            return new NullableCodec(PRIMITIVE_CODECS.get(primitiveType));
+        }
+        codec = REFERENCE_CODECS.get(type);
+        if (codec != null) {
+            return new NullableCodec(codec);
+        }
+        if (type.isEnum()) {
+            return new NullableCodec(new EnumCodec(type.getEnumConstants()));
+        }
+        MessageCodec<?> messageCodec = registry.resolve(type, inProgress);
+        return messageCodec == null ? null : new NullableCodec(new NestedCodec((MessageCodec<Object>) messageCodec));
+    }
+
+    @Override
+    public Class<T> getMessageType() {
+        return recordType;
+    }
+
+    @Override
+    public void encode(T message, ByteBuffer buffer) {
+        try {
+            for (int i = 0; i < accessors.length; i++) {
+                componentCodecs[i].encode(accessors[i].invoke(message), buffer);
+            }
+        } catch (IllegalAccessException | InvocationTargetException e) {
+            throw new IllegalStateException("Could not read components of " + message, e);
+        }
+    }
+
+    @Override
+    public T decode(ByteBuffer buffer) {
+        Object[] values = new Object[componentCodecs.length];
+        for (int i = 0; i < componentCodecs.length; i++) {
+            values[i] = componentCodecs[i].decode(buffer);
+        }
+        try {
+            return constructor.newInstance(values);
+        } catch (InstantiationException | IllegalAccessException | InvocationTargetException e) {
+            throw new IllegalStateException("Could not create " + recordType.getName(), e);
+        }
+    }
+
+    private static void putString(Object value, ByteBuffer buffer) {
+        byte[] bytes = ((String) value).getBytes(StandardCharsets.UTF_8);
+        buffer.putInt(bytes.length).put(bytes);
+    }
+
+    /**
+     * Reads a length, and checks it against the rest of the buffer before
+     * anything is allocated for it, so that a corrupt length cannot exhaust
+     * the heap.
+     */
+    private static int getLength(ByteBuffer buffer, int elementSize) {
+        int length = buffer.getInt();
+        if (length < 0 || length > buffer.remaining() / elementSize) {
+            throw new BufferUnderflowException();
+        }
+        return length;
+    }
+
+    private static String getString(ByteBuffer buffer) {
+        byte[] bytes = new byte[getLength(buffer, Byte.BYTES)];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
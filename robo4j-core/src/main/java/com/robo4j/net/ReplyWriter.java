@@ -0,0 +1,135 @@
+/*
+ * Copyright (c) 2014, 2024, Marcus Hirt, Miroslav Wengner
+ *
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.robo4j.net;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Single writer for the messages sent back to the client of one connection.
+ * Senders only enqueue; the queued messages are written in batches by at most
+ * one task at a time, scheduled on the given executor, with one flush per
+ * batch. The object stream is reset after every batch, so messages written
+ * earlier are not kept reachable.
+ *
+ * @author Marcus Hirt (@hirt)
+ * @author Miroslav Wengner (@miragemiko)
+ */
+final class ReplyWriter {
+    private static final Logger LOGGER = LoggerFactory.getLogger(ReplyWriter.class);
+    private static final int BUFFER_SIZE = 8 * 1024;
+    /*
+     * Yield the executor thread after this many messages, to be fair to
+     * other connections
+     */
+    private static final int MAX_BATCH_SIZE = 256;
+
+    /**
+     * Writes on the sending thread, unless another thread is already writing.
+     */
+    static final Executor DIRECT_EXECUTOR = Runnable::run;
+
+    private record Reply(String contextId, String id, Object message) {
+    }
+
+    private final String uuid;
+    private final Executor executor;
+    private final ObjectOutputStream outputStream;
+    private final Queue<Reply> queue = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean scheduled = new AtomicBoolean();
+    private volatile boolean failed;
+
+    ReplyWriter(String uuid, OutputStream out, Executor executor) throws IOException {
+        this.uuid = uuid;
+        this.executor = executor;
+        this.outputStream = new ObjectOutputStream(new BufferedOutputStream(out, BUFFER_SIZE));
+        // The client is waiting for the stream header
+        outputStream.flush();
+    }
+
+    /**
+     * Queues a message for the client. Only blocks when writing on the
+     * sending thread, see {@link #DIRECT_EXECUTOR}.
+     */
+    void send(String contextId, String id, Object message) {
+        if (failed) {
+            LOGGER.debug("Connection to {} failed, dropping message {}", uuid, message);
+            return;
+        }
+        queue.add(new Reply(contextId, id, message));
+        schedule();
+    }
+
+    private void schedule() {
+        if (scheduled.compareAndSet(false, true)) {
+            submitDrain();
+        }
+    }
+
+    private void submitDrain() {
+        try {
+            executor.execute(this::drain);
+        } catch (RejectedExecutionException e) {
+            LOGGER.debug("Server stopped, dropping {} messages to {}", queue.size(), uuid);
+            queue.clear();
+            scheduled.set(false);
+        }
+    }
+
+    private void drain() {
+        while (true) {
+            writeBatch();
+            scheduled.set(false);
+            if (queue.isEmpty() || !scheduled.compareAndSet(false, true)) {
+                return;
+            }
+            if (executor != DIRECT_EXECUTOR) {
+                submitDrain();
+                return;
+            }
+        }
+    }
+
+    private void writeBatch() {
+        try {
+            Reply reply;
+            int count = 0;
+            while (count < MAX_BATCH_SIZE && (reply = queue.poll()) != null) {
+                outputStream.writeUTF(reply.contextId());
+                outputStream.writeUTF(reply.id());
+                outputStream.writeObject(reply.message());
+                count++;
+            }
+            outputStream.reset();
+            outputStream.flush();
+        } catch (IOException e) {
+            LOGGER.error("Failed to send messages to {}, dropping {} queued messages", uuid, queue.size(), e);
+            failed = true;
+            queue.clear();
+        }
+    }
+}
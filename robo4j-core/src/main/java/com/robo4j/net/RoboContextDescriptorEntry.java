@@ -26,6 +26,6 @@ import java.net.InetAddress;
  */
 class RoboContextDescriptorEntry {
 	public RoboContextDescriptor descriptor;
-	public long lastAccess;
+	public volatile long lastAccess;
 	public InetAddress address;
 }
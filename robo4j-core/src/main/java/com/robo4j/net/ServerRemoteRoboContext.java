@@ -21,15 +21,16 @@ import com.robo4j.LifecycleState;
 import com.robo4j.RoboContext;
 import com.robo4j.RoboReference;
 import com.robo4j.configuration.Configuration;
+import com.robo4j.scheduler.PeriodicExecutive;
 import com.robo4j.scheduler.Scheduler;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
-import java.io.ObjectOutputStream;
 import java.io.OutputStream;
 import java.util.Collection;
 import java.util.Map;
+import java.util.concurrent.Executor;
 import java.util.concurrent.Future;
 
 /**
@@ -41,7 +42,7 @@ import java.util.concurrent.Future;
 public class ServerRemoteRoboContext implements RoboContext {
     private static final Logger LOGGER = LoggerFactory.getLogger(ServerRemoteRoboContext.class);
     private final String uuid;
-    private final ObjectOutputStream outputStream;
+    private final ReplyWriter replyWriter;
 
     @SuppressWarnings("rawtypes")
     private class ServerRemoteRoboReference implements RoboReference {
@@ -99,15 +100,9 @@ public class ServerRemoteRoboContext implements RoboContext {
 
         @Override
         public void sendMessage(Object message) {
-            try {
-                // FIXME: Change the serialization to be the same as for the
-                // client to server
-                outputStream.writeUTF(getTargetContextId());
-                outputStream.writeUTF(id());
-                outputStream.writeObject(message);
-            } catch (IOException e) {
-                LOGGER.error("send message:{}", message, e);
-            }
+            // FIXME: Change the serialization to be the same as for the
+            // client to server
+            replyWriter.send(getTargetContextId(), id(), message);
         }
 
         @Override
@@ -130,9 +125,27 @@ public class ServerRemoteRoboContext implements RoboContext {
         }
     }
 
+    /**
+     * Creates a context writing on the thread sending the message, unless
+     * another thread is already writing to the connection.
+     *
+     * @param uuid the id of the remote context.
+     * @param out  the stream to the remote context.
+     * @throws IOException if the stream header could not be written.
+     */
     public ServerRemoteRoboContext(String uuid, OutputStream out) throws IOException {
+        this(uuid, out, ReplyWriter.DIRECT_EXECUTOR);
+    }
+
+    /**
+     * @param uuid           the id of the remote context.
+     * @param out            the stream to the remote context.
+     * @param writerExecutor the executor writing the queued messages.
+     * @throws IOException if the stream header could not be written.
+     */
+    public ServerRemoteRoboContext(String uuid, OutputStream out, Executor writerExecutor) throws IOException {
         this.uuid = uuid;
-        this.outputStream = new ObjectOutputStream(out);
+        this.replyWriter = new ReplyWriter(uuid, out, writerExecutor);
     }
 
     @Override
@@ -177,6 +190,11 @@ public class ServerRemoteRoboContext implements RoboContext {
         return null;
     }
 
+    @Override
+    public PeriodicExecutive getPeriodicExecutive() {
+        throw new UnsupportedOperationException("Accessing the PeriodicExecutive remotely is not supported. Use the local one.");
+    }
+
     @Override
     public String getId() {
         return uuid;
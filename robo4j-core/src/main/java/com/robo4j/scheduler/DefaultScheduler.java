@@ -18,19 +18,26 @@ package com.robo4j.scheduler;
 
 import com.robo4j.RoboContext;
 import com.robo4j.RoboReference;
-import com.robo4j.RoboUnit;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.concurrent.Callable;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Future;
+import java.util.concurrent.RunnableScheduledFuture;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.ScheduledThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 /**
  * This is the default scheduler used in Robo4J.
+ * <p>
+ * Runnables handed to {@link #executeUrgent(Runnable)} are ordered ahead of all
+ * other work which is due, so that control messages do not wait behind a flood
+ * of regular messages.
  *
  * @author Marcus Hirt (@hirt)
  * @author Miroslav Wengner (@miragemiko)
@@ -41,6 +48,8 @@ public final class DefaultScheduler implements Scheduler {
     private static final int TERMINATION_TIMEOUT_SEC = 4;
     private static final String THREAD_GROUP_SCHEDULER_NAME = "Robo4J Scheduler";
     private static final String THREAD_PREFIX_SCHEDULER_NAME = "Robo4J-Scheduler-";
+    // Urgent tasks are treated as if they had been due this much earlier
+    private static final long URGENT_ADVANCE_NANOS = TimeUnit.DAYS.toNanos(1);
 
     private final ScheduledExecutorService executor;
     private final RoboContext context;
@@ -67,7 +76,7 @@ public final class DefaultScheduler implements Scheduler {
                 .addThreadPrefix(THREAD_PREFIX_SCHEDULER_NAME)
                 .build();
 
-        this.executor = new ScheduledThreadPoolExecutor(numberOfThreads, schedulerThreadFactory);
+        this.executor = new PrioritizingExecutor(numberOfThreads, schedulerThreadFactory);
     }
 
     @Override
@@ -103,14 +112,10 @@ public final class DefaultScheduler implements Scheduler {
     }
 
     static <T> void deliverMessage(final RoboReference<T> reference, final T message) {
-        // Performance optimization - let the scheduling thread deliver the
-        // message directly if this is robo unit implementation, instead of
-        // enqueuing it with the message executor.
-        if (reference instanceof RoboUnit) {
-            ((RoboUnit<T>) reference).onMessage(message);
-        } else {
-            reference.sendMessage(message);
-        }
+        // Always go through the mailbox of the unit, so that the delivery
+        // traits, the mailbox bounds and the delivery metrics apply to
+        // scheduled messages as well.
+        reference.sendMessage(message);
     }
 
     @Override
@@ -119,8 +124,8 @@ public final class DefaultScheduler implements Scheduler {
     }
 
     @Override
-    public void schedule(Runnable runnable, long delay, TimeUnit unit) {
-        executor.schedule(runnable, delay, unit);
+    public ScheduledFuture<?> schedule(Runnable runnable, long delay, TimeUnit unit) {
+        return executor.schedule(runnable, delay, unit);
     }
 
     @Override
@@ -128,8 +133,89 @@ public final class DefaultScheduler implements Scheduler {
         executor.execute(r);
     }
 
+    @Override
+    public void executeUrgent(Runnable r) {
+        executor.execute(new UrgentRunnable(r));
+    }
+
     @Override
     public <T> Future<T> submit(Callable<T> r) {
         return executor.submit(r);
     }
+
+    private record UrgentRunnable(Runnable delegate) implements Runnable {
+        @Override
+        public void run() {
+            delegate.run();
+        }
+    }
+
+    /**
+     * Moves urgent tasks to the head of the work queue, by making them appear
+     * to have been due for a long time.
+     */
+    private static final class PrioritizingExecutor extends ScheduledThreadPoolExecutor {
+        PrioritizingExecutor(int corePoolSize, RoboThreadFactory threadFactory) {
+            super(corePoolSize, threadFactory);
+            // Ask timeouts are cancelled when answered, and should not stay
+            // queued until they expire
+            setRemoveOnCancelPolicy(true);
+        }
+
+        @Override
+        protected <V> RunnableScheduledFuture<V> decorateTask(Runnable runnable, RunnableScheduledFuture<V> task) {
+            return runnable instanceof UrgentRunnable ? new UrgentTask<>(task) : task;
+        }
+    }
+
+    private record UrgentTask<V>(RunnableScheduledFuture<V> delegate) implements RunnableScheduledFuture<V> {
+        @Override
+        public boolean isPeriodic() {
+            return delegate.isPeriodic();
+        }
+
+        @Override
+        public long getDelay(TimeUnit unit) {
+            return unit.convert(delegate.getDelay(TimeUnit.NANOSECONDS) - URGENT_ADVANCE_NANOS, TimeUnit.NANOSECONDS);
+        }
+
+        @Override
+        public int compareTo(Delayed other) {
+            if (other instanceof UrgentTask<?> urgent) {
+                return delegate.compareTo(urgent.delegate);
+            }
+            int result = Long.compare(getDelay(TimeUnit.NANOSECONDS), other.getDelay(TimeUnit.NANOSECONDS));
+            return result != 0 ? result : -1;
+        }
+
+        @Override
+        public void run() {
+            delegate.run();
+        }
+
+        @Override
+        public boolean cancel(boolean mayInterruptIfRunning) {
+            return delegate.cancel(mayInterruptIfRunning);
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return delegate.isCancelled();
+        }
+
+        @Override
+        public boolean isDone() {
+            return delegate.isDone();
+        }
+
+        @Override
+        public V get() throws InterruptedException, ExecutionException {
+            return delegate.get();
+        }
+
+        @Override
+        public V get(long timeout, TimeUnit unit) throws InterruptedException, ExecutionException, TimeoutException {
+            return delegate.get(timeout, unit);
+        }
+    }
 }
@@ -0,0 +1,465 @@
+/*
+ * Copyright (c) 2014, 2024, Marcus Hirt, Miroslav Wengner
+ *
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.robo4j.scheduler;
+
+import com.robo4j.RoboContext;
+import com.robo4j.RoboReference;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A {@link Scheduler} backed by a hashed timing wheel, for systems with many
+ * scheduled messages and timeouts. Scheduling and cancelling are O(1), and
+ * cancelled tasks are unlinked from the wheel right away, instead of staying in
+ * a heap until their delay has expired as with the {@link DefaultScheduler}.
+ * <p>
+ * The price is resolution: tasks are released on the first tick at, or after,
+ * their deadline. A single timer thread advances the wheel, and hands the due
+ * tasks to a pool of worker threads, which also run the tasks handed to
+ * {@link #execute(Runnable)} and {@link #submit(Callable)}.
+ *
+ * @author Marcus Hirt (@hirt)
+ * @author Miroslav Wengner (@miragemiko)
+ */
+public final class HashedWheelScheduler implements Scheduler {
+    private static final Logger LOGGER = LoggerFactory.getLogger(HashedWheelScheduler.class);
+    /**
+     * The default duration of a tick, in milliseconds.
+     */
+    public static final int DEFAULT_TICK_MILLIS = 1;
+    /**
+     * The default number of buckets in the wheel.
+     */
+    public static final int DEFAULT_WHEEL_SIZE = 512;
+    private static final int DEFAULT_NUMBER_OF_THREADS = 2;
+    private static final int TERMINATION_TIMEOUT_SEC = 4;
+    private static final String THREAD_GROUP_SCHEDULER_NAME = "Robo4J Wheel Scheduler";
+    private static final String THREAD_PREFIX_SCHEDULER_NAME = "Robo4J-Wheel-Scheduler-";
+    private static final String THREAD_NAME_TIMER = "Robo4J-Wheel-Timer";
+
+    private final RoboContext context;
+    private final long tickNanos;
+    private final Bucket[] wheel;
+    private final int mask;
+    private final long startTime;
+    private final Queue<WheelTimeout> pendingTimeouts = new ConcurrentLinkedQueue<>();
+    private final Queue<WheelTimeout> cancelledTimeouts = new ConcurrentLinkedQueue<>();
+    private final LinkedBlockingDeque<Runnable> workQueue = new LinkedBlockingDeque<>();
+    private final ThreadPoolExecutor executor;
+    private final Thread timerThread;
+    private volatile boolean shutdown;
+    // Only accessed by the timer thread
+    private long tick;
+
+    /**
+     * Default constructor.
+     *
+     * @param context the context.
+     */
+    public HashedWheelScheduler(RoboContext context) {
+        this(context, DEFAULT_NUMBER_OF_THREADS);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param context         the context.
+     * @param numberOfThreads the number of threads in the worker thread pool.
+     */
+    public HashedWheelScheduler(RoboContext context, int numberOfThreads) {
+        this(context, numberOfThreads, DEFAULT_TICK_MILLIS, TimeUnit.MILLISECONDS, DEFAULT_WHEEL_SIZE);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param context         the context.
+     * @param numberOfThreads the number of threads in the worker thread pool.
+     * @param tickDuration    the duration of a tick, i.e. the resolution of
+     *                        the scheduler.
+     * @param unit            the time unit of the tick duration.
+     * @param wheelSize       the number of buckets in the wheel. Rounded up to
+     *                        the next power of two.
+     */
+    public HashedWheelScheduler(RoboContext context, int numberOfThreads, long tickDuration, TimeUnit unit, int wheelSize) {
+        if (tickDuration <= 0) {
+            throw new IllegalArgumentException("The tick duration must be positive, was " + tickDuration);
+        }
+        if (wheelSize <= 0 || wheelSize > 1 << 30) {
+            throw new IllegalArgumentException("The wheel size must be in (0, 2^30], was " + wheelSize);
+        }
+        this.context = context;
+        this.tickNanos = unit.toNanos(tickDuration);
+        int buckets = 1;
+        while (buckets < wheelSize) {
+            buckets <<= 1;
+        }
+        this.wheel = new Bucket[buckets];
+        for (int i = 0; i < wheel.length; i++) {
+            wheel[i] = new Bucket();
+        }
+        this.mask = wheel.length - 1;
+
+        var threadFactory = new RoboThreadFactory
+                .Builder(THREAD_GROUP_SCHEDULER_NAME)
+                .addThreadPrefix(THREAD_PREFIX_SCHEDULER_NAME)
+                .build();
+        this.executor = new ThreadPoolExecutor(numberOfThreads, numberOfThreads, 0, TimeUnit.SECONDS, workQueue, threadFactory);
+        this.executor.prestartAllCoreThreads();
+
+        this.startTime = System.nanoTime();
+        this.timerThread = threadFactory.newThread(this::runTimer);
+        this.timerThread.setName(THREAD_NAME_TIMER);
+        this.timerThread.start();
+    }
+
+    @Override
+    public <T> ScheduledFuture<?> schedule(RoboReference<T> target, T message, long delay, long period, TimeUnit unit,
+                                           int numberOfInvocations, FinalInvocationListener listener) {
+        var command = new ScheduledMessageWrapper<>(context, target, numberOfInvocations, message, listener);
+        ScheduledFuture<?> future = scheduleAtFixedRate(command, delay, period, unit);
+        command.setFuture(future);
+        return future;
+    }
+
+    @Override
+    public <T> ScheduledFuture<?> schedule(RoboReference<T> target, T message, long delay, long interval, TimeUnit unit,
+                                           int numberOfInvocations) {
+        return schedule(target, message, delay, interval, unit, numberOfInvocations, null);
+    }
+
+    @Override
+    public <T> ScheduledFuture<?> schedule(RoboReference<T> target, T message, long delay, long interval, TimeUnit unit) {
+        return scheduleAtFixedRate(() -> DefaultScheduler.deliverMessage(target, message), delay, interval, unit);
+    }
+
+    @Override
+    public void execute(Runnable r) {
+        executor.execute(r);
+    }
+
+    @Override
+    public void executeUrgent(Runnable r) {
+        // The workers are all started, so putting the task first in the queue
+        // is enough to have it picked up next
+        if (shutdown || executor.isShutdown()) {
+            throw new RejectedExecutionException("The scheduler is shut down");
+        }
+        workQueue.offerFirst(r);
+    }
+
+    @Override
+    public <T> Future<T> submit(Callable<T> r) {
+        return executor.submit(r);
+    }
+
+    @Override
+    public ScheduledFuture<?> schedule(Runnable runnable, long delay, TimeUnit unit) {
+        return addTimeout(runnable, delay, 0, unit);
+    }
+
+    @Override
+    public ScheduledFuture<?> scheduleAtFixedRate(Runnable runnable, long delay, long interval, TimeUnit unit) {
+        if (interval <= 0) {
+            throw new IllegalArgumentException("The interval must be positive, was " + interval);
+        }
+        return addTimeout(runnable, delay, interval, unit);
+    }
+
+    @Override
+    public void shutdown() throws InterruptedException {
+        shutdown = true;
+        LockSupport.unpark(timerThread);
+        timerThread.join(TimeUnit.SECONDS.toMillis(TERMINATION_TIMEOUT_SEC));
+        executor.shutdown();
+        var status = executor.awaitTermination(TERMINATION_TIMEOUT_SEC, TimeUnit.SECONDS);
+        LOGGER.debug("shutdown status:{}", status);
+    }
+
+    /**
+     * @return the number of tasks waiting in the wheel, for testing and
+     * monitoring. Only an estimate while tasks are added or cancelled.
+     */
+    public int getPendingCount() {
+        int count = pendingTimeouts.size();
+        for (Bucket bucket : wheel) {
+            count += bucket.size;
+        }
+        return count;
+    }
+
+    private WheelTimeout addTimeout(Runnable runnable, long delay, long period, TimeUnit unit) {
+        if (shutdown) {
+            throw new RejectedExecutionException("The scheduler is shut down");
+        }
+        var timeout = new WheelTimeout(runnable, System.nanoTime() + unit.toNanos(Math.max(0, delay)), unit.toNanos(period));
+        pendingTimeouts.add(timeout);
+        return timeout;
+    }
+
+    private void runTimer() {
+        while (!shutdown) {
+            long deadline = startTime + (tick + 1) * tickNanos;
+            long remaining;
+            while ((remaining = deadline - System.nanoTime()) > 0 && !shutdown) {
+                LockSupport.parkNanos(this, remaining);
+            }
+            if (shutdown) {
+                break;
+            }
+            unlinkCancelled();
+            transferPending();
+            expire(wheel[(int) (tick & mask)]);
+            tick++;
+        }
+        unlinkCancelled();
+        for (Bucket bucket : wheel) {
+            bucket.cancelAll();
+        }
+        WheelTimeout timeout;
+        while ((timeout = pendingTimeouts.poll()) != null) {
+            timeout.result.cancel(false);
+        }
+    }
+
+    private void unlinkCancelled() {
+        WheelTimeout timeout;
+        while ((timeout = cancelledTimeouts.poll()) != null) {
+            if (timeout.bucket != null) {
+                timeout.bucket.remove(timeout);
+            }
+        }
+    }
+
+    private void transferPending() {
+        WheelTimeout timeout;
+        while ((timeout = pendingTimeouts.poll()) != null) {
+            if (timeout.state.get() == WheelTimeout.STATE_CANCELLED) {
+                continue;
+            }
+            long dueTick = Math.max((timeout.deadline - startTime + tickNanos - 1) / tickNanos - 1, tick);
+            timeout.remainingRounds = (dueTick - tick) / wheel.length;
+            wheel[(int) (dueTick & mask)].add(timeout);
+        }
+    }
+
+    private void expire(Bucket bucket) {
+        WheelTimeout timeout = bucket.head;
+        while (timeout != null) {
+            WheelTimeout next = timeout.next;
+            if (timeout.remainingRounds <= 0) {
+                bucket.remove(timeout);
+                if (timeout.state.compareAndSet(WheelTimeout.STATE_WAITING, WheelTimeout.STATE_RUNNING)) {
+                    try {
+                        executor.execute(timeout);
+                    } catch (RejectedExecutionException e) {
+                        timeout.result.cancel(false);
+                    }
+                }
+            } else {
+                timeout.remainingRounds--;
+            }
+            timeout = next;
+        }
+    }
+
+    /**
+     * Doubly linked list of the timeouts hashed to one slot in the wheel. Only
+     * accessed by the timer thread.
+     */
+    private static final class Bucket {
+        private WheelTimeout head;
+        private WheelTimeout tail;
+        private volatile int size;
+
+        void add(WheelTimeout timeout) {
+            timeout.bucket = this;
+            if (head == null) {
+                head = tail = timeout;
+            } else {
+                tail.next = timeout;
+                timeout.prev = tail;
+                tail = timeout;
+            }
+            size++;
+        }
+
+        void remove(WheelTimeout timeout) {
+            if (timeout.bucket != this) {
+                return;
+            }
+            if (timeout.prev != null) {
+                timeout.prev.next = timeout.next;
+            } else {
+                head = timeout.next;
+            }
+            if (timeout.next != null) {
+                timeout.next.prev = timeout.prev;
+            } else {
+                tail = timeout.prev;
+            }
+            timeout.prev = null;
+            timeout.next = null;
+            timeout.bucket = null;
+            size--;
+        }
+
+        void cancelAll() {
+            while (head != null) {
+                WheelTimeout timeout = head;
+                remove(timeout);
+                timeout.result.cancel(false);
+            }
+        }
+    }
+
+    /**
+     * The outcome of a task. Unlike a CompletableFuture, cancelling it is
+     * cheap, as the CancellationException is only created if someone asks for
+     * the result.
+     */
+    private static final class Outcome extends FutureTask<Object> {
+        Outcome() {
+            super(() -> null);
+        }
+
+        void succeed() {
+            set(null);
+        }
+
+        void fail(Throwable t) {
+            setException(t);
+        }
+    }
+
+    /**
+     * A task in the wheel. Periodic tasks are put back into the wheel after
+     * each run, so that, as with the {@link DefaultScheduler}, a run never
+     * overlaps with the previous one of the same task.
+     */
+    private final class WheelTimeout implements ScheduledFuture<Object>, Runnable {
+        static final int STATE_WAITING = 0;
+        static final int STATE_RUNNING = 1;
+        static final int STATE_CANCELLED = 2;
+        static final int STATE_DONE = 3;
+
+        private final Runnable task;
+        private final long period;
+        private final AtomicInteger state = new AtomicInteger(STATE_WAITING);
+        private final Outcome result = new Outcome();
+        private volatile long deadline;
+        // Only accessed by the timer thread
+        private long remainingRounds;
+        private Bucket bucket;
+        private WheelTimeout prev;
+        private WheelTimeout next;
+
+        WheelTimeout(Runnable task, long deadline, long period) {
+            this.task = task;
+            this.deadline = deadline;
+            this.period = period;
+        }
+
+        @Override
+        public void run() {
+            try {
+                task.run();
+            } catch (Throwable t) {
+                // Like the ScheduledThreadPoolExecutor, stop repeating a
+                // task which failed
+                if (state.compareAndSet(STATE_RUNNING, STATE_DONE)) {
+                    result.fail(t);
+                }
+                return;
+            }
+            if (period == 0) {
+                if (state.compareAndSet(STATE_RUNNING, STATE_DONE)) {
+                    result.succeed();
+                }
+            } else if (state.compareAndSet(STATE_RUNNING, STATE_WAITING)) {
+                deadline += period;
+                if (shutdown) {
+                    cancel(false);
+                } else {
+                    pendingTimeouts.add(this);
+                }
+            }
+        }
+
+        @Override
+        public long getDelay(TimeUnit unit) {
+            return unit.convert(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+        }
+
+        @Override
+        public int compareTo(Delayed other) {
+            return Long.compare(getDelay(TimeUnit.NANOSECONDS), other.getDelay(TimeUnit.NANOSECONDS));
+        }
+
+        @Override
+        public boolean cancel(boolean mayInterruptIfRunning) {
+            int current;
+            do {
+                current = state.get();
+                if (current == STATE_CANCELLED || current == STATE_DONE) {
+                    return false;
+                }
+            } while (!state.compareAndSet(current, STATE_CANCELLED));
+            result.cancel(false);
+            if (current == STATE_WAITING) {
+                cancelledTimeouts.add(this);
+            }
+            return true;
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return state.get() == STATE_CANCELLED;
+        }
+
+        @Override
+        public boolean isDone() {
+            return result.isDone();
+        }
+
+        @Override
+        public Object get() throws InterruptedException, ExecutionException {
+            return result.get();
+        }
+
+        @Override
+        public Object get(long timeout, TimeUnit unit) throws InterruptedException, ExecutionException, TimeoutException {
+            return result.get(timeout, unit);
+        }
+    }
+}
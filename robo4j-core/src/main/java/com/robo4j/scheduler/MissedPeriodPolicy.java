@@ -0,0 +1,44 @@
+/*
+ * Copyright (c) 2014, 2024, Marcus Hirt, Miroslav Wengner
+ *
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.robo4j.scheduler;
+
+/**
+ * What a {@link PeriodicExecutive} does when an invocation of a periodic task
+ * runs past the release time of the next one.
+ *
+ * @author Marcus Hirt (@hirt)
+ * @author Miroslav Wengner (@miragemiko)
+ */
+public enum MissedPeriodPolicy {
+	/**
+	 * Runs the missed invocations back to back until the task is back on its
+	 * original schedule. Use for tasks which must run a fixed number of times
+	 * per second, such as integrators.
+	 */
+	CATCH_UP,
+	/**
+	 * Drops the missed invocations and continues with the next release time
+	 * on the original schedule. Use for tasks only interested in the latest
+	 * reading, such as most control loops.
+	 */
+	SKIP_MISSED,
+	/**
+	 * Releases the next invocation one period after the previous one completed.
+	 * The schedule is allowed to drift.
+	 */
+	FIXED_DELAY
+}
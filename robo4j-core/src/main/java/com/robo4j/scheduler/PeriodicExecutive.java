@@ -0,0 +1,139 @@
+/*
+ * Copyright (c) 2014, 2024, Marcus Hirt, Miroslav Wengner
+ *
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.robo4j.scheduler;
+
+import com.robo4j.jfr.PeriodicTaskEvent;
+import jdk.jfr.FlightRecorder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Executive for periodic control tasks, such as sensor integration and control
+ * loops, which need a stable period. Unlike the {@link Scheduler}, which shares
+ * a small thread pool with all other system work, the executive runs each task
+ * on its own high priority platform thread, and releases it at absolute times
+ * derived from the period, so that the schedule does not drift.
+ * <p>
+ * The jitter, execution time and deadline misses of each task are available
+ * from the {@link PeriodicTask}, and are emitted as JFR events.
+ *
+ * @author Marcus Hirt (@hirt)
+ * @author Miroslav Wengner (@miragemiko)
+ */
+public final class PeriodicExecutive {
+    private static final Logger LOGGER = LoggerFactory.getLogger(PeriodicExecutive.class);
+    private static final String THREAD_GROUP_NAME = "Robo4J Periodic";
+    private static final int TERMINATION_TIMEOUT_MILLIS = 4000;
+
+    private final String name;
+    private final RoboThreadFactory threadFactory;
+    private final List<PeriodicTask> tasks = new CopyOnWriteArrayList<>();
+    private final Runnable eventHook = this::commitEvents;
+    private volatile boolean shutdown;
+    private boolean eventHookRegistered;
+
+    /**
+     * Constructor.
+     *
+     * @param name the name of the executive, used in the thread names and the
+     *             JFR events.
+     */
+    public PeriodicExecutive(String name) {
+        this.name = name;
+        this.threadFactory = new RoboThreadFactory.Builder(THREAD_GROUP_NAME).addThreadPrefix(name).build();
+    }
+
+    /**
+     * Schedules a task to run periodically on its own thread.
+     *
+     * @param taskName     the name of the task.
+     * @param action       the action to run.
+     * @param initialDelay the delay until the first invocation.
+     * @param period       the period.
+     * @param unit         the time unit of the delay and the period.
+     * @param policy       what to do when an invocation runs past the release
+     *                     time of the next one.
+     * @return the handle of the task, used to cancel it and to read its
+     * statistics.
+     */
+    public synchronized PeriodicTask schedule(String taskName, Runnable action, long initialDelay, long period, TimeUnit unit,
+                                 MissedPeriodPolicy policy) {
+        if (shutdown) {
+            throw new IllegalStateException("The periodic executive " + name + " is shut down");
+        }
+        PeriodicTask task = new PeriodicTask(taskName, action, initialDelay, period, unit, policy, threadFactory, tasks::remove);
+        if (!eventHookRegistered) {
+            FlightRecorder.addPeriodicEvent(PeriodicTaskEvent.class, eventHook);
+            eventHookRegistered = true;
+        }
+        tasks.add(task);
+        task.start();
+        return task;
+    }
+
+    /**
+     * @return a snapshot of the tasks which have not been cancelled.
+     */
+    public List<PeriodicTask> getTasks() {
+        return tasks.stream().filter(task -> !task.isCancelled()).toList();
+    }
+
+    /**
+     * @return the name of the executive.
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Cancels all tasks, and waits for the running invocations to complete (or
+     * the timeout).
+     */
+    public void shutdown() {
+        synchronized (this) {
+            shutdown = true;
+            if (eventHookRegistered) {
+                FlightRecorder.removePeriodicEvent(eventHook);
+                eventHookRegistered = false;
+            }
+        }
+        // Tasks remove themselves from the list when their threads end, so
+        // join on a copy
+        List<PeriodicTask> running = List.copyOf(tasks);
+        for (PeriodicTask task : running) {
+            task.cancel();
+        }
+        try {
+            for (PeriodicTask task : running) {
+                task.join(TERMINATION_TIMEOUT_MILLIS);
+            }
+        } catch (InterruptedException e) {
+            LOGGER.error("Periodic executive {} was interrupted when shutting down.", name, e);
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void commitEvents() {
+        for (PeriodicTask task : tasks) {
+            task.commitEvent(name);
+        }
+    }
+}
@@ -0,0 +1,256 @@
+/*
+ * Copyright (c) 2014, 2024, Marcus Hirt, Miroslav Wengner
+ *
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.robo4j.scheduler;
+
+import com.robo4j.LatencyHistogram;
+import com.robo4j.LatencyRecorder;
+import com.robo4j.jfr.DeadlineMissEvent;
+import com.robo4j.jfr.PeriodicTaskEvent;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+
+/**
+ * A task running periodically on its own thread in a {@link PeriodicExecutive}.
+ * Keeps track of how late each invocation was released (the jitter), how long
+ * it took, and how many invocations did not complete before the release time
+ * of the next one (the deadline misses).
+ *
+ * @author Marcus Hirt (@hirt)
+ * @author Miroslav Wengner (@miragemiko)
+ */
+public final class PeriodicTask {
+    private static final Logger LOGGER = LoggerFactory.getLogger(PeriodicTask.class);
+    // Parking is not precise enough for short periods, so the last stretch
+    // before a release is spent spinning
+    private static final long SPIN_NANOS = TimeUnit.MICROSECONDS.toNanos(50);
+
+    private final String name;
+    private final Runnable action;
+    private final long initialDelayNanos;
+    private final long periodNanos;
+    private final MissedPeriodPolicy policy;
+    private final Thread thread;
+    private final Consumer<PeriodicTask> terminationListener;
+    private final LatencyRecorder jitter = new LatencyRecorder();
+    private final LatencyRecorder executionTime = new LatencyRecorder();
+    private final LongAdder invocationCount = new LongAdder();
+    private final LongAdder deadlineMissCount = new LongAdder();
+    private final LongAdder skippedCount = new LongAdder();
+    private volatile boolean cancelled;
+
+    PeriodicTask(String name, Runnable action, long initialDelay, long period, TimeUnit unit, MissedPeriodPolicy policy,
+                 RoboThreadFactory threadFactory, Consumer<PeriodicTask> terminationListener) {
+        if (period <= 0) {
+            throw new IllegalArgumentException("The period must be positive, was " + period);
+        }
+        this.name = name;
+        this.action = action;
+        this.initialDelayNanos = unit.toNanos(Math.max(0, initialDelay));
+        this.periodNanos = unit.toNanos(period);
+        this.policy = policy;
+        this.terminationListener = terminationListener;
+        this.thread = threadFactory.newThread(this::run);
+        this.thread.setName(thread.getName() + "-" + name);
+        this.thread.setPriority(Thread.MAX_PRIORITY);
+    }
+
+    void start() {
+        thread.start();
+    }
+
+    /**
+     * @return the name of the task.
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return the period of the task, in nanoseconds.
+     */
+    public long getPeriodNanos() {
+        return periodNanos;
+    }
+
+    /**
+     * @return the policy used when invocations run late.
+     */
+    public MissedPeriodPolicy getPolicy() {
+        return policy;
+    }
+
+    /**
+     * Stops the task. An invocation already running is allowed to complete.
+     */
+    public void cancel() {
+        cancelled = true;
+        LockSupport.unpark(thread);
+    }
+
+    /**
+     * @return true if the task has been cancelled.
+     */
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * @return the number of completed invocations.
+     */
+    public long getInvocationCount() {
+        return invocationCount.sum();
+    }
+
+    /**
+     * @return the number of invocations which did not complete before the
+     * release time of the next invocation.
+     */
+    public long getDeadlineMissCount() {
+        return deadlineMissCount.sum();
+    }
+
+    /**
+     * @return the number of invocations dropped by the
+     * {@link MissedPeriodPolicy#SKIP_MISSED} policy.
+     */
+    public long getSkippedCount() {
+        return skippedCount.sum();
+    }
+
+    /**
+     * @return how late the invocations started, compared to their release
+     * time.
+     */
+    public LatencyHistogram getJitter() {
+        return jitter.snapshot();
+    }
+
+    /**
+     * @return how long the invocations took.
+     */
+    public LatencyHistogram getExecutionTime() {
+        return executionTime.snapshot();
+    }
+
+    void join(long timeoutMillis) throws InterruptedException {
+        thread.join(timeoutMillis);
+    }
+
+    void commitEvent(String executiveName) {
+        LatencyHistogram jitterSnapshot = jitter.snapshot();
+        LatencyHistogram executionSnapshot = executionTime.snapshot();
+        PeriodicTaskEvent event = new PeriodicTaskEvent();
+        event.setExecutive(executiveName);
+        event.setTask(name);
+        event.setPeriod(periodNanos);
+        event.setInvocations(getInvocationCount());
+        event.setDeadlineMisses(getDeadlineMissCount());
+        event.setSkipped(getSkippedCount());
+        event.setJitterMean(jitterSnapshot.getMeanNanos());
+        event.setJitterP99(jitterSnapshot.getPercentileNanos(99));
+        event.setJitterMax(jitterSnapshot.getMaxNanos());
+        event.setExecutionMean(executionSnapshot.getMeanNanos());
+        event.setExecutionP99(executionSnapshot.getPercentileNanos(99));
+        event.setExecutionMax(executionSnapshot.getMaxNanos());
+        event.commit();
+    }
+
+    private void run() {
+        try {
+            runPeriodically();
+        } finally {
+            terminationListener.accept(this);
+        }
+    }
+
+    private void runPeriodically() {
+        long release = System.nanoTime() + initialDelayNanos;
+        while (!cancelled) {
+            if (!awaitRelease(release)) {
+                break;
+            }
+            long start = System.nanoTime();
+            jitter.record(start - release);
+            try {
+                action.run();
+            } catch (Throwable t) {
+                LOGGER.error("Periodic task {} failed", name, t);
+            }
+            long end = System.nanoTime();
+            executionTime.record(end - start);
+            invocationCount.increment();
+
+            long deadline = release + periodNanos;
+            if (end > deadline) {
+                deadlineMissCount.increment();
+                commitDeadlineMiss(end - deadline, end - start);
+            }
+            release = switch (policy) {
+                case CATCH_UP -> deadline;
+                case FIXED_DELAY -> end + periodNanos;
+                case SKIP_MISSED -> skipMissed(deadline, end);
+            };
+        }
+    }
+
+    private long skipMissed(long deadline, long now) {
+        if (now <= deadline) {
+            return deadline;
+        }
+        long missed = (now - deadline) / periodNanos + 1;
+        skippedCount.add(missed);
+        return deadline + missed * periodNanos;
+    }
+
+    private boolean awaitRelease(long release) {
+        long remaining;
+        while ((remaining = release - System.nanoTime()) > 0) {
+            if (cancelled) {
+                return false;
+            }
+            if (remaining > SPIN_NANOS) {
+                LockSupport.parkNanos(this, remaining - SPIN_NANOS);
+            } else {
+                Thread.onSpinWait();
+            }
+        }
+        return !cancelled;
+    }
+
+    private void commitDeadlineMiss(long overrunNanos, long executionNanos) {
+        DeadlineMissEvent event = new DeadlineMissEvent();
+        if (event.shouldCommit()) {
+            event.setTask(name);
+            event.setPeriod(periodNanos);
+            event.setOverrun(overrunNanos);
+            event.setExecutionTime(executionNanos);
+            event.setPolicy(policy.name());
+            event.commit();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return String.format("PeriodicTask [name=%s, periodNanos=%d, policy=%s, invocations=%d, deadlineMisses=%d]", name,
+                periodNanos, policy, getInvocationCount(), getDeadlineMissCount());
+    }
+}
@@ -20,7 +20,10 @@ import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.atomic.AtomicInteger;
 
 /**
- * Default Thread Factory
+ * Default Thread Factory. Creates named platform threads in a dedicated thread
+ * group, or named virtual threads. Virtual threads always belong to the virtual
+ * thread group of the JVM, so for those the name prefix is what identifies the
+ * pool.
  *
  * @author Marcus Hirt (@hirt)
  * @author Miroslav Wengner (@miragemiko)
@@ -31,6 +34,8 @@ public class RoboThreadFactory implements ThreadFactory {
 		private final String groupName;
 		private String threadPrefix = "robo4j-worker-";
 		private boolean isDaemon = true;
+		private boolean isVirtual = false;
+		private int priority = Thread.NORM_PRIORITY;
 
 		public Builder(String groupName) {
 			this.groupName = groupName;
@@ -46,9 +51,39 @@ public class RoboThreadFactory implements ThreadFactory {
 			return this;
 		}
 
+		/**
+		 * Virtual threads are always daemon threads, so the daemon setting is
+		 * ignored for those.
+		 *
+		 * @param virtual true to create virtual threads
+		 * @return the builder
+		 */
+		public Builder setVirtualThread(boolean virtual) {
+			this.isVirtual = virtual;
+			return this;
+		}
+
+		/**
+		 * Virtual threads always have normal priority, so the priority is
+		 * ignored for those.
+		 *
+		 * @param priority the priority of the platform threads
+		 * @return the builder
+		 */
+		public Builder setPriority(int priority) {
+			if (priority < Thread.MIN_PRIORITY || priority > Thread.MAX_PRIORITY) {
+				throw new IllegalArgumentException("Thread priority out of range: " + priority);
+			}
+			this.priority = priority;
+			return this;
+		}
+
 		public RoboThreadFactory build() {
+			if (isVirtual) {
+				return new RoboThreadFactory(null, threadPrefix, true, true, Thread.NORM_PRIORITY);
+			}
 			var roboThreadGroup = new ThreadGroup(groupName);
-			return new RoboThreadFactory(roboThreadGroup, threadPrefix, isDaemon);
+			return new RoboThreadFactory(roboThreadGroup, threadPrefix, isDaemon, false, priority);
 		}
 
 	}
@@ -73,6 +108,16 @@ public class RoboThreadFactory implements ThreadFactory {
 	 */
 	private final boolean isDaemon;
 
+	/**
+	 * Create virtual threads?
+	 */
+	private final boolean isVirtual;
+
+	/**
+	 * Priority of the platform threads
+	 */
+	private final int priority;
+
 	/**
 	 * Constructor that initiates attributes
 	 *
@@ -81,16 +126,34 @@ public class RoboThreadFactory implements ThreadFactory {
 	 * @param isDaemon isDaemon
 	 */
 	public RoboThreadFactory(ThreadGroup threadGroup, String prefix, boolean isDaemon) {
+		this(threadGroup, prefix, isDaemon, false, Thread.NORM_PRIORITY);
+	}
+
+	private RoboThreadFactory(ThreadGroup threadGroup, String prefix, boolean isDaemon, boolean isVirtual, int priority) {
 		this.threadGroup = threadGroup;
 		this.threadBaseName = prefix;
 		this.isDaemon = isDaemon;
+		this.isVirtual = isVirtual;
+		this.priority = priority;
 		counter = new AtomicInteger(1);
 	}
 
+	/**
+	 * @return true if this factory creates virtual threads
+	 */
+	public boolean isVirtual() {
+		return isVirtual;
+	}
+
 	@Override
 	public Thread newThread(Runnable r) {
+		if (isVirtual) {
+			return Thread.ofVirtual().name(threadBaseName + "-" + counter.getAndIncrement()).unstarted(r);
+		}
 		Thread thread = new Thread(threadGroup, r, threadBaseName + "-" + counter.getAndIncrement());
 		thread.setDaemon(isDaemon);
+		// Capped by the maximum priority of the thread group
+		thread.setPriority(priority);
 		return thread;
 	}
 
@@ -110,6 +110,18 @@ public interface Scheduler {
 	 */
 	void execute(Runnable r);
 
+	/**
+	 * Executes the runnable ahead of the work already waiting in the scheduler,
+	 * e.g. to deliver a control message. Schedulers without priorities execute
+	 * it like {@link #execute(Runnable)}.
+	 * 
+	 * @param r
+	 *            the runnable to execute.
+	 */
+	default void executeUrgent(Runnable r) {
+		execute(r);
+	}
+
 	/**
 	 * Execute something on the scheduler thread as soon as possible.
 	 *
@@ -129,8 +141,9 @@ public interface Scheduler {
 	 *            the delay to wait.
 	 * @param unit
 	 *            the time unit.
+	 * @return the future, which can be used to cancel the command.
 	 */
-	void schedule(Runnable runnable, long delay, TimeUnit unit);
+	ScheduledFuture<?> schedule(Runnable runnable, long delay, TimeUnit unit);
 
 	/**
 	 * 
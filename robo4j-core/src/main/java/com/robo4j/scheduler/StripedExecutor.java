@@ -0,0 +1,174 @@
+/*
+ * Copyright (c) 2014, 2024, Marcus Hirt, Miroslav Wengner
+ *
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.robo4j.scheduler;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BiConsumer;
+
+/**
+ * Runs tasks on an underlying executor, in submission order per key. The keys
+ * are hashed onto a fixed number of stripes. Each stripe runs at most one task
+ * at a time, while different stripes run in parallel. Keys sharing a stripe
+ * are ordered with respect to each other too, so more stripes give more
+ * parallelism.
+ * <p>
+ * When the underlying executor rejects a stripe, the tasks waiting in it are
+ * removed and handed to the rejection handler, so that they are not silently
+ * lost.
+ *
+ * @author Marcus Hirt (@hirt)
+ * @author Miroslav Wengner (@miragemiko)
+ */
+public final class StripedExecutor {
+    private static final Logger LOGGER = LoggerFactory.getLogger(StripedExecutor.class);
+    // The maximum number of tasks a stripe runs before giving the thread back
+    // to the underlying executor
+    private static final int THROUGHPUT = 32;
+
+    private final Executor executor;
+    private final BiConsumer<Runnable, RejectedExecutionException> rejectionHandler;
+    private final Stripe[] stripes;
+
+    /**
+     * Constructor. Rejected tasks are dropped.
+     *
+     * @param executor    the executor running the tasks.
+     * @param stripeCount the number of stripes.
+     */
+    public StripedExecutor(Executor executor, int stripeCount) {
+        this(executor, stripeCount, (task, e) -> {
+        });
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param executor         the executor running the tasks.
+     * @param stripeCount      the number of stripes.
+     * @param rejectionHandler called with every task which will not be run,
+     *                         as submitted, because the executor rejected its
+     *                         stripe.
+     */
+    public StripedExecutor(Executor executor, int stripeCount, BiConsumer<Runnable, RejectedExecutionException> rejectionHandler) {
+        if (stripeCount < 1) {
+            throw new IllegalArgumentException("The stripe count must be positive, was " + stripeCount);
+        }
+        this.executor = executor;
+        this.rejectionHandler = rejectionHandler;
+        this.stripes = new Stripe[stripeCount];
+        for (int i = 0; i < stripeCount; i++) {
+            stripes[i] = new Stripe();
+        }
+    }
+
+    /**
+     * Runs the task after all tasks previously submitted with a key in the same
+     * stripe.
+     *
+     * @param key  the ordering key. Null is a key like any other.
+     * @param task the task to run.
+     */
+    public void execute(Object key, Runnable task) {
+        stripes[stripeIndex(key)].execute(task);
+    }
+
+    /**
+     * @return the number of stripes.
+     */
+    public int getStripeCount() {
+        return stripes.length;
+    }
+
+    private int stripeIndex(Object key) {
+        if (key == null) {
+            return 0;
+        }
+        int hash = key.hashCode();
+        // Spread the higher bits, as for HashMap
+        return Math.floorMod(hash ^ (hash >>> 16), stripes.length);
+    }
+
+    private final class Stripe implements Runnable {
+        private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+        private final AtomicBoolean scheduled = new AtomicBoolean();
+
+        void execute(Runnable task) {
+            tasks.offer(task);
+            trySchedule();
+        }
+
+        @Override
+        public void run() {
+            try {
+                for (int i = 0; i < THROUGHPUT; i++) {
+                    Runnable task = tasks.poll();
+                    if (task == null) {
+                        break;
+                    }
+                    try {
+                        task.run();
+                    } catch (Throwable t) {
+                        LOGGER.error("Error running striped task", t);
+                    }
+                }
+            } finally {
+                scheduled.set(false);
+                // Tasks may have arrived after the last poll
+                if (!tasks.isEmpty()) {
+                    trySchedule();
+                }
+            }
+        }
+
+        private void trySchedule() {
+            if (scheduled.compareAndSet(false, true)) {
+                try {
+                    executor.execute(this);
+                } catch (RejectedExecutionException e) {
+                    reject(e);
+                }
+            }
+        }
+
+        // Still holding the stripe, so that no task of it starts meanwhile
+        private void reject(RejectedExecutionException e) {
+            int count = 0;
+            Runnable task;
+            while ((task = tasks.poll()) != null) {
+                count++;
+                try {
+                    rejectionHandler.accept(task, e);
+                } catch (Throwable t) {
+                    LOGGER.error("Error handling a rejected striped task", t);
+                }
+            }
+            scheduled.set(false);
+            LOGGER.warn("Executor rejected a stripe, {} waiting tasks will not be run", count);
+            // Tasks may have arrived after the last poll
+            if (!tasks.isEmpty()) {
+                trySchedule();
+            }
+        }
+    }
+}
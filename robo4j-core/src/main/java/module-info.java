@@ -22,6 +22,7 @@ module robo4j.core {
     requires java.logging;
     requires java.xml;
     requires org.slf4j;
+    requires jdk.jfr;
 
     exports com.robo4j;
     exports com.robo4j.util;
@@ -29,6 +30,8 @@ module robo4j.core {
     exports com.robo4j.reflect;
     exports com.robo4j.scheduler;
     exports com.robo4j.net;
+    exports com.robo4j.jfr;
+    exports com.robo4j.journal;
 
     uses com.robo4j.BlockingTrait;
     uses com.robo4j.util.Utf8Constant;
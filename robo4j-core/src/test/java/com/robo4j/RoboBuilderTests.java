@@ -20,11 +20,13 @@ import com.robo4j.configuration.Configuration;
 import com.robo4j.configuration.ConfigurationBuilder;
 import com.robo4j.units.StringConsumer;
 import com.robo4j.units.StringProducer;
+import com.robo4j.units.ThreadRecordingUnit;
 import com.robo4j.util.SystemUtil;
 import org.junit.jupiter.api.Test;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.List;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
@@ -143,6 +145,38 @@ public class RoboBuilderTests {
     }
 
 
+    @Test
+    void unitsAssignedToExecutorGroupRunOnTheGroupThreads() throws Exception {
+        RoboBuilder builder = new RoboBuilder(SystemUtil.getInputStreamByResourceName("testExecutorGroupSystem.xml"));
+        builder.add(SystemUtil.getInputStreamByResourceName("testExecutorGroupUnits.xml"));
+        RoboContext system = builder.build();
+        system.start();
+
+        RoboReference<String> motor = system.getReference("motor");
+        RoboReference<String> camera = system.getReference("camera");
+        for (int i = 0; i < 10; i++) {
+            motor.sendMessage("move" + i);
+            camera.sendMessage("frame" + i);
+        }
+        var motorThreads = awaitDeliveries(motor, 10);
+        var cameraThreads = awaitDeliveries(camera, 10);
+        system.shutdown();
+
+        assertTrue(motorThreads.stream().allMatch(t -> t.startsWith("Robo4J Group motion") && t.endsWith(":8")), motorThreads::toString);
+        assertTrue(cameraThreads.stream().allMatch(t -> t.startsWith("Robo4J Worker Pool")), cameraThreads::toString);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<String> awaitDeliveries(RoboReference<String> reference, int expected) throws Exception {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        List<String> threads = getAttributeOrTimeout(reference, ThreadRecordingUnit.DESCRIPTOR_DELIVERY_THREADS);
+        while (threads.size() < expected && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+            threads = getAttributeOrTimeout(reference, ThreadRecordingUnit.DESCRIPTOR_DELIVERY_THREADS);
+        }
+        return threads;
+    }
+
     @Test
     void testSeparateSystemUnitsSystemConfig()
             throws RoboBuilderException, InterruptedException, ExecutionException, TimeoutException {
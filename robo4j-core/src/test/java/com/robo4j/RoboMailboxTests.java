@@ -0,0 +1,496 @@
+/*
+ * Copyright (c) 2014, 2024, Marcus Hirt, Miroslav Wengner
+ *
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.robo4j;
+
+import com.robo4j.configuration.Configuration;
+import com.robo4j.configuration.ConfigurationBuilder;
+import com.robo4j.units.BatchingIntegerConsumer;
+import com.robo4j.units.ChainStageUnit;
+import com.robo4j.units.CriticalIntegerConsumer;
+import com.robo4j.units.GatedCommandConsumer;
+import com.robo4j.units.GatedStringConsumer;
+import com.robo4j.units.InlineChainStageUnit;
+import com.robo4j.units.OrderedReadingConsumer;
+import com.robo4j.units.OverloadRecordingUnit;
+import com.robo4j.units.ReplyingForwarderUnit;
+import com.robo4j.units.StringConsumer;
+import com.robo4j.units.VirtualBlockingConsumer;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+import static com.robo4j.RoboUnitTestUtils.getAttributeOrTimeout;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests for the per unit mailbox delivery.
+ *
+ * @author Marcus Hirt (@hirt)
+ * @author Miroslav Wengner (@miragemiko)
+ */
+class RoboMailboxTests {
+    private static final int TIMEOUT_SEC = 10;
+    private static final String CONSUMER_ID = "criticalConsumer";
+    private static final String BLOCKING_CONSUMER_ID = "blockingConsumer";
+
+    @Test
+    void criticalUnitDeliversInOrderOneAtATimeTest() throws Exception {
+        var producers = 4;
+        var messagesPerProducer = 2000;
+        var totalMessages = producers * messagesPerProducer;
+        var system = new RoboSystem("mailboxSystem", 2, 4, 2);
+        var consumer = new CriticalIntegerConsumer(system, CONSUMER_ID);
+        consumer.initialize(new ConfigurationBuilder().addInteger(CriticalIntegerConsumer.PROP_TOTAL_MESSAGES, totalMessages).build());
+        system.addUnits(consumer);
+        system.setState(LifecycleState.INITIALIZED);
+        system.start();
+
+        RoboReference<Integer> reference = system.getReference(CONSUMER_ID);
+        List<Thread> threads = new ArrayList<>();
+        for (int p = 0; p < producers; p++) {
+            int producer = p;
+            threads.add(Thread.ofPlatform().start(() -> {
+                for (int i = 0; i < messagesPerProducer; i++) {
+                    reference.sendMessage(producer * messagesPerProducer + i);
+                }
+            }));
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        var latch = getAttributeOrTimeout(reference, CriticalIntegerConsumer.DESCRIPTOR_COUNT_DOWN_LATCH);
+        assertTrue(latch.await(TIMEOUT_SEC, TimeUnit.SECONDS));
+        var overlaps = getAttributeOrTimeout(reference, CriticalIntegerConsumer.DESCRIPTOR_OVERLAPS);
+        system.shutdown();
+
+        assertEquals(0, overlaps);
+        assertEquals(totalMessages, consumer.getReceivedMessages().size());
+        int[] lastSeen = new int[producers];
+        Arrays.fill(lastSeen, -1);
+        for (int message : consumer.getReceivedMessages()) {
+            int producer = message / messagesPerProducer;
+            int sequence = message % messagesPerProducer;
+            assertTrue(sequence > lastSeen[producer], "messages from one producer must stay in order");
+            lastSeen[producer] = sequence;
+        }
+    }
+
+    @Test
+    void orderedUnitDeliversInOrderPerKeyAndInParallelAcrossKeysTest() throws Exception {
+        var sensors = 8;
+        var readingsPerSensor = 50;
+        var totalMessages = sensors * readingsPerSensor;
+        var system = new RoboSystem("orderedSystem", 2, 4, 2);
+        var consumer = new OrderedReadingConsumer(system, CONSUMER_ID);
+        consumer.initialize(new ConfigurationBuilder().addInteger(OrderedReadingConsumer.PROP_TOTAL_MESSAGES, totalMessages).build());
+        system.addUnits(consumer);
+        system.setState(LifecycleState.INITIALIZED);
+        system.start();
+
+        RoboReference<OrderedReadingConsumer.Reading> reference = system.getReference(CONSUMER_ID);
+        for (int i = 0; i < readingsPerSensor; i++) {
+            for (int s = 0; s < sensors; s++) {
+                reference.sendMessage(new OrderedReadingConsumer.Reading("sensor" + s, i));
+            }
+        }
+
+        var latch = getAttributeOrTimeout(reference, OrderedReadingConsumer.DESCRIPTOR_COUNT_DOWN_LATCH);
+        assertTrue(latch.await(TIMEOUT_SEC, TimeUnit.SECONDS));
+        var overlaps = getAttributeOrTimeout(reference, OrderedReadingConsumer.DESCRIPTOR_OVERLAPS);
+        var maxParallel = getAttributeOrTimeout(reference, OrderedReadingConsumer.DESCRIPTOR_MAX_PARALLEL);
+        system.shutdown();
+
+        assertEquals(0, overlaps);
+        assertTrue(maxParallel > 1, "different keys should be delivered in parallel");
+        assertEquals(sensors, consumer.getReadings().size());
+        var expected = IntStream.range(0, readingsPerSensor).boxed().toList();
+        consumer.getReadings().values().forEach(readings -> assertEquals(expected, readings));
+    }
+
+    @Test
+    void virtualThreadBlockingUnitIsNotLimitedByPoolSizeTest() throws Exception {
+        var totalMessages = 64;
+        var blockMillis = 200;
+        var blockingPoolSize = 2;
+        var system = new RoboSystem("virtualSystem", 2, 2, blockingPoolSize);
+        var consumer = new VirtualBlockingConsumer(system, BLOCKING_CONSUMER_ID);
+        consumer.initialize(new ConfigurationBuilder().addInteger(VirtualBlockingConsumer.PROP_TOTAL_MESSAGES, totalMessages)
+                .addInteger(VirtualBlockingConsumer.PROP_BLOCK_MILLIS, blockMillis).build());
+        system.addUnits(consumer);
+        system.setState(LifecycleState.INITIALIZED);
+        system.start();
+
+        RoboReference<String> reference = system.getReference(BLOCKING_CONSUMER_ID);
+        var latch = getAttributeOrTimeout(reference, VirtualBlockingConsumer.DESCRIPTOR_COUNT_DOWN_LATCH);
+        for (int i = 0; i < totalMessages; i++) {
+            reference.sendMessage("message" + i);
+        }
+
+        // On the blocking pool this would take totalMessages / blockingPoolSize * blockMillis
+        assertTrue(latch.await(totalMessages / blockingPoolSize * blockMillis / 4, TimeUnit.MILLISECONDS));
+        system.shutdown();
+
+        assertTrue(consumer.getDeliveryThreads().size() > blockingPoolSize);
+        assertTrue(consumer.getDeliveryThreads().stream().allMatch(Thread::isVirtual));
+        assertTrue(consumer.getDeliveryThreads().stream().allMatch(t -> t.getName().startsWith("Robo4J Virtual Blocking")));
+    }
+
+    @Test
+    void boundedMailboxOverflowPoliciesTest() throws Exception {
+        var builder = new RoboBuilder();
+        builder.add(Thread.currentThread().getContextClassLoader().getResourceAsStream("testBoundedMailboxSystem.xml"));
+        var system = builder.build();
+        system.start();
+
+        RoboReference<String> dropOldest = system.getReference("dropOldestConsumer");
+        RoboReference<String> fail = system.getReference("failConsumer");
+        dropOldest.sendMessage("first");
+        fail.sendMessage("first");
+        assertTrue(getAttributeOrTimeout(dropOldest, GatedStringConsumer.DESCRIPTOR_FIRST_MESSAGE_LATCH).await(TIMEOUT_SEC, TimeUnit.SECONDS));
+        assertTrue(getAttributeOrTimeout(fail, GatedStringConsumer.DESCRIPTOR_FIRST_MESSAGE_LATCH).await(TIMEOUT_SEC, TimeUnit.SECONDS));
+
+        IntStream.range(0, 20).forEach(i -> {
+            dropOldest.sendMessage("message" + i);
+            fail.sendMessage("message" + i);
+        });
+
+        var dropOldestOverflow = getAttributeOrTimeout(dropOldest, MailboxAttributes.DESCRIPTOR_OVERFLOW_COUNT);
+        var failOverflow = getAttributeOrTimeout(fail, MailboxAttributes.DESCRIPTOR_OVERFLOW_COUNT);
+        var rejected = getAttributeOrTimeout(fail, GatedStringConsumer.DESCRIPTOR_REJECTED_MESSAGES);
+        getAttributeOrTimeout(dropOldest, GatedStringConsumer.DESCRIPTOR_GATE).countDown();
+        getAttributeOrTimeout(fail, GatedStringConsumer.DESCRIPTOR_GATE).countDown();
+        awaitReceived(dropOldest, 5);
+        awaitReceived(fail, 3);
+
+        assertEquals(16, dropOldestOverflow);
+        assertEquals(18, failOverflow);
+        assertEquals(IntStream.range(2, 20).mapToObj(i -> "message" + i).toList(), rejected);
+        assertEquals(List.of("first", "message16", "message17", "message18", "message19"),
+                getAttributeOrTimeout(dropOldest, GatedStringConsumer.DESCRIPTOR_RECEIVED_MESSAGES));
+        assertEquals(List.of("first", "message0", "message1"), getAttributeOrTimeout(fail, GatedStringConsumer.DESCRIPTOR_RECEIVED_MESSAGES));
+        assertFalse(getAttributeOrTimeout(fail, MailboxAttributes.DESCRIPTOR_OVERFLOW_COUNT) > failOverflow);
+        system.shutdown();
+    }
+
+    @Test
+    void conflatingMailboxDeliversLatestMessageTest() throws Exception {
+        var system = new RoboBuilder()
+                .add(GatedStringConsumer.class, new ConfigurationBuilder().addBoolean(RoboBuilder.KEY_MAILBOX_CONFLATING, true).build(),
+                        "conflatingConsumer")
+                .build();
+        system.start();
+
+        RoboReference<String> consumer = system.getReference("conflatingConsumer");
+        consumer.sendMessage("first");
+        assertTrue(getAttributeOrTimeout(consumer, GatedStringConsumer.DESCRIPTOR_FIRST_MESSAGE_LATCH).await(TIMEOUT_SEC, TimeUnit.SECONDS));
+        IntStream.range(0, 20).forEach(i -> consumer.sendMessage("message" + i));
+        var conflated = getAttributeOrTimeout(consumer, MailboxAttributes.DESCRIPTOR_CONFLATED_COUNT);
+        getAttributeOrTimeout(consumer, GatedStringConsumer.DESCRIPTOR_GATE).countDown();
+        awaitReceived(consumer, 2);
+
+        assertEquals(19, conflated);
+        assertEquals(List.of("first", "message19"), getAttributeOrTimeout(consumer, GatedStringConsumer.DESCRIPTOR_RECEIVED_MESSAGES));
+        system.shutdown();
+    }
+
+    @Test
+    void batchSentMessagesAreDeliveredInBatchesTest() throws Exception {
+        int totalMessages = 100;
+        var system = new RoboBuilder()
+                .add(BatchingIntegerConsumer.class,
+                        new ConfigurationBuilder().addInteger(BatchingIntegerConsumer.PROP_TOTAL_MESSAGES, totalMessages).build(),
+                        "batchingConsumer")
+                .add(StringConsumer.class, new ConfigurationBuilder().addInteger(StringConsumer.PROP_TOTAL_MESSAGES, 3).build(),
+                        "stringConsumer")
+                .build();
+        system.start();
+
+        RoboReference<Integer> batching = system.getReference("batchingConsumer");
+        RoboReference<String> strings = system.getReference("stringConsumer");
+        List<Integer> messages = IntStream.range(0, totalMessages).boxed().toList();
+        batching.sendMessages(messages);
+        strings.sendMessages(List.of("a", "b", "c"));
+
+        assertTrue(getAttributeOrTimeout(batching, BatchingIntegerConsumer.DESCRIPTOR_COUNT_DOWN_LATCH).await(TIMEOUT_SEC, TimeUnit.SECONDS));
+        assertTrue(getAttributeOrTimeout(strings, StringConsumer.DESCRIPTOR_COUNT_DOWN_LATCH).await(TIMEOUT_SEC, TimeUnit.SECONDS));
+        assertEquals(messages, getAttributeOrTimeout(batching, BatchingIntegerConsumer.DESCRIPTOR_RECEIVED_MESSAGES));
+        assertEquals(List.of(32, 32, 32, 4), getAttributeOrTimeout(batching, BatchingIntegerConsumer.DESCRIPTOR_BATCH_SIZES));
+        system.shutdown();
+    }
+
+    @Test
+    void controlMessagesOvertakeWaitingBulkMessagesTest() throws Exception {
+        var system = new RoboBuilder().add(GatedStringConsumer.class, "motor").build();
+        system.start();
+
+        RoboReference<String> motor = system.getReference("motor");
+        motor.sendMessage("first");
+        assertTrue(getAttributeOrTimeout(motor, GatedStringConsumer.DESCRIPTOR_FIRST_MESSAGE_LATCH).await(TIMEOUT_SEC, TimeUnit.SECONDS));
+        IntStream.range(0, 5).forEach(i -> motor.sendMessage("telemetry" + i));
+        motor.sendMessage("stop", MessagePriority.CONTROL);
+        getAttributeOrTimeout(motor, GatedStringConsumer.DESCRIPTOR_GATE).countDown();
+        awaitReceived(motor, 7);
+
+        assertEquals(List.of("first", "stop", "telemetry0", "telemetry1", "telemetry2", "telemetry3", "telemetry4"),
+                getAttributeOrTimeout(motor, GatedStringConsumer.DESCRIPTOR_RECEIVED_MESSAGES));
+        system.shutdown();
+    }
+
+    @Test
+    void expiredMessagesAreDroppedBeforeDeliveryTest() throws Exception {
+        var system = new RoboBuilder().add(GatedCommandConsumer.class, "motor").build();
+        system.start();
+
+        RoboReference<GatedCommandConsumer.Command> motor = system.getReference("motor");
+        motor.sendMessage(new GatedCommandConsumer.Command("first", Long.MAX_VALUE));
+        assertTrue(getAttributeOrTimeout(motor, GatedCommandConsumer.DESCRIPTOR_FIRST_MESSAGE_LATCH).await(TIMEOUT_SEC, TimeUnit.SECONDS));
+        long now = System.nanoTime();
+        IntStream.range(0, 3).forEach(i -> motor.sendMessage(new GatedCommandConsumer.Command("stale" + i, now + TimeUnit.MILLISECONDS.toNanos(1))));
+        motor.sendMessage(new GatedCommandConsumer.Command("fresh", ExpiringMessage.deadlineAfter(Duration.ofSeconds(TIMEOUT_SEC))));
+        Thread.sleep(10);
+        getAttributeOrTimeout(motor, GatedCommandConsumer.DESCRIPTOR_GATE).countDown();
+
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(TIMEOUT_SEC);
+        while (getAttributeOrTimeout(motor, GatedCommandConsumer.DESCRIPTOR_RECEIVED_COMMANDS).size() < 2 && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(List.of("first", "fresh"), getAttributeOrTimeout(motor, GatedCommandConsumer.DESCRIPTOR_RECEIVED_COMMANDS));
+        assertEquals(3, getAttributeOrTimeout(motor, MailboxAttributes.DESCRIPTOR_EXPIRED_COUNT));
+        system.shutdown();
+    }
+
+    @Test
+    void overloadedSystemShedsBulkMessagesTest() throws Exception {
+        var systemConfiguration = new ConfigurationBuilder().addInteger(RoboBuilder.KEY_BLOCKING_POOL_SIZE, 1)
+                .addString(RoboBuilder.KEY_OVERLOAD_POLICY, OverloadPolicy.REJECT_BULK.name())
+                .addInteger(RoboBuilder.KEY_OVERLOAD_QUEUE_WAIT_MILLIS, 20)
+                .addInteger(RoboBuilder.KEY_OVERLOAD_CHECK_MILLIS, 5).build();
+        var system = new RoboBuilder(systemConfiguration).add(GatedStringConsumer.class, "motor")
+                .add(OverloadRecordingUnit.class, "recorder").build();
+        system.start();
+
+        RoboReference<String> motor = system.getReference("motor");
+        RoboReference<String> recorder = system.getReference("recorder");
+        motor.sendMessage("first");
+        assertTrue(getAttributeOrTimeout(motor, GatedStringConsumer.DESCRIPTOR_FIRST_MESSAGE_LATCH).await(TIMEOUT_SEC, TimeUnit.SECONDS));
+        // The blocking pool is stuck, so its probe is left waiting
+        awaitTransitions(recorder, 1);
+        IntStream.range(0, 5).forEach(i -> motor.sendMessage("telemetry" + i));
+        motor.sendMessage("stop", MessagePriority.CONTROL);
+        var asked = motor.ask("status", Duration.ofSeconds(TIMEOUT_SEC));
+        var failure = assertThrows(ExecutionException.class, () -> asked.get(TIMEOUT_SEC, TimeUnit.SECONDS));
+        assertInstanceOf(RejectedExecutionException.class, failure.getCause());
+
+        getAttributeOrTimeout(motor, GatedStringConsumer.DESCRIPTOR_GATE).countDown();
+        awaitTransitions(recorder, 2);
+        assertEquals(List.of(true, false), getAttributeOrTimeout(recorder, OverloadRecordingUnit.DESCRIPTOR_TRANSITIONS));
+        assertEquals(List.of("first", "stop"), getAttributeOrTimeout(motor, GatedStringConsumer.DESCRIPTOR_RECEIVED_MESSAGES));
+        assertEquals(6, getAttributeOrTimeout(motor, MailboxAttributes.DESCRIPTOR_SHED_COUNT));
+        system.shutdown();
+    }
+
+    @Test
+    void mailboxBacklogOverloadsTheSystemTest() throws Exception {
+        var systemConfiguration = new ConfigurationBuilder().addInteger(RoboBuilder.KEY_BLOCKING_POOL_SIZE, 2)
+                .addString(RoboBuilder.KEY_OVERLOAD_POLICY, OverloadPolicy.REJECT_BULK.name())
+                .addInteger(RoboBuilder.KEY_OVERLOAD_QUEUE_DEPTH, 3)
+                .addInteger(RoboBuilder.KEY_OVERLOAD_QUEUE_WAIT_MILLIS, 60_000)
+                .addInteger(RoboBuilder.KEY_OVERLOAD_CHECK_MILLIS, 5).build();
+        var system = new RoboBuilder(systemConfiguration).add(GatedStringConsumer.class, "motor")
+                .add(OverloadRecordingUnit.class, "recorder").build();
+        system.start();
+
+        RoboReference<String> motor = system.getReference("motor");
+        RoboReference<String> recorder = system.getReference("recorder");
+        motor.sendMessage("first");
+        assertTrue(getAttributeOrTimeout(motor, GatedStringConsumer.DESCRIPTOR_FIRST_MESSAGE_LATCH).await(TIMEOUT_SEC, TimeUnit.SECONDS));
+        // The pool itself is not busy, only the mailbox backs up
+        IntStream.range(0, 5).forEach(i -> motor.sendMessage("telemetry" + i));
+        awaitTransitions(recorder, 1);
+        var asked = motor.ask("status", Duration.ofSeconds(TIMEOUT_SEC));
+        var failure = assertThrows(ExecutionException.class, () -> asked.get(TIMEOUT_SEC, TimeUnit.SECONDS));
+        assertInstanceOf(RejectedExecutionException.class, failure.getCause());
+
+        getAttributeOrTimeout(motor, GatedStringConsumer.DESCRIPTOR_GATE).countDown();
+        awaitTransitions(recorder, 2);
+        awaitReceived(motor, 6);
+        assertEquals(List.of(true, false), getAttributeOrTimeout(recorder, OverloadRecordingUnit.DESCRIPTOR_TRANSITIONS));
+        assertEquals(6, getAttributeOrTimeout(motor, GatedStringConsumer.DESCRIPTOR_RECEIVED_MESSAGES).size());
+        assertEquals(1, getAttributeOrTimeout(motor, MailboxAttributes.DESCRIPTOR_SHED_COUNT));
+        system.shutdown();
+    }
+
+    @Test
+    void deliveryMetricsAreReadableAsReservedAttributesTest() throws Exception {
+        var system = new RoboBuilder().add(GatedStringConsumer.class, "consumer").build();
+        system.start();
+
+        RoboReference<String> consumer = system.getReference("consumer");
+        consumer.sendMessage("first");
+        assertTrue(getAttributeOrTimeout(consumer, GatedStringConsumer.DESCRIPTOR_FIRST_MESSAGE_LATCH).await(TIMEOUT_SEC, TimeUnit.SECONDS));
+        IntStream.range(0, 5).forEach(i -> consumer.sendMessage("message" + i));
+
+        assertEquals(6, getAttributeOrTimeout(consumer, MailboxAttributes.DESCRIPTOR_ENQUEUED_COUNT));
+        assertEquals(5, getAttributeOrTimeout(consumer, MailboxAttributes.DESCRIPTOR_QUEUE_DEPTH));
+        assertEquals(0, getAttributeOrTimeout(consumer, MailboxAttributes.DESCRIPTOR_DELIVERED_COUNT));
+
+        getAttributeOrTimeout(consumer, GatedStringConsumer.DESCRIPTOR_GATE).countDown();
+        awaitReceived(consumer, 6);
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(TIMEOUT_SEC);
+        while (getAttributeOrTimeout(consumer, MailboxAttributes.DESCRIPTOR_DELIVERED_COUNT) < 6 && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        var attributes = consumer.getAttributes().get(TIMEOUT_SEC, TimeUnit.SECONDS);
+        var waitTime = (LatencyHistogram) attributes.get(MailboxAttributes.DESCRIPTOR_QUEUE_WAIT_TIME);
+        var processingTime = (LatencyHistogram) attributes.get(MailboxAttributes.DESCRIPTOR_PROCESSING_TIME);
+
+        assertEquals(6L, attributes.get(MailboxAttributes.DESCRIPTOR_DELIVERED_COUNT));
+        assertEquals(0L, attributes.get(MailboxAttributes.DESCRIPTOR_QUEUE_DEPTH));
+        assertEquals(6, waitTime.getCount());
+        assertEquals(6, processingTime.getCount());
+        assertTrue(waitTime.getMaxNanos() > 0);
+        assertTrue(waitTime.getPercentileNanos(50) <= waitTime.getPercentileNanos(100));
+        assertEquals(waitTime.getMaxNanos(), waitTime.getPercentileNanos(100));
+        system.shutdown();
+    }
+
+    @Test
+    void keyOrderedMailboxCannotDropTheOldestTest() throws Exception {
+        var builder = new RoboBuilder().add(StringConsumer.class, new ConfigurationBuilder()
+                .addBoolean(RoboBuilder.KEY_MAILBOX_ORDERED, true)
+                .addInteger(RoboBuilder.KEY_MAILBOX_CAPACITY, 4)
+                .addString(RoboBuilder.KEY_MAILBOX_OVERFLOW_POLICY, MailboxOverflowPolicy.DROP_OLDEST.name()).build(), "consumer");
+
+        assertThrows(IllegalStateException.class, builder::build);
+    }
+
+    @Test
+    void keyOrderedMessagesRejectedByTheExecutorAreFailedTest() throws Exception {
+        var system = new RoboSystem();
+        var consumer = new StringConsumer(system, "consumer");
+        var mailbox = new Mailbox<>(consumer, task -> {
+            throw new RejectedExecutionException("Shut down");
+        }, task -> {
+        }, 1, 1, 2, MailboxOverflowPolicy.FAIL);
+        mailbox.enableKeyOrdering(2);
+
+        var replies = new ArrayList<CompletableFuture<Object>>();
+        for (int i = 0; i < 4; i++) {
+            var reply = new CompletableFuture<>();
+            mailbox.enqueueAsk("message" + i, reply);
+            replies.add(reply);
+        }
+
+        // The permits are given back, so the mailbox never reports being full
+        for (var reply : replies) {
+            var failure = assertThrows(ExecutionException.class, () -> reply.get(TIMEOUT_SEC, TimeUnit.SECONDS));
+            assertInstanceOf(RejectedExecutionException.class, failure.getCause());
+            assertEquals("Shut down", failure.getCause().getMessage());
+        }
+        assertEquals(0L, mailbox.getReservedAttribute(MailboxAttributes.DESCRIPTOR_QUEUE_DEPTH));
+    }
+
+    @Test
+    void inlineUnitsAreDeliveredOnTheSendingThreadTest() throws Exception {
+        var system = buildChain(new ConfigurationBuilder().build());
+        system.start();
+        sendThroughChain(system);
+
+        assertEquals(List.of("message@[]"), getAttributeOrTimeout(system.getReference("source"), ChainStageUnit.DESCRIPTOR_RECEIVED));
+        assertEquals(List.of("message@[source]"), getAttributeOrTimeout(system.getReference("middle"), ChainStageUnit.DESCRIPTOR_RECEIVED));
+        assertEquals(List.of("message@[source, middle]"), getAttributeOrTimeout(system.getReference("sink"), ChainStageUnit.DESCRIPTOR_RECEIVED));
+        system.shutdown();
+    }
+
+    @Test
+    void inlineDeliveryIsLimitedInDepthTest() throws Exception {
+        var system = buildChain(new ConfigurationBuilder().addInteger(RoboBuilder.KEY_INLINE_MAX_DEPTH, 2).build());
+        system.start();
+        sendThroughChain(system);
+
+        assertEquals(List.of("message@[source]"), getAttributeOrTimeout(system.getReference("middle"), ChainStageUnit.DESCRIPTOR_RECEIVED));
+        // One level deeper than allowed, so queued
+        assertEquals(List.of("message@[]"), getAttributeOrTimeout(system.getReference("sink"), ChainStageUnit.DESCRIPTOR_RECEIVED));
+        system.shutdown();
+    }
+
+    @Test
+    void inlineDeliveryDoesNotAnswerTheOuterAskTest() throws Exception {
+        var system = new RoboBuilder()
+                .add(ReplyingForwarderUnit.class, new ConfigurationBuilder().addString(ReplyingForwarderUnit.PROP_TARGET, "inner").build(), "outer")
+                .add(ReplyingForwarderUnit.class, new ConfigurationBuilder().addBoolean(RoboBuilder.KEY_MAILBOX_INLINE, true).build(), "inner")
+                .build();
+        system.start();
+        RoboReference<String> outer = system.getReference("outer");
+        RoboReference<String> inner = system.getReference("inner");
+
+        var reply = outer.<String>ask("message", Duration.ofSeconds(TIMEOUT_SEC)).get(TIMEOUT_SEC, TimeUnit.SECONDS);
+
+        // The inner unit replied too, but was not asked
+        assertEquals("outer", reply);
+        assertEquals(getAttributeOrTimeout(outer, ReplyingForwarderUnit.DESCRIPTOR_THREAD),
+                getAttributeOrTimeout(inner, ReplyingForwarderUnit.DESCRIPTOR_THREAD));
+        system.shutdown();
+    }
+
+    private static RoboContext buildChain(Configuration systemConfiguration) throws Exception {
+        return new RoboBuilder(systemConfiguration)
+                .add(ChainStageUnit.class, new ConfigurationBuilder().addString(ChainStageUnit.PROP_TARGET, "middle").build(), "source")
+                .add(ChainStageUnit.class, new ConfigurationBuilder().addString(ChainStageUnit.PROP_TARGET, "sink")
+                        .addBoolean(RoboBuilder.KEY_MAILBOX_INLINE, true).build(), "middle")
+                .add(InlineChainStageUnit.class, new ConfigurationBuilder().build(), "sink")
+                .build();
+    }
+
+    private static void sendThroughChain(RoboContext system) throws Exception {
+        system.<String>getReference("source").sendMessage("message");
+        RoboReference<String> sink = system.getReference("sink");
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(TIMEOUT_SEC);
+        while (getAttributeOrTimeout(sink, ChainStageUnit.DESCRIPTOR_RECEIVED).isEmpty() && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+    }
+
+    private static void awaitTransitions(RoboReference<String> recorder, int expected) throws Exception {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(TIMEOUT_SEC);
+        while (getAttributeOrTimeout(recorder, OverloadRecordingUnit.DESCRIPTOR_TRANSITIONS).size() < expected
+                && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+    }
+
+    private static void awaitReceived(RoboReference<String> reference, int expected) throws Exception {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(TIMEOUT_SEC);
+        while (getAttributeOrTimeout(reference, GatedStringConsumer.DESCRIPTOR_RECEIVED_MESSAGES).size() < expected
+                && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+    }
+}
@@ -18,20 +18,32 @@ package com.robo4j;
 
 import com.robo4j.configuration.Configuration;
 import com.robo4j.configuration.ConfigurationBuilder;
+import com.robo4j.scheduler.DefaultScheduler;
 import com.robo4j.scheduler.FinalInvocationListener;
+import com.robo4j.scheduler.HashedWheelScheduler;
+import com.robo4j.scheduler.MissedPeriodPolicy;
+import com.robo4j.scheduler.PeriodicExecutive;
+import com.robo4j.scheduler.SchedulerType;
 import com.robo4j.units.StringConsumer;
 import com.robo4j.units.StringProducer;
 import com.robo4j.units.StringScheduledEmitter;
 import org.junit.jupiter.api.Test;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.CancellationException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static com.robo4j.RoboUnitTestUtils.futureGetSafe;
 import static com.robo4j.RoboUnitTestUtils.getAttributeOrTimeout;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 /**
@@ -41,6 +53,8 @@ import static org.junit.jupiter.api.Assertions.assertTrue;
  * @author Miroslav Wengner (@miragemiko)
  */
 class RoboSchedulerTests {
+    private static final int TIMEOUT_SEC = 10;
+
     private static class SchedulerListener implements FinalInvocationListener {
         volatile boolean wasFinalCalled;
 
@@ -52,6 +66,16 @@ class RoboSchedulerTests {
 
     @Test
     void schedulerCycleTest() throws InterruptedException, ExecutionException, TimeoutException, RoboBuilderException, CancellationException {
+        schedulerCycle(new RoboBuilder());
+    }
+
+    @Test
+    void hashedWheelSchedulerCycleTest() throws InterruptedException, ExecutionException, TimeoutException, RoboBuilderException, CancellationException {
+        var systemConfig = new ConfigurationBuilder().addString(RoboBuilder.KEY_SCHEDULER_TYPE, SchedulerType.HASHED_WHEEL.name()).build();
+        schedulerCycle(new RoboBuilder(systemConfig));
+    }
+
+    private void schedulerCycle(RoboBuilder roboSystemBuilder) throws InterruptedException, ExecutionException, TimeoutException, RoboBuilderException, CancellationException {
         final var usedTimeUnitMills = TimeUnit.MILLISECONDS;
         final var maxDelayMills = 2;
         final var initSystemDelayMills = 1;
@@ -62,7 +86,6 @@ class RoboSchedulerTests {
         final Configuration consumerConf = new ConfigurationBuilder()
                 .addInteger(StringConsumer.PROP_TOTAL_MESSAGES, expectedMessagesMax).build();
 
-        var roboSystemBuilder = new RoboBuilder();
         roboSystemBuilder.add(StringConsumer.class, consumerConf, expectedConsumerName);
         var system = (RoboSystem) roboSystemBuilder.build();
         system.start();
@@ -161,5 +184,111 @@ class RoboSchedulerTests {
         system.shutdown();
     }
 
+    @Test
+    void urgentTasksRunAheadOfWaitingTasksTest() throws InterruptedException {
+        var scheduler = new DefaultScheduler(new RoboSystem(), 1);
+        var gate = new CountDownLatch(1);
+        var done = new CountDownLatch(4);
+        List<String> order = new CopyOnWriteArrayList<>();
+
+        scheduler.execute(() -> {
+            try {
+                gate.await(TIMEOUT_SEC, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        for (String task : List.of("bulk1", "bulk2")) {
+            scheduler.execute(() -> {
+                order.add(task);
+                done.countDown();
+            });
+        }
+        for (String task : List.of("urgent1", "urgent2")) {
+            scheduler.executeUrgent(() -> {
+                order.add(task);
+                done.countDown();
+            });
+        }
+        gate.countDown();
+
+        assertTrue(done.await(TIMEOUT_SEC, TimeUnit.SECONDS));
+        assertEquals(List.of("urgent1", "urgent2", "bulk1", "bulk2"), order);
+        scheduler.shutdown();
+    }
+
+    @Test
+    void periodicTaskRunsAtFixedRateTest() throws InterruptedException {
+        var executive = new PeriodicExecutive("test-periodic");
+        var latch = new CountDownLatch(20);
+        var task = executive.schedule("counter", latch::countDown, 0, 5, TimeUnit.MILLISECONDS, MissedPeriodPolicy.SKIP_MISSED);
+
+        var completed = latch.await(TIMEOUT_SEC, TimeUnit.SECONDS);
+        task.cancel();
+        executive.shutdown();
 
+        assertTrue(completed);
+        assertTrue(task.getInvocationCount() >= 20);
+        assertEquals(task.getInvocationCount(), task.getJitter().getCount());
+        assertEquals(task.getInvocationCount(), task.getExecutionTime().getCount());
+        assertTrue(executive.getTasks().isEmpty());
+    }
+
+    @Test
+    void periodicTaskMissedPeriodPoliciesTest() throws InterruptedException {
+        var executive = new PeriodicExecutive("test-periodic");
+        // The first invocation takes five periods, the rest are quick
+        var skipping = executive.schedule("skipping", slowFirstInvocation(50), 0, 10, TimeUnit.MILLISECONDS,
+                MissedPeriodPolicy.SKIP_MISSED);
+        var catchingUp = executive.schedule("catchingUp", slowFirstInvocation(50), 0, 10, TimeUnit.MILLISECONDS,
+                MissedPeriodPolicy.CATCH_UP);
+        TimeUnit.MILLISECONDS.sleep(300);
+        executive.shutdown();
+
+        assertTrue(skipping.getDeadlineMissCount() >= 1);
+        assertTrue(skipping.getSkippedCount() >= 4);
+        assertTrue(catchingUp.getDeadlineMissCount() >= 1);
+        assertEquals(0, catchingUp.getSkippedCount());
+        // Catching up keeps the number of invocations, skipping drops the
+        // missed ones
+        assertTrue(catchingUp.getInvocationCount() > skipping.getInvocationCount());
+    }
+
+    private static Runnable slowFirstInvocation(long millis) {
+        var invocations = new AtomicInteger();
+        return () -> {
+            if (invocations.getAndIncrement() == 0) {
+                try {
+                    TimeUnit.MILLISECONDS.sleep(millis);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        };
+    }
+
+    @Test
+    void hashedWheelSchedulerCancelTest() throws InterruptedException, RoboBuilderException {
+        var systemConfig = new ConfigurationBuilder().addString(RoboBuilder.KEY_SCHEDULER_TYPE, SchedulerType.HASHED_WHEEL.name()).build();
+        var system = new RoboBuilder(systemConfig).build();
+        var scheduler = assertInstanceOf(HashedWheelScheduler.class, system.getScheduler());
+        var timeouts = new ArrayList<ScheduledFuture<?>>();
+        for (int i = 0; i < 1000; i++) {
+            timeouts.add(scheduler.scheduleAtFixedRate(() -> {
+            }, TIMEOUT_SEC, 1, TimeUnit.SECONDS));
+        }
+        var fired = new CountDownLatch(1);
+        scheduler.schedule(fired::countDown, 5, TimeUnit.MILLISECONDS);
+        timeouts.forEach(timeout -> timeout.cancel(false));
+
+        assertTrue(fired.await(TIMEOUT_SEC, TimeUnit.SECONDS));
+        // Cancelled timeouts are unlinked on the next tick
+        var deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(TIMEOUT_SEC);
+        while (scheduler.getPendingCount() > 0 && System.currentTimeMillis() < deadline) {
+            TimeUnit.MILLISECONDS.sleep(1);
+        }
+        assertEquals(0, scheduler.getPendingCount());
+        assertTrue(timeouts.stream().allMatch(ScheduledFuture::isCancelled));
+        system.shutdown();
+    }
 }
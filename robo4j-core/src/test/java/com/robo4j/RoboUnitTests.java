@@ -17,14 +17,30 @@
 package com.robo4j;
 
 import com.robo4j.configuration.ConfigurationBuilder;
+import com.robo4j.units.DoublingIntegerUnit;
+import com.robo4j.units.LifecycleRecordingUnit;
+import com.robo4j.units.PublishingIntegerConsumer;
 import com.robo4j.units.StringConsumer;
 import com.robo4j.units.StringProducer;
 import org.junit.jupiter.api.Test;
 
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 import static com.robo4j.RoboUnitTestUtils.getAttributeOrTimeout;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 /**
@@ -116,4 +132,204 @@ class RoboUnitTests {
         assertTrue(consumerReceivedMessages);
         assertEquals(expectedTotalMessages, totalReceivedMessages);
     }
+
+    @Test
+    void systemReferencesAreRegisteredOnceTest() {
+        var system = new RoboSystem();
+        var consumer = new StringConsumer(system, "consumer");
+        var producer = new StringProducer(system, "producer");
+        system.addUnits(consumer, producer);
+
+        var consumerRef = system.getReference("consumer");
+        assertSame(consumerRef, system.getReference("consumer"));
+        assertSame(consumerRef, system.getReference(consumer));
+        assertSame(consumerRef, ((RoboUnit<String>) consumer).internalGetReference());
+        assertEquals(List.of(consumerRef, system.getReference("producer")), List.copyOf(system.getUnits()));
+        assertNull(system.getReference("unknown"));
+        assertThrows(UnsupportedOperationException.class, () -> system.getUnits().clear());
+    }
+
+    @Test
+    void systemStartsAndStopsUnitsInDependencyOrderTest() throws Exception {
+        var startMillis = 200;
+        var events = Collections.synchronizedList(new ArrayList<String>());
+        var system = new RoboSystem();
+        var dependent = new LifecycleRecordingUnit(system, "dependent", events, 0);
+        dependent.initialize(new ConfigurationBuilder().addString(RoboBuilder.KEY_DEPENDS_ON, "first, second").build());
+        var first = new LifecycleRecordingUnit(system, "first", events, startMillis);
+        first.initialize(new ConfigurationBuilder().build());
+        var second = new LifecycleRecordingUnit(system, "second", events, startMillis);
+        second.initialize(new ConfigurationBuilder().build());
+        system.addUnits(dependent, first, second);
+        system.setState(LifecycleState.INITIALIZED);
+
+        system.start();
+        var dependentState = dependent.getState();
+        var startEvents = List.copyOf(events);
+        events.clear();
+        system.stop();
+        var stopEvents = List.copyOf(events);
+        events.clear();
+        system.shutdown();
+        var shutdownEvents = List.copyOf(events);
+
+        assertEquals(LifecycleState.STARTED, dependentState);
+        // The independent units start in parallel...
+        assertTrue(startEvents.indexOf("first:startBegin") < startEvents.indexOf("second:startEnd"));
+        assertTrue(startEvents.indexOf("second:startBegin") < startEvents.indexOf("first:startEnd"));
+        // ...and the dependent one only when both are started
+        assertTrue(startEvents.indexOf("first:startEnd") < startEvents.indexOf("dependent:startBegin"));
+        assertTrue(startEvents.indexOf("second:startEnd") < startEvents.indexOf("dependent:startBegin"));
+        assertEquals(6, startEvents.size());
+        // Stop and shutdown go the other way around
+        assertEquals("dependent:stop", stopEvents.getFirst());
+        assertEquals(3, stopEvents.size());
+        assertEquals("dependent:shutdown", shutdownEvents.getFirst());
+        assertEquals(3, shutdownEvents.size());
+    }
+
+    @Test
+    void failedUnitStartSkipsDependentsAndFailsTheSystemTest() throws Exception {
+        var events = Collections.synchronizedList(new ArrayList<String>());
+        var system = new RoboSystem();
+        var failure = new IllegalStateException("Sensor not connected");
+        var failing = new LifecycleRecordingUnit(system, "failing", events, 0) {
+            @Override
+            public void start() {
+                super.start();
+                throw failure;
+            }
+        };
+        failing.initialize(new ConfigurationBuilder().build());
+        var dependent = new LifecycleRecordingUnit(system, "dependent", events, 0);
+        dependent.initialize(new ConfigurationBuilder().addString(RoboBuilder.KEY_DEPENDS_ON, "failing").build());
+        var independent = new LifecycleRecordingUnit(system, "independent", events, 0);
+        independent.initialize(new ConfigurationBuilder().build());
+        system.addUnits(failing, dependent, independent);
+        system.setState(LifecycleState.INITIALIZED);
+
+        var exception = assertThrows(IllegalStateException.class, system::start);
+        var startEvents = List.copyOf(events);
+        var failingState = failing.getState();
+        var systemState = system.getState();
+        system.shutdown();
+
+        assertSame(failure, exception);
+        assertEquals(LifecycleState.FAILED, failingState);
+        assertEquals(LifecycleState.FAILED, systemState);
+        assertFalse(startEvents.contains("dependent:startBegin"));
+        // The units that did start are stopped again
+        assertTrue(startEvents.contains("independent:startEnd"));
+        assertTrue(startEvents.contains("independent:stop"));
+        assertFalse(startEvents.contains("failing:stop"));
+    }
+
+    @Test
+    void timedOutUnitStartIsInterruptedAndNeverStartedTest() throws Exception {
+        var events = Collections.synchronizedList(new ArrayList<String>());
+        var system = new RoboSystem();
+        var slow = new LifecycleRecordingUnit(system, "slow", events, 10_000);
+        slow.initialize(new ConfigurationBuilder().addInteger(RoboBuilder.KEY_LIFECYCLE_TIMEOUT, 100).build());
+        system.addUnits(slow);
+        system.setState(LifecycleState.INITIALIZED);
+
+        assertThrows(RuntimeException.class, system::start);
+        // The interrupted start finishes right away, long before its 10 s
+        var deadline = System.currentTimeMillis() + 2_000;
+        while (!events.contains("slow:startEnd") && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        var startEvents = List.copyOf(events);
+        var slowState = slow.getState();
+        system.shutdown();
+
+        assertTrue(startEvents.contains("slow:startEnd"));
+        assertNotEquals(LifecycleState.STARTED, slowState);
+        assertFalse(startEvents.contains("slow:stop"));
+    }
+
+    @Test
+    void dependencyCycleKeepsTheDependenciesOutsideOfTheCycleTest() throws Exception {
+        var events = Collections.synchronizedList(new ArrayList<String>());
+        var system = new RoboSystem();
+        var outside = new LifecycleRecordingUnit(system, "outside", events, 0);
+        outside.initialize(new ConfigurationBuilder().addString(RoboBuilder.KEY_DEPENDS_ON, "first").build());
+        var first = new LifecycleRecordingUnit(system, "first", events, 200);
+        first.initialize(new ConfigurationBuilder().addString(RoboBuilder.KEY_DEPENDS_ON, "second").build());
+        var second = new LifecycleRecordingUnit(system, "second", events, 0);
+        second.initialize(new ConfigurationBuilder().addString(RoboBuilder.KEY_DEPENDS_ON, "first").build());
+        system.addUnits(outside, first, second);
+        system.setState(LifecycleState.INITIALIZED);
+
+        system.start();
+        var startEvents = List.copyOf(events);
+        system.shutdown();
+
+        assertEquals(6, startEvents.size());
+        // Only the dependency closing the cycle is ignored
+        assertTrue(startEvents.indexOf("second:startEnd") < startEvents.indexOf("first:startBegin"));
+        assertTrue(startEvents.indexOf("first:startEnd") < startEvents.indexOf("outside:startBegin"));
+    }
+
+    @Test
+    void publishedAttributesAreReadWithoutAskingTheUnitTest() throws Exception {
+        var system = new RoboSystem();
+        var consumer = new PublishingIntegerConsumer(system, "consumer");
+        system.addUnits(consumer);
+        system.setState(LifecycleState.INITIALIZED);
+        system.start();
+        var reference = system.<Integer>getReference("consumer");
+
+        var initialVersion = consumer.getAttributeSnapshot().getVersion();
+        for (int i = 1; i <= 10; i++) {
+            reference.sendMessage(i);
+        }
+        var deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(10);
+        while (consumer.getAttributeSnapshot().get(PublishingIntegerConsumer.DESCRIPTOR_COUNT) < 10
+                && System.currentTimeMillis() < deadline) {
+            TimeUnit.MILLISECONDS.sleep(1);
+        }
+
+        var count = reference.getAttribute(PublishingIntegerConsumer.DESCRIPTOR_COUNT);
+        var sum = reference.getAttribute(PublishingIntegerConsumer.DESCRIPTOR_SUM);
+        // Published attributes are available right away...
+        assertTrue(count.isDone());
+        assertTrue(sum.isDone());
+        assertEquals(10, count.get());
+        assertEquals(55L, sum.get());
+        // One snapshot version per message, as count and sum are published together
+        assertEquals(initialVersion + 10, consumer.getAttributeSnapshot().getVersion());
+        // ...the others are still provided by the unit
+        assertEquals(10, getAttributeOrTimeout(reference, PublishingIntegerConsumer.DESCRIPTOR_LAST));
+        var attributes = reference.getAttributes().get(10, TimeUnit.SECONDS);
+        assertEquals(10, attributes.get(PublishingIntegerConsumer.DESCRIPTOR_COUNT));
+        system.shutdown();
+    }
+
+    @Test
+    void askedMessagesAreRepliedToTest() throws Exception {
+        var system = new RoboSystem();
+        var doubler = new DoublingIntegerUnit(system, "doubler");
+        system.addUnits(doubler);
+        system.setState(LifecycleState.INITIALIZED);
+        system.start();
+        var reference = system.<Integer>getReference("doubler");
+        var timeout = Duration.ofSeconds(10);
+
+        CompletableFuture<Integer> immediate = reference.ask(2, timeout);
+        CompletableFuture<Integer> deferred = reference.ask(3, timeout);
+        CompletableFuture<Integer> unanswered = reference.ask(0, Duration.ofMillis(50));
+        CompletableFuture<Integer> failed = reference.ask(-1, timeout);
+
+        assertEquals(4, immediate.get(10, TimeUnit.SECONDS));
+        assertEquals(6, deferred.get(10, TimeUnit.SECONDS));
+        var timedOut = assertThrows(ExecutionException.class, () -> unanswered.get(10, TimeUnit.SECONDS));
+        assertInstanceOf(TimeoutException.class, timedOut.getCause());
+        var failure = assertThrows(ExecutionException.class, () -> failed.get(10, TimeUnit.SECONDS));
+        assertInstanceOf(IllegalArgumentException.class, failure.getCause());
+        system.shutdown();
+
+        var afterShutdown = reference.<Integer>ask(2, timeout);
+        assertTrue(afterShutdown.isCompletedExceptionally());
+    }
 }
@@ -0,0 +1,111 @@
+/*
+ * Copyright (c) 2014, 2024, Marcus Hirt, Miroslav Wengner
+ *
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.robo4j.journal;
+
+import com.robo4j.RoboBuilder;
+import com.robo4j.RoboContext;
+import com.robo4j.RoboReference;
+import com.robo4j.configuration.ConfigurationBuilder;
+import com.robo4j.units.CriticalIntegerConsumer;
+import com.robo4j.units.StringConsumer;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+import static com.robo4j.RoboUnitTestUtils.getAttributeOrTimeout;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests for recording and replaying unit traffic.
+ *
+ * @author Marcus Hirt (@hirt)
+ * @author Miroslav Wengner (@miragemiko)
+ */
+class MessageJournalTests {
+    private static final int TIMEOUT_SEC = 10;
+    private static final String CONSUMER_ID = "consumer";
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void recordedMessagesAreReplayedInOrderTest() throws Exception {
+        var messages = 1000;
+        Path file = tempDir.resolve("traffic.journal");
+        // Small segments, so that the journal has to grow
+        try (var journal = MessageJournal.create(file, 4096)) {
+            var system = buildSystem(messages);
+            journal.record(system, CONSUMER_ID, MessageCodecs.INTEGER);
+            RoboReference<Integer> consumer = system.getReference(CONSUMER_ID);
+            IntStream.range(0, messages).forEach(consumer::sendMessage);
+            journal.stopRecording(system, CONSUMER_ID);
+            consumer.sendMessage(-1);
+            assertEquals(messages, journal.getRecordCount());
+            system.shutdown();
+        }
+
+        var replayed = buildSystem(messages);
+        try (var reader = JournalReader.open(file, MessageCodecs.defaults())) {
+            assertEquals(messages, JournalReplay.replay(replayed, reader, JournalReplay.MAX_SPEED));
+            assertNull(reader.next());
+        }
+        RoboReference<Integer> consumer = replayed.getReference(CONSUMER_ID);
+        var latch = getAttributeOrTimeout(consumer, CriticalIntegerConsumer.DESCRIPTOR_COUNT_DOWN_LATCH);
+        assertTrue(latch.await(TIMEOUT_SEC, TimeUnit.SECONDS));
+        replayed.shutdown();
+    }
+
+    @Test
+    void replayKeepsTheRecordedTimingScaledBySpeedTest() throws Exception {
+        Path file = tempDir.resolve("timed.journal");
+        try (var journal = MessageJournal.create(file)) {
+            var channel = journal.openChannel("strings", MessageCodecs.STRING);
+            channel.append("first");
+            TimeUnit.MILLISECONDS.sleep(200);
+            channel.append("second");
+            channel.append("åäö");
+        }
+        var system = new RoboBuilder().add(StringConsumer.class, "strings").build();
+        system.start();
+        try (var reader = JournalReader.open(file, List.of(MessageCodecs.STRING))) {
+            long start = System.nanoTime();
+            assertEquals(3, JournalReplay.replay(system, reader, 2));
+            assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(100));
+        }
+        system.shutdown();
+
+        try (var reader = JournalReader.open(file, List.of(MessageCodecs.STRING))) {
+            assertEquals("first", reader.next().message());
+            assertEquals("second", reader.next().message());
+            assertEquals("åäö", reader.next().message());
+            assertNull(reader.next());
+        }
+    }
+
+    private static RoboContext buildSystem(int messages) throws Exception {
+        var system = new RoboBuilder().add(CriticalIntegerConsumer.class,
+                new ConfigurationBuilder().addInteger(CriticalIntegerConsumer.PROP_TOTAL_MESSAGES, messages).build(), CONSUMER_ID).build();
+        system.start();
+        return system;
+    }
+}
@@ -24,15 +24,21 @@ import java.io.IOException;
 import java.net.InetAddress;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.TimeUnit;
 
 import static com.robo4j.net.LookupServiceProvider.DEFAULT_MULTICAST_ADDRESS;
 import static com.robo4j.net.LookupServiceProvider.DEFAULT_PORT;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import com.robo4j.RoboContext;
+import com.robo4j.RoboReference;
+import com.robo4j.configuration.ConfigurationBuilder;
 
 
 /**
@@ -96,6 +102,86 @@ class LookupServiceTests {
         assertEquals(expectedDiscoveredContexts, discoveredContexts.size());
     }
 
+    @Test
+    void remoteContextIsReusedUntilHeartbeatsAreMissedTest() throws IOException, InterruptedException {
+        final var heartBeatIntervalMills = 50;
+        final var service = DefaultLookupServiceBuilder.Build()
+                .setAddress(DEFAULT_MULTICAST_ADDRESS)
+                .setPort(DEFAULT_PORT)
+                .setMissedHeartbeatsBeforeRemoval(2)
+                .setLocalContexts(new LocalLookupServiceImpl())
+                .build();
+        final var descriptor = new RoboContextDescriptor("MyExpiringID", heartBeatIntervalMills,
+                Map.of(RoboContextDescriptor.KEY_URI, "robo4j://localhost:12346"));
+        final var emitter = new ContextEmitter(descriptor, InetAddress.getByName(LookupServiceProvider.DEFAULT_MULTICAST_ADDRESS),
+                LookupServiceProvider.DEFAULT_PORT, heartBeatIntervalMills);
+
+        service.start();
+        assertTrue(service.awaitReady(1, TimeUnit.SECONDS), "Service should be ready");
+        emitter.emit();
+
+        var context = awaitContext(service, descriptor.getId(), 1, TimeUnit.SECONDS);
+        assertNotNull(context, "Context should be discovered within timeout");
+        assertSame(context, service.getContext(descriptor.getId()));
+        assertSame(context.getReference("unit"), service.getContext(descriptor.getId()).getReference("unit"));
+
+        // No further heartbeats are emitted
+        Thread.sleep(heartBeatIntervalMills * 4);
+        assertNull(service.getContext(descriptor.getId()));
+        assertFalse(service.getDiscoveredContexts().containsKey(descriptor.getId()));
+        service.stop();
+    }
+
+    @Test
+    void referencesOfAnEvictedContextReconnectTest() throws Exception {
+        final var heartBeatIntervalMills = 50;
+        final var messages = new LinkedBlockingQueue<>();
+        final var messageServer = new MessageServer((uuid, id, message) -> messages.add(message),
+                new ConfigurationBuilder().addString(MessageServer.KEY_HOST_NAME, "localhost").build());
+        final var serverListenerThread = new Thread(() -> {
+            try {
+                messageServer.start();
+            } catch (IOException e) {
+                LOGGER.error("Message server failed", e);
+            }
+        }, "Server Listener");
+        serverListenerThread.setDaemon(true);
+        serverListenerThread.start();
+        for (int i = 0; i < 10 && messageServer.getListeningURI() == null; i++) {
+            Thread.sleep(250);
+        }
+        final var service = DefaultLookupServiceBuilder.Build()
+                .setAddress(DEFAULT_MULTICAST_ADDRESS)
+                .setPort(DEFAULT_PORT)
+                .setMissedHeartbeatsBeforeRemoval(2)
+                .setLocalContexts(new LocalLookupServiceImpl())
+                .build();
+        final var descriptor = new RoboContextDescriptor("MyEvictedID", heartBeatIntervalMills,
+                Map.of(RoboContextDescriptor.KEY_URI, messageServer.getListeningURI().toString()));
+        final var emitter = new ContextEmitter(descriptor, InetAddress.getByName(LookupServiceProvider.DEFAULT_MULTICAST_ADDRESS),
+                LookupServiceProvider.DEFAULT_PORT, heartBeatIntervalMills);
+
+        try {
+            service.start();
+            assertTrue(service.awaitReady(1, TimeUnit.SECONDS), "Service should be ready");
+            emitter.emit();
+            var context = awaitContext(service, descriptor.getId(), 1, TimeUnit.SECONDS);
+            assertNotNull(context, "Context should be discovered within timeout");
+            RoboReference<String> reference = context.getReference("unit");
+            reference.sendMessage("before");
+            assertEquals("before", messages.poll(10, TimeUnit.SECONDS));
+
+            // Evicts the context, closing its connection
+            Thread.sleep(heartBeatIntervalMills * 4);
+            assertNull(service.getContext(descriptor.getId()));
+            reference.sendMessage("after");
+            assertEquals("after", messages.poll(10, TimeUnit.SECONDS));
+        } finally {
+            service.stop();
+            messageServer.stop();
+        }
+    }
+
     private RoboContext awaitContext(LookupService service, String id, long timeout, TimeUnit unit) throws InterruptedException {
         long deadlineNanos = System.nanoTime() + unit.toNanos(timeout);
         while (System.nanoTime() < deadlineNanos) {
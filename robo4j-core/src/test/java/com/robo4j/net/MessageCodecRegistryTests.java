@@ -0,0 +1,175 @@
+/*
+ * Copyright (c) 2014, 2024, Marcus Hirt, Miroslav Wengner
+ *
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.robo4j.net;
+
+import com.robo4j.journal.MessageCodec;
+import com.robo4j.journal.MessageCodecs;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InvalidClassException;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * @author Marcus Hirt (@hirt)
+ * @author Miroslav Wengner (@miragemiko)
+ */
+class MessageCodecRegistryTests {
+
+    enum Axis {
+        X, Y, Z
+    }
+
+    record Position(float x, float y, float z) implements Serializable {
+    }
+
+    record Scan(String sensor, long timestamp, Axis axis, Integer quality, float[] ranges, Position origin)
+            implements Serializable {
+    }
+
+    record Tagged(String tag, List<String> values) {
+    }
+
+    record Linked(String name, Linked next) {
+    }
+
+    record Measurement(String location, Temperature temperature) {
+    }
+
+    static final class Temperature {
+        private final double celsius;
+
+        Temperature(double celsius) {
+            this.celsius = celsius;
+        }
+    }
+
+    @Test
+    void recordsAreEncodedMoreCompactlyThanSerializedTest() throws IOException {
+        var registry = new MessageCodecRegistry();
+        var scan = new Scan("lidar", 42L, Axis.Z, null, new float[]{1.5f, 2.5f, 3.5f}, new Position(1, 2, 3));
+
+        MessageCodec<Scan> codec = registry.getCodec(Scan.class);
+        assertNotNull(codec);
+        ByteBuffer buffer = ByteBuffer.allocate(1024);
+        codec.encode(scan, buffer);
+        int encodedSize = buffer.position();
+        Scan decoded = codec.decode(buffer.flip());
+
+        assertEquals(scan.sensor(), decoded.sensor());
+        assertEquals(scan.timestamp(), decoded.timestamp());
+        assertEquals(scan.axis(), decoded.axis());
+        assertNull(decoded.quality());
+        assertArrayEquals(scan.ranges(), decoded.ranges());
+        assertEquals(scan.origin(), decoded.origin());
+        assertTrue(encodedSize < serializedSize(scan), "encoded size: " + encodedSize);
+    }
+
+    @Test
+    void unsupportedTypesFallBackToSerializationTest() throws Exception {
+        var registry = new MessageCodecRegistry();
+
+        assertNull(registry.getCodec(Tagged.class));
+        assertNull(registry.getCodec(Linked.class));
+        assertNull(registry.getCodec(Temperature.class));
+        assertNotNull(registry.getCodec(Position.class.getName()));
+    }
+
+    @Test
+    void registeredCodecsAreUsedForTypesAndComponentsTest() {
+        var registry = new MessageCodecRegistry();
+        var temperatureCodec = MessageCodecs.create(Temperature.class,
+                (message, buffer) -> buffer.putDouble(message.celsius), buffer -> new Temperature(buffer.getDouble()));
+        registry.register(temperatureCodec);
+
+        assertSame(temperatureCodec, registry.getCodec(Temperature.class));
+        MessageCodec<Measurement> codec = registry.getCodec(Measurement.class);
+        assertNotNull(codec);
+        ByteBuffer buffer = ByteBuffer.allocate(64);
+        codec.encode(new Measurement("room", new Temperature(21.5)), buffer);
+        Measurement decoded = codec.decode(buffer.flip());
+        assertEquals("room", decoded.location());
+        assertEquals(21.5, decoded.temperature().celsius);
+    }
+
+    @Test
+    void onlyKnownTypesAreReceivedTest() throws Exception {
+        var registry = new MessageCodecRegistry();
+        registry.register(MessageCodecs.create(Temperature.class,
+                (message, buffer) -> buffer.putDouble(message.celsius), buffer -> new Temperature(buffer.getDouble())));
+
+        assertNotNull(registry.getCodec(Scan.class.getName()));
+        assertNotNull(registry.getCodec(Temperature.class.getName()));
+        assertThrows(InvalidClassException.class, () -> registry.getCodec(Measurement.class.getName()));
+        assertThrows(InvalidClassException.class, () -> registry.getCodec(Thread.class.getName()));
+        assertThrows(ClassNotFoundException.class, () -> registry.getCodec("com.robo4j.net.Unknown"));
+
+        registry.allow(Measurement.class);
+        assertNotNull(registry.getCodec(Measurement.class.getName()));
+    }
+
+    @Test
+    void corruptLengthsAreRejectedBeforeAllocatingTest() {
+        var registry = new MessageCodecRegistry();
+        MessageCodec<Scan> codec = registry.getCodec(Scan.class);
+        ByteBuffer buffer = ByteBuffer.allocate(1024);
+        codec.encode(new Scan("lidar", 42L, Axis.Z, null, new float[]{1.5f, 2.5f}, null), buffer);
+        buffer.flip();
+        // Null markers precede the length of the sensor and of the ranges
+        int sensorLengthPosition = 1;
+        int axisOrdinalPosition = sensorLengthPosition + Integer.BYTES + "lidar".length() + Long.BYTES + 1;
+        int rangesLengthPosition = axisOrdinalPosition + Integer.BYTES + 1 + 1;
+
+        for (int length : new int[]{-1, Integer.MAX_VALUE}) {
+            assertThrows(BufferUnderflowException.class,
+                    () -> codec.decode(copyWithInt(buffer, sensorLengthPosition, length)));
+        }
+        // Room for three bytes, but not for three floats
+        assertThrows(BufferUnderflowException.class,
+                () -> codec.decode(copyWithInt(buffer, rangesLengthPosition, 3)));
+        for (int ordinal : new int[]{-1, Axis.values().length}) {
+            assertThrows(BufferUnderflowException.class,
+                    () -> codec.decode(copyWithInt(buffer, axisOrdinalPosition, ordinal)));
+        }
+        assertArrayEquals(new float[]{1.5f, 2.5f}, codec.decode(buffer).ranges());
+    }
+
+    private static ByteBuffer copyWithInt(ByteBuffer buffer, int position, int value) {
+        return ByteBuffer.allocate(buffer.remaining()).put(buffer.duplicate()).flip().putInt(position, value);
+    }
+
+    private static int serializedSize(Object message) throws IOException {
+        var bytes = new ByteArrayOutputStream();
+        try (var objectOutputStream = new ObjectOutputStream(bytes)) {
+            objectOutputStream.writeObject(message);
+        }
+        return bytes.size();
+    }
+}
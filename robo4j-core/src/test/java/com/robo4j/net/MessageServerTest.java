@@ -24,16 +24,25 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.io.NotSerializableException;
+import java.io.ObjectOutputStream;
+import java.net.Socket;
+import java.net.SocketException;
 import java.util.ArrayList;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 import java.util.stream.Stream;
 
 import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.junit.jupiter.api.Assertions.fail;
 
@@ -210,6 +219,423 @@ public class MessageServerTest {
         }
     }
 
+    @Test
+    void framedAndLegacyClientsShareOneIoThreadTest() throws Exception {
+        final int clientsNumber = 4;
+        final var messages = new ConcurrentHashMap<String, Object>();
+        final var messagesLatch = new CountDownLatch(clientsNumber + 1);
+
+        var serverConfig = new ConfigurationBuilder()
+                .addString(MessageServer.KEY_HOST_NAME, LOCALHOST_VALUE)
+                .addInteger(MessageServer.KEY_IO_THREADS, 1)
+                .build();
+        var messageServer = new MessageServer((uuid, id, message) -> {
+            printInfo(uuid, id, message);
+            messages.put(uuid, message);
+            messagesLatch.countDown();
+        }, serverConfig);
+
+        var serverListenerThread = new Thread(() -> {
+            try {
+                messageServer.start();
+            } catch (IOException e) {
+                exception = e;
+            }
+        }, "Server Listener");
+        serverListenerThread.setDaemon(true);
+        serverListenerThread.start();
+        for (int i = 0; i < 10 && messageServer.getListeningPort() == 0; i++) {
+            Thread.sleep(SERVER_LISTEN_DELAY_MILLIS);
+        }
+
+        var clients = new ArrayList<MessageClient>();
+        for (int i = 0; i < clientsNumber; i++) {
+            var client = new MessageClient(messageServer.getListeningURI(), CONST_MY_UUID + i,
+                    ConfigurationFactory.createEmptyConfiguration());
+            client.connect();
+            clients.add(client);
+        }
+        for (int i = 0; i < clientsNumber; i++) {
+            clients.get(i).sendMessage("test", i);
+        }
+
+        try (var legacySocket = new Socket(LOCALHOST_VALUE, messageServer.getListeningPort());
+             var legacyOutput = new ObjectOutputStream(legacySocket.getOutputStream())) {
+            legacyOutput.writeShort(MessageProtocolConstants.MAGIC);
+            legacyOutput.writeUTF("legacy");
+            legacyOutput.writeUTF("test");
+            legacyOutput.writeByte(MessageProtocolConstants.MOD_UTF8);
+            legacyOutput.writeUTF("Legacy Message");
+            legacyOutput.flush();
+
+            assertTrue(messagesLatch.await(TIMEOUT_SEC, TimeUnit.SECONDS));
+        } finally {
+            clients.forEach(MessageClient::shutdown);
+            messageServer.stop();
+        }
+
+        if (exception != null) {
+            throw exception;
+        }
+        for (int i = 0; i < clientsNumber; i++) {
+            assertEquals(i, messages.get(CONST_MY_UUID + i));
+        }
+        assertEquals("Legacy Message", messages.get("legacy"));
+    }
+
+    @Test
+    void recordMessagesAreSentWithCodecsTest() throws Exception {
+        final var messages = new ArrayList<>();
+        final var messagesLatch = new CountDownLatch(3);
+
+        var serverConfig = new ConfigurationBuilder()
+                .addString(MessageServer.KEY_HOST_NAME, LOCALHOST_VALUE)
+                .build();
+        var messageServer = new MessageServer((uuid, id, message) -> {
+            printInfo(uuid, id, message);
+            messages.add(message);
+            messagesLatch.countDown();
+        }, serverConfig);
+
+        var serverListenerThread = new Thread(() -> {
+            try {
+                messageServer.start();
+            } catch (IOException e) {
+                exception = e;
+            }
+        }, "Server Listener");
+        serverListenerThread.setDaemon(true);
+        serverListenerThread.start();
+        for (int i = 0; i < 10 && messageServer.getListeningPort() == 0; i++) {
+            Thread.sleep(SERVER_LISTEN_DELAY_MILLIS);
+        }
+
+        var client = new MessageClient(messageServer.getListeningURI(), CONST_MY_UUID,
+                ConfigurationFactory.createEmptyConfiguration());
+        var origin = new MessageCodecRegistryTests.Position(1, 2, 3);
+        var scan = new MessageCodecRegistryTests.Scan("lidar", 7L, MessageCodecRegistryTests.Axis.X, 9,
+                new float[]{0.5f, 1.5f}, origin);
+        try {
+            client.connect();
+            client.sendMessage("test", origin);
+            client.sendMessage("test", scan);
+            client.sendMessage("test", new MessageCodecRegistryTests.Position(4, 5, 6));
+            assertTrue(messagesLatch.await(TIMEOUT_SEC, TimeUnit.SECONDS));
+        } finally {
+            client.shutdown();
+            messageServer.stop();
+        }
+
+        assertEquals(origin, messages.get(0));
+        var receivedScan = (MessageCodecRegistryTests.Scan) messages.get(1);
+        assertEquals(scan.sensor(), receivedScan.sensor());
+        assertArrayEquals(scan.ranges(), receivedScan.ranges());
+        assertEquals(origin, receivedScan.origin());
+        assertEquals(new MessageCodecRegistryTests.Position(4, 5, 6), messages.get(2));
+    }
+
+    @Test
+    void coalescedMessagesArriveInOrderTest() throws Exception {
+        final int messagesNumber = 1001;
+        final var messages = new ArrayList<>(messagesNumber);
+        final var messagesLatch = new CountDownLatch(messagesNumber);
+
+        var serverConfig = new ConfigurationBuilder()
+                .addString(MessageServer.KEY_HOST_NAME, LOCALHOST_VALUE)
+                .build();
+        var messageServer = new MessageServer((uuid, id, message) -> {
+            messages.add(message);
+            messagesLatch.countDown();
+        }, serverConfig);
+
+        var serverListenerThread = new Thread(() -> {
+            try {
+                messageServer.start();
+            } catch (IOException e) {
+                exception = e;
+            }
+        }, "Server Listener");
+        serverListenerThread.setDaemon(true);
+        serverListenerThread.start();
+        for (int i = 0; i < 10 && messageServer.getListeningPort() == 0; i++) {
+            Thread.sleep(SERVER_LISTEN_DELAY_MILLIS);
+        }
+
+        // The last message is only written when the linger time has passed
+        var clientConfig = new ConfigurationBuilder()
+                .addInteger(MessageClient.KEY_BATCH_MESSAGES, 100)
+                .addInteger(MessageClient.KEY_LINGER_MILLIS, 20)
+                .addInteger(MessageClient.KEY_QUEUE_CAPACITY, 64)
+                .build();
+        var client = new MessageClient(messageServer.getListeningURI(), CONST_MY_UUID, clientConfig);
+        try {
+            client.connect();
+            for (int i = 0; i < messagesNumber; i++) {
+                client.sendMessage("test", i);
+            }
+            assertTrue(messagesLatch.await(TIMEOUT_SEC, TimeUnit.SECONDS));
+        } finally {
+            client.shutdown();
+            messageServer.stop();
+        }
+
+        for (int i = 0; i < messagesNumber; i++) {
+            assertEquals(i, messages.get(i));
+        }
+    }
+
+    @Test
+    void objectMessagesShareOneObjectStreamTest() throws Exception {
+        final var messages = new ArrayList<TestMessageType>();
+        final var messagesLatch = new CountDownLatch(3);
+
+        var serverConfig = new ConfigurationBuilder()
+                .addString(MessageServer.KEY_HOST_NAME, LOCALHOST_VALUE)
+                .build();
+        var messageServer = new MessageServer((uuid, id, message) -> {
+            messages.add((TestMessageType) message);
+            messagesLatch.countDown();
+        }, serverConfig);
+
+        var serverListenerThread = new Thread(() -> {
+            try {
+                messageServer.start();
+            } catch (IOException e) {
+                exception = e;
+            }
+        }, "Server Listener");
+        serverListenerThread.setDaemon(true);
+        serverListenerThread.start();
+        for (int i = 0; i < 10 && messageServer.getListeningPort() == 0; i++) {
+            Thread.sleep(SERVER_LISTEN_DELAY_MILLIS);
+        }
+
+        var client = new MessageClient(messageServer.getListeningURI(), CONST_MY_UUID,
+                ConfigurationFactory.createEmptyConfiguration());
+        var message = new TestMessageType(1, "first", null);
+        try {
+            client.connect();
+            client.sendMessage("test", message);
+            // Changed after sending, so must not arrive as a back reference
+            message.setNumber(2);
+            client.sendMessage("test", message);
+            // Fails half way through the stream, which is then started over
+            assertThrows(NotSerializableException.class, () -> client.sendMessage("test", new Object()));
+            message.setNumber(3);
+            client.sendMessage("test", message);
+            assertTrue(messagesLatch.await(TIMEOUT_SEC, TimeUnit.SECONDS));
+        } finally {
+            client.shutdown();
+            messageServer.stop();
+        }
+
+        assertEquals(List.of(1, 2, 3), messages.stream().map(TestMessageType::getNumber).toList());
+        assertNotSame(messages.get(0), messages.get(1));
+    }
+
+    @Test
+    void objectMessagesArriveAcrossObjectStreamResetsTest() throws Exception {
+        final int messagesNumber = 300;
+        final var messages = new LinkedBlockingQueue<TestMessageType>();
+
+        var serverConfig = new ConfigurationBuilder()
+                .addString(MessageServer.KEY_HOST_NAME, LOCALHOST_VALUE)
+                .build();
+        var messageServer = new MessageServer((uuid, id, message) -> messages.add((TestMessageType) message), serverConfig);
+        var serverListenerThread = new Thread(() -> {
+            try {
+                messageServer.start();
+            } catch (IOException e) {
+                exception = e;
+            }
+        }, "Server Listener");
+        serverListenerThread.setDaemon(true);
+        serverListenerThread.start();
+        for (int i = 0; i < 10 && messageServer.getListeningPort() == 0; i++) {
+            Thread.sleep(SERVER_LISTEN_DELAY_MILLIS);
+        }
+
+        var client = new MessageClient(messageServer.getListeningURI(), CONST_MY_UUID,
+                ConfigurationFactory.createEmptyConfiguration());
+        var received = new ArrayList<Integer>();
+        try {
+            client.connect();
+            // Reused, and changed between the sends
+            var message = new TestMessageType(0, "message", null);
+            for (int i = 0; i < messagesNumber; i++) {
+                message.setNumber(i);
+                client.sendMessage("test", message);
+            }
+            for (int i = 0; i < messagesNumber; i++) {
+                received.add(messages.poll(TIMEOUT_SEC, TimeUnit.SECONDS).getNumber());
+            }
+        } finally {
+            client.shutdown();
+            messageServer.stop();
+        }
+
+        assertEquals(IntStream.range(0, messagesNumber).boxed().toList(), received);
+    }
+
+    @Test
+    void blockedCallbackDoesNotStallOtherConnectionsTest() throws Exception {
+        // More than a connection may have pending, so reading is paused too
+        final int messagesNumber = 5000;
+        final var gate = new CountDownLatch(1);
+        final var otherLatch = new CountDownLatch(1);
+        final var blockedLatch = new CountDownLatch(messagesNumber);
+        final var blockedMessages = new ArrayList<>(messagesNumber);
+
+        var serverConfig = new ConfigurationBuilder()
+                .addString(MessageServer.KEY_HOST_NAME, LOCALHOST_VALUE)
+                .addInteger(MessageServer.KEY_IO_THREADS, 1)
+                .build();
+        var messageServer = new MessageServer((uuid, id, message) -> {
+            if (id.equals("other")) {
+                otherLatch.countDown();
+                return;
+            }
+            try {
+                gate.await(TIMEOUT_SEC, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            blockedMessages.add(message);
+            blockedLatch.countDown();
+        }, serverConfig);
+
+        var serverListenerThread = new Thread(() -> {
+            try {
+                messageServer.start();
+            } catch (IOException e) {
+                exception = e;
+            }
+        }, "Server Listener");
+        serverListenerThread.setDaemon(true);
+        serverListenerThread.start();
+        for (int i = 0; i < 10 && messageServer.getListeningPort() == 0; i++) {
+            Thread.sleep(SERVER_LISTEN_DELAY_MILLIS);
+        }
+
+        var blockedClient = new MessageClient(messageServer.getListeningURI(), CONST_MY_UUID,
+                ConfigurationFactory.createEmptyConfiguration());
+        var otherClient = new MessageClient(messageServer.getListeningURI(), CONST_MY_UUID,
+                ConfigurationFactory.createEmptyConfiguration());
+        try {
+            blockedClient.connect();
+            otherClient.connect();
+            for (int i = 0; i < messagesNumber; i++) {
+                blockedClient.sendMessage("blocked", i);
+            }
+            otherClient.sendMessage("other", 0);
+            assertTrue(otherLatch.await(TIMEOUT_SEC, TimeUnit.SECONDS));
+            gate.countDown();
+            assertTrue(blockedLatch.await(TIMEOUT_SEC, TimeUnit.SECONDS));
+        } finally {
+            gate.countDown();
+            blockedClient.shutdown();
+            otherClient.shutdown();
+            messageServer.stop();
+        }
+
+        for (int i = 0; i < messagesNumber; i++) {
+            assertEquals(i, blockedMessages.get(i));
+        }
+    }
+
+    @Test
+    void stoppedServerCanBeStartedAgainTest() throws Exception {
+        final var messages = new LinkedBlockingQueue<>();
+
+        var serverConfig = new ConfigurationBuilder()
+                .addString(MessageServer.KEY_HOST_NAME, LOCALHOST_VALUE)
+                .build();
+        var messageServer = new MessageServer((uuid, id, message) -> messages.add(message), serverConfig);
+
+        for (int run = 0; run < 2; run++) {
+            var serverListenerThread = new Thread(() -> {
+                try {
+                    messageServer.start();
+                } catch (IOException e) {
+                    exception = e;
+                }
+            }, "Server Listener");
+            serverListenerThread.setDaemon(true);
+            serverListenerThread.start();
+            for (int i = 0; i < 10 && messageServer.getListeningURI() == null; i++) {
+                Thread.sleep(SERVER_LISTEN_DELAY_MILLIS);
+            }
+
+            var client = new MessageClient(messageServer.getListeningURI(), CONST_MY_UUID,
+                    ConfigurationFactory.createEmptyConfiguration());
+            try {
+                client.connect();
+                client.sendMessage("test", run);
+                assertEquals(run, messages.poll(TIMEOUT_SEC, TimeUnit.SECONDS));
+            } finally {
+                client.shutdown();
+                messageServer.stop();
+            }
+            serverListenerThread.join(TimeUnit.SECONDS.toMillis(TIMEOUT_SEC));
+        }
+    }
+
+    @Test
+    void legacyConnectionsOverTheLimitAreClosedTest() throws Exception {
+        final var messages = new LinkedBlockingQueue<>();
+
+        var serverConfig = new ConfigurationBuilder()
+                .addString(MessageServer.KEY_HOST_NAME, LOCALHOST_VALUE)
+                .addInteger(MessageServer.KEY_MAX_LEGACY_CONNECTIONS, 1)
+                .build();
+        var messageServer = new MessageServer((uuid, id, message) -> messages.add(message), serverConfig);
+        var serverListenerThread = new Thread(() -> {
+            try {
+                messageServer.start();
+            } catch (IOException e) {
+                exception = e;
+            }
+        }, "Server Listener");
+        serverListenerThread.setDaemon(true);
+        serverListenerThread.start();
+        for (int i = 0; i < 10 && messageServer.getListeningURI() == null; i++) {
+            Thread.sleep(SERVER_LISTEN_DELAY_MILLIS);
+        }
+
+        try (var servedSocket = new Socket(LOCALHOST_VALUE, messageServer.getListeningPort());
+             var servedOutput = new ObjectOutputStream(servedSocket.getOutputStream())) {
+            servedOutput.writeShort(MessageProtocolConstants.MAGIC);
+            servedOutput.writeUTF("served");
+            servedOutput.writeUTF("test");
+            servedOutput.writeByte(MessageProtocolConstants.MOD_UTF8);
+            servedOutput.writeUTF("Legacy Message");
+            servedOutput.flush();
+            assertEquals("Legacy Message", messages.poll(TIMEOUT_SEC, TimeUnit.SECONDS));
+
+            // The only legacy thread is busy with the first connection
+            try (var closedSocket = new Socket(LOCALHOST_VALUE, messageServer.getListeningPort());
+                 var closedOutput = new ObjectOutputStream(closedSocket.getOutputStream())) {
+                closedOutput.writeShort(MessageProtocolConstants.MAGIC);
+                closedOutput.flush();
+                assertClosedByServer(closedSocket);
+            }
+        } finally {
+            messageServer.stop();
+        }
+        if (exception != null) {
+            throw exception;
+        }
+    }
+
+    private static void assertClosedByServer(Socket socket) throws IOException {
+        socket.setSoTimeout((int) TimeUnit.SECONDS.toMillis(TIMEOUT_SEC));
+        try {
+            assertEquals(-1, socket.getInputStream().read());
+        } catch (SocketException e) {
+            // Reset, as the server closed it without reading everything
+        }
+    }
+
     private static void printInfo(String uuid, String id, Object message) {
         LOGGER.info("Got uuid: {} got id:{} message:{}", uuid, id, message);
     }
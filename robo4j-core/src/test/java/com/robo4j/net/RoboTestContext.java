@@ -20,6 +20,7 @@ import com.robo4j.LifecycleState;
 import com.robo4j.RoboContext;
 import com.robo4j.RoboReference;
 import com.robo4j.configuration.Configuration;
+import com.robo4j.scheduler.PeriodicExecutive;
 import com.robo4j.scheduler.Scheduler;
 
 import java.util.Collection;
@@ -82,6 +83,11 @@ public class RoboTestContext implements RoboContext {
 		return null;
 	}
 
+	@Override
+	public PeriodicExecutive getPeriodicExecutive() {
+		return null;
+	}
+
 	@Override
 	public String getId() {
 		return id;
@@ -0,0 +1,115 @@
+/*
+ * Copyright (c) 2014, 2024, Marcus Hirt, Miroslav Wengner
+ *
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.robo4j.net;
+
+import com.robo4j.RoboReference;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.PipedInputStream;
+import java.io.PipedOutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.channels.ServerSocketChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * @author Marcus Hirt (@hirt)
+ * @author Miroslav Wengner (@miragemiko)
+ */
+class ServerRemoteRoboContextTests {
+    private static final int SENDERS = 4;
+    private static final int MESSAGES_PER_SENDER = 1000;
+    private static final long WRITE_TIMEOUT_MILLIS = 200;
+
+    @Test
+    void concurrentRepliesAreWrittenInOrderPerSenderTest() throws Exception {
+        var clientInput = new PipedInputStream(64 * 1024);
+        var serverOutput = new PipedOutputStream(clientInput);
+        var writerExecutor = Executors.newFixedThreadPool(2);
+        var senderExecutor = Executors.newFixedThreadPool(SENDERS);
+        try {
+            var context = new ServerRemoteRoboContext("client", serverOutput, writerExecutor);
+            @SuppressWarnings("unchecked")
+            var reference = (RoboReference<Integer>) context.getRoboReference("clientContext", "unit",
+                    Integer.class.getName());
+
+            var senders = new ArrayList<Future<?>>();
+            for (int sender = 0; sender < SENDERS; sender++) {
+                final int base = sender * MESSAGES_PER_SENDER;
+                senders.add(senderExecutor.submit(() -> {
+                    for (int i = 0; i < MESSAGES_PER_SENDER; i++) {
+                        reference.sendMessage(base + i);
+                    }
+                }));
+            }
+
+            int[] lastReceived = new int[SENDERS];
+            Arrays.fill(lastReceived, -1);
+            try (var objectInputStream = new ObjectInputStream(clientInput)) {
+                for (int i = 0; i < SENDERS * MESSAGES_PER_SENDER; i++) {
+                    assertEquals("clientContext", objectInputStream.readUTF());
+                    assertEquals("unit", objectInputStream.readUTF());
+                    int message = (Integer) objectInputStream.readObject();
+                    int sender = message / MESSAGES_PER_SENDER;
+                    assertEquals(lastReceived[sender] + 1, message % MESSAGES_PER_SENDER);
+                    lastReceived[sender] = message % MESSAGES_PER_SENDER;
+                }
+            }
+            for (Future<?> sender : senders) {
+                sender.get();
+            }
+        } finally {
+            senderExecutor.shutdown();
+            writerExecutor.shutdown();
+        }
+    }
+
+    @Test
+    void clientNotReadingIsClosedAfterTheWriteTimeoutTest() throws Exception {
+        try (var serverChannel = ServerSocketChannel.open().bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+             var client = new Socket(InetAddress.getLoopbackAddress(), ((InetSocketAddress) serverChannel.getLocalAddress()).getPort());
+             var channel = serverChannel.accept()) {
+            channel.configureBlocking(false);
+            var output = new ChannelOutputStream(channel, WRITE_TIMEOUT_MILLIS);
+            // Far more than the socket buffers, which the client never reads
+            var chunk = new byte[1024 * 1024];
+
+            long start = System.nanoTime();
+            assertThrows(IOException.class, () -> {
+                for (int i = 0; i < 256; i++) {
+                    output.write(chunk);
+                }
+            });
+            long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+            assertTrue(elapsedMillis >= WRITE_TIMEOUT_MILLIS, "waited " + elapsedMillis + " ms");
+            assertFalse(channel.isOpen());
+        }
+    }
+}
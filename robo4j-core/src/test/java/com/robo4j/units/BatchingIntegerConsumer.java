@@ -0,0 +1,90 @@
+/*
+ * Copyright (c) 2014, 2024, Marcus Hirt, Miroslav Wengner
+ *
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.robo4j.units;
+
+import com.robo4j.AttributeDescriptor;
+import com.robo4j.ConfigurationException;
+import com.robo4j.CriticalSectionTrait;
+import com.robo4j.DefaultAttributeDescriptor;
+import com.robo4j.RoboContext;
+import com.robo4j.RoboUnit;
+import com.robo4j.configuration.Configuration;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Processes its messages in batches, and records the size of every batch.
+ *
+ * @author Marcus Hirt (@hirt)
+ * @author Miroslav Wengner (@miragemiko)
+ */
+@CriticalSectionTrait
+public class BatchingIntegerConsumer extends RoboUnit<Integer> {
+    public static final String PROP_TOTAL_MESSAGES = "totalNumberMessages";
+    public static final String ATTR_COUNT_DOWN_LATCH = "countDownLatch";
+    public static final String ATTR_RECEIVED_MESSAGES = "receivedMessages";
+    public static final String ATTR_BATCH_SIZES = "batchSizes";
+    public static final DefaultAttributeDescriptor<CountDownLatch> DESCRIPTOR_COUNT_DOWN_LATCH = DefaultAttributeDescriptor
+            .create(CountDownLatch.class, ATTR_COUNT_DOWN_LATCH);
+    @SuppressWarnings("rawtypes")
+    public static final DefaultAttributeDescriptor<List> DESCRIPTOR_RECEIVED_MESSAGES = DefaultAttributeDescriptor
+            .create(List.class, ATTR_RECEIVED_MESSAGES);
+    @SuppressWarnings("rawtypes")
+    public static final DefaultAttributeDescriptor<List> DESCRIPTOR_BATCH_SIZES = DefaultAttributeDescriptor
+            .create(List.class, ATTR_BATCH_SIZES);
+    private final List<Integer> receivedMessages = new ArrayList<>();
+    private final List<Integer> batchSizes = new ArrayList<>();
+    private volatile CountDownLatch countDownLatch;
+
+    public BatchingIntegerConsumer(RoboContext context, String id) {
+        super(Integer.class, context, id);
+    }
+
+    @Override
+    protected void onInitialization(Configuration configuration) throws ConfigurationException {
+        countDownLatch = new CountDownLatch(configuration.getInteger(PROP_TOTAL_MESSAGES, 0));
+    }
+
+    @Override
+    public void onMessage(Integer message) {
+        onMessages(List.of(message));
+    }
+
+    @Override
+    public void onMessages(List<Integer> messages) {
+        synchronized (receivedMessages) {
+            batchSizes.add(messages.size());
+            receivedMessages.addAll(messages);
+        }
+        messages.forEach(m -> countDownLatch.countDown());
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public <R> R onGetAttribute(AttributeDescriptor<R> attribute) {
+        synchronized (receivedMessages) {
+            return switch (attribute.attributeName()) {
+                case ATTR_COUNT_DOWN_LATCH -> (R) countDownLatch;
+                case ATTR_RECEIVED_MESSAGES -> (R) List.copyOf(receivedMessages);
+                case ATTR_BATCH_SIZES -> (R) List.copyOf(batchSizes);
+                default -> null;
+            };
+        }
+    }
+}
@@ -0,0 +1,93 @@
+/*
+ * Copyright (c) 2014, 2024, Marcus Hirt, Miroslav Wengner
+ *
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.robo4j.units;
+
+import com.robo4j.AttributeDescriptor;
+import com.robo4j.ConfigurationException;
+import com.robo4j.DefaultAttributeDescriptor;
+import com.robo4j.RoboContext;
+import com.robo4j.RoboUnit;
+import com.robo4j.configuration.Configuration;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * Stage in a chain of units, forwarding the messages to the next stage. Records
+ * each message together with the stages which were processing a message on
+ * the same thread when it arrived, to tell inline delivery from queued
+ * delivery.
+ *
+ * @author Marcus Hirt (@hirt)
+ * @author Miroslav Wengner (@miragemiko)
+ */
+public class ChainStageUnit extends RoboUnit<String> {
+    public static final String PROP_TARGET = "target";
+    @SuppressWarnings("rawtypes")
+    public static final AttributeDescriptor<List> DESCRIPTOR_RECEIVED = DefaultAttributeDescriptor.create(List.class, "received");
+    // The stages processing a message on the current thread, outermost first
+    private static final ThreadLocal<Deque<String>> ACTIVE_STAGES = ThreadLocal.withInitial(ArrayDeque::new);
+
+    private final List<String> received = new ArrayList<>();
+    private String target;
+
+    /**
+     * @param context robo-context
+     * @param id      unit id
+     */
+    public ChainStageUnit(RoboContext context, String id) {
+        super(String.class, context, id);
+    }
+
+    @Override
+    protected void onInitialization(Configuration configuration) throws ConfigurationException {
+        target = configuration.getString(PROP_TARGET, null);
+    }
+
+    @Override
+    public void onMessage(String message) {
+        Deque<String> stages = ACTIVE_STAGES.get();
+        synchronized (this) {
+            received.add(message + "@" + stages);
+        }
+        if (target != null) {
+            stages.addLast(id());
+            try {
+                getContext().getReference(target).sendMessage(message);
+            } finally {
+                stages.removeLast();
+            }
+        }
+    }
+
+    @Override
+    public Collection<AttributeDescriptor<?>> getKnownAttributes() {
+        return List.of(DESCRIPTOR_RECEIVED);
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    protected synchronized <R> R onGetAttribute(AttributeDescriptor<R> descriptor) {
+        if (descriptor.equals(DESCRIPTOR_RECEIVED)) {
+            return (R) new ArrayList<>(received);
+        }
+        return null;
+    }
+}
@@ -0,0 +1,96 @@
+/*
+ * Copyright (c) 2014, 2024, Marcus Hirt, Miroslav Wengner
+ *
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.robo4j.units;
+
+import com.robo4j.AttributeDescriptor;
+import com.robo4j.ConfigurationException;
+import com.robo4j.CriticalSectionTrait;
+import com.robo4j.DefaultAttributeDescriptor;
+import com.robo4j.RoboContext;
+import com.robo4j.RoboUnit;
+import com.robo4j.WorkTrait;
+import com.robo4j.configuration.Configuration;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Records the messages without any synchronization of its own, and counts
+ * the deliveries that overlapped in time. Runs on the worker pool, which has
+ * more than one thread.
+ *
+ * @author Marcus Hirt (@hirt)
+ * @author Miroslav Wengner (@miragemiko)
+ */
+@WorkTrait
+@CriticalSectionTrait
+public class CriticalIntegerConsumer extends RoboUnit<Integer> {
+    public static final String PROP_TOTAL_MESSAGES = "totalNumberMessages";
+    public static final String ATTR_COUNT_DOWN_LATCH = "countDownLatch";
+    public static final String ATTR_OVERLAPS = "overlaps";
+    public static final DefaultAttributeDescriptor<CountDownLatch> DESCRIPTOR_COUNT_DOWN_LATCH = DefaultAttributeDescriptor
+            .create(CountDownLatch.class, ATTR_COUNT_DOWN_LATCH);
+    public static final DefaultAttributeDescriptor<Integer> DESCRIPTOR_OVERLAPS = DefaultAttributeDescriptor
+            .create(Integer.class, ATTR_OVERLAPS);
+    private final List<Integer> receivedMessages = new ArrayList<>();
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicInteger overlaps = new AtomicInteger();
+    private volatile CountDownLatch countDownLatch;
+
+    public CriticalIntegerConsumer(RoboContext context, String id) {
+        super(Integer.class, context, id);
+    }
+
+    /**
+     * Only safe to read once the count down latch has been released.
+     *
+     * @return the messages in the order they were received.
+     */
+    public List<Integer> getReceivedMessages() {
+        return receivedMessages;
+    }
+
+    @Override
+    protected void onInitialization(Configuration configuration) throws ConfigurationException {
+        countDownLatch = new CountDownLatch(configuration.getInteger(PROP_TOTAL_MESSAGES, 0));
+    }
+
+    @Override
+    public void onMessage(Integer message) {
+        if (inFlight.incrementAndGet() > 1) {
+            overlaps.incrementAndGet();
+        }
+        receivedMessages.add(message);
+        Thread.yield();
+        inFlight.decrementAndGet();
+        countDownLatch.countDown();
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public <R> R onGetAttribute(AttributeDescriptor<R> attribute) {
+        if (attribute.attributeName().equals(ATTR_COUNT_DOWN_LATCH) && attribute.attributeType() == CountDownLatch.class) {
+            return (R) countDownLatch;
+        }
+        if (attribute.attributeName().equals(ATTR_OVERLAPS) && attribute.attributeType() == Integer.class) {
+            return (R) (Integer) overlaps.get();
+        }
+        return null;
+    }
+}
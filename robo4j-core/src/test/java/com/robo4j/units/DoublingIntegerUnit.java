@@ -0,0 +1,60 @@
+/*
+ * Copyright (c) 2014, 2024, Marcus Hirt, Miroslav Wengner
+ *
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.robo4j.units;
+
+import com.robo4j.RoboContext;
+import com.robo4j.RoboUnit;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Unit replying to the messages it is asked: even numbers are doubled right
+ * away, odd numbers are doubled a bit later from another thread, zero gets no
+ * reply and negative numbers fail.
+ *
+ * @author Marcus Hirt (@hirt)
+ * @author Miroslav Wengner (@miragemiko)
+ */
+public class DoublingIntegerUnit extends RoboUnit<Integer> {
+    private static final long DEFERRED_DELAY_MILLIS = 10;
+
+    /**
+     * @param context robo-context
+     * @param id      unit id
+     */
+    public DoublingIntegerUnit(RoboContext context, String id) {
+        super(Integer.class, context, id);
+    }
+
+    @Override
+    public void onMessage(Integer message) {
+        if (message < 0) {
+            throw new IllegalArgumentException("Negative message: " + message);
+        }
+        if (message == 0) {
+            return;
+        }
+        if (message % 2 == 0) {
+            reply(message * 2);
+        } else {
+            CompletableFuture<Object> reply = deferReply();
+            CompletableFuture.delayedExecutor(DEFERRED_DELAY_MILLIS, TimeUnit.MILLISECONDS)
+                    .execute(() -> reply.complete(message * 2));
+        }
+    }
+}
@@ -0,0 +1,96 @@
+/*
+ * Copyright (c) 2014, 2024, Marcus Hirt, Miroslav Wengner
+ *
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.robo4j.units;
+
+import com.robo4j.AttributeDescriptor;
+import com.robo4j.BlockingTrait;
+import com.robo4j.CriticalSectionTrait;
+import com.robo4j.DefaultAttributeDescriptor;
+import com.robo4j.ExpiringMessage;
+import com.robo4j.RoboContext;
+import com.robo4j.RoboUnit;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Holds on to the first command until the gate is opened, so that the
+ * following commands pile up in the mailbox and may expire.
+ *
+ * @author Marcus Hirt (@hirt)
+ * @author Miroslav Wengner (@miragemiko)
+ */
+@BlockingTrait
+@CriticalSectionTrait
+public class GatedCommandConsumer extends RoboUnit<GatedCommandConsumer.Command> {
+    public static final String ATTR_FIRST_MESSAGE_LATCH = "firstMessageLatch";
+    public static final String ATTR_GATE = "gate";
+    public static final String ATTR_RECEIVED_COMMANDS = "receivedCommands";
+    public static final DefaultAttributeDescriptor<CountDownLatch> DESCRIPTOR_FIRST_MESSAGE_LATCH = DefaultAttributeDescriptor
+            .create(CountDownLatch.class, ATTR_FIRST_MESSAGE_LATCH);
+    public static final DefaultAttributeDescriptor<CountDownLatch> DESCRIPTOR_GATE = DefaultAttributeDescriptor
+            .create(CountDownLatch.class, ATTR_GATE);
+    @SuppressWarnings("rawtypes")
+    public static final DefaultAttributeDescriptor<List> DESCRIPTOR_RECEIVED_COMMANDS = DefaultAttributeDescriptor
+            .create(List.class, ATTR_RECEIVED_COMMANDS);
+    private static final int GATE_TIMEOUT_SEC = 10;
+    private final List<String> receivedCommands = Collections.synchronizedList(new ArrayList<>());
+    private final CountDownLatch firstMessageLatch = new CountDownLatch(1);
+    private final CountDownLatch gate = new CountDownLatch(1);
+
+    /**
+     * A named command, only worth executing until its deadline.
+     *
+     * @param name          the command name.
+     * @param deadlineNanos the deadline, in {@link System#nanoTime()} time.
+     */
+    public record Command(String name, long deadlineNanos) implements ExpiringMessage {
+        @Override
+        public long getDeadlineNanos() {
+            return deadlineNanos;
+        }
+    }
+
+    public GatedCommandConsumer(RoboContext context, String id) {
+        super(Command.class, context, id);
+    }
+
+    @Override
+    public void onMessage(Command message) {
+        receivedCommands.add(message.name());
+        firstMessageLatch.countDown();
+        try {
+            gate.await(GATE_TIMEOUT_SEC, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public <R> R onGetAttribute(AttributeDescriptor<R> attribute) {
+        return switch (attribute.attributeName()) {
+            case ATTR_FIRST_MESSAGE_LATCH -> (R) firstMessageLatch;
+            case ATTR_GATE -> (R) gate;
+            case ATTR_RECEIVED_COMMANDS -> (R) List.copyOf(receivedCommands);
+            default -> null;
+        };
+    }
+}
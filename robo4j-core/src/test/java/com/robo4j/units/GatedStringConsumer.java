@@ -0,0 +1,93 @@
+/*
+ * Copyright (c) 2014, 2024, Marcus Hirt, Miroslav Wengner
+ *
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.robo4j.units;
+
+import com.robo4j.AttributeDescriptor;
+import com.robo4j.BlockingTrait;
+import com.robo4j.CriticalSectionTrait;
+import com.robo4j.DefaultAttributeDescriptor;
+import com.robo4j.RoboContext;
+import com.robo4j.RoboUnit;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Holds on to the first message until the gate is opened, so that the
+ * following messages pile up in the mailbox.
+ *
+ * @author Marcus Hirt (@hirt)
+ * @author Miroslav Wengner (@miragemiko)
+ */
+@BlockingTrait
+@CriticalSectionTrait
+public class GatedStringConsumer extends RoboUnit<String> {
+    public static final String ATTR_FIRST_MESSAGE_LATCH = "firstMessageLatch";
+    public static final String ATTR_GATE = "gate";
+    public static final String ATTR_RECEIVED_MESSAGES = "receivedMessages";
+    public static final String ATTR_REJECTED_MESSAGES = "rejectedMessages";
+    public static final DefaultAttributeDescriptor<CountDownLatch> DESCRIPTOR_FIRST_MESSAGE_LATCH = DefaultAttributeDescriptor
+            .create(CountDownLatch.class, ATTR_FIRST_MESSAGE_LATCH);
+    public static final DefaultAttributeDescriptor<CountDownLatch> DESCRIPTOR_GATE = DefaultAttributeDescriptor
+            .create(CountDownLatch.class, ATTR_GATE);
+    @SuppressWarnings("rawtypes")
+    public static final DefaultAttributeDescriptor<List> DESCRIPTOR_RECEIVED_MESSAGES = DefaultAttributeDescriptor
+            .create(List.class, ATTR_RECEIVED_MESSAGES);
+    @SuppressWarnings("rawtypes")
+    public static final DefaultAttributeDescriptor<List> DESCRIPTOR_REJECTED_MESSAGES = DefaultAttributeDescriptor
+            .create(List.class, ATTR_REJECTED_MESSAGES);
+    private static final int GATE_TIMEOUT_SEC = 10;
+    private final List<String> receivedMessages = Collections.synchronizedList(new ArrayList<>());
+    private final List<String> rejectedMessages = Collections.synchronizedList(new ArrayList<>());
+    private final CountDownLatch firstMessageLatch = new CountDownLatch(1);
+    private final CountDownLatch gate = new CountDownLatch(1);
+
+    public GatedStringConsumer(RoboContext context, String id) {
+        super(String.class, context, id);
+    }
+
+    @Override
+    public void onMessage(String message) {
+        receivedMessages.add(message);
+        firstMessageLatch.countDown();
+        try {
+            gate.await(GATE_TIMEOUT_SEC, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    protected void onMailboxOverflow(String message) {
+        rejectedMessages.add(message);
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public <R> R onGetAttribute(AttributeDescriptor<R> attribute) {
+        return switch (attribute.attributeName()) {
+            case ATTR_FIRST_MESSAGE_LATCH -> (R) firstMessageLatch;
+            case ATTR_GATE -> (R) gate;
+            case ATTR_RECEIVED_MESSAGES -> (R) List.copyOf(receivedMessages);
+            case ATTR_REJECTED_MESSAGES -> (R) List.copyOf(rejectedMessages);
+            default -> null;
+        };
+    }
+}
@@ -0,0 +1,77 @@
+/*
+ * Copyright (c) 2014, 2024, Marcus Hirt, Miroslav Wengner
+ *
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.robo4j.units;
+
+import com.robo4j.RoboContext;
+import com.robo4j.RoboUnit;
+
+import java.util.List;
+
+/**
+ * Unit recording its lifecycle events in a list shared with other units, to
+ * check the order in which the system starts and stops them.
+ *
+ * @author Marcus Hirt (@hirt)
+ * @author Miroslav Wengner (@miragemiko)
+ */
+public class LifecycleRecordingUnit extends RoboUnit<Object> {
+    public static final String EVENT_START_BEGIN = "startBegin";
+    public static final String EVENT_START_END = "startEnd";
+    public static final String EVENT_STOP = "stop";
+    public static final String EVENT_SHUTDOWN = "shutdown";
+
+    private final List<String> events;
+    private final long startMillis;
+
+    /**
+     * @param context     robo-context
+     * @param id          unit id
+     * @param events      the synchronized list to record the events in, as
+     *                    "id:event"
+     * @param startMillis the time it takes to start the unit
+     */
+    public LifecycleRecordingUnit(RoboContext context, String id, List<String> events, long startMillis) {
+        super(Object.class, context, id);
+        this.events = events;
+        this.startMillis = startMillis;
+    }
+
+    @Override
+    public void start() {
+        record(EVENT_START_BEGIN);
+        try {
+            Thread.sleep(startMillis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        record(EVENT_START_END);
+    }
+
+    @Override
+    public void stop() {
+        record(EVENT_STOP);
+    }
+
+    @Override
+    public void shutdown() {
+        record(EVENT_SHUTDOWN);
+    }
+
+    private void record(String event) {
+        events.add(id() + ":" + event);
+    }
+}
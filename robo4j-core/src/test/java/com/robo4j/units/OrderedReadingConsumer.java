@@ -0,0 +1,126 @@
+/*
+ * Copyright (c) 2014, 2024, Marcus Hirt, Miroslav Wengner
+ *
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.robo4j.units;
+
+import com.robo4j.AttributeDescriptor;
+import com.robo4j.ConfigurationException;
+import com.robo4j.DefaultAttributeDescriptor;
+import com.robo4j.KeyedMessage;
+import com.robo4j.OrderedTrait;
+import com.robo4j.RoboContext;
+import com.robo4j.RoboUnit;
+import com.robo4j.WorkTrait;
+import com.robo4j.configuration.Configuration;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Records the readings per sensor, without any synchronization per sensor of
+ * its own. Counts the deliveries of the same sensor that overlapped in time,
+ * and the maximum number of deliveries running in parallel. Runs on the worker
+ * pool, which has more than one thread.
+ *
+ * @author Marcus Hirt (@hirt)
+ * @author Miroslav Wengner (@miragemiko)
+ */
+@WorkTrait
+@OrderedTrait
+public class OrderedReadingConsumer extends RoboUnit<OrderedReadingConsumer.Reading> {
+    public static final String PROP_TOTAL_MESSAGES = "totalNumberMessages";
+    public static final DefaultAttributeDescriptor<CountDownLatch> DESCRIPTOR_COUNT_DOWN_LATCH = DefaultAttributeDescriptor
+            .create(CountDownLatch.class, "countDownLatch");
+    public static final DefaultAttributeDescriptor<Integer> DESCRIPTOR_OVERLAPS = DefaultAttributeDescriptor
+            .create(Integer.class, "overlaps");
+    public static final DefaultAttributeDescriptor<Integer> DESCRIPTOR_MAX_PARALLEL = DefaultAttributeDescriptor
+            .create(Integer.class, "maxParallel");
+    private final Map<String, List<Integer>> readings = new ConcurrentHashMap<>();
+    private final Map<String, AtomicInteger> inFlightPerSensor = new ConcurrentHashMap<>();
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicInteger maxParallel = new AtomicInteger();
+    private final AtomicInteger overlaps = new AtomicInteger();
+    private volatile CountDownLatch countDownLatch;
+
+    /**
+     * A sequence numbered reading of a sensor, ordered by sensor.
+     *
+     * @param sensor   the sensor id.
+     * @param sequence the sequence number.
+     */
+    public record Reading(String sensor, int sequence) implements KeyedMessage {
+        @Override
+        public Object getOrderingKey() {
+            return sensor;
+        }
+    }
+
+    public OrderedReadingConsumer(RoboContext context, String id) {
+        super(Reading.class, context, id);
+    }
+
+    /**
+     * Only safe to read once the count down latch has been released.
+     *
+     * @return the sequence numbers per sensor, in the order they were received.
+     */
+    public Map<String, List<Integer>> getReadings() {
+        return readings;
+    }
+
+    @Override
+    protected void onInitialization(Configuration configuration) throws ConfigurationException {
+        countDownLatch = new CountDownLatch(configuration.getInteger(PROP_TOTAL_MESSAGES, 0));
+    }
+
+    @Override
+    public void onMessage(Reading message) {
+        AtomicInteger sensorInFlight = inFlightPerSensor.computeIfAbsent(message.sensor(), s -> new AtomicInteger());
+        if (sensorInFlight.incrementAndGet() > 1) {
+            overlaps.incrementAndGet();
+        }
+        maxParallel.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+        // Only ever appended to by one thread at a time, if ordered
+        readings.computeIfAbsent(message.sensor(), s -> new ArrayList<>()).add(message.sequence());
+        try {
+            Thread.sleep(1);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        inFlight.decrementAndGet();
+        sensorInFlight.decrementAndGet();
+        countDownLatch.countDown();
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public <R> R onGetAttribute(AttributeDescriptor<R> attribute) {
+        if (attribute.equals(DESCRIPTOR_COUNT_DOWN_LATCH)) {
+            return (R) countDownLatch;
+        }
+        if (attribute.equals(DESCRIPTOR_OVERLAPS)) {
+            return (R) (Integer) overlaps.get();
+        }
+        if (attribute.equals(DESCRIPTOR_MAX_PARALLEL)) {
+            return (R) (Integer) maxParallel.get();
+        }
+        return null;
+    }
+}
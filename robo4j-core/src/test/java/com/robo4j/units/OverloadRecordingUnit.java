@@ -0,0 +1,57 @@
+/*
+ * Copyright (c) 2014, 2024, Marcus Hirt, Miroslav Wengner
+ *
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.robo4j.units;
+
+import com.robo4j.AttributeDescriptor;
+import com.robo4j.DefaultAttributeDescriptor;
+import com.robo4j.RoboContext;
+import com.robo4j.RoboUnit;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Records the overload notifications of the system.
+ *
+ * @author Marcus Hirt (@hirt)
+ * @author Miroslav Wengner (@miragemiko)
+ */
+public class OverloadRecordingUnit extends RoboUnit<String> {
+    @SuppressWarnings("rawtypes")
+    public static final DefaultAttributeDescriptor<List> DESCRIPTOR_TRANSITIONS = DefaultAttributeDescriptor
+            .create(List.class, "transitions");
+    private final List<Boolean> transitions = Collections.synchronizedList(new ArrayList<>());
+
+    public OverloadRecordingUnit(RoboContext context, String id) {
+        super(String.class, context, id);
+    }
+
+    @Override
+    protected void onOverload(boolean overloaded) {
+        transitions.add(overloaded);
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public <R> R onGetAttribute(AttributeDescriptor<R> attribute) {
+        if (attribute.equals(DESCRIPTOR_TRANSITIONS)) {
+            return (R) List.copyOf(transitions);
+        }
+        return null;
+    }
+}
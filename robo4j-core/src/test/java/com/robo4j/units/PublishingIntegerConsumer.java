@@ -0,0 +1,83 @@
+/*
+ * Copyright (c) 2014, 2024, Marcus Hirt, Miroslav Wengner
+ *
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.robo4j.units;
+
+import com.robo4j.AttributeDescriptor;
+import com.robo4j.CriticalSectionTrait;
+import com.robo4j.DefaultAttributeDescriptor;
+import com.robo4j.RoboContext;
+import com.robo4j.RoboUnit;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Consumer publishing the number and the sum of the received messages as
+ * attributes, and providing the last received message the old way. Keeps
+ * running totals, so the messages are delivered one at a time.
+ *
+ * @author Marcus Hirt (@hirt)
+ * @author Miroslav Wengner (@miragemiko)
+ */
+@CriticalSectionTrait
+public class PublishingIntegerConsumer extends RoboUnit<Integer> {
+    public static final AttributeDescriptor<Integer> DESCRIPTOR_COUNT = DefaultAttributeDescriptor.create(Integer.class, "count");
+    public static final AttributeDescriptor<Long> DESCRIPTOR_SUM = DefaultAttributeDescriptor.create(Long.class, "sum");
+    public static final AttributeDescriptor<Integer> DESCRIPTOR_LAST = DefaultAttributeDescriptor.create(Integer.class, "last");
+
+    private int count;
+    private long sum;
+    private volatile Integer last;
+
+    /**
+     * @param context robo-context
+     * @param id      unit id
+     */
+    public PublishingIntegerConsumer(RoboContext context, String id) {
+        super(Integer.class, context, id);
+    }
+
+    @Override
+    public void start() {
+        publishAttributes(Map.of(DESCRIPTOR_COUNT, 0, DESCRIPTOR_SUM, 0L));
+    }
+
+    @Override
+    public void onMessage(Integer message) {
+        count++;
+        sum += message;
+        last = message;
+        // Published together, so readers never see a count and a sum from
+        // different messages
+        publishAttributes(Map.of(DESCRIPTOR_COUNT, count, DESCRIPTOR_SUM, sum));
+    }
+
+    @Override
+    public Collection<AttributeDescriptor<?>> getKnownAttributes() {
+        return List.of(DESCRIPTOR_COUNT, DESCRIPTOR_SUM, DESCRIPTOR_LAST);
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    protected <R> R onGetAttribute(AttributeDescriptor<R> descriptor) {
+        if (descriptor.equals(DESCRIPTOR_LAST)) {
+            return (R) last;
+        }
+        return null;
+    }
+}
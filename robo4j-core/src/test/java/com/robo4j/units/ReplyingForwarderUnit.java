@@ -0,0 +1,69 @@
+/*
+ * Copyright (c) 2014, 2024, Marcus Hirt, Miroslav Wengner
+ *
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.robo4j.units;
+
+import com.robo4j.AttributeDescriptor;
+import com.robo4j.ConfigurationException;
+import com.robo4j.DefaultAttributeDescriptor;
+import com.robo4j.RoboContext;
+import com.robo4j.RoboUnit;
+import com.robo4j.configuration.Configuration;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Unit forwarding its messages to an optional target, and then replying with
+ * its id. Publishes the thread the last message was processed on, to tell
+ * inline delivery from queued delivery.
+ *
+ * @author Marcus Hirt (@hirt)
+ * @author Miroslav Wengner (@miragemiko)
+ */
+public class ReplyingForwarderUnit extends RoboUnit<String> {
+    public static final String PROP_TARGET = "target";
+    public static final AttributeDescriptor<String> DESCRIPTOR_THREAD = DefaultAttributeDescriptor.create(String.class, "thread");
+
+    private String target;
+
+    /**
+     * @param context robo-context
+     * @param id      unit id
+     */
+    public ReplyingForwarderUnit(RoboContext context, String id) {
+        super(String.class, context, id);
+    }
+
+    @Override
+    protected void onInitialization(Configuration configuration) throws ConfigurationException {
+        target = configuration.getString(PROP_TARGET, null);
+    }
+
+    @Override
+    public void onMessage(String message) {
+        publishAttribute(DESCRIPTOR_THREAD, Thread.currentThread().getName());
+        if (target != null) {
+            getContext().getReference(target).sendMessage(message);
+        }
+        reply(id());
+    }
+
+    @Override
+    public Collection<AttributeDescriptor<?>> getKnownAttributes() {
+        return List.of(DESCRIPTOR_THREAD);
+    }
+}
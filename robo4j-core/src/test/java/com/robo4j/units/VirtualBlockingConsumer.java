@@ -0,0 +1,78 @@
+/*
+ * Copyright (c) 2014, 2024, Marcus Hirt, Miroslav Wengner
+ *
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.robo4j.units;
+
+import com.robo4j.AttributeDescriptor;
+import com.robo4j.BlockingTrait;
+import com.robo4j.ConfigurationException;
+import com.robo4j.DefaultAttributeDescriptor;
+import com.robo4j.RoboContext;
+import com.robo4j.RoboUnit;
+import com.robo4j.configuration.Configuration;
+import com.robo4j.util.SystemUtil;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Blocks for a while on every message, on virtual threads.
+ *
+ * @author Marcus Hirt (@hirt)
+ * @author Miroslav Wengner (@miragemiko)
+ */
+@BlockingTrait(virtualThreads = true)
+public class VirtualBlockingConsumer extends RoboUnit<String> {
+    public static final String PROP_TOTAL_MESSAGES = "totalNumberMessages";
+    public static final String PROP_BLOCK_MILLIS = "blockMillis";
+    public static final String ATTR_COUNT_DOWN_LATCH = "countDownLatch";
+    public static final DefaultAttributeDescriptor<CountDownLatch> DESCRIPTOR_COUNT_DOWN_LATCH = DefaultAttributeDescriptor
+            .create(CountDownLatch.class, ATTR_COUNT_DOWN_LATCH);
+    private final Set<Thread> deliveryThreads = ConcurrentHashMap.newKeySet();
+    private volatile CountDownLatch countDownLatch;
+    private volatile int blockMillis;
+
+    public VirtualBlockingConsumer(RoboContext context, String id) {
+        super(String.class, context, id);
+    }
+
+    public Set<Thread> getDeliveryThreads() {
+        return deliveryThreads;
+    }
+
+    @Override
+    protected void onInitialization(Configuration configuration) throws ConfigurationException {
+        countDownLatch = new CountDownLatch(configuration.getInteger(PROP_TOTAL_MESSAGES, 0));
+        blockMillis = configuration.getInteger(PROP_BLOCK_MILLIS, 0);
+    }
+
+    @Override
+    public void onMessage(String message) {
+        deliveryThreads.add(Thread.currentThread());
+        SystemUtil.sleep(blockMillis);
+        countDownLatch.countDown();
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public <R> R onGetAttribute(AttributeDescriptor<R> attribute) {
+        if (attribute.attributeName().equals(ATTR_COUNT_DOWN_LATCH) && attribute.attributeType() == CountDownLatch.class) {
+            return (R) countDownLatch;
+        }
+        return null;
+    }
+}
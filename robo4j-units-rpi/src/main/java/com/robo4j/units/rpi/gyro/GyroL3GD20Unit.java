@@ -27,6 +27,8 @@ import com.robo4j.hw.rpi.i2c.gyro.CalibratedGyro;
 import com.robo4j.hw.rpi.i2c.gyro.GyroL3GD20Device;
 import com.robo4j.hw.rpi.i2c.gyro.GyroL3GD20Device.Sensitivity;
 import com.robo4j.math.geometry.Tuple3f;
+import com.robo4j.scheduler.MissedPeriodPolicy;
+import com.robo4j.scheduler.PeriodicTask;
 import com.robo4j.units.rpi.I2CRoboUnit;
 import com.robo4j.units.rpi.gyro.GyroRequest.GyroAction;
 import org.slf4j.Logger;
@@ -38,7 +40,6 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
-import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
 
 /**
@@ -72,6 +73,12 @@ public class GyroL3GD20Unit extends I2CRoboUnit<GyroRequest> {
      */
     public static final String PROPERTY_KEY_PERIOD = "period";
 
+    /**
+     * This key configures what to do when a reading runs late, see
+     * {@link MissedPeriodPolicy}. Default is SKIP_MISSED.
+     */
+    public static final String PROPERTY_KEY_MISSED_PERIOD_POLICY = "missedPeriodPolicy";
+
     /**
      * This attribute will provide the state of the gyro as a {@link Tuple3f}.
      */
@@ -88,23 +95,24 @@ public class GyroL3GD20Unit extends I2CRoboUnit<GyroRequest> {
     private Sensitivity sensitivity;
     private boolean highPassFilter;
     private int period;
+    private MissedPeriodPolicy missedPeriodPolicy;
     private CalibratedGyro gyro;
-    private volatile ScheduledFuture<?> readings;
+    private volatile PeriodicTask readings;
 
     private class GyroScanner implements Runnable {
-        private long lastReadingTime = System.currentTimeMillis();
+        private long lastReadingTime = System.nanoTime();
         private Tuple3f lastReading = new Tuple3f(0f, 0f, 0f);
 
         @Override
         public void run() {
             Tuple3f data = read();
-            long newTime = System.currentTimeMillis();
+            long newTime = System.nanoTime();
 
             // Trapezoid
             Tuple3f tmp = new Tuple3f(data);
             long deltaTime = newTime - lastReadingTime;
             data.add(lastReading);
-            data.multiplyScalar(deltaTime / 2000.0f);
+            data.multiplyScalar(deltaTime / 2_000_000_000.0f);
 
             lastReading.set(tmp);
             addToDeltas(data);
@@ -120,7 +128,7 @@ public class GyroL3GD20Unit extends I2CRoboUnit<GyroRequest> {
         }
 
         private void reset() {
-            lastReadingTime = System.currentTimeMillis();
+            lastReadingTime = System.nanoTime();
             lastReading = read();
         }
 
@@ -150,6 +158,8 @@ public class GyroL3GD20Unit extends I2CRoboUnit<GyroRequest> {
         super.onInitialization(configuration);
         sensitivity = Sensitivity.valueOf(configuration.getString(PROPERTY_KEY_SENSITIVITY, "DPS_245"));
         period = configuration.getInteger(PROPERTY_KEY_PERIOD, 10);
+        missedPeriodPolicy = MissedPeriodPolicy.valueOf(configuration.getString(PROPERTY_KEY_MISSED_PERIOD_POLICY,
+                MissedPeriodPolicy.SKIP_MISSED.name()));
         highPassFilter = configuration.getBoolean(PROPERTY_KEY_HIGH_PASS_FILTER, true);
         try {
             gyro = new CalibratedGyro(new GyroL3GD20Device(getBus(), getAddress(), sensitivity, highPassFilter));
@@ -197,7 +207,7 @@ public class GyroL3GD20Unit extends I2CRoboUnit<GyroRequest> {
             }
             if (activeThresholds.isEmpty()) {
                 if (readings != null) {
-                    readings.cancel(false);
+                    readings.cancel();
                     readings = null;
                 }
             }
@@ -227,7 +237,8 @@ public class GyroL3GD20Unit extends I2CRoboUnit<GyroRequest> {
         }
         if (readings == null) {
             synchronized (this) {
-                readings = getContext().getScheduler().scheduleAtFixedRate(scanner, 0, period, TimeUnit.MILLISECONDS);
+                readings = getContext().getPeriodicExecutive().schedule(id(), scanner, 0, period, TimeUnit.MILLISECONDS,
+                        missedPeriodPolicy);
             }
         }
     }
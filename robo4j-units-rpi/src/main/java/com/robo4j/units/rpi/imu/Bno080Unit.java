@@ -28,6 +28,7 @@ import com.robo4j.hw.rpi.imu.bno.DataEvent3f;
 import com.robo4j.hw.rpi.imu.bno.DataListener;
 import com.robo4j.hw.rpi.imu.bno.impl.Bno080SPIDevice;
 import com.robo4j.hw.rpi.imu.bno.shtp.SensorReportId;
+import com.robo4j.net.MessageCodecRegistry;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -48,6 +49,10 @@ public class Bno080Unit extends RoboUnit<BnoRequest> {
     public static final String PROPERTY_REPORT_DELAY = "reportDelay";
     private static final Logger LOGGER = LoggerFactory.getLogger(Bno080Unit.class);
 
+    static {
+        ImuMessageCodecs.register(MessageCodecRegistry.getDefault());
+    }
+
     private static final class BnoListenerEvent implements DataListener {
         private final RoboReference<DataEvent3f> target;
 
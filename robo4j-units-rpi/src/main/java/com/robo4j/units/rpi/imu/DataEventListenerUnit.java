@@ -20,6 +20,7 @@ package com.robo4j.units.rpi.imu;
 import com.robo4j.RoboContext;
 import com.robo4j.RoboUnit;
 import com.robo4j.hw.rpi.imu.bno.DataEvent3f;
+import com.robo4j.net.MessageCodecRegistry;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -33,6 +34,10 @@ import org.slf4j.LoggerFactory;
 public class DataEventListenerUnit extends RoboUnit<DataEvent3f> {
     private static final Logger LOGGER = LoggerFactory.getLogger(DataEventListenerUnit.class);
 
+    static {
+        ImuMessageCodecs.register(MessageCodecRegistry.getDefault());
+    }
+
     public DataEventListenerUnit(RoboContext context, String id) {
         super(DataEvent3f.class, context, id);
     }
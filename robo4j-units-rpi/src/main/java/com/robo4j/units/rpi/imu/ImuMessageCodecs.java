@@ -0,0 +1,95 @@
+/*
+ * Copyright (c) 2014, 2024, Marcus Hirt, Miroslav Wengner
+ *
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.robo4j.units.rpi.imu;
+
+import com.robo4j.hw.rpi.imu.bno.DataEvent3f;
+import com.robo4j.hw.rpi.imu.bno.DataEventType;
+import com.robo4j.hw.rpi.imu.bno.VectorEvent;
+import com.robo4j.journal.MessageCodec;
+import com.robo4j.journal.MessageCodecs;
+import com.robo4j.math.geometry.Tuple3f;
+import com.robo4j.net.MessageCodecRegistry;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+
+/**
+ * Binary codecs for the IMU events, so that they are sent between contexts
+ * without java serialization. They are registered with the default
+ * {@link MessageCodecRegistry} when the IMU units are loaded. A context
+ * receiving the events without using these units must call
+ * {@link #register(MessageCodecRegistry)} itself.
+ *
+ * @author Marcus Hirt (@hirt)
+ * @author Miroslav Wengner (@miragemiko)
+ */
+public final class ImuMessageCodecs {
+    private static final byte NULL = 0;
+    private static final byte NOT_NULL = 1;
+    private static final DataEventType[] EVENT_TYPES = DataEventType.values();
+
+    public static final MessageCodec<Tuple3f> TUPLE3F = MessageCodecs.create(Tuple3f.class,
+            (message, buffer) -> buffer.putFloat(message.x).putFloat(message.y).putFloat(message.z),
+            buffer -> new Tuple3f(buffer.getFloat(), buffer.getFloat(), buffer.getFloat()));
+    public static final MessageCodec<DataEvent3f> DATA_EVENT3F = MessageCodecs.create(DataEvent3f.class,
+            ImuMessageCodecs::putEvent,
+            buffer -> new DataEvent3f(getEventType(buffer), buffer.getInt(), getTuple(buffer), buffer.getLong()));
+    public static final MessageCodec<VectorEvent> VECTOR_EVENT = MessageCodecs.create(VectorEvent.class, (message, buffer) -> {
+        putEvent(message, buffer);
+        buffer.putFloat(message.getQuatReal()).putFloat(message.getRadianAccuracy());
+    }, buffer -> new VectorEvent(getEventType(buffer), buffer.getInt(), getTuple(buffer), buffer.getLong(), buffer.getFloat(),
+            buffer.getFloat()));
+
+    private ImuMessageCodecs() {
+        // Not to be instantiated
+    }
+
+    /**
+     * Registers the codecs for {@link Tuple3f}, {@link DataEvent3f} and
+     * {@link VectorEvent}.
+     *
+     * @param registry the registry to register the codecs with.
+     */
+    public static void register(MessageCodecRegistry registry) {
+        registry.register(TUPLE3F);
+        registry.register(DATA_EVENT3F);
+        registry.register(VECTOR_EVENT);
+    }
+
+    private static void putEvent(DataEvent3f event, ByteBuffer buffer) {
+        buffer.putInt(event.getType().ordinal()).putInt(event.getStatus());
+        if (event.getData() == null) {
+            buffer.put(NULL);
+        } else {
+            TUPLE3F.encode(event.getData(), buffer.put(NOT_NULL));
+        }
+        buffer.putLong(event.getTimestamp());
+    }
+
+    private static DataEventType getEventType(ByteBuffer buffer) {
+        int ordinal = buffer.getInt();
+        // Corrupt, like the lengths checked by the derived record codecs
+        if (ordinal < 0 || ordinal >= EVENT_TYPES.length) {
+            throw new BufferUnderflowException();
+        }
+        return EVENT_TYPES[ordinal];
+    }
+
+    private static Tuple3f getTuple(ByteBuffer buffer) {
+        return buffer.get() == NULL ? null : TUPLE3F.decode(buffer);
+    }
+}
@@ -24,6 +24,7 @@ import com.robo4j.RoboUnit;
 import com.robo4j.configuration.Configuration;
 import com.robo4j.hw.rpi.imu.bno.VectorEvent;
 import com.robo4j.net.LookupServiceProvider;
+import com.robo4j.net.MessageCodecRegistry;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -38,6 +39,10 @@ public class VectorEventListenerUnit extends RoboUnit<VectorEvent> {
     public static final String ATTR_REMOTE_UNIT = "remoteUnit";
     private static final Logger LOGGER = LoggerFactory.getLogger(VectorEventListenerUnit.class);
 
+    static {
+        ImuMessageCodecs.register(MessageCodecRegistry.getDefault());
+    }
+
     public VectorEventListenerUnit(RoboContext context, String id) {
         super(VectorEvent.class, context, id);
     }